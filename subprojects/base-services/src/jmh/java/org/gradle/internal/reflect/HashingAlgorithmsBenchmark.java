@@ -23,6 +23,7 @@
 import org.bouncycastle.jcajce.provider.digest.Blake2b;
 import org.bouncycastle.jcajce.provider.digest.MD5;
 import org.bouncycastle.jcajce.provider.digest.SHA1;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
@@ -35,6 +36,7 @@
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
 
+import java.io.ByteArrayInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
@@ -62,15 +64,17 @@ private static MessageDigest getDigest(String name) {
         .put("sha1.bc", new MessageDigestHashProcessorFactory(new SHA1.Digest()))
         .put("blake2b.bc", new MessageDigestHashProcessorFactory(new Blake2b.Blake2b160()))
         .put("murmur3.guava", new GuavaProcessorFactory(Hashing.murmur3_128()))
+        .put("md5.gradle", new GradleProcessorFactory(org.gradle.internal.hash.Hashing.md5()))
+        .put("murmur3.gradle", new GradleProcessorFactory(org.gradle.internal.hash.Hashing.murmur3()))
         .build();
 
     Random random = new Random(1234L);
 
-    @Param({"16", "1024", "65536"})
+    @Param({"16", "1024", "65536", "1048576"})
     int hashSize;
 
     // @Param({"md5.java", "md5.bc", "sha1.java", "sha1.bc", "blake2b.bc"})
-    @Param({"md5.java", "murmur3.guava"})
+    @Param({"md5.java", "murmur3.guava", "md5.gradle", "murmur3.gradle"})
     String type;
 
     byte[] input;
@@ -155,4 +159,20 @@ public void process(byte[] input, Blackhole blackhole) {
             blackhole.consume(hasher.hash());
         }
     }
+
+    /**
+     * Hashes the input like {@link DefaultStreamHasher} hashes file contents with the given function.
+     */
+    private static class GradleProcessorFactory implements HashProcessorFactory {
+        private final DefaultStreamHasher streamHasher;
+
+        public GradleProcessorFactory(org.gradle.internal.hash.HashFunction hashFunction) {
+            this.streamHasher = new DefaultStreamHasher(hashFunction);
+        }
+
+        @Override
+        public HashProcessor create() {
+            return (input, blackhole) -> blackhole.consume(streamHasher.hash(new ByteArrayInputStream(input)));
+        }
+    }
 }
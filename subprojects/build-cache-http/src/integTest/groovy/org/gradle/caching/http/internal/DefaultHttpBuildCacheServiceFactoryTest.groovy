@@ -16,9 +16,11 @@
 
 package org.gradle.caching.http.internal
 
+import org.gradle.api.InvalidUserDataException
 import spock.lang.Specification
 
 import static org.gradle.caching.http.internal.DefaultHttpBuildCacheServiceFactory.extractCredentialsFromUserInfo
+import static org.gradle.caching.http.internal.DefaultHttpBuildCacheServiceFactory.parseMaxConnections
 
 class DefaultHttpBuildCacheServiceFactoryTest extends Specification {
 
@@ -47,4 +49,28 @@ class DefaultHttpBuildCacheServiceFactoryTest extends Specification {
         credentials.username == 'us'
         credentials.password == 'er:password'
     }
+
+    def "parses max connections #value"() {
+        expect:
+        parseMaxConnections(value) == expected
+
+        where:
+        value  | expected
+        null   | null
+        "1"    | 1
+        "50"   | 50
+        " 8 "  | 8
+    }
+
+    def "fails with descriptive error for invalid max connections #value"() {
+        when:
+        parseMaxConnections(value)
+
+        then:
+        def e = thrown(InvalidUserDataException)
+        e.message == "The value of system property 'org.gradle.cache.http.max-connections' must be a positive number but was '${value}'."
+
+        where:
+        value << ["0", "-1", "many", ""]
+    }
 }
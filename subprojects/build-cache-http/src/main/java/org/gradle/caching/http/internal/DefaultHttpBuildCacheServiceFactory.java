@@ -18,6 +18,7 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.authentication.Authentication;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -32,6 +33,7 @@
 import org.gradle.internal.verifier.HttpRedirectVerifier;
 import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -44,6 +46,11 @@
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+    /**
+     * Limits the number of connections opened to the cache, and thereby the number of concurrent requests.
+     */
+    @VisibleForTesting
+    static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.cache.http.max-connections";
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
@@ -90,6 +97,10 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
             .maxRedirects(MAX_REDIRECTS)
             .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
             .withRedirectVerifier(redirectVerifier);
+        Integer maxConnections = parseMaxConnections(System.getProperty(MAX_CONNECTIONS_PROPERTY));
+        if (maxConnections != null) {
+            builder.maxConnTotal(maxConnections).maxConnPerRoute(maxConnections);
+        }
         if (allowUntrustedServer) {
             builder.allowUntrustedConnections();
         } else {
@@ -125,6 +136,28 @@ private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecu
                 });
     }
 
+    @VisibleForTesting
+    @Nullable
+    static Integer parseMaxConnections(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        int maxConnections;
+        try {
+            maxConnections = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalidMaxConnections(value);
+        }
+        if (maxConnections <= 0) {
+            throw invalidMaxConnections(value);
+        }
+        return maxConnections;
+    }
+
+    private static InvalidUserDataException invalidMaxConnections(String value) {
+        return new InvalidUserDataException(String.format("The value of system property '%s' must be a positive number but was '%s'.", MAX_CONNECTIONS_PROPERTY, value));
+    }
+
     @VisibleForTesting
     static HttpBuildCacheCredentials extractCredentialsFromUserInfo(URI url) {
         HttpBuildCacheCredentials credentials = new HttpBuildCacheCredentials();
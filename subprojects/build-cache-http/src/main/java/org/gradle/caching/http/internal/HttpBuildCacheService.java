@@ -35,6 +35,7 @@
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.HttpClientResponse;
+import org.gradle.internal.resource.transport.http.HttpConnectionStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -177,6 +178,11 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
 
     @Override
     public void close() throws IOException {
+        HttpConnectionStatistics connectionStatistics = httpClientHelper.getConnectionStatistics();
+        if (connectionStatistics.getRequestCount() > 0) {
+            LOGGER.info("HTTP build cache at {} made {}, reusing connections for {} requests",
+                safeUri(root), connectionStatistics, connectionStatistics.getReusedConnectionCount());
+        }
         httpClientHelper.close();
     }
 
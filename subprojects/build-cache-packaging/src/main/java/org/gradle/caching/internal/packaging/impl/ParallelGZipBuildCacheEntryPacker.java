@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.HEADER_SIZE;
+
+/**
+ * Compresses entries using several threads, as a gzip stream made of independently compressed blocks.
+ *
+ * Entries written by this packer can be read by {@link GZipBuildCacheEntryPacker}, and this packer can read entries written
+ * by {@link GZipBuildCacheEntryPacker}, decompressing them on the calling thread.
+ */
+public class ParallelGZipBuildCacheEntryPacker implements BuildCacheEntryPacker, Closeable {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private final BuildCacheEntryPacker delegate;
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+
+    public ParallelGZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, ExecutorService executor, int parallelism) {
+        this(delegate, executor, DEFAULT_BLOCK_SIZE, 2 * parallelism);
+    }
+
+    public ParallelGZipBuildCacheEntryPacker(BuildCacheEntryPacker delegate, ExecutorService executor, int blockSize, int maxPendingBlocks) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (ParallelGZipOutputStream gzipOutput = new ParallelGZipOutputStream(output, executor, blockSize, maxPendingBlocks, Deflater.DEFAULT_COMPRESSION)) {
+            return delegate.pack(entity, snapshots, gzipOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        try (InputStream gzipInput = isParallelGZip(bufferedInput)
+            ? new ParallelGZipInputStream(bufferedInput, executor, maxPendingBlocks)
+            : new GZIPInputStream(bufferedInput)
+        ) {
+            return delegate.unpack(entity, gzipInput, readOrigin);
+        }
+    }
+
+    private static boolean isParallelGZip(BufferedInputStream input) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        input.mark(HEADER_SIZE);
+        try {
+            int length = 0;
+            while (length < HEADER_SIZE) {
+                int read = input.read(header, length, HEADER_SIZE - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+            return ParallelGZipInputStream.isParallelGZipHeader(header, length);
+        } finally {
+            input.reset();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.FEXTRA;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.GZIP_MAGIC;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.HEADER_SIZE;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.SUBFIELD_ID1;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.SUBFIELD_ID2;
+import static org.gradle.caching.internal.packaging.impl.ParallelGZipOutputStream.TRAILER_SIZE;
+
+/**
+ * Reads a gzip stream written by {@link ParallelGZipOutputStream}, decompressing several members concurrently.
+ *
+ * Members are read ahead and decompressed in the background, while the data is returned in order.
+ * A stream consisting of a single member is decompressed on the calling thread.
+ */
+public class ParallelGZipInputStream extends InputStream {
+
+    private final DataInputStream input;
+    private final ExecutorService executor;
+    private final int maxPendingMembers;
+    private final Deque<Future<byte[]>> pendingMembers = new ArrayDeque<>();
+    private boolean firstMember = true;
+    private boolean endOfInput;
+    private byte[] current = new byte[0];
+    private int position;
+
+    public ParallelGZipInputStream(InputStream input, ExecutorService executor, int maxPendingMembers) {
+        this.input = new DataInputStream(input);
+        this.executor = executor;
+        this.maxPendingMembers = maxPendingMembers;
+    }
+
+    /**
+     * Checks whether the given header starts a member written by {@link ParallelGZipOutputStream}.
+     */
+    public static boolean isParallelGZipHeader(byte[] header, int length) {
+        return length >= HEADER_SIZE
+            && (header[0] & 0xff) == (GZIP_MAGIC & 0xff)
+            && (header[1] & 0xff) == (GZIP_MAGIC >> 8)
+            && (header[3] & FEXTRA) != 0
+            && header[10] == 8 && header[11] == 0
+            && header[12] == SUBFIELD_ID1 && header[13] == SUBFIELD_ID2
+            && header[14] == 4 && header[15] == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == current.length) {
+            fill();
+            if (pendingMembers.isEmpty()) {
+                return false;
+            }
+            current = takeNextMember();
+            position = 0;
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        while (!endOfInput && pendingMembers.size() < maxPendingMembers) {
+            byte[] member = readMember();
+            if (member == null) {
+                endOfInput = true;
+                return;
+            }
+            if (firstMember) {
+                firstMember = false;
+                byte[] secondMember = readMember();
+                if (secondMember == null) {
+                    endOfInput = true;
+                    pendingMembers.add(CompletableFuture.completedFuture(inflateMember(member)));
+                    return;
+                }
+                submit(member);
+                submit(secondMember);
+            } else {
+                submit(member);
+            }
+        }
+    }
+
+    private void submit(byte[] member) {
+        pendingMembers.add(executor.submit(() -> inflateMember(member)));
+    }
+
+    private byte[] takeNextMember() throws IOException {
+        Future<byte[]> next = pendingMembers.remove();
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            cancelPendingMembers();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing build cache entry");
+        } catch (ExecutionException e) {
+            cancelPendingMembers();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not decompress build cache entry", cause);
+        }
+    }
+
+    private void cancelPendingMembers() {
+        pendingMembers.forEach(pending -> pending.cancel(true));
+        pendingMembers.clear();
+    }
+
+    /**
+     * Reads the next complete member, or returns {@code null} at the end of the stream.
+     */
+    @Nullable
+    private byte[] readMember() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int first = input.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        input.readFully(header, 1, HEADER_SIZE - 1);
+        if (!isParallelGZipHeader(header, HEADER_SIZE)) {
+            throw new ZipException("Not a member of a parallel gzip stream");
+        }
+        int memberSize = readIntLE(header, HEADER_SIZE - 4);
+        if (memberSize < HEADER_SIZE + TRAILER_SIZE) {
+            throw new ZipException("Invalid gzip member size: " + memberSize);
+        }
+        byte[] member = new byte[memberSize];
+        System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+        try {
+            input.readFully(member, HEADER_SIZE, memberSize - HEADER_SIZE);
+        } catch (EOFException e) {
+            throw new ZipException("Unexpected end of gzip member");
+        }
+        return member;
+    }
+
+    private static byte[] inflateMember(byte[] member) throws IOException {
+        int trailerOffset = member.length - TRAILER_SIZE;
+        int expectedCrc = readIntLE(member, trailerOffset);
+        int size = readIntLE(member, trailerOffset + 4);
+        if (size < 0) {
+            throw new ZipException("Invalid gzip member length: " + Integer.toUnsignedString(size));
+        }
+        byte[] data = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, HEADER_SIZE, trailerOffset - HEADER_SIZE);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int count = inflater.inflate(data, length, size - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += count;
+            }
+            if (length == size && !inflater.finished()) {
+                // Consume the end of the deflate stream, which must not produce any more data
+                length += inflater.inflate(new byte[1]);
+            }
+            if (length != size || !inflater.finished()) {
+                throw new ZipException("Corrupt gzip member");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt gzip member: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, size);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new ZipException("Corrupt gzip member, CRC mismatch");
+        }
+        return data;
+    }
+
+    private static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+            | (bytes[offset + 1] & 0xff) << 8
+            | (bytes[offset + 2] & 0xff) << 16
+            | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    @Override
+    public void close() throws IOException {
+        cancelPendingMembers();
+        input.close();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a gzip stream made of independently compressed members, compressing several members concurrently.
+ *
+ * The data is split into blocks of a fixed size, and each block is compressed as a separate gzip member.
+ * Each member records its own compressed size in an extra header field, so that {@link ParallelGZipInputStream} can find
+ * the member boundaries without decompressing and decompress members concurrently as well.
+ * The result is a regular multi-member gzip stream which any gzip reader can decompress.
+ *
+ * When all data fits into a single block, the block is compressed on the calling thread.
+ */
+public class ParallelGZipOutputStream extends OutputStream {
+
+    static final int GZIP_MAGIC = 0x8b1f;
+    static final byte FEXTRA = 4;
+    static final byte SUBFIELD_ID1 = 'G';
+    static final byte SUBFIELD_ID2 = 'C';
+    /**
+     * Size of the fixed header, including the extra field holding the member size.
+     */
+    static final int HEADER_SIZE = 10 + 2 + 4 + 4;
+    static final int TRAILER_SIZE = 8;
+
+    private final OutputStream output;
+    private final ExecutorService executor;
+    private final int maxPendingBlocks;
+    private final int compressionLevel;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength;
+    private boolean closed;
+
+    public ParallelGZipOutputStream(OutputStream output, ExecutorService executor, int blockSize, int maxPendingBlocks, int compressionLevel) {
+        this.output = output;
+        this.executor = executor;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.compressionLevel = compressionLevel;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+            int count = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = blockLength;
+        block = new byte[data.length];
+        blockLength = 0;
+        pendingBlocks.add(executor.submit(() -> compressMember(data, length, compressionLevel)));
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writeNextPendingBlock();
+        }
+    }
+
+    private void writeNextPendingBlock() throws IOException {
+        Future<byte[]> next = pendingBlocks.remove();
+        try {
+            output.write(next.get());
+        } catch (InterruptedException e) {
+            pendingBlocks.forEach(pending -> pending.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing build cache entry");
+        } catch (ExecutionException e) {
+            pendingBlocks.forEach(pending -> pending.cancel(true));
+            throw new IOException("Could not compress build cache entry", e.getCause());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (pendingBlocks.isEmpty()) {
+                output.write(compressMember(block, blockLength, compressionLevel));
+            } else {
+                if (blockLength > 0) {
+                    submitBlock();
+                }
+                while (!pendingBlocks.isEmpty()) {
+                    writeNextPendingBlock();
+                }
+            }
+            block = null;
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Compresses the given data into a complete gzip member.
+     */
+    static byte[] compressMember(byte[] data, int length, int compressionLevel) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + HEADER_SIZE + TRAILER_SIZE);
+        // Placeholder for the header, filled in once the compressed size is known
+        member.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                member.write(buffer, 0, count);
+            }
+        } finally {
+            deflater.end();
+        }
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+
+        byte[] result = member.toByteArray();
+        writeHeader(result, result.length);
+        return result;
+    }
+
+    private static void writeHeader(byte[] member, int memberSize) {
+        byte[] header = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8),
+            Deflater.DEFLATED,
+            FEXTRA,
+            0, 0, 0, 0, // modification time
+            0, // extra flags
+            (byte) 0xff, // unknown OS
+            8, 0, // length of the extra field
+            SUBFIELD_ID1, SUBFIELD_ID2,
+            4, 0, // length of the subfield
+            (byte) memberSize, (byte) (memberSize >> 8), (byte) (memberSize >> 16), (byte) (memberSize >> 24)
+        };
+        System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream output, int value) {
+        output.write(value);
+        output.write(value >> 8);
+        output.write(value >> 16);
+        output.write(value >> 24);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipException
+
+class ParallelGZipBuildCacheEntryPackerTest extends Specification {
+    def delegate = Mock(BuildCacheEntryPacker)
+    def entity = Stub(CacheableEntity)
+    def writeOrigin = Stub(OriginWriter)
+    def readOrigin = Stub(OriginReader)
+    def packer = new ParallelGZipBuildCacheEntryPacker(delegate, Executors.newFixedThreadPool(4), 1024, 4)
+
+    def cleanup() {
+        packer.close()
+    }
+
+    def "can unpack what was packed (#size bytes)"() {
+        def data = randomData(size)
+        def output = new ByteArrayOutputStream()
+        byte[] unpacked = null
+
+        when:
+        packer.pack(entity, [:], output, writeOrigin)
+        then:
+        1 * delegate.pack(entity, [:], _, writeOrigin) >> { args ->
+            args[2].write(data)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { args ->
+            unpacked = args[1].bytes
+            null
+        }
+        unpacked == data
+
+        where:
+        size << [0, 1, 1024, 1025, 100 * 1024 + 17]
+    }
+
+    def "packed entry can be read as a regular gzip stream"() {
+        def data = randomData(10 * 1024 + 3)
+        def output = new ByteArrayOutputStream()
+        delegate.pack(*_) >> { args ->
+            args[2].write(data)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+
+        when:
+        packer.pack(entity, [:], output, writeOrigin)
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == data
+    }
+
+    def "can unpack entry written as a regular gzip stream"() {
+        def data = randomData(10 * 1024 + 3)
+        def output = new ByteArrayOutputStream()
+        new GZIPOutputStream(output).withCloseable { it.write(data) }
+        byte[] unpacked = null
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { args ->
+            unpacked = args[1].bytes
+            null
+        }
+        unpacked == data
+    }
+
+    def "fails when a member is corrupt"() {
+        def data = randomData(10 * 1024 + 3)
+        def output = new ByteArrayOutputStream()
+        delegate.pack(*_) >> { args ->
+            args[2].write(data)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        packer.pack(entity, [:], output, writeOrigin)
+        def packed = output.toByteArray()
+        // Corrupt the stored CRC of the first member
+        def firstMemberSize = (packed[16] & 0xff) | (packed[17] & 0xff) << 8 | (packed[18] & 0xff) << 16 | (packed[19] & 0xff) << 24
+        packed[firstMemberSize - 8] ^= 0xff
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(packed), readOrigin)
+
+        then:
+        1 * delegate.unpack(entity, _, readOrigin) >> { args ->
+            args[1].bytes
+            null
+        }
+        thrown(ZipException)
+    }
+
+    private static byte[] randomData(int size) {
+        def random = new Random(size)
+        def data = new byte[size]
+        // Limit the alphabet so the data compresses
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) random.nextInt(16)
+        }
+        return data
+    }
+}
@@ -78,6 +78,11 @@ class BuildCacheBuildOperationsIntegrationTest extends AbstractIntegrationSpec {
                     ${isLocal ? loadBody ?: "" : ""}
                 }
 
+                // @Override
+                boolean contains(BuildCacheKey key) {
+                    false
+                }
+
                 // @Override
                 void storeLocally(BuildCacheKey key, File file) {
                     ${isLocal ? storeBody ?: "" : ""}
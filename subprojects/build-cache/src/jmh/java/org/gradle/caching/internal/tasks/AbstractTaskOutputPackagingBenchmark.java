@@ -55,6 +55,7 @@ public abstract class AbstractTaskOutputPackagingBenchmark {
         .put("tar.small", new CommonsTarPacker(2))
         .put("tar.large", new CommonsTarPacker(64))
         .put("tar.gz", new GzipPacker(new CommonsTarPacker(4)))
+        .put("tar.gz.parallel", new ParallelGzipPacker(new CommonsTarPacker(4)))
         .put("zip", new ZipPacker(4))
         .build();
 
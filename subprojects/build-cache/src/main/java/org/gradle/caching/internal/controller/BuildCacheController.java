@@ -23,6 +23,7 @@
 
 import java.io.Closeable;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
@@ -37,5 +38,17 @@ public interface BuildCacheController extends Closeable {
 
     Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEntity cacheableEntity);
 
+    /**
+     * Starts loading the entries for the given keys in the background, so that a later {@link #load(BuildCacheKey, CacheableEntity)} for one of them is faster.
+     *
+     * This is only a hint, a controller is free to ignore it.
+     */
+    void prefetch(Collection<BuildCacheKey> cacheKeys);
+
+    /**
+     * Discards the entries prefetched for the given keys, as they are not going to be loaded.
+     */
+    void discardPrefetched(Collection<BuildCacheKey> cacheKeys);
+
     void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime);
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects hit, miss, size and timing metrics of the build cache, per type of cached work.
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public class BuildCacheMetrics {
+    private final ConcurrentMap<String, EntryTypeMetrics> metricsByType = new ConcurrentHashMap<>();
+
+    public EntryTypeMetrics forType(Class<?> type) {
+        return metricsByType.computeIfAbsent(type.getName(), name -> new EntryTypeMetrics());
+    }
+
+    /**
+     * Writes the collected metrics as JSON to the given file.
+     */
+    public void writeReport(File reportFile) throws IOException {
+        File parentDir = reportFile.getParentFile();
+        if (parentDir != null) {
+            Files.createDirectories(parentDir.toPath());
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(reportFile.toPath()), StandardCharsets.UTF_8)) {
+            JsonWriter json = new JsonWriter(writer);
+            json.setIndent("  ");
+            json.beginObject();
+            EntryTypeMetrics total = new EntryTypeMetrics();
+            json.name("types").beginObject();
+            for (Map.Entry<String, EntryTypeMetrics> entry : new TreeMap<>(metricsByType).entrySet()) {
+                json.name(entry.getKey());
+                entry.getValue().write(json);
+                total.add(entry.getValue());
+            }
+            json.endObject();
+            json.name("total");
+            total.write(json);
+            json.endObject();
+            json.flush();
+        }
+    }
+
+    public static class EntryTypeMetrics {
+        private final LongAdder localHits = new LongAdder();
+        private final LongAdder localMisses = new LongAdder();
+        private final LongAdder remoteHits = new LongAdder();
+        private final LongAdder remoteMisses = new LongAdder();
+        private final LongAdder stores = new LongAdder();
+        private final LongAdder bytesLoaded = new LongAdder();
+        private final LongAdder bytesStored = new LongAdder();
+        private final LatencyHistogram packTime = new LatencyHistogram();
+        private final LatencyHistogram unpackTime = new LatencyHistogram();
+        private final LatencyHistogram remoteLoadTime = new LatencyHistogram();
+        private final LatencyHistogram remoteStoreTime = new LatencyHistogram();
+
+        public void localHit() {
+            localHits.increment();
+        }
+
+        public void localMiss() {
+            localMisses.increment();
+        }
+
+        public void remoteHit(long loadTimeNanos) {
+            remoteHits.increment();
+            remoteLoadTime.record(loadTimeNanos);
+        }
+
+        public void remoteMiss(long loadTimeNanos) {
+            remoteMisses.increment();
+            remoteLoadTime.record(loadTimeNanos);
+        }
+
+        public void stored(long entrySize, long packTimeNanos) {
+            stores.increment();
+            bytesStored.add(entrySize);
+            packTime.record(packTimeNanos);
+        }
+
+        public void remoteStored(long storeTimeNanos) {
+            remoteStoreTime.record(storeTimeNanos);
+        }
+
+        public void unpacked(long entrySize, long unpackTimeNanos) {
+            bytesLoaded.add(entrySize);
+            unpackTime.record(unpackTimeNanos);
+        }
+
+        private void add(EntryTypeMetrics other) {
+            localHits.add(other.localHits.sum());
+            localMisses.add(other.localMisses.sum());
+            remoteHits.add(other.remoteHits.sum());
+            remoteMisses.add(other.remoteMisses.sum());
+            stores.add(other.stores.sum());
+            bytesLoaded.add(other.bytesLoaded.sum());
+            bytesStored.add(other.bytesStored.sum());
+            packTime.add(other.packTime);
+            unpackTime.add(other.unpackTime);
+            remoteLoadTime.add(other.remoteLoadTime);
+            remoteStoreTime.add(other.remoteStoreTime);
+        }
+
+        private void write(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("localHits").value(localHits.sum());
+            json.name("localMisses").value(localMisses.sum());
+            json.name("remoteHits").value(remoteHits.sum());
+            json.name("remoteMisses").value(remoteMisses.sum());
+            json.name("stores").value(stores.sum());
+            json.name("bytesLoaded").value(bytesLoaded.sum());
+            json.name("bytesStored").value(bytesStored.sum());
+            json.name("packTime");
+            packTime.write(json);
+            json.name("unpackTime");
+            unpackTime.write(json);
+            json.name("remoteLoadTime");
+            remoteLoadTime.write(json);
+            json.name("remoteStoreTime");
+            remoteStoreTime.write(json);
+            json.endObject();
+        }
+    }
+
+    /**
+     * A histogram of durations with buckets of exponentially increasing size, from below 1ms to 32s and above.
+     */
+    static class LatencyHistogram {
+        private static final int BUCKET_COUNT = 17;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+        LatencyHistogram() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets[bucketFor(nanos)].increment();
+        }
+
+        /**
+         * Bucket 0 holds durations below 1ms, bucket {@code i} holds durations below {@code 2^i} ms, and the last bucket holds all longer durations.
+         */
+        static int bucketFor(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 64 - Long.numberOfLeadingZeros(millis);
+            return Math.min(bucket, BUCKET_COUNT - 1);
+        }
+
+        private void add(LatencyHistogram other) {
+            count.add(other.count.sum());
+            totalNanos.add(other.totalNanos.sum());
+            maxNanos.accumulate(other.maxNanos.get());
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i].add(other.buckets[i].sum());
+            }
+        }
+
+        private void write(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("count").value(count.sum());
+            json.name("totalMillis").value(TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()));
+            json.name("maxMillis").value(TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            json.name("buckets").beginObject();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long bucketCount = buckets[i].sum();
+                if (bucketCount > 0) {
+                    json.name(i == BUCKET_COUNT - 1 ? ">=" + (1L << (i - 1)) + "ms" : "<" + (1L << i) + "ms").value(bucketCount);
+                }
+            }
+            json.endObject();
+            json.endObject();
+        }
+    }
+}
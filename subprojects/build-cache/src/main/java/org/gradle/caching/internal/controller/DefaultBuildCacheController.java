@@ -30,6 +30,7 @@
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
 import org.gradle.caching.internal.controller.operations.UnpackOperationResult;
+import org.gradle.caching.internal.controller.service.AsyncStoreRemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheLoadResult;
 import org.gradle.caching.internal.controller.service.RemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
@@ -39,12 +40,14 @@
 import org.gradle.caching.internal.controller.service.NullRemoteBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.NullLocalBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.OpFiringRemoteBuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.PrefetchingBuildCacheService;
 import org.gradle.caching.internal.origin.OriginMetadata;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.file.TreeType;
@@ -65,21 +68,35 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final int MAX_CONCURRENT_ASYNC_REMOTE_STORES = 4;
+    private static final int MAX_PENDING_ASYNC_REMOTE_STORES = 64;
+    private static final Duration ASYNC_REMOTE_STORE_FLUSH_TIMEOUT = Duration.ofMinutes(5);
+    private static final int MAX_CONCURRENT_REMOTE_PREFETCHES = 8;
+    private static final int MAX_STAGED_REMOTE_PREFETCHES = 256;
+
     @VisibleForTesting
     final RemoteBuildCacheServiceHandle remote;
 
     @VisibleForTesting
     final LocalBuildCacheServiceHandle local;
 
+    @Nullable
+    private final PrefetchingBuildCacheService prefetchingRemote;
+
     private final BuildCacheTempFileStore tmp;
     private final boolean emitDebugLogging;
     private final PackOperationExecutor packExecutor;
+    private final BuildCacheMetrics metrics = new BuildCacheMetrics();
+    @Nullable
+    private final File metricsReportFile;
 
     private boolean closed;
 
@@ -90,14 +107,34 @@ public DefaultBuildCacheController(
         boolean logStackTraces,
         boolean emitDebugLogging,
         boolean disableRemoteOnError,
+        boolean asyncRemoteStore,
+        boolean remotePrefetch,
+        @Nullable File metricsReportFile,
+        ExecutorFactory executorFactory,
         FileSystemAccess fileSystemAccess,
         BuildCacheEntryPacker packer,
         OriginMetadataFactory originMetadataFactory,
         StringInterner stringInterner
     ) {
         this.emitDebugLogging = emitDebugLogging;
+        this.metricsReportFile = metricsReportFile;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
-        this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError);
+        BuildCacheService remoteService = config.getRemote();
+        if (remotePrefetch && remoteService != null) {
+            // Prefetch below the handle, so that loading a prefetched entry still fires the load operation
+            this.prefetchingRemote = new PrefetchingBuildCacheService(
+                remoteService,
+                buildOperationExecutor,
+                temporaryFileProvider,
+                executorFactory,
+                MAX_CONCURRENT_REMOTE_PREFETCHES,
+                MAX_STAGED_REMOTE_PREFETCHES
+            );
+            remoteService = prefetchingRemote;
+        } else {
+            this.prefetchingRemote = null;
+        }
+        this.remote = toRemoteHandle(remoteService, config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError, asyncRemoteStore, executorFactory, temporaryFileProvider);
         this.tmp = toTempFileStore(config.getLocal(), temporaryFileProvider);
         this.packExecutor = new PackOperationExecutor(
             buildOperationExecutor,
@@ -127,42 +164,94 @@ public Optional<BuildCacheLoadResult> load(BuildCacheKey key, CacheableEntity en
         return loadRemoteAndStoreResultLocally(key, entity);
     }
 
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+        if (prefetchingRemote == null || !remote.canLoad()) {
+            return;
+        }
+        for (BuildCacheKey key : keys) {
+            if (!local.contains(key)) {
+                prefetchingRemote.prefetch(key);
+            }
+        }
+    }
+
+    @Override
+    public void discardPrefetched(Collection<BuildCacheKey> keys) {
+        if (prefetchingRemote == null) {
+            return;
+        }
+        for (BuildCacheKey key : keys) {
+            prefetchingRemote.discard(key);
+        }
+    }
+
     private Optional<BuildCacheLoadResult> loadLocal(BuildCacheKey key, CacheableEntity entity) {
+        BuildCacheMetrics.EntryTypeMetrics typeMetrics = metrics.forType(entity.getType());
+        Optional<BuildCacheLoadResult> result;
         try {
-            return local.maybeLoad(key, file -> packExecutor.unpack(key, entity, file));
+            result = local.maybeLoad(key, file -> unpack(key, entity, file, typeMetrics));
         } catch (Exception e) {
             throw new GradleException("Could not load from local cache: " + e.getMessage(), e);
         }
+        if (result.isPresent()) {
+            typeMetrics.localHit();
+        } else {
+            typeMetrics.localMiss();
+        }
+        return result;
     }
 
     private Optional<BuildCacheLoadResult> loadRemoteAndStoreResultLocally(BuildCacheKey key, CacheableEntity entity) {
         if (!remote.canLoad()) {
             return Optional.empty();
         }
+        BuildCacheMetrics.EntryTypeMetrics typeMetrics = metrics.forType(entity.getType());
         AtomicReference<Optional<BuildCacheLoadResult>> result = new AtomicReference<>(Optional.empty());
         tmp.withTempFile(key, file -> {
+            long startTime = System.nanoTime();
+            AtomicLong loadedTime = new AtomicLong();
             Optional<BuildCacheLoadResult> remoteResult;
             try {
-                remoteResult = remote.maybeLoad(key, file, f -> packExecutor.unpack(key, entity, f));
+                remoteResult = remote.maybeLoad(key, file, f -> {
+                    loadedTime.set(System.nanoTime());
+                    return unpack(key, entity, f, typeMetrics);
+                });
             } catch (Exception e) {
                 throw new GradleException("Could not load from remote cache: " + e.getMessage(), e);
             }
             if (remoteResult.isPresent()) {
+                typeMetrics.remoteHit(loadedTime.get() - startTime);
                 local.maybeStore(key, file);
                 result.set(remoteResult);
+            } else {
+                typeMetrics.remoteMiss(System.nanoTime() - startTime);
             }
         });
         return result.get();
     }
 
+    private BuildCacheLoadResult unpack(BuildCacheKey key, CacheableEntity entity, File file, BuildCacheMetrics.EntryTypeMetrics typeMetrics) {
+        long startTime = System.nanoTime();
+        BuildCacheLoadResult result = packExecutor.unpack(key, entity, file);
+        typeMetrics.unpacked(file.length(), System.nanoTime() - startTime);
+        return result;
+    }
+
     @Override
     public void store(BuildCacheKey key, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
         if (!local.canStore() && !remote.canStore()) {
             return;
         }
+        BuildCacheMetrics.EntryTypeMetrics typeMetrics = metrics.forType(entity.getType());
         tmp.withTempFile(key, file -> {
+            long startTime = System.nanoTime();
             packExecutor.pack(file, key, entity, snapshots, executionTime);
-            remote.maybeStore(key, file);
+            typeMetrics.stored(file.length(), System.nanoTime() - startTime);
+            if (remote.canStore()) {
+                // Stores in the background report the time when the upload has finished
+                remote.maybeStore(key, file, typeMetrics::remoteStored);
+            }
             local.maybeStore(key, file);
         });
     }
@@ -172,12 +261,20 @@ public void close() throws IOException {
         if (!closed) {
             closed = true;
             Closer closer = Closer.create();
+            // Closed in reverse order, so the report is written last
+            closer.register(this::writeMetricsReport);
             closer.register(local);
             closer.register(remote);
             closer.close();
         }
     }
 
+    private void writeMetricsReport() throws IOException {
+        if (metricsReportFile != null) {
+            metrics.writeReport(metricsReportFile);
+        }
+    }
+
     @VisibleForTesting
     static class PackOperationExecutor {
         private final BuildOperationExecutor buildOperationExecutor;
@@ -281,10 +378,32 @@ public BuildOperationDescriptor.Builder description() {
         }
     }
 
-    private static RemoteBuildCacheServiceHandle toRemoteHandle(@Nullable BuildCacheService service, boolean push, BuildOperationExecutor buildOperationExecutor, boolean logStackTraces, boolean disableOnError) {
-        return service == null
-            ? NullRemoteBuildCacheServiceHandle.INSTANCE
-            : new OpFiringRemoteBuildCacheServiceHandle(service, push, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces, disableOnError);
+    private static RemoteBuildCacheServiceHandle toRemoteHandle(
+        @Nullable BuildCacheService service,
+        boolean push,
+        BuildOperationExecutor buildOperationExecutor,
+        boolean logStackTraces,
+        boolean disableOnError,
+        boolean asyncStore,
+        ExecutorFactory executorFactory,
+        TemporaryFileProvider temporaryFileProvider
+    ) {
+        if (service == null) {
+            return NullRemoteBuildCacheServiceHandle.INSTANCE;
+        }
+        RemoteBuildCacheServiceHandle handle = new OpFiringRemoteBuildCacheServiceHandle(service, push, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces, disableOnError);
+        if (asyncStore && push) {
+            return new AsyncStoreRemoteBuildCacheServiceHandle(
+                handle,
+                buildOperationExecutor,
+                temporaryFileProvider,
+                executorFactory,
+                MAX_CONCURRENT_ASYNC_REMOTE_STORES,
+                MAX_PENDING_ASYNC_REMOTE_STORES,
+                ASYNC_REMOTE_STORE_FLUSH_TIMEOUT
+            );
+        }
+        return handle;
     }
 
     private static LocalBuildCacheServiceHandle toLocalHandle(@Nullable LocalBuildCacheService local, boolean localPush) {
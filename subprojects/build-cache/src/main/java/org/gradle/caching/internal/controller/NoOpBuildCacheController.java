@@ -22,6 +22,7 @@
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
@@ -47,6 +48,16 @@ public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEnti
         return Optional.empty();
     }
 
+    @Override
+    public void prefetch(Collection<BuildCacheKey> cacheKeys) {
+
+    }
+
+    @Override
+    public void discardPrefetched(Collection<BuildCacheKey> cacheKeys) {
+
+    }
+
     @Override
     public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
 
@@ -22,6 +22,7 @@
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
@@ -70,6 +71,16 @@ public Optional<BuildCacheLoadResult> load(BuildCacheKey cacheKey, CacheableEnti
             return delegate.load(cacheKey, cacheableEntity);
         }
 
+        @Override
+        public void prefetch(Collection<BuildCacheKey> cacheKeys) {
+            delegate.prefetch(cacheKeys);
+        }
+
+        @Override
+        public void discardPrefetched(Collection<BuildCacheKey> cacheKeys) {
+            delegate.discardPrefetched(cacheKeys);
+        }
+
         @Override
         public void store(BuildCacheKey cacheKey, CacheableEntity entity, Map<String, FileSystemSnapshot> snapshots, Duration executionTime) {
             delegate.store(cacheKey, entity, snapshots, executionTime);
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Uploads entries to the remote build cache in the background, so the worker that executed the work does not wait for the upload.
+ *
+ * The entry to store is linked or copied to a file owned by the pending upload, since the caller is free to move or delete its file once
+ * {@link #maybeStore(BuildCacheKey, File)} returns.
+ * At most a fixed number of uploads can be pending. When that limit is reached, entries are uploaded on the calling thread instead,
+ * which slows down producers until the uploads catch up.
+ * Pending uploads are finished when the handle is closed at the end of the build, waiting at most for the given timeout.
+ * Uploads which did not finish in time are cancelled, and the delegate is only closed once the cancelled uploads have stopped using it.
+ *
+ * The upload is still reported by the store build operation of the delegate, which runs on the upload thread and thus measures the actual upload time.
+ * The operation that scheduled the upload has usually completed by the time the upload starts, so the store operations are children of a
+ * dedicated background operation instead. That operation is started with the first background upload and completes once all uploads have stopped.
+ */
+public class AsyncStoreRemoteBuildCacheServiceHandle implements RemoteBuildCacheServiceHandle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncStoreRemoteBuildCacheServiceHandle.class);
+
+    private final RemoteBuildCacheServiceHandle delegate;
+    private final BackgroundBuildOperation backgroundOperation;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ManagedExecutor executor;
+    private final Semaphore pendingStores;
+    // Files of the uploads which have not started yet
+    private final Set<File> pendingFiles = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger runningStores = new AtomicInteger();
+    private final AtomicBoolean closeWhenStoresFinish = new AtomicBoolean();
+    private final AtomicBoolean delegateClosed = new AtomicBoolean();
+    private final Duration flushTimeout;
+
+    public AsyncStoreRemoteBuildCacheServiceHandle(
+        RemoteBuildCacheServiceHandle delegate,
+        BuildOperationRunner buildOperationRunner,
+        TemporaryFileProvider temporaryFileProvider,
+        ExecutorFactory executorFactory,
+        int maxConcurrentStores,
+        int maxPendingStores,
+        Duration flushTimeout
+    ) {
+        this.delegate = delegate;
+        this.backgroundOperation = new BackgroundBuildOperation(buildOperationRunner, "Store entries in remote build cache in the background");
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("Remote build cache store", maxConcurrentStores);
+        this.pendingStores = new Semaphore(maxPendingStores);
+        this.flushTimeout = flushTimeout;
+    }
+
+    @Nullable
+    @Override
+    public BuildCacheService getService() {
+        return delegate.getService();
+    }
+
+    @Override
+    public boolean canLoad() {
+        return delegate.canLoad();
+    }
+
+    @Override
+    public Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile, Function<File, BuildCacheLoadResult> unpackFunction) {
+        return delegate.maybeLoad(key, toFile, unpackFunction);
+    }
+
+    @Override
+    public boolean canStore() {
+        return delegate.canStore();
+    }
+
+    /**
+     * Schedules the file to be stored to the cache.
+     *
+     * Returns true if the store was scheduled or completed.
+     */
+    @Override
+    public boolean maybeStore(BuildCacheKey key, File file) {
+        return maybeStore(key, file, storeTimeNanos -> {
+        });
+    }
+
+    @Override
+    public boolean maybeStore(BuildCacheKey key, File file, LongConsumer storeTimeListener) {
+        if (!canStore()) {
+            return false;
+        }
+        if (!pendingStores.tryAcquire()) {
+            LOGGER.debug("Too many pending stores to remote build cache, storing entry {} synchronously", key.getDisplayName());
+            return storeNow(key, file, storeTimeListener);
+        }
+        File pendingFile;
+        try {
+            pendingFile = takeOver(key, file);
+        } catch (IOException e) {
+            pendingStores.release();
+            LOGGER.debug("Could not schedule storing entry {} to remote build cache, storing synchronously", key.getDisplayName(), e);
+            return storeNow(key, file, storeTimeListener);
+        }
+        pendingFiles.add(pendingFile);
+        BuildOperationRef parentOperation = backgroundOperation.get();
+        executor.execute(() -> {
+            runningStores.incrementAndGet();
+            pendingFiles.remove(pendingFile);
+            try {
+                CurrentBuildOperationRef.instance().with(parentOperation, () -> storeNow(key, pendingFile, storeTimeListener));
+            } catch (Exception e) {
+                LOGGER.warn("Could not store entry {} in remote build cache in the background", key.getDisplayName(), e);
+            } finally {
+                GFileUtils.deleteQuietly(pendingFile);
+                pendingStores.release();
+                if (runningStores.decrementAndGet() == 0 && closeWhenStoresFinish.get()) {
+                    closeDelegate();
+                }
+            }
+        });
+        return true;
+    }
+
+    private boolean storeNow(BuildCacheKey key, File file, LongConsumer storeTimeListener) {
+        long startTime = System.nanoTime();
+        boolean stored = delegate.maybeStore(key, file);
+        storeTimeListener.accept(System.nanoTime() - startTime);
+        return stored;
+    }
+
+    private File takeOver(BuildCacheKey key, File file) throws IOException {
+        File pendingFile = temporaryFileProvider.createTemporaryFile(key.getHashCode() + "-", "-upload.bin");
+        Files.delete(pendingFile.toPath());
+        try {
+            // A hard link avoids copying the entry, but is only possible on the same file system
+            Files.createLink(pendingFile.toPath(), file.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file.toPath(), pendingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return pendingFile;
+    }
+
+    @Override
+    public void close() {
+        int pending = pendingFiles.size() + runningStores.get();
+        if (pending > 0) {
+            LOGGER.info("Waiting for {} pending stores to remote build cache", pending);
+        }
+        executor.requestStop();
+        boolean finished = awaitStores();
+        if (!finished) {
+            LOGGER.warn("Timed out after {} seconds waiting for {} pending stores to remote build cache, these entries were not stored.", flushTimeout.getSeconds(), pendingFiles.size() + runningStores.get());
+            executor.shutdownNow();
+            // Give the interrupted uploads a chance to stop, as they are still using their files and the delegate
+            finished = awaitStores();
+        }
+        // The uploads which have not started yet will never run
+        pendingFiles.forEach(GFileUtils::deleteQuietly);
+        if (finished) {
+            executor.stop();
+            closeDelegate();
+        } else {
+            LOGGER.warn("Cancelled stores to remote build cache did not stop, the remote build cache will be closed once they finish.");
+            closeWhenStoresFinish.set(true);
+            if (runningStores.get() == 0) {
+                closeDelegate();
+            }
+        }
+    }
+
+    private boolean awaitStores() {
+        try {
+            return executor.awaitTermination(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return executor.isTerminated();
+        }
+    }
+
+    private void closeDelegate() {
+        if (delegateClosed.compareAndSet(false, true)) {
+            // No upload is running anymore, so the background operation has no more children
+            backgroundOperation.finish();
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+
+import javax.annotation.Nullable;
+
+/**
+ * A build operation for work that runs in the background and outlives the operation that scheduled it.
+ *
+ * The operation is started without a parent when it is first needed, and runs until it is finished explicitly.
+ * Starting and finishing the operation does not change the current operation of the calling thread.
+ */
+class BackgroundBuildOperation {
+    private final BuildOperationRunner buildOperationRunner;
+    private final String displayName;
+    private BuildOperationContext context;
+    private BuildOperationRef operation;
+
+    BackgroundBuildOperation(BuildOperationRunner buildOperationRunner, String displayName) {
+        this.buildOperationRunner = buildOperationRunner;
+        this.displayName = displayName;
+    }
+
+    /**
+     * Returns the operation to use as the parent of background work, starting it if required.
+     */
+    @Nullable
+    public synchronized BuildOperationRef get() {
+        if (context == null) {
+            CurrentBuildOperationRef.instance().with(null, () -> {
+                context = buildOperationRunner.start(BuildOperationDescriptor.displayName(displayName));
+                operation = CurrentBuildOperationRef.instance().get();
+            });
+        }
+        return operation;
+    }
+
+    /**
+     * Finishes the operation, if it was started. No background work may run as a child of the operation anymore.
+     */
+    public synchronized void finish() {
+        if (context != null) {
+            CurrentBuildOperationRef.instance().with(operation, () -> context.setResult(null));
+            context = null;
+            operation = null;
+        }
+    }
+}
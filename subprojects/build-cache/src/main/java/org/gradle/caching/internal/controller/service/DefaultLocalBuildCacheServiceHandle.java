@@ -48,6 +48,11 @@ public Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, Function<File
         return result.get();
     }
 
+    @Override
+    public boolean contains(BuildCacheKey key) {
+        return service.contains(key);
+    }
+
     @Override
     public boolean canStore() {
         return pushEnabled;
@@ -35,6 +35,11 @@ public interface LocalBuildCacheServiceHandle extends Closeable {
     // TODO: what if this errors?
     Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, Function<File, BuildCacheLoadResult> unpackFunction);
 
+    /**
+     * Checks whether the local cache has an entry for the given key, without loading it.
+     */
+    boolean contains(BuildCacheKey key);
+
     boolean canStore();
 
     /**
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.util.internal.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads entries from the remote build cache ahead of time, so that a later load does not need to wait for the network.
+ *
+ * Prefetched entries are downloaded concurrently to a staging area of temporary files.
+ * A later {@link #load(BuildCacheKey, BuildCacheEntryReader)} for a prefetched key reads the staged file, waiting for the
+ * download if it is still in progress. A prefetch that found no entry answers the load as a miss without asking the remote cache again.
+ *
+ * This service sits below the handle that fires the load build operations, so a load served from a staged entry is still reported
+ * by a load operation on the thread that needs the entry. The downloads themselves are reported as children of a dedicated background operation.
+ *
+ * At most a fixed number of entries are staged at a time, further prefetches are ignored until staged entries are loaded or discarded.
+ * Staged entries that turn out not to be needed should be discarded via {@link #discard(BuildCacheKey)}, all other staged entries are discarded when
+ * the service is closed.
+ */
+public class PrefetchingBuildCacheService implements BuildCacheService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingBuildCacheService.class);
+
+    private final BuildCacheService delegate;
+    private final BuildOperationRunner buildOperationRunner;
+    private final BackgroundBuildOperation backgroundOperation;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ManagedExecutor executor;
+    private final int maxStagedEntries;
+    private final Map<String, StagedEntry> stagedEntries = new ConcurrentHashMap<>();
+
+    public PrefetchingBuildCacheService(
+        BuildCacheService delegate,
+        BuildOperationRunner buildOperationRunner,
+        TemporaryFileProvider temporaryFileProvider,
+        ExecutorFactory executorFactory,
+        int maxConcurrentLoads,
+        int maxStagedEntries
+    ) {
+        this.delegate = delegate;
+        this.buildOperationRunner = buildOperationRunner;
+        this.backgroundOperation = new BackgroundBuildOperation(buildOperationRunner, "Prefetch entries from remote build cache");
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("Remote build cache prefetch", maxConcurrentLoads);
+        this.maxStagedEntries = maxStagedEntries;
+    }
+
+    /**
+     * Starts loading the entry for the given key in the background, unless it is already being loaded.
+     */
+    public void prefetch(BuildCacheKey key) {
+        if (stagedEntries.size() >= maxStagedEntries) {
+            LOGGER.debug("Too many prefetched entries waiting to be loaded from remote build cache, not prefetching entry {}", key.getDisplayName());
+            return;
+        }
+        stagedEntries.computeIfAbsent(key.getHashCode(), hashCode -> {
+            StagedEntry entry = new StagedEntry();
+            try {
+                executor.execute(() -> CurrentBuildOperationRef.instance().with(backgroundOperation.get(), () -> download(key, entry)));
+            } catch (RejectedExecutionException e) {
+                // The service has been closed
+                return null;
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Discards the entry prefetched for the given key, if any, as it is not going to be loaded.
+     */
+    public void discard(BuildCacheKey key) {
+        StagedEntry entry = stagedEntries.remove(key.getHashCode());
+        if (entry != null) {
+            entry.discard();
+        }
+    }
+
+    private void download(BuildCacheKey key, StagedEntry entry) {
+        if (entry.isDiscarded()) {
+            entry.complete(null);
+            return;
+        }
+        File stagingFile = null;
+        try {
+            stagingFile = temporaryFileProvider.createTemporaryFile(key.getHashCode() + "-", "-prefetch.bin");
+            LoadTarget loadTarget = new LoadTarget(stagingFile);
+            buildOperationRunner.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    delegate.load(key, loadTarget);
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Prefetch entry " + key.getDisplayName() + " from remote build cache")
+                        .progressDisplayName("Prefetching from remote build cache");
+                }
+            });
+            if (loadTarget.isLoaded()) {
+                entry.complete(stagingFile);
+            } else {
+                GFileUtils.deleteQuietly(stagingFile);
+                entry.complete(null);
+            }
+        } catch (Throwable t) {
+            if (stagingFile != null) {
+                GFileUtils.deleteQuietly(stagingFile);
+            }
+            entry.fail(t);
+        }
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        StagedEntry entry = stagedEntries.remove(key.getHashCode());
+        if (entry == null) {
+            return delegate.load(key, reader);
+        }
+        File stagedFile;
+        try {
+            stagedFile = entry.await();
+        } catch (InterruptedException e) {
+            entry.discard();
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            LOGGER.debug("Could not prefetch entry {} from remote build cache, loading it again", key.getDisplayName(), e.getCause());
+            return delegate.load(key, reader);
+        }
+        if (stagedFile == null) {
+            return false;
+        }
+        try (InputStream input = Files.newInputStream(stagedFile.toPath())) {
+            reader.readFrom(input);
+            return true;
+        } catch (IOException e) {
+            throw new BuildCacheException("Could not read prefetched entry " + key.getDisplayName(), e);
+        } finally {
+            GFileUtils.deleteQuietly(stagedFile);
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        delegate.store(key, writer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // Downloads that have not started yet are not needed anymore
+            stagedEntries.values().forEach(StagedEntry::discard);
+            stagedEntries.clear();
+            executor.stop();
+            backgroundOperation.finish();
+        } finally {
+            delegate.close();
+        }
+    }
+
+    /**
+     * An entry that is being downloaded or has been downloaded. Whoever completes or discards the entry last deletes its staged file,
+     * unless the entry has been loaded.
+     */
+    private static class StagedEntry {
+        private final CompletableFuture<File> stagedFile = new CompletableFuture<>();
+        private final AtomicBoolean discarded = new AtomicBoolean();
+
+        boolean isDiscarded() {
+            return discarded.get();
+        }
+
+        void complete(@Nullable File file) {
+            stagedFile.complete(file);
+            if (discarded.get()) {
+                deleteStagedFile();
+            }
+        }
+
+        void fail(Throwable failure) {
+            stagedFile.completeExceptionally(failure);
+        }
+
+        void discard() {
+            discarded.set(true);
+            if (stagedFile.isDone()) {
+                deleteStagedFile();
+            }
+        }
+
+        @Nullable
+        File await() throws InterruptedException, ExecutionException {
+            return stagedFile.get();
+        }
+
+        private void deleteStagedFile() {
+            File file = stagedFile.isCompletedExceptionally() ? null : stagedFile.getNow(null);
+            if (file != null) {
+                GFileUtils.deleteQuietly(file);
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@
 import java.io.File;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 public interface RemoteBuildCacheServiceHandle extends Closeable {
 
@@ -52,6 +53,18 @@ public interface RemoteBuildCacheServiceHandle extends Closeable {
      */
     boolean maybeStore(BuildCacheKey key, File file);
 
+    /**
+     * Stores the file to the cache, like {@link #maybeStore(BuildCacheKey, File)}, and reports the time in nanoseconds that storing took once it has finished.
+     *
+     * Implementations that store in the background report the time when the background store finishes.
+     */
+    default boolean maybeStore(BuildCacheKey key, File file, LongConsumer storeTimeListener) {
+        long startTime = System.nanoTime();
+        boolean stored = maybeStore(key, file);
+        storeTimeListener.accept(System.nanoTime() - startTime);
+        return stored;
+    }
+
     @Override
     void close();
 }
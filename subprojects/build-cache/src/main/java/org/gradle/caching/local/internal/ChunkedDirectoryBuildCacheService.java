@@ -0,0 +1,350 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.util.internal.GFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A directory based build cache that deduplicates the content of cache entries.
+ *
+ * Entries produced by the gzip based packer are decompressed and split into content-defined chunks.
+ * Each chunk is stored once, compressed, in a file named by the hash of its content.
+ * The entry itself is stored as a manifest listing its chunks, and the gzip stream is rebuilt from the chunks on load.
+ *
+ * Chunks and manifests are both stored at the top level of the cache directory and are marked as accessed whenever an entry
+ * referencing them is stored or loaded, so a chunk is never less recently used than any manifest referencing it.
+ * This keeps the existing least-recently-used cleanup working unchanged: a chunk can only be removed once all manifests referencing it are removed as well.
+ *
+ * Entries that are not gzip streams are stored as they are, and existing entries written by {@link DirectoryBuildCacheService} can still be loaded.
+ */
+public class ChunkedDirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+
+    public static final String CHUNK_SUFFIX = ".chunk";
+
+    private static final int MANIFEST_MAGIC = 0x47434d46;
+    private static final int MANIFEST_VERSION = 1;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PathKeyFileStore fileStore;
+    private final PersistentCache persistentCache;
+    private final BuildCacheTempFileStore tempFileStore;
+    private final FileAccessTracker fileAccessTracker;
+    private final String failedFileSuffix;
+    private final ContentDefinedChunker chunker;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ChunkedDirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, ContentDefinedChunker chunker) {
+        this.fileStore = fileStore;
+        this.persistentCache = persistentCache;
+        this.tempFileStore = tempFileStore;
+        this.fileAccessTracker = fileAccessTracker;
+        this.failedFileSuffix = failedFileSuffix;
+        this.chunker = chunker;
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        boolean[] loaded = new boolean[1];
+        loadLocally(key, file -> {
+            try (InputStream input = new FileInputStream(file)) {
+                reader.readFrom(input);
+                loaded[0] = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return loaded[0];
+    }
+
+    @Override
+    public void loadLocally(BuildCacheKey key, Action<? super File> reader) {
+        // We need to lock other processes out here because garbage collection can be under way in another process
+        persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                loadInsideLock(key, reader);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public boolean contains(BuildCacheKey key) {
+        return persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                return fileStore.get(key.getHashCode()) != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
+        LocallyAvailableResource resource = fileStore.get(key.getHashCode());
+        if (resource == null) {
+            return;
+        }
+
+        File file = resource.getFile();
+        List<String> chunks = null;
+        try {
+            chunks = readManifest(file);
+            if (chunks == null) {
+                fileAccessTracker.markAccessed(file);
+                reader.execute(file);
+                return;
+            }
+            List<File> chunkFiles = new ArrayList<>(chunks.size());
+            for (String chunk : chunks) {
+                LocallyAvailableResource chunkResource = fileStore.get(chunk + CHUNK_SUFFIX);
+                if (chunkResource == null) {
+                    // A chunk has been removed by cleanup, so the entry cannot be restored anymore.
+                    // The manifest will be overwritten when the entry is stored again.
+                    return;
+                }
+                chunkFiles.add(chunkResource.getFile());
+            }
+            fileAccessTracker.markAccessed(file);
+            chunkFiles.forEach(fileAccessTracker::markAccessed);
+            tempFileStore.withTempFile(key, assembledFile -> {
+                assemble(chunkFiles, assembledFile);
+                reader.execute(assembledFile);
+            });
+        } catch (Exception e) {
+            if (chunks != null) {
+                // Chunks are shared and never rewritten, so a corrupt chunk would break every entry referencing it
+                deleteCorruptChunks(chunks);
+            }
+            // Try to move the file out of the way in case its permanently corrupt
+            // Don't delete, so that it can be potentially used for debugging
+            File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
+            GFileUtils.deleteQuietly(failedFile);
+            //noinspection ResultOfMethodCallIgnored
+            file.renameTo(failedFile);
+
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Deletes the given chunks whose content does not match the hash they are named by,
+     * so that they are written again by the next entry containing them.
+     */
+    private void deleteCorruptChunks(List<String> chunks) {
+        for (String chunk : new LinkedHashSet<>(chunks)) {
+            LocallyAvailableResource chunkResource = fileStore.get(chunk + CHUNK_SUFFIX);
+            if (chunkResource != null && !isIntact(chunk, chunkResource.getFile())) {
+                GFileUtils.deleteQuietly(chunkResource.getFile());
+            }
+        }
+    }
+
+    private static boolean isIntact(String chunk, File chunkFile) {
+        byte[] content;
+        try (InputStream chunkInput = new InflaterInputStream(new FileInputStream(chunkFile))) {
+            content = ByteStreams.toByteArray(chunkInput);
+        } catch (IOException e) {
+            return false;
+        }
+        return hashOf(content, content.length).equals(chunk);
+    }
+
+    private static String hashOf(byte[] buffer, int length) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putBytes(buffer, 0, length);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Rebuilds the gzip stream of an entry from its chunks.
+     *
+     * The chunks are already compressed on disk, so the rebuilt stream uses stored blocks to avoid compressing the data a second time.
+     */
+    private static void assemble(List<File> chunkFiles, File target) {
+        try (OutputStream output = new StoredGZIPOutputStream(new FileOutputStream(target))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (File chunkFile : chunkFiles) {
+                try (InputStream chunkInput = new InflaterInputStream(new FileInputStream(chunkFile))) {
+                    int read;
+                    while ((read = chunkInput.read(buffer)) >= 0) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter result) throws BuildCacheException {
+        tempFileStore.withTempFile(key, file -> {
+            try (OutputStream output = new FileOutputStream(file)) {
+                result.writeTo(output);
+            } catch (IOException ex) {
+                throw UncheckedException.throwAsUncheckedException(ex);
+            }
+
+            storeLocally(key, file);
+        });
+    }
+
+    @Override
+    public void storeLocally(BuildCacheKey key, File file) {
+        persistentCache.withFileLock(() -> {
+            lock.writeLock().lock();
+            try {
+                storeInsideLock(key, file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void storeInsideLock(BuildCacheKey key, File file) throws IOException {
+        if (!isGzip(file)) {
+            LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
+            fileAccessTracker.markAccessed(resource.getFile());
+            return;
+        }
+
+        List<String> chunks = new ArrayList<>();
+        try (InputStream input = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            chunker.chunk(input, (buffer, length) -> chunks.add(storeChunk(buffer, length)));
+        }
+        // Write the manifest last, so that it only ever references chunks that are present
+        LocallyAvailableResource resource = fileStore.add(key.getHashCode(), manifestFile -> writeManifest(chunks, manifestFile));
+        fileAccessTracker.markAccessed(resource.getFile());
+    }
+
+    private String storeChunk(byte[] buffer, int length) {
+        String chunk = hashOf(buffer, length);
+        String path = chunk + CHUNK_SUFFIX;
+        LocallyAvailableResource resource = fileStore.get(path);
+        if (resource == null) {
+            resource = fileStore.add(path, chunkFile -> {
+                try (OutputStream output = new DeflaterOutputStream(new FileOutputStream(chunkFile), new Deflater(Deflater.DEFAULT_COMPRESSION, false), BUFFER_SIZE)) {
+                    output.write(buffer, 0, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        fileAccessTracker.markAccessed(resource.getFile());
+        return chunk;
+    }
+
+    private static void writeManifest(List<String> chunks, File manifestFile) {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifestFile)))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(MANIFEST_VERSION);
+            output.writeInt(chunks.size());
+            for (String chunk : chunks) {
+                output.writeUTF(chunk);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the chunks listed in a manifest, or returns {@code null} when the file is a plain, non-chunked entry.
+     */
+    private static List<String> readManifest(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < 12 || input.readInt() != MANIFEST_MAGIC) {
+                return null;
+            }
+            int version = input.readInt();
+            if (version != MANIFEST_VERSION) {
+                throw new IOException(String.format("Unsupported build cache manifest version %d in %s", version, file));
+            }
+            int count = input.readInt();
+            List<String> chunks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                chunks.add(input.readUTF());
+            }
+            return chunks;
+        }
+    }
+
+    private static boolean isGzip(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            int first = input.read();
+            int second = input.read();
+            return second >= 0 && ((second << 8) | first) == GZIP_MAGIC;
+        }
+    }
+
+    @Override
+    public void withTempFile(BuildCacheKey key, Action<? super File> action) {
+        persistentCache.withFileLock(() -> tempFileStore.withTempFile(key, action));
+    }
+
+    @Override
+    public void close() {
+        persistentCache.close();
+    }
+
+    private static class StoredGZIPOutputStream extends GZIPOutputStream {
+        StoredGZIPOutputStream(OutputStream output) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(Deflater.NO_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Splits a stream into content-defined chunks using a gear-based rolling hash.
+ *
+ * Chunk boundaries depend only on the bytes preceding them within the current chunk,
+ * so inserting or removing data in one place of a stream only changes the chunks around that place.
+ * This allows near-identical streams to share most of their chunks.
+ */
+public class ContentDefinedChunker {
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 16 * 1024;
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 256 * 1024;
+
+    private static final long[] GEAR = createGearTable();
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long mask;
+
+    public ContentDefinedChunker() {
+        this(DEFAULT_MIN_CHUNK_SIZE, DEFAULT_AVERAGE_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    public ContentDefinedChunker(int minChunkSize, int averageChunkSize, int maxChunkSize) {
+        Preconditions.checkArgument(Integer.bitCount(averageChunkSize) == 1, "Average chunk size must be a power of two: %s", averageChunkSize);
+        Preconditions.checkArgument(0 < minChunkSize && minChunkSize <= averageChunkSize && averageChunkSize <= maxChunkSize,
+            "Chunk sizes must satisfy 0 < min <= average <= max: %s, %s, %s", minChunkSize, averageChunkSize, maxChunkSize);
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        // Use the high bits of the fingerprint, as those are influenced by the most recent 64 bytes
+        this.mask = (averageChunkSize - 1L) << (64 - Integer.numberOfTrailingZeros(averageChunkSize));
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Reads the given stream to its end and passes each chunk to the given consumer.
+     *
+     * The buffer passed to the consumer is reused for the next chunk.
+     *
+     * @return the number of chunks found.
+     */
+    public int chunk(InputStream input, ChunkConsumer consumer) throws IOException {
+        byte[] buffer = new byte[maxChunkSize];
+        int chunks = 0;
+        int length = 0;
+        int scanned = 0;
+        long fingerprint = 0;
+        while (true) {
+            int read = input.read(buffer, length, maxChunkSize - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+            while (scanned < length) {
+                fingerprint = (fingerprint << 1) + GEAR[buffer[scanned] & 0xff];
+                scanned++;
+                if ((scanned >= minChunkSize && (fingerprint & mask) == 0) || scanned == maxChunkSize) {
+                    consumer.accept(buffer, scanned);
+                    chunks++;
+                    System.arraycopy(buffer, scanned, buffer, 0, length - scanned);
+                    length -= scanned;
+                    scanned = 0;
+                    fingerprint = 0;
+                }
+            }
+        }
+        if (length > 0) {
+            consumer.accept(buffer, length);
+            chunks++;
+        }
+        return chunks;
+    }
+
+    private static long[] createGearTable() {
+        // The table must be the same in every JVM, since chunk boundaries are persisted
+        Random random = new Random(0x9E3779B97F4A7C15L);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+
+    public interface ChunkConsumer {
+        void accept(byte[] buffer, int length) throws IOException;
+    }
+}
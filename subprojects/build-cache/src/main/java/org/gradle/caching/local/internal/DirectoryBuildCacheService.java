@@ -101,6 +101,18 @@ public void loadLocally(final BuildCacheKey key, final Action<? super File> read
         });
     }
 
+    @Override
+    public boolean contains(BuildCacheKey key) {
+        return persistentCache.withFileLock(() -> {
+            lock.readLock().lock();
+            try {
+                return fileStore.get(key.getHashCode()) != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         LocallyAvailableResource resource = fileStore.get(key.getHashCode());
         if (resource == null) {
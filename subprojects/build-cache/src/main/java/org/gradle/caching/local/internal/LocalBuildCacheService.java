@@ -34,6 +34,11 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
      */
     void loadLocally(BuildCacheKey key, Action<? super File> reader);
 
+    /**
+     * Checks whether the local file store has a cache artifact for the given key, without loading it.
+     */
+    boolean contains(BuildCacheKey key);
+
     /**
      * Store the given file in the local file store as a cache artifact.
      */
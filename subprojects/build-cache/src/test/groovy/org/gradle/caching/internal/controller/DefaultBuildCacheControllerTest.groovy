@@ -16,6 +16,7 @@
 
 package org.gradle.caching.internal.controller
 
+import groovy.json.JsonSlurper
 import org.gradle.api.Action
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
@@ -25,9 +26,11 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.CacheableEntity
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheRemoteLoadBuildOperationType
 import org.gradle.caching.internal.origin.OriginMetadataFactory
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.vfs.FileSystemAccess
@@ -36,6 +39,8 @@ import org.junit.Rule
 import spock.lang.Specification
 
 import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class DefaultBuildCacheControllerTest extends Specification {
 
@@ -44,7 +49,9 @@ class DefaultBuildCacheControllerTest extends Specification {
         toString() >> "key"
     }
 
-    CacheableEntity cacheableEntity = Stub(CacheableEntity)
+    CacheableEntity cacheableEntity = Stub(CacheableEntity) {
+        getType() >> CacheableEntity
+    }
     Duration executionTime = Duration.ofMillis(123)
     Map<String, FileSystemSnapshot> snapshots = [:]
 
@@ -62,6 +69,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     BuildCacheEntryPacker packer = Stub(BuildCacheEntryPacker)
     OriginMetadataFactory originMetadataFactory = Stub(OriginMetadataFactory)
     StringInterner stringInterner = Stub(StringInterner)
+    File metricsReportFile = null
 
     def operations = new TestBuildOperationExecutor()
 
@@ -70,7 +78,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
-    BuildCacheController getController(boolean disableRemoteOnError = true) {
+    BuildCacheController getController(boolean disableRemoteOnError = true, boolean asyncRemoteStore = false, boolean remotePrefetch = false) {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
                 local,
@@ -83,6 +91,10 @@ class DefaultBuildCacheControllerTest extends Specification {
             false,
             false,
             disableRemoteOnError,
+            asyncRemoteStore,
+            remotePrefetch,
+            metricsReportFile,
+            new DefaultExecutorFactory(),
             fileSystemAccess,
             packer,
             originMetadataFactory,
@@ -170,6 +182,32 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "writes metrics report when closed"() {
+        given:
+        metricsReportFile = tmpDir.file("reports/build-cache.json")
+        def controller = controller
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(key, cacheableEntity)
+        controller.close()
+        def report = new JsonSlurper().parse(metricsReportFile)
+
+        then:
+        def metrics = report.types[CacheableEntity.name]
+        metrics.localHits == 0
+        metrics.localMisses == 1
+        metrics.remoteHits == 1
+        metrics.bytesLoaded == 3
+        metrics.remoteLoadTime.count == 1
+        metrics.unpackTime.count == 1
+        report.total.remoteHits == 1
+    }
+
     def "remote load does not store to local if local is disabled"() {
         given:
         local = null
@@ -276,4 +314,123 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "stores to remote in the background and waits for pending stores on close"() {
+        String storedContent = null
+
+        when:
+        def controller = getController(true, true)
+        controller.store(key, cacheableEntity, snapshots, executionTime)
+        controller.close()
+
+        then:
+        1 * local.storeLocally(key, _) >> { BuildCacheKey key, File file ->
+            // The local cache takes ownership of the packed file
+            file.delete()
+        }
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            def output = new ByteArrayOutputStream()
+            writer.writeTo(output)
+            storedContent = output.toString()
+        }
+        storedContent == ""
+        1 * local.close()
+        1 * remote.close()
+    }
+
+    def "loads prefetched remote entry without loading it from remote again"() {
+        when:
+        def controller = getController(true, false, true)
+        controller.prefetch([key])
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> false
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.storeLocally(key, _)
+        result.present
+    }
+
+    def "reports loading a prefetched entry as a remote load"() {
+        when:
+        def controller = getController(true, false, true)
+        controller.prefetch([key])
+        controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        def loads = operations.log.all(BuildCacheRemoteLoadBuildOperationType)
+        loads.size() == 1
+        loads[0].result.hit
+        loads[0].result.archiveSize == 3
+    }
+
+    def "discarded prefetched entry is loaded from remote again"() {
+        def downloaded = new CountDownLatch(1)
+
+        when:
+        def controller = getController(true, false, true)
+        controller.prefetch([key])
+        downloaded.await(10, TimeUnit.SECONDS)
+        controller.discardPrefetched([key])
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> false
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            downloaded.countDown()
+            true
+        }
+        1 * remote.load(key, _) >> false
+        !result.present
+        stagedPrefetchFiles().empty
+    }
+
+    def "prefetched miss is not loaded from remote again"() {
+        when:
+        def controller = getController(true, false, true)
+        controller.prefetch([key])
+        def result = controller.load(key, cacheableEntity)
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> false
+        1 * local.loadLocally(key, _) // miss
+        1 * remote.load(key, _) >> false
+        0 * local.storeLocally(key, _)
+        !result.present
+    }
+
+    def "does not prefetch entries present in the local cache"() {
+        when:
+        def controller = getController(true, false, true)
+        controller.prefetch([key])
+        controller.close()
+
+        then:
+        1 * local.contains(key) >> true
+        0 * remote.load(_, _)
+    }
+
+    private List<File> stagedPrefetchFiles() {
+        def files = []
+        tmpDir.testDirectory.eachFileRecurse { File file ->
+            if (file.name.endsWith("-prefetch.bin")) {
+                files << file
+            }
+        }
+        files
+    }
 }
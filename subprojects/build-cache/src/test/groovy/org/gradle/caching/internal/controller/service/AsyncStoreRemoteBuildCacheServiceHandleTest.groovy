@@ -0,0 +1,218 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service
+
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationRef
+import org.gradle.internal.operations.CurrentBuildOperationRef
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.DefaultBuildOperationRunner
+import org.gradle.internal.operations.RunnableBuildOperation
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.function.LongConsumer
+
+import static org.gradle.internal.operations.BuildOperationDescriptor.displayName
+
+class AsyncStoreRemoteBuildCacheServiceHandleTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def executorFactory = new DefaultExecutorFactory()
+    def buildOperationRunner = new DefaultBuildOperationRunner(CurrentBuildOperationRef.instance(), { 0L }, new DefaultBuildOperationIdFactory(), { DefaultBuildOperationRunner.BuildOperationExecutionListener.NO_OP })
+    def temporaryFileProvider = new DefaultTemporaryFileProvider(() -> temporaryFolder.createDir("tmp"))
+    def delegate = Mock(RemoteBuildCacheServiceHandle) {
+        canStore() >> true
+    }
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "1234abcd"
+        getDisplayName() >> "entry"
+    }
+    def entry = temporaryFolder.createFile("entry.bin") << "content"
+
+    def cleanup() {
+        CurrentBuildOperationRef.instance().clear()
+        executorFactory.stop()
+    }
+
+    def "stores entry in the background as a child of the background operation"() {
+        def handle = handle(Duration.ofMinutes(1))
+        def parent = Stub(BuildOperationRef)
+        BuildOperationRef uploadParent = null
+        String uploaded = null
+
+        when:
+        CurrentBuildOperationRef.instance().set(parent)
+        def scheduled = handle.maybeStore(key, entry)
+        def currentAfterScheduling = CurrentBuildOperationRef.instance().get()
+        entry.delete()
+        handle.close()
+
+        then:
+        scheduled
+        1 * delegate.maybeStore(key, _) >> { BuildCacheKey k, File file ->
+            uploadParent = CurrentBuildOperationRef.instance().get()
+            uploaded = file.text
+            true
+        }
+        1 * delegate.close()
+        currentAfterScheduling.is(parent)
+        uploadParent != null
+        !uploadParent.is(parent)
+        uploadParent.parentId == null
+        uploaded == "content"
+    }
+
+    def "stores entry in the background after the scheduling operation has completed"() {
+        def handle = handle(Duration.ofMinutes(1))
+        def taskFinished = new CountDownLatch(1)
+        Throwable uploadFailure = null
+
+        when:
+        buildOperationRunner.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                handle.maybeStore(key, entry)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                displayName("Task")
+            }
+        })
+        taskFinished.countDown()
+        handle.close()
+
+        then:
+        1 * delegate.maybeStore(key, _) >> {
+            taskFinished.await()
+            try {
+                // Like the store operation fired by the delegate
+                buildOperationRunner.run(new RunnableBuildOperation() {
+                    @Override
+                    void run(BuildOperationContext context) {
+                    }
+
+                    @Override
+                    BuildOperationDescriptor.Builder description() {
+                        displayName("Store entry")
+                    }
+                })
+            } catch (Throwable t) {
+                uploadFailure = t
+            }
+            true
+        }
+        1 * delegate.close()
+        uploadFailure == null
+        CurrentBuildOperationRef.instance().get() == null
+    }
+
+    def "reports failed stores and still closes the delegate"() {
+        def handle = handle(Duration.ofMinutes(1))
+
+        when:
+        handle.maybeStore(key, entry)
+        handle.close()
+
+        then:
+        1 * delegate.maybeStore(key, _) >> { throw new RuntimeException("broken") }
+        1 * delegate.close()
+        noExceptionThrown()
+    }
+
+    def "closes the delegate only once cancelled stores have stopped"() {
+        def handle = handle(Duration.ofMillis(100))
+        def uploadStarted = new CountDownLatch(1)
+        def finishUpload = new CountDownLatch(1)
+        def uploadFinished = new CountDownLatch(1)
+        File uploadedFile = null
+        boolean fileExistedUntilEnd = false
+        def closed = new CountDownLatch(1)
+        delegate.maybeStore(key, _) >> { BuildCacheKey k, File file ->
+            uploadedFile = file
+            uploadStarted.countDown()
+            // Ignore interrupts, like a blocking upload does
+            while (finishUpload.count > 0) {
+                try {
+                    finishUpload.await()
+                } catch (InterruptedException ignored) {
+                }
+            }
+            fileExistedUntilEnd = file.exists()
+            uploadFinished.countDown()
+            true
+        }
+        delegate.close() >> { closed.countDown() }
+
+        when:
+        handle.maybeStore(key, entry)
+        uploadStarted.await()
+        handle.close()
+
+        then:
+        closed.count == 1
+        uploadedFile.exists()
+
+        when:
+        finishUpload.countDown()
+
+        then:
+        uploadFinished.await(10, TimeUnit.SECONDS)
+        closed.await(10, TimeUnit.SECONDS)
+        fileExistedUntilEnd
+    }
+
+    def "reports the store time once the background upload has finished"() {
+        def handle = handle(Duration.ofMinutes(1))
+        def finishUpload = new CountDownLatch(1)
+        def reportedTimes = new LinkedBlockingQueue<Long>()
+        delegate.maybeStore(key, _) >> {
+            finishUpload.await()
+            Thread.sleep(20)
+            true
+        }
+
+        when:
+        handle.maybeStore(key, entry, { long storeTimeNanos -> reportedTimes.add(storeTimeNanos) } as LongConsumer)
+
+        then:
+        reportedTimes.empty
+
+        when:
+        finishUpload.countDown()
+        def reportedTime = reportedTimes.poll(10, TimeUnit.SECONDS)
+        handle.close()
+
+        then:
+        reportedTime >= TimeUnit.MILLISECONDS.toNanos(20)
+        reportedTimes.empty
+    }
+
+    private AsyncStoreRemoteBuildCacheServiceHandle handle(Duration flushTimeout) {
+        new AsyncStoreRemoteBuildCacheServiceHandle(delegate, buildOperationRunner, temporaryFileProvider, executorFactory, 2, 4, flushTimeout)
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.internal.resource.local.DefaultPathKeyFileStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.TestUtil
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+@UsesNativeServices
+@CleanupTestDirectory
+class ChunkedDirectoryBuildCacheServiceTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def fileStore = new DefaultPathKeyFileStore(TestUtil.checksumService, cacheDir)
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_) >> { Runnable r -> r.run() }
+    }
+    def tempFileStore = new DefaultBuildCacheTempFileStore(new DefaultTemporaryFileProvider(() -> temporaryFolder.createDir("tmp")))
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def service = new ChunkedDirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", new ContentDefinedChunker(1024, 4096, 16384))
+
+    def "restores chunked entry"() {
+        def content = randomBytes(100_000, 1)
+
+        when:
+        service.storeLocally(key("1234abcd"), gzip(content))
+
+        then:
+        chunkFiles().size() > 1
+
+        when:
+        byte[] loaded = null
+        service.loadLocally(key("1234abcd"), { file -> loaded = gunzip(file) })
+
+        then:
+        loaded == content
+    }
+
+    def "stores shared chunks only once"() {
+        def content = randomBytes(100_000, 1)
+        def changedContent = content.clone()
+        changedContent[50_000] = (byte) (changedContent[50_000] + 1)
+
+        when:
+        service.storeLocally(key("1234abcd"), gzip(content))
+        def chunksOfFirstEntry = chunkFiles()
+        service.storeLocally(key("5678abcd"), gzip(changedContent))
+        def chunksOfBothEntries = chunkFiles()
+
+        then:
+        chunksOfBothEntries.containsAll(chunksOfFirstEntry)
+        chunksOfBothEntries.size() - chunksOfFirstEntry.size() <= 2
+
+        when:
+        byte[] loaded = null
+        service.loadLocally(key("5678abcd"), { file -> loaded = gunzip(file) })
+
+        then:
+        loaded == changedContent
+    }
+
+    def "marks manifest and chunks accessed when storing and loading"() {
+        def accessed = [] as Set<File>
+
+        when:
+        service.storeLocally(key("1234abcd"), gzip(randomBytes(10_000, 1)))
+
+        then:
+        (2.._) * fileAccessTracker.markAccessed(_) >> { File file -> accessed << file }
+        accessed == (chunkFiles() + [cacheDir.file("1234abcd")]) as Set
+
+        when:
+        service.loadLocally(key("1234abcd"), {})
+
+        then:
+        accessed.size() * fileAccessTracker.markAccessed({ accessed.contains(it) })
+        0 * fileAccessTracker._
+    }
+
+    def "treats entry with missing chunk as miss"() {
+        service.storeLocally(key("1234abcd"), gzip(randomBytes(100_000, 1)))
+        chunkFiles().first().delete()
+
+        when:
+        boolean loaded = false
+        service.loadLocally(key("1234abcd"), { loaded = true })
+
+        then:
+        !loaded
+    }
+
+    def "deletes corrupt chunks when loading fails so that they are written again"() {
+        def content = randomBytes(100_000, 1)
+        service.storeLocally(key("1234abcd"), gzip(content))
+        def chunks = chunkFiles()
+        def corruptChunk = chunks.first()
+        corruptChunk.bytes = [1, 2, 3] as byte[]
+
+        when:
+        service.loadLocally(key("1234abcd"), {})
+
+        then:
+        thrown(Exception)
+        !corruptChunk.exists()
+        chunkFiles().size() == chunks.size() - 1
+        cacheDir.file("1234abcd.failed").exists()
+
+        when:
+        service.storeLocally(key("1234abcd"), gzip(content))
+        byte[] loaded = null
+        service.loadLocally(key("1234abcd"), { file -> loaded = gunzip(file) })
+
+        then:
+        corruptChunk.exists()
+        loaded == content
+    }
+
+    def "stores and loads entries which are not gzip streams as they are"() {
+        def originalFile = temporaryFolder.createFile("foo")
+        originalFile.text = "bar"
+
+        when:
+        service.storeLocally(key("1234abcd"), originalFile)
+
+        then:
+        chunkFiles().empty
+        cacheDir.file("1234abcd").text == "bar"
+
+        when:
+        String loaded = null
+        service.loadLocally(key("1234abcd"), { file -> loaded = file.text })
+
+        then:
+        loaded == "bar"
+    }
+
+    private List<File> chunkFiles() {
+        cacheDir.listFiles().findAll { it.name.endsWith(ChunkedDirectoryBuildCacheService.CHUNK_SUFFIX) }
+    }
+
+    private BuildCacheKey key(String hashCode) {
+        Stub(BuildCacheKey) {
+            getHashCode() >> hashCode
+        }
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        def bytes = new byte[size]
+        new Random(seed).nextBytes(bytes)
+        bytes
+    }
+
+    private File gzip(byte[] content) {
+        def file = temporaryFolder.createFile("entry-${UUID.randomUUID()}.tgz")
+        file.withOutputStream { new GZIPOutputStream(it).withCloseable { it.write(content) } }
+        file
+    }
+
+    private static byte[] gunzip(File file) {
+        file.withInputStream { new GZIPInputStream(it).bytes }
+    }
+}
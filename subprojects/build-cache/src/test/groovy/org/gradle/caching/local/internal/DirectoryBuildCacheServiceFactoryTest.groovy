@@ -25,6 +25,7 @@ import org.gradle.cache.internal.CleanupActionDecorator
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.local.DirectoryBuildCache
+import org.gradle.internal.buildoption.DefaultInternalOptions
 import org.gradle.internal.file.FileAccessTimeJournal
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
@@ -44,7 +45,7 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
     def fileStoreFactory = Mock(DirectoryBuildCacheFileStoreFactory)
     def cleanupActionDecorator = Mock(CleanupActionDecorator)
     def fileAccessTimeJournal = Mock(FileAccessTimeJournal)
-    def factory = new DirectoryBuildCacheServiceFactory(cacheRepository, globalScopedCache, resolver, fileStoreFactory, cleanupActionDecorator, fileAccessTimeJournal, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")))
+    def factory = new DirectoryBuildCacheServiceFactory(cacheRepository, globalScopedCache, resolver, fileStoreFactory, cleanupActionDecorator, fileAccessTimeJournal, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")), new DefaultInternalOptions([:]))
     def cacheBuilder = Stub(CacheBuilder)
     def config = Mock(DirectoryBuildCache)
     def buildCacheDescriber = new NoopBuildCacheDescriber()
@@ -81,6 +82,23 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         0 * _
     }
 
+    def "can create service with chunked entries"() {
+        def cacheDir = temporaryFolder.file("cache-dir")
+        def chunkedFactory = new DirectoryBuildCacheServiceFactory(cacheRepository, globalScopedCache, resolver, fileStoreFactory, cleanupActionDecorator, fileAccessTimeJournal, TestFiles.tmpDirTemporaryFileProvider(temporaryFolder.createDir("tmp")), new DefaultInternalOptions([(DirectoryBuildCacheServiceFactory.CHUNKED_ENTRIES.systemPropertyName): "true"]))
+
+        when:
+        def service = chunkedFactory.createBuildCacheService(config, buildCacheDescriber)
+        then:
+        service instanceof ChunkedDirectoryBuildCacheService
+        1 * config.getDirectory() >> cacheDir
+        1 * config.getRemoveUnusedEntriesAfterDays() >> 10
+        1 * resolver.resolve(cacheDir) >> cacheDir
+        1 * fileStoreFactory.createFileStore(cacheDir) >> Mock(PathKeyFileStore)
+        1 * cacheRepository.cache(cacheDir) >> cacheBuilder
+        1 * cleanupActionDecorator.decorate(_) >> Mock(CleanupAction)
+        0 * _
+    }
+
     private class NoopBuildCacheDescriber implements BuildCacheServiceFactory.Describer {
 
         @Override
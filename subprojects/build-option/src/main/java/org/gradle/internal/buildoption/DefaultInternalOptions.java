@@ -16,6 +16,7 @@
 
 package org.gradle.internal.buildoption;
 
+import java.util.Collections;
 import java.util.Map;
 
 public class DefaultInternalOptions implements InternalOptions {
@@ -25,6 +26,13 @@ public DefaultInternalOptions(Map<String, String> startParameterSystemProperties
         this.startParameterSystemProperties = startParameterSystemProperties;
     }
 
+    /**
+     * Returns options that are only read from the system properties of this process, for services that are shared between builds.
+     */
+    public static InternalOptions ofSystemProperties() {
+        return new DefaultInternalOptions(Collections.emptyMap());
+    }
+
     @Override
     public <T> Option.Value<T> getOption(InternalOption<T> option) {
         String value = startParameterSystemProperties.get(option.getSystemPropertyName());
@@ -30,6 +30,7 @@
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.InterningStringSerializer;
 
+import javax.annotation.Nullable;
 import java.io.File;
 
 public class CachingFileHasher implements FileHasher {
@@ -39,6 +40,8 @@ public class CachingFileHasher implements FileHasher {
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
     private final FileHasherStatistics.Collector statisticsCollector;
+    @Nullable
+    private final OffHeapFileInfoCache offHeapCache;
 
     public CachingFileHasher(
         FileHasher delegate,
@@ -49,8 +52,26 @@ public CachingFileHasher(
         FileSystem fileSystem,
         int inMemorySize,
         FileHasherStatistics.Collector statisticsCollector
+    ) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, inMemorySize, statisticsCollector, null);
+    }
+
+    /**
+     * @param offHeapCache Caches the hashes outside the heap in front of the persistent cache, or {@code null} to only use the persistent cache and its in-memory cache.
+     */
+    public CachingFileHasher(
+        FileHasher delegate,
+        CrossBuildFileHashCache store,
+        StringInterner stringInterner,
+        FileTimeStampInspector timestampInspector,
+        String cacheName,
+        FileSystem fileSystem,
+        int inMemorySize,
+        FileHasherStatistics.Collector statisticsCollector,
+        @Nullable OffHeapFileInfoCache offHeapCache
     ) {
         this.delegate = delegate;
+        this.offHeapCache = offHeapCache;
         this.fileSystem = fileSystem;
         this.cache = store.createIndexedCache(
             IndexedCacheParameters.of(cacheName, new InterningStringSerializer(stringInterner), new FileInfoSerializer()),
@@ -84,9 +105,19 @@ private FileInfo snapshot(File file) {
     private FileInfo snapshot(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
+            if (offHeapCache != null) {
+                HashCode hash = offHeapCache.getIfPresent(absolutePath, length, timestamp);
+                if (hash != null) {
+                    return new FileInfo(hash, length, timestamp);
+                }
+            }
+
             FileInfo info = cache.getIfPresent(absolutePath);
 
             if (info != null && length == info.length && timestamp == info.timestamp) {
+                if (offHeapCache != null) {
+                    offHeapCache.put(absolutePath, info.hash, length, timestamp);
+                }
                 return info;
             }
         }
@@ -94,12 +125,18 @@ private FileInfo snapshot(File file, long length, long timestamp) {
         HashCode hash = delegate.hash(file);
         FileInfo info = new FileInfo(hash, length, timestamp);
         cache.put(stringInterner.intern(absolutePath), info);
+        if (offHeapCache != null) {
+            offHeapCache.put(absolutePath, hash, length, timestamp);
+        }
         statisticsCollector.reportFileHashed(length);
         return info;
     }
 
     public void discard(String path) {
         cache.remove(path);
+        if (offHeapCache != null) {
+            offHeapCache.remove(path);
+        }
     }
 
     @VisibleForTesting
@@ -24,6 +24,7 @@
 import org.gradle.cache.scopes.ScopedCacheBuilderFactory;
 
 import java.io.Closeable;
+import java.io.File;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -46,6 +47,10 @@ public <K, V> IndexedCache<K, V> createIndexedCache(IndexedCacheParameters<K, V>
         );
     }
 
+    public File getBaseDir() {
+        return cache.getBaseDir();
+    }
+
     @Override
     public void close() {
         cache.close();
@@ -25,16 +25,42 @@
 import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.io.IoSupplier;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Caches the hashes of files by their content hash and the configuration of the hasher.
+ *
+ * <p>When hashing zip files with multiple variants is enabled, the cache remembers the {@link ZipHasher}s it has been used with, e.g. one for runtime classpaths and one for compile classpaths.
+ * Hashing a zip file which is not in the cache then calculates the hashes of all these variants missing from the cache, reading the zip file only once.</p>
+ */
 public class DefaultResourceSnapshotterCacheService implements ResourceSnapshotterCacheService {
     private static final HashCode NO_HASH = Hashing.signature(CachingResourceHasher.class.getName() + " : no hash");
+    private static final int MAX_ZIP_HASHER_VARIANTS = 8;
+
     private final IndexedCache<HashCode, HashCode> indexedCache;
+    private final Map<HashCode, ZipHasher> zipHasherVariants;
 
     public DefaultResourceSnapshotterCacheService(IndexedCache<HashCode, HashCode> indexedCache) {
+        this(indexedCache, false);
+    }
+
+    public DefaultResourceSnapshotterCacheService(IndexedCache<HashCode, HashCode> indexedCache, boolean hashZipHasherVariantsTogether) {
         this.indexedCache = indexedCache;
+        this.zipHasherVariants = hashZipHasherVariantsTogether
+            ? new LinkedHashMap<HashCode, ZipHasher>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<HashCode, ZipHasher> eldest) {
+                    return size() > MAX_ZIP_HASHER_VARIANTS;
+                }
+            }
+            : null;
     }
 
     @Nullable
@@ -46,6 +72,9 @@ public HashCode hashFile(FileSystemLocationSnapshot snapshot, FileSystemLocation
     @Nullable
     @Override
     public HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, RegularFileSnapshotContextHasher hasher, HashCode configurationHash) throws IOException {
+        if (zipHasherVariants != null && hasher instanceof ZipHasher) {
+            return hashZipFile(fileSnapshotContext.getSnapshot(), (ZipHasher) hasher, configurationHash);
+        }
         return hashFile(fileSnapshotContext.getSnapshot(), () -> hasher.hash(fileSnapshotContext), configurationHash);
     }
 
@@ -71,6 +100,42 @@ private HashCode hashFile(FileSystemLocationSnapshot snapshot, IoSupplier<HashCo
         return resourceHash;
     }
 
+    @Nullable
+    private HashCode hashZipFile(RegularFileSnapshot zipFileSnapshot, ZipHasher zipHasher, HashCode configurationHash) {
+        Map<HashCode, ZipHasher> otherVariants = new LinkedHashMap<>();
+        synchronized (zipHasherVariants) {
+            zipHasherVariants.put(configurationHash, zipHasher);
+            otherVariants.putAll(zipHasherVariants);
+        }
+        otherVariants.remove(configurationHash);
+
+        HashCode resourceHashCacheKey = resourceHashCacheKey(zipFileSnapshot.getHash(), configurationHash);
+        HashCode resourceHash = indexedCache.getIfPresent(resourceHashCacheKey);
+        if (resourceHash != null) {
+            return resourceHash.equals(NO_HASH) ? null : resourceHash;
+        }
+
+        // Only calculate the other variants which are not cached yet
+        List<HashCode> resourceHashCacheKeys = new ArrayList<>();
+        List<ZipHasher> zipHashers = new ArrayList<>();
+        resourceHashCacheKeys.add(resourceHashCacheKey);
+        zipHashers.add(zipHasher);
+        otherVariants.forEach((otherConfigurationHash, otherZipHasher) -> {
+            HashCode otherResourceHashCacheKey = resourceHashCacheKey(zipFileSnapshot.getHash(), otherConfigurationHash);
+            if (indexedCache.getIfPresent(otherResourceHashCacheKey) == null) {
+                resourceHashCacheKeys.add(otherResourceHashCacheKey);
+                zipHashers.add(otherZipHasher);
+            }
+        });
+
+        List<HashCode> resourceHashes = ZipHasher.hashZipContents(zipFileSnapshot, zipHashers);
+        for (int i = 0; i < resourceHashes.size(); i++) {
+            HashCode variantResourceHash = resourceHashes.get(i);
+            indexedCache.put(resourceHashCacheKeys.get(i), variantResourceHash != null ? variantResourceHash : NO_HASH);
+        }
+        return resourceHashes.get(0);
+    }
+
     private static HashCode resourceHashCacheKey(HashCode contentHash, HashCode configurationHash) {
         Hasher hasher = Hashing.newHasher();
         hasher.putHash(configurationHash);
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * An in-memory cache of file hashes, which stores its entries outside of the Java heap.
+ *
+ * <p>Each entry is a fixed-width record of the 128-bit Murmur3 hash of the absolute path, the length and timestamp of the file and its 128-bit content hash.
+ * The path string itself is not retained. Records live in a direct buffer, split into stripes with their own lock,
+ * and each path maps to a bucket of {@value #SLOTS_PER_BUCKET} records in its stripe.
+ * When a bucket is full, adding another path replaces one of the records of the bucket, so the cache never grows beyond its initial capacity.</p>
+ *
+ * <p>Looking up a path only allocates the hash of the path, apart from the returned hash on a hit.
+ * Only hashes of 16 bytes are cached, which is the size of the hashes produced by the file content hash functions.</p>
+ *
+ * <p>Closing the cache releases the direct buffers. A closed cache does not contain any entries and ignores new ones.</p>
+ */
+public class OffHeapFileInfoCache implements Closeable {
+    private static final HashFunction PATH_HASH_FUNCTION = Hashing.murmur3_128();
+    private static final int STRIPES = 64;
+    private static final int SLOTS_PER_BUCKET = 4;
+
+    private static final int PATH_HASH_HIGH_OFFSET = 0;
+    private static final int PATH_HASH_LOW_OFFSET = 8;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int TIMESTAMP_OFFSET = 24;
+    private static final int HASH_OFFSET = 32;
+    private static final int HASH_LENGTH = 16;
+    private static final int RECORD_SIZE = HASH_OFFSET + HASH_LENGTH;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public OffHeapFileInfoCache(int capacity) {
+        int bucketsPerStripe = Math.max(1, capacity / (STRIPES * SLOTS_PER_BUCKET));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(bucketsPerStripe);
+        }
+    }
+
+    /**
+     * Returns the cached hash for the given path, if the cached length and timestamp match the given ones.
+     */
+    @Nullable
+    public HashCode getIfPresent(String absolutePath, long length, long timestamp) {
+        PathHash pathHash = PathHash.of(absolutePath);
+        return stripeFor(pathHash).get(pathHash, length, timestamp);
+    }
+
+    /**
+     * Caches the hash for the given path. Does not write to the cache when it already contains the same entry for the path.
+     */
+    public void put(String absolutePath, HashCode hash, long length, long timestamp) {
+        PathHash pathHash = PathHash.of(absolutePath);
+        Stripe stripe = stripeFor(pathHash);
+        if (hash.length() == HASH_LENGTH) {
+            stripe.put(pathHash, hash.toByteArray(), length, timestamp);
+        } else {
+            stripe.remove(pathHash);
+        }
+    }
+
+    public void remove(String absolutePath) {
+        PathHash pathHash = PathHash.of(absolutePath);
+        stripeFor(pathHash).remove(pathHash);
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    private Stripe stripeFor(PathHash pathHash) {
+        return stripes[(int) (pathHash.high >>> 58)];
+    }
+
+    /**
+     * The 128-bit hash of a path. A high half of zero marks an empty record, so it is replaced by one.
+     */
+    private static class PathHash {
+        private final long high;
+        private final long low;
+
+        private PathHash(long high, long low) {
+            this.high = high == 0 ? 1 : high;
+            this.low = low;
+        }
+
+        static PathHash of(String path) {
+            byte[] bytes = PATH_HASH_FUNCTION.hashUnencodedChars(path).asBytes();
+            return new PathHash(longAt(bytes, 0), longAt(bytes, 8));
+        }
+
+        private static long longAt(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = 7; i >= 0; i--) {
+                value = (value << 8) | (bytes[offset + i] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    private static class Stripe {
+        private final int buckets;
+        private ByteBuffer records;
+
+        Stripe(int buckets) {
+            this.buckets = buckets;
+            this.records = ByteBuffer.allocateDirect(buckets * SLOTS_PER_BUCKET * RECORD_SIZE);
+        }
+
+        @Nullable
+        synchronized HashCode get(PathHash pathHash, long length, long timestamp) {
+            int record = find(pathHash);
+            if (record < 0
+                || records.getLong(record + LENGTH_OFFSET) != length
+                || records.getLong(record + TIMESTAMP_OFFSET) != timestamp) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                hash[i] = records.get(record + HASH_OFFSET + i);
+            }
+            return HashCode.fromBytes(hash);
+        }
+
+        synchronized void put(PathHash pathHash, byte[] hash, long length, long timestamp) {
+            if (records == null) {
+                return;
+            }
+            int record = find(pathHash);
+            if (record < 0) {
+                record = freeOrEvictedRecord(pathHash);
+                records.putLong(record + PATH_HASH_HIGH_OFFSET, pathHash.high);
+                records.putLong(record + PATH_HASH_LOW_OFFSET, pathHash.low);
+            } else if (records.getLong(record + LENGTH_OFFSET) == length
+                && records.getLong(record + TIMESTAMP_OFFSET) == timestamp
+                && hasHash(record, hash)) {
+                return;
+            }
+            records.putLong(record + LENGTH_OFFSET, length);
+            records.putLong(record + TIMESTAMP_OFFSET, timestamp);
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                records.put(record + HASH_OFFSET + i, hash[i]);
+            }
+        }
+
+        synchronized void remove(PathHash pathHash) {
+            int record = find(pathHash);
+            if (record >= 0) {
+                records.putLong(record + PATH_HASH_HIGH_OFFSET, 0);
+            }
+        }
+
+        synchronized void close() {
+            ByteBuffer released = records;
+            records = null;
+            if (released != null) {
+                DirectBuffers.release(released);
+            }
+        }
+
+        private boolean hasHash(int record, byte[] hash) {
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                if (records.get(record + HASH_OFFSET + i) != hash[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the offset of the record for the given path, or -1 if there is none.
+         */
+        private int find(PathHash pathHash) {
+            if (records == null) {
+                return -1;
+            }
+            int bucket = bucketOffset(pathHash);
+            for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+                int record = bucket + slot * RECORD_SIZE;
+                if (records.getLong(record + PATH_HASH_HIGH_OFFSET) == pathHash.high
+                    && records.getLong(record + PATH_HASH_LOW_OFFSET) == pathHash.low) {
+                    return record;
+                }
+            }
+            return -1;
+        }
+
+        private int freeOrEvictedRecord(PathHash pathHash) {
+            int bucket = bucketOffset(pathHash);
+            for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+                int record = bucket + slot * RECORD_SIZE;
+                if (records.getLong(record + PATH_HASH_HIGH_OFFSET) == 0) {
+                    return record;
+                }
+            }
+            // Spread the evictions over the slots of the bucket
+            return bucket + (int) (pathHash.high & (SLOTS_PER_BUCKET - 1)) * RECORD_SIZE;
+        }
+
+        private int bucketOffset(PathHash pathHash) {
+            return (int) ((pathHash.low >>> 1) % buckets) * SLOTS_PER_BUCKET * RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Frees the memory of direct buffers right away, instead of when the buffers are garbage collected.
+     */
+    private static class DirectBuffers {
+        static void release(ByteBuffer buffer) {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return;
+            } catch (NoSuchMethodException e) {
+                // Java 8
+            } catch (Exception e) {
+                // Leave the buffer to the garbage collector
+                return;
+            }
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception e) {
+                // Leave the buffer to the garbage collector
+            }
+        }
+    }
+}
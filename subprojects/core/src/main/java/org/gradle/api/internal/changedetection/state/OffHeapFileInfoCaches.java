@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the {@link OffHeapFileInfoCache} for each persistent file hash cache across builds, for as long as the Gradle user home is used by the daemon.
+ * The off-heap memory of the caches is released when the user home services are closed.
+ */
+@ServiceScope(Scopes.UserHome.class)
+public class OffHeapFileInfoCaches implements Closeable {
+    private final int capacity;
+    private final ConcurrentMap<File, OffHeapFileInfoCache> caches = new ConcurrentHashMap<>();
+
+    public OffHeapFileInfoCaches(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public OffHeapFileInfoCache forStore(CrossBuildFileHashCache store, String cacheName) {
+        return caches.computeIfAbsent(new File(store.getBaseDir(), cacheName), key -> new OffHeapFileInfoCache(capacity));
+    }
+
+    @Override
+    public void close() {
+        CompositeStoppable.stoppable(caches.values()).stop();
+        caches.clear();
+    }
+}
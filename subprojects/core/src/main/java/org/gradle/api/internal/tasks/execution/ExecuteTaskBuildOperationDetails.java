@@ -42,6 +42,14 @@ public LocalTaskNode getTaskNode() {
         return taskNode;
     }
 
+    /**
+     * The critical path length used to prioritize the task, or 0 when the plan is not scheduled using execution time estimates.
+     */
+    @NotUsedByScanPlugin
+    public long getCriticalPathLength() {
+        return taskNode.getCriticalPathLength();
+    }
+
     @Override
     public String getBuildPath() {
         return taskIdentity().buildPath.toString();
@@ -69,6 +77,9 @@ public Object getCustomOperationTraceSerializableModel() {
         builder.put("taskPath", getTaskPath());
         builder.put("taskClass", getTaskClass().getName());
         builder.put("taskId", getTaskId());
+        if (getCriticalPathLength() > 0) {
+            builder.put("criticalPathLength", getCriticalPathLength());
+        }
         return builder.build();
     }
 
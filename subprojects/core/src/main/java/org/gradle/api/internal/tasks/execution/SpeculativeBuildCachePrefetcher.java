@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.SpeculativeNodePreparer;
+import org.gradle.internal.execution.history.BuildCacheKeyHistory;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.SnapshotUtil;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asks the build cache to prefetch the entry of a task that is waiting for its dependencies, so that loading the entry is cheap once the task is ready to execute.
+ *
+ * <p>The actual cache key of the task can only be calculated once its dependencies have completed. Instead, the key the outputs of the task were last loaded
+ * or stored with is used. The entry is prefetched only when some of the outputs of the previous execution no longer exist, as otherwise the task is likely to be up-to-date.</p>
+ *
+ * <p>The previous key only matches the actual key when the inputs of the task did not change since, for example after cleaning the build or when switching
+ * back to a branch. When the inputs did change, the prefetched entry is not used. It is discarded once the task has finished executing, so that it does
+ * not take the place of entries that are still useful.</p>
+ */
+public class SpeculativeBuildCachePrefetcher implements SpeculativeNodePreparer {
+    private final BuildCacheController buildCacheController;
+    private final BuildCacheKeyHistory buildCacheKeyHistory;
+    private final ExecutionHistoryStore executionHistoryStore;
+    // The keys prefetched for tasks that have not finished executing, by task path
+    private final Map<String, BuildCacheKey> prefetchedKeys = new ConcurrentHashMap<>();
+
+    public SpeculativeBuildCachePrefetcher(BuildCacheController buildCacheController, BuildCacheKeyHistory buildCacheKeyHistory, ExecutionHistoryStore executionHistoryStore) {
+        this.buildCacheController = buildCacheController;
+        this.buildCacheKeyHistory = buildCacheKeyHistory;
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Nullable
+    @Override
+    public Runnable prepare(LocalTaskNode node, Set<LocalTaskNode> unexecutedNodes) {
+        if (!buildCacheController.isEnabled()) {
+            return null;
+        }
+        String taskPath = node.getTask().getPath();
+        return () -> prefetchPreviousEntry(taskPath);
+    }
+
+    private void prefetchPreviousEntry(String taskPath) {
+        Optional<BuildCacheKey> previousKey = buildCacheKeyHistory.load(taskPath);
+        if (!previousKey.isPresent()) {
+            return;
+        }
+        Optional<PreviousExecutionState> previousExecutionState = executionHistoryStore.load(taskPath);
+        if (previousExecutionState.isPresent() && previousOutputsExist(previousExecutionState.get())) {
+            return;
+        }
+        prefetchedKeys.put(taskPath, previousKey.get());
+        buildCacheController.prefetch(Collections.singleton(previousKey.get()));
+    }
+
+    @Override
+    public void discard(LocalTaskNode node) {
+        BuildCacheKey prefetchedKey = prefetchedKeys.remove(node.getTask().getPath());
+        if (prefetchedKey != null) {
+            // The task has loaded the entry already if it needed it
+            buildCacheController.discardPrefetched(Collections.singleton(prefetchedKey));
+        }
+    }
+
+    private static boolean previousOutputsExist(PreviousExecutionState previousExecutionState) {
+        for (FileSystemSnapshot outputs : previousExecutionState.getOutputFilesProducedByWork().values()) {
+            for (FileSystemLocationSnapshot root : SnapshotUtil.rootIndex(outputs).values()) {
+                if (root.getType() != FileType.Missing && !new File(root.getAbsolutePath()).exists()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.execution.plan.ExecutionNodeAccessHierarchy;
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.SpeculativeNodePreparer;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.fingerprint.FileCollectionFingerprint;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.SnapshotUtil;
+import org.gradle.internal.vfs.FileSystemAccess;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Snapshots the input files of a task that is waiting for its dependencies, so that fingerprinting its inputs is cheap once the task is ready to execute.
+ *
+ * <p>The files to snapshot are taken from the previous execution of the task, as the current input properties of the task may depend
+ * on the outputs of its dependencies and may require the project lock to calculate. Only regular files are snapshot.</p>
+ *
+ * <p>Files that a task in the plan may still write are skipped. These are the files under the outputs of the tasks that have not finished executing yet.
+ * The declared outputs of a task are only known once it is about to execute, so the outputs of the previous execution of each task are used as well.
+ * The snapshots are stored in the virtual file system, which discards a snapshot when its location is invalidated while the snapshot is being taken.</p>
+ */
+public class SpeculativeTaskInputSnapshotter implements SpeculativeNodePreparer {
+    private final ExecutionHistoryStore executionHistoryStore;
+    private final FileSystemAccess fileSystemAccess;
+    private final ExecutionNodeAccessHierarchy outputHierarchy;
+    // The output roots of the previous execution of each task, by task path, so that the execution history of each task is loaded at most once
+    private final Map<String, List<String>> previousOutputRoots = new ConcurrentHashMap<>();
+
+    public SpeculativeTaskInputSnapshotter(ExecutionHistoryStore executionHistoryStore, FileSystemAccess fileSystemAccess, ExecutionNodeAccessHierarchy outputHierarchy) {
+        this.executionHistoryStore = executionHistoryStore;
+        this.fileSystemAccess = fileSystemAccess;
+        this.outputHierarchy = outputHierarchy;
+    }
+
+    @Nullable
+    @Override
+    public Runnable prepare(LocalTaskNode node, Set<LocalTaskNode> unexecutedNodes) {
+        String taskPath = node.getTask().getPath();
+        return () -> snapshotPreviousInputs(taskPath, unexecutedNodes);
+    }
+
+    private void snapshotPreviousInputs(String taskPath, Set<LocalTaskNode> unexecutedNodes) {
+        Optional<PreviousExecutionState> previousExecutionState = executionHistoryStore.load(taskPath);
+        // The outputs of the task itself are needed when preparing other tasks
+        previousOutputRoots.putIfAbsent(taskPath, previousExecutionState.map(SpeculativeTaskInputSnapshotter::outputRootsOf).orElse(Collections.emptyList()));
+        if (!previousExecutionState.isPresent()) {
+            return;
+        }
+        Set<String> unexecutedOutputRoots = null;
+        for (FileCollectionFingerprint fingerprint : previousExecutionState.get().getInputFileProperties().values()) {
+            for (Map.Entry<String, FileSystemLocationFingerprint> entry : fingerprint.getFingerprints().entrySet()) {
+                if (entry.getValue().getType() != FileType.RegularFile) {
+                    continue;
+                }
+                if (unexecutedOutputRoots == null) {
+                    unexecutedOutputRoots = collectPreviousOutputRoots(unexecutedNodes);
+                }
+                String location = entry.getKey();
+                if (!isUnderAny(location, unexecutedOutputRoots) && outputHierarchy.getNodesAccessing(location).isEmpty()) {
+                    fileSystemAccess.readRegularFileContentHash(location);
+                }
+            }
+        }
+    }
+
+    private Set<String> collectPreviousOutputRoots(Collection<LocalTaskNode> unexecutedNodes) {
+        Set<String> outputRoots = new HashSet<>();
+        for (LocalTaskNode node : unexecutedNodes) {
+            String taskPath = node.getTask().getPath();
+            List<String> taskOutputRoots = previousOutputRoots.get(taskPath);
+            if (taskOutputRoots == null) {
+                // Load outside of the map, so that loading does not block other workers. Another worker may load the same history concurrently, which is harmless.
+                taskOutputRoots = executionHistoryStore.load(taskPath).map(SpeculativeTaskInputSnapshotter::outputRootsOf).orElse(Collections.emptyList());
+                previousOutputRoots.putIfAbsent(taskPath, taskOutputRoots);
+            }
+            outputRoots.addAll(taskOutputRoots);
+        }
+        return outputRoots;
+    }
+
+    private static List<String> outputRootsOf(PreviousExecutionState previousExecutionState) {
+        List<String> outputRoots = new ArrayList<>();
+        for (FileSystemSnapshot outputs : previousExecutionState.getOutputFilesProducedByWork().values()) {
+            outputRoots.addAll(SnapshotUtil.rootIndex(outputs).keySet());
+        }
+        return outputRoots;
+    }
+
+    private static boolean isUnderAny(String location, Set<String> roots) {
+        String path = location;
+        while (true) {
+            if (roots.contains(path)) {
+                return true;
+            }
+            int separator = path.lastIndexOf(File.separatorChar);
+            if (separator <= 0) {
+                return false;
+            }
+            path = path.substring(0, separator);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.execution.plan.LocalTaskNode;
+import org.gradle.execution.plan.NodeExecutionTimeEstimator;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+
+import java.time.Duration;
+
+/**
+ * Estimates the execution time of a task using the execution time of the work that produced its current outputs, as recorded in the execution history.
+ *
+ * <p>This is called for every task when the plan is finalized, so it only loads the execution time and not the whole previous execution state.</p>
+ */
+public class TaskExecutionHistoryTimeEstimator implements NodeExecutionTimeEstimator {
+    private final ExecutionHistoryStore executionHistoryStore;
+
+    public TaskExecutionHistoryTimeEstimator(ExecutionHistoryStore executionHistoryStore) {
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Override
+    public long estimateExecutionTime(LocalTaskNode node) {
+        return executionHistoryStore.loadExecutionTime(node.getTask().getPath())
+            .map(Duration::toMillis)
+            .orElse(UNKNOWN);
+    }
+}
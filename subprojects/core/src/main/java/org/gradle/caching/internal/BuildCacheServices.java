@@ -31,6 +31,7 @@
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
 import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.ParallelGZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -39,6 +40,10 @@
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.BufferProvider;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
@@ -67,6 +72,27 @@
  * Build scoped services for build cache usage.
  */
 public final class BuildCacheServices extends AbstractPluginServiceRegistry {
+    /**
+     * Compresses build cache entries using multiple threads.
+     */
+    public static final InternalFlag PARALLEL_PACKING = new InternalFlag("org.gradle.caching.parallel-packing");
+
+    /**
+     * Stores entries to the remote build cache in the background, so that work does not wait for the upload to finish.
+     */
+    public static final InternalFlag REMOTE_ASYNC_STORE = new InternalFlag("org.gradle.unsafe.build-cache.remote-async-store");
+
+    /**
+     * Prefetches the remote entries of tasks waiting for their dependencies. The key a task was last loaded or stored with is prefetched,
+     * which only helps when the inputs of the task did not change since, for example after cleaning the build.
+     */
+    public static final InternalFlag REMOTE_PREFETCH = new InternalFlag("org.gradle.unsafe.build-cache.remote-prefetch");
+
+    /**
+     * The file to write a JSON report of the build cache metrics to at the end of the build. Relative paths are resolved against the directory Gradle was invoked from.
+     */
+    public static final StringInternalOption METRICS_REPORT = new StringInternalOption("org.gradle.unsafe.build-cache.metrics-report", "");
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new Object() {
@@ -127,10 +153,16 @@ BuildCacheEntryPacker createResultPacker(
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
                 StringInterner stringInterner,
-                BufferProvider bufferProvider
+                BufferProvider bufferProvider,
+                ExecutorFactory executorFactory,
+                InternalOptions internalOptions
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider));
+                TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, bufferProvider);
+                if (internalOptions.getOption(PARALLEL_PACKING).get()) {
+                    int parallelism = Runtime.getRuntime().availableProcessors();
+                    return new ParallelGZipBuildCacheEntryPacker(tarPacker, executorFactory.create("Build cache entry compression", parallelism), parallelism);
+                }
+                return new GZipBuildCacheEntryPacker(tarPacker);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -183,7 +215,9 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                 FileSystemAccess fileSystemAccess,
                 BuildCacheEntryPacker packer,
                 OriginMetadataFactory originMetadataFactory,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ExecutorFactory executorFactory,
+                InternalOptions internalOptions
             ) {
                 return new DefaultBuildCacheControllerFactory(
                     startParameter,
@@ -192,7 +226,9 @@ BuildCacheControllerFactory createBuildCacheControllerFactory(
                     fileSystemAccess,
                     stringInterner,
                     temporaryFileProvider,
-                    packer
+                    packer,
+                    executorFactory,
+                    internalOptions
                 );
             }
         });
@@ -48,7 +48,7 @@
 import java.util.Map;
 import java.util.stream.Collectors;
 
-public abstract class AbstractBuildCacheControllerFactory<L extends BuildCacheService> implements BuildCacheControllerFactory {
+public abstract class AbstractBuildCacheControllerFactory<L> implements BuildCacheControllerFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractBuildCacheControllerFactory.class);
     protected final StartParameter startParameter;
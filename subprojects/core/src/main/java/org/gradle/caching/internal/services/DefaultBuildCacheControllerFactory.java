@@ -22,22 +22,28 @@
 import org.gradle.api.logging.configuration.ShowStacktrace;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.configuration.BuildCache;
+import org.gradle.caching.internal.BuildCacheServices;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.caching.internal.controller.DefaultBuildCacheController;
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.caching.local.DirectoryBuildCache;
-import org.gradle.caching.local.internal.DirectoryBuildCacheService;
+import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.vfs.FileSystemAccess;
 
 import javax.annotation.Nullable;
+import java.io.File;
 
-public class DefaultBuildCacheControllerFactory extends AbstractBuildCacheControllerFactory<DirectoryBuildCacheService> {
+public class DefaultBuildCacheControllerFactory extends AbstractBuildCacheControllerFactory<LocalBuildCacheService> {
 
     private final TemporaryFileProvider temporaryFileProvider;
     private final BuildCacheEntryPacker packer;
+    private final ExecutorFactory executorFactory;
+    private final InternalOptions internalOptions;
 
     public DefaultBuildCacheControllerFactory(
         StartParameter startParameter,
@@ -46,7 +52,9 @@ public DefaultBuildCacheControllerFactory(
         FileSystemAccess fileSystemAccess,
         StringInterner stringInterner,
         TemporaryFileProvider temporaryFileProvider,
-        BuildCacheEntryPacker packer
+        BuildCacheEntryPacker packer,
+        ExecutorFactory executorFactory,
+        InternalOptions internalOptions
     ) {
         super(
             startParameter,
@@ -57,11 +65,13 @@ public DefaultBuildCacheControllerFactory(
         );
         this.temporaryFileProvider = temporaryFileProvider;
         this.packer = packer;
+        this.executorFactory = executorFactory;
+        this.internalOptions = internalOptions;
     }
 
     @Override
     protected BuildCacheController doCreateController(
-        @Nullable DescribedBuildCacheService<DirectoryBuildCache, DirectoryBuildCacheService> localDescribedService,
+        @Nullable DescribedBuildCacheService<DirectoryBuildCache, LocalBuildCacheService> localDescribedService,
         @Nullable DescribedBuildCacheService<BuildCache, BuildCacheService> remoteDescribedService
     ) {
         BuildCacheServicesConfiguration config = toConfiguration(
@@ -79,6 +89,10 @@ protected BuildCacheController doCreateController(
             logStackTraces,
             emitDebugLogging,
             !Boolean.getBoolean(REMOTE_CONTINUE_ON_ERROR_PROPERTY),
+            internalOptions.getOption(BuildCacheServices.REMOTE_ASYNC_STORE).get(),
+            internalOptions.getOption(BuildCacheServices.REMOTE_PREFETCH).get(),
+            metricsReportFile(),
+            executorFactory,
             fileSystemAccess,
             packer,
             originMetadataFactory,
@@ -86,8 +100,18 @@ protected BuildCacheController doCreateController(
         );
     }
 
+    @Nullable
+    private File metricsReportFile() {
+        String path = internalOptions.getOption(BuildCacheServices.METRICS_REPORT).get();
+        if (path.isEmpty()) {
+            return null;
+        }
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(startParameter.getCurrentDir(), path);
+    }
+
     private static BuildCacheServicesConfiguration toConfiguration(
-        @Nullable DescribedBuildCacheService<DirectoryBuildCache, DirectoryBuildCacheService> local,
+        @Nullable DescribedBuildCacheService<DirectoryBuildCache, LocalBuildCacheService> local,
         @Nullable DescribedBuildCacheService<BuildCache, BuildCacheService> remote
     ) {
         boolean localPush = local != null && local.config.isPush();
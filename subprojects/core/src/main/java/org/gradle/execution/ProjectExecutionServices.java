@@ -40,6 +40,7 @@
 import org.gradle.execution.plan.MissingTaskDependencyDetector;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.execution.taskgraph.TaskListenerInternal;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.ExecutionEngine;
@@ -57,6 +58,7 @@
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.service.DefaultServiceRegistry;
+import org.gradle.internal.service.scopes.VirtualFileSystemServices;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.work.AsyncWorkTracker;
 import org.gradle.normalization.internal.InputNormalizationHandlerInternal;
@@ -142,7 +144,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
         StringInterner stringInterner,
         FileCollectionSnapshotter fileCollectionSnapshotter,
         ResourceSnapshotterCacheService resourceSnapshotterCacheService,
-        InputNormalizationHandlerInternal inputNormalizationHandler
+        InputNormalizationHandlerInternal inputNormalizationHandler,
+        InternalOptions internalOptions
     ) {
         return new FileCollectionFingerprinterRegistrations(
             stringInterner,
@@ -150,7 +153,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
             resourceSnapshotterCacheService,
             inputNormalizationHandler.getRuntimeClasspath().getClasspathResourceFilter(),
             inputNormalizationHandler.getRuntimeClasspath().getManifestAttributeResourceEntryFilter(),
-            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters()
+            inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters(),
+            VirtualFileSystemServices.isMemoryMappedZipInput(internalOptions)
         );
     }
 
@@ -161,9 +165,10 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Fi
     InputFingerprinter createInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
-        ValueSnapshotter valueSnapshotter
+        ValueSnapshotter valueSnapshotter,
+        InternalOptions internalOptions
     ) {
-        return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter);
+        return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, VirtualFileSystemServices.getInputFingerprintingPool(internalOptions));
     }
 
     TaskExecutionModeResolver createExecutionModeResolver(
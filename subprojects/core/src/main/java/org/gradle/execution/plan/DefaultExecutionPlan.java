@@ -59,6 +59,8 @@ public class DefaultExecutionPlan implements ExecutionPlan, QueryableExecutionPl
     private Spec<? super Task> filter = Specs.satisfyAll();
     private int order = 0;
     private boolean continueOnFailure;
+    private SpeculativeNodePreparer speculativeNodePreparer = SpeculativeNodePreparer.NONE;
+    private NodeExecutionTimeEstimator executionTimeEstimator = NodeExecutionTimeEstimator.NONE;
 
     private final Set<Node> filteredNodes = newIdentityHashSet();
     private final Set<Node> finalizers = new LinkedHashSet<>();
@@ -235,7 +237,7 @@ public FinalizedExecutionPlan finalizePlan() {
         if (finalizedPlan == null) {
             dependencyResolver.clear();
             // Should make an immutable copy of the contents to pass to the finalized plan and also to use in this instance
-            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, this, completionHandler);
+            finalizedPlan = new DefaultFinalizedExecutionPlan(displayName, ordinalNodeAccess, outputHierarchy, destroyableHierarchy, lockCoordinator, scheduledNodes, continueOnFailure, speculativeNodePreparer, executionTimeEstimator, this, completionHandler);
         }
         return finalizedPlan;
     }
@@ -332,6 +334,16 @@ public void setContinueOnFailure(boolean continueOnFailure) {
         this.continueOnFailure = continueOnFailure;
     }
 
+    @Override
+    public void setSpeculativeNodePreparer(SpeculativeNodePreparer speculativeNodePreparer) {
+        this.speculativeNodePreparer = speculativeNodePreparer;
+    }
+
+    @Override
+    public void setExecutionTimeEstimator(NodeExecutionTimeEstimator executionTimeEstimator) {
+        this.executionTimeEstimator = executionTimeEstimator;
+    }
+
     @Override
     public int size() {
         return nodeMapping.getNumberOfPublicNodes();
@@ -30,9 +30,12 @@
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -40,6 +43,7 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -65,9 +69,25 @@ public int compare(Node node1, Node node2) {
             return NodeComparator.INSTANCE.compare(node1, node2);
         }
     };
+    /**
+     * Starts the nodes with the longest critical path first, and otherwise uses {@link #NODE_EXECUTION_ORDER}.
+     */
+    public static final Comparator<Node> CRITICAL_PATH_EXECUTION_ORDER = new Comparator<Node>() {
+        @Override
+        public int compare(Node node1, Node node2) {
+            if (node1.isPriority() != node2.isPriority()) {
+                return node1.isPriority() ? -1 : 1;
+            }
+            int result = Long.compare(node2.getCriticalPathLength(), node1.getCriticalPathLength());
+            if (result != 0) {
+                return result;
+            }
+            return NODE_EXECUTION_ORDER.compare(node1, node2);
+        }
+    };
 
     private final Set<Node> waitingToStartNodes = new HashSet<>();
-    private final ExecutionQueue readyNodes = new ExecutionQueue();
+    private final ExecutionQueue readyNodes;
     private final List<Throwable> failures = new ArrayList<>();
     private final List<DiagnosticEvent> diagnosticEvents = new ArrayList<>();
     private final String displayName;
@@ -84,6 +104,12 @@ public int compare(Node node1, Node node2) {
     private final Map<Pair<Node, Node>, Boolean> reachableCache = new HashMap<>();
     private final OrdinalNodeAccess ordinalNodeAccess;
     private final Consumer<LocalTaskNode> completionHandler;
+    private final SpeculativeNodePreparer speculativeNodePreparer;
+    // Task nodes that have not been offered to the speculative node preparer yet, in execution order
+    private final Deque<LocalTaskNode> speculativeCandidates = new ArrayDeque<>();
+    // Task nodes that have not finished executing, which speculative work reads without holding the state lock
+    private final Set<LocalTaskNode> unexecutedTaskNodes = ConcurrentHashMap.newKeySet();
+    private final Set<LocalTaskNode> unmodifiableUnexecutedTaskNodes = Collections.unmodifiableSet(unexecutedTaskNodes);
 
     // When true, there may be nodes that are both ready and "selectable", which means their project and resources are able to be locked
     // When false, there are definitely no nodes that are "selectable"
@@ -99,6 +125,8 @@ public DefaultFinalizedExecutionPlan(
         ResourceLockCoordinationService lockCoordinator,
         List<Node> scheduledNodes,
         boolean continueOnFailure,
+        SpeculativeNodePreparer speculativeNodePreparer,
+        NodeExecutionTimeEstimator executionTimeEstimator,
         QueryableExecutionPlan contents,
         Consumer<LocalTaskNode> completionHandler
     ) {
@@ -110,6 +138,14 @@ public DefaultFinalizedExecutionPlan(
         this.continueOnFailure = continueOnFailure;
         this.contents = contents;
         this.completionHandler = completionHandler;
+        this.speculativeNodePreparer = speculativeNodePreparer;
+
+        if (executionTimeEstimator != NodeExecutionTimeEstimator.NONE) {
+            calculateCriticalPathLengths(scheduledNodes, executionTimeEstimator);
+            this.readyNodes = new ExecutionQueue(CRITICAL_PATH_EXECUTION_ORDER);
+        } else {
+            this.readyNodes = new ExecutionQueue(NODE_EXECUTION_ORDER);
+        }
 
         SetMultimap<FinalizerGroup, FinalizerGroup> reachableGroups = LinkedHashMultimap.create();
         for (Node node : scheduledNodes) {
@@ -125,10 +161,33 @@ public DefaultFinalizedExecutionPlan(
             node.updateAllDependenciesComplete();
             maybeNodeReady(node);
             maybeWaitingForNewNode(node, "scheduled");
+            if (speculativeNodePreparer != SpeculativeNodePreparer.NONE && node instanceof LocalTaskNode) {
+                speculativeCandidates.add((LocalTaskNode) node);
+                unexecutedTaskNodes.add((LocalTaskNode) node);
+            }
         }
         lockCoordinator.addLockReleaseListener(resourceUnlockListener);
     }
 
+    /**
+     * Calculates the critical path length of each node, visiting the dependents of a node before the node itself.
+     * Nodes without an estimate count as 1ms, so that the number of nodes in the chain is used when nothing is known about their execution time.
+     */
+    private static void calculateCriticalPathLengths(List<Node> scheduledNodes, NodeExecutionTimeEstimator executionTimeEstimator) {
+        for (int i = scheduledNodes.size() - 1; i >= 0; i--) {
+            Node node = scheduledNodes.get(i);
+            long executionTime = 0;
+            if (node instanceof LocalTaskNode) {
+                executionTime = Math.max(1, executionTimeEstimator.estimateExecutionTime((LocalTaskNode) node));
+            }
+            long longestDependentPath = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                longestDependentPath = Math.max(longestDependentPath, dependent.getCriticalPathLength());
+            }
+            node.setCriticalPathLength(executionTime + longestDependentPath);
+        }
+    }
+
     @Override
     public String getDisplayName() {
         return displayName;
@@ -149,6 +208,10 @@ public void close() {
         lockCoordinator.removeLockReleaseListener(resourceUnlockListener);
         waitingToStartNodes.clear();
         readyNodes.clear();
+        speculativeCandidates.clear();
+        // Nodes that did not execute, for example because a dependency failed
+        unexecutedTaskNodes.forEach(speculativeNodePreparer::discard);
+        unexecutedTaskNodes.clear();
         runningNodes.clear();
         reachableCache.clear();
     }
@@ -262,6 +325,7 @@ public Selection<Node> selectNext() {
                     // The node is ready to execute and its pre-execution nodes have not been scheduled, so do this now
                     node.visitPreExecutionNodes(prepareNode -> {
                         prepareNode.setIndex(node.getIndex());
+                        prepareNode.setCriticalPathLength(node.getCriticalPathLength());
                         prepareNode.require();
                         prepareNode.updateAllDependenciesComplete();
                         node.addDependencySuccessor(prepareNode);
@@ -302,6 +366,28 @@ public Selection<Node> selectNext() {
         return Selection.noWorkReadyToStart();
     }
 
+    @Nullable
+    @Override
+    public Runnable selectSpeculativeWork() {
+        lockCoordinator.assertHasStateLock();
+        if (buildCancelled) {
+            speculativeCandidates.clear();
+            return null;
+        }
+        while (!speculativeCandidates.isEmpty()) {
+            LocalTaskNode node = speculativeCandidates.removeFirst();
+            if (!waitingToStartNodes.contains(node)) {
+                // Already started or no longer required
+                continue;
+            }
+            Runnable work = speculativeNodePreparer.prepare(node, unmodifiableUnexecutedTaskNodes);
+            if (work != null) {
+                return work;
+            }
+        }
+        return null;
+    }
+
     private void addNodeToPlan(Node node) {
         maybeNodeReady(node);
         maybeWaitingForNewNode(node, "runtime");
@@ -547,6 +633,9 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
         lockCoordinator.assertHasStateLock();
         try {
             runningNodes.remove(node);
+            if (node instanceof LocalTaskNode && unexecutedTaskNodes.remove(node)) {
+                speculativeNodePreparer.discard((LocalTaskNode) node);
+            }
 
             if (failure != null) {
                 node.setExecutionFailure(failure);
@@ -567,6 +656,7 @@ public void finishedExecuting(Node node, @Nullable Throwable failure) {
                 LOGGER.debug("Node {} finished executing", node);
                 node.visitPostExecutionNodes(postNode -> {
                     postNode.setIndex(node.getIndex());
+                    postNode.setCriticalPathLength(node.getCriticalPathLength());
                     postNode.require();
                     postNode.updateAllDependenciesComplete();
                     addNodeToPlan(postNode);
@@ -679,12 +769,16 @@ public boolean allExecutionComplete() {
     }
 
     /**
-     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER}.
+     * An ordered queue of nodes, sorted by {@link #NODE_EXECUTION_ORDER} or {@link #CRITICAL_PATH_EXECUTION_ORDER}.
      */
     static class ExecutionQueue {
-        private final Set<Node> nodes = new TreeSet<>(NODE_EXECUTION_ORDER);
+        private final Set<Node> nodes;
         private Iterator<Node> current;
 
+        ExecutionQueue(Comparator<Node> executionOrder) {
+            this.nodes = new TreeSet<>(executionOrder);
+        }
+
         public void clear() {
             nodes.clear();
             current = null;
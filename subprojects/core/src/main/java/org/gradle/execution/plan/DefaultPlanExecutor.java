@@ -34,6 +34,7 @@
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.logging.text.TreeFormatter;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockState;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 
@@ -264,6 +265,18 @@ public WorkSource.Selection<WorkItem> selectNext() {
             }
         }
 
+        @Nullable
+        public Runnable selectSpeculativeWork() {
+            coordinationService.assertHasStateLock();
+            for (PlanDetails details : queues) {
+                Runnable work = details.source.selectSpeculativeWork();
+                if (work != null) {
+                    return work;
+                }
+            }
+            return null;
+        }
+
         private boolean nothingMoreToStart() {
             return finished || (autoFinish && queues.isEmpty());
         }
@@ -396,6 +409,19 @@ public void run() {
          */
         @Nullable
         private WorkItem getNextItem(final WorkerLease workerLease) {
+            while (true) {
+                MutableReference<Runnable> speculativeWork = MutableReference.empty();
+                WorkItem workItem = selectNextItem(workerLease, speculativeWork);
+                if (speculativeWork.get() == null) {
+                    return workItem;
+                }
+                // No work is ready to start, so use this otherwise idle thread to prepare some waiting work and then try again
+                runSpeculativeWork(speculativeWork.get());
+            }
+        }
+
+        @Nullable
+        private WorkItem selectNextItem(final WorkerLease workerLease, MutableReference<Runnable> speculativeWork) {
             final MutableReference<WorkItem> selected;
             stats.startSelect();
             try {
@@ -420,10 +446,7 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
                     }
 
                     if (state == WorkSource.State.NoWorkReadyToStart) {
-                        stats.startWaitingForNextItem();
-                        // Release worker lease while waiting
-                        workerLease.unlock();
-                        return RETRY;
+                        return waitForNextItem(workerLease, speculativeWork);
                     }
 
                     // Have a worker lease and work may be available
@@ -439,10 +462,7 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
                     if (workItem.isNoMoreWorkToStart()) {
                         return FINISHED;
                     } else if (workItem.isNoWorkReadyToStart()) {
-                        stats.startWaitingForNextItem();
-                        // Release worker lease while waiting
-                        workerLease.unlock();
-                        return RETRY;
+                        return waitForNextItem(workerLease, speculativeWork);
                     }
 
                     selected.set(workItem.getItem());
@@ -455,6 +475,32 @@ private WorkItem getNextItem(final WorkerLease workerLease) {
             return selected.get();
         }
 
+        private ResourceLockState.Disposition waitForNextItem(WorkerLease workerLease, MutableReference<Runnable> speculativeWork) {
+            Runnable work = queue.selectSpeculativeWork();
+            if (work != null) {
+                // Release the worker lease while running the work, so that it does not hold up work that becomes ready in the meantime
+                workerLease.unlock();
+                speculativeWork.set(work);
+                return FINISHED;
+            }
+            stats.startWaitingForNextItem();
+            // Release worker lease while waiting
+            workerLease.unlock();
+            return RETRY;
+        }
+
+        private void runSpeculativeWork(Runnable work) {
+            stats.startExecute();
+            try {
+                work.run();
+            } catch (Throwable t) {
+                // The work is an optimization only, so ignore the failure and let the item deal with the problem when it executes
+                LOGGER.debug("Failed to run speculative work.", t);
+            } finally {
+                stats.finishExecute();
+            }
+        }
+
         private void execute(Object selected, WorkSource<Object> executionPlan, Action<Object> worker) {
             Throwable failure = null;
             try {
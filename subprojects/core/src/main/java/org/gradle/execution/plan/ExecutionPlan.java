@@ -36,6 +36,16 @@ public interface ExecutionPlan extends Describable, Closeable {
 
     void setContinueOnFailure(boolean continueOnFailure);
 
+    /**
+     * Sets the preparer to use to prepare waiting nodes while worker threads are idle. Defaults to {@link SpeculativeNodePreparer#NONE}.
+     */
+    void setSpeculativeNodePreparer(SpeculativeNodePreparer speculativeNodePreparer);
+
+    /**
+     * Sets the estimator to use to start the nodes on the critical path of the plan first. Defaults to {@link NodeExecutionTimeEstimator#NONE}, which starts nodes in plan order.
+     */
+    void setExecutionTimeEstimator(NodeExecutionTimeEstimator executionTimeEstimator);
+
     void setScheduledNodes(Collection<? extends Node> nodes);
 
     /**
@@ -68,6 +68,7 @@ public enum DependenciesState {
     private Throwable executionFailure;
     private boolean filtered;
     private int index;
+    private long criticalPathLength;
     private DependencyNodesSet dependencyNodes = DependencyNodesSet.EMPTY;
     private DependentNodesSet dependentNodes = DependentNodesSet.EMPTY;
     private final MutationInfo mutationInfo = new MutationInfo();
@@ -333,6 +334,18 @@ public void setIndex(int index) {
         this.index = index;
     }
 
+    /**
+     * Returns the estimated execution time in milliseconds of the longest chain of nodes that starts with this node and ends with a node that nothing depends on.
+     * Nodes with a longer critical path are started first, when the plan is scheduled using execution time estimates.
+     */
+    public long getCriticalPathLength() {
+        return criticalPathLength;
+    }
+
+    public void setCriticalPathLength(long criticalPathLength) {
+        this.criticalPathLength = criticalPathLength;
+    }
+
     /**
      * Mark this node as filtered from the current plan. The node will be considered complete and successful.
      */
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+/**
+ * Estimates how long nodes take to execute, so that the nodes on the critical path of the plan can be started first.
+ */
+@ServiceScope(Scopes.Gradle.class)
+public interface NodeExecutionTimeEstimator {
+    long UNKNOWN = -1;
+
+    /**
+     * Does not estimate, so that the nodes of the plan are started in plan order.
+     */
+    NodeExecutionTimeEstimator NONE = node -> UNKNOWN;
+
+    /**
+     * Returns the estimated execution time of the given node in milliseconds, or {@link #UNKNOWN}.
+     */
+    long estimateExecutionTime(LocalTaskNode node);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Prepares nodes that are waiting for their dependencies, using worker threads that would otherwise be idle.
+ *
+ * <p>The preparation must not depend on the outputs of other nodes and must not require any project or resource locks.
+ * It is an optimization only: the node must execute correctly regardless of whether the preparation ran, ran partially or failed.</p>
+ */
+@ServiceScope(Scopes.Gradle.class)
+public interface SpeculativeNodePreparer {
+    SpeculativeNodePreparer NONE = (node, unexecutedNodes) -> null;
+
+    /**
+     * Returns the work to run to prepare the given node, or {@code null} when there is nothing to prepare.
+     *
+     * <p>This method is called while holding the state lock, so should be cheap. The returned work is run without holding the state lock or a worker lease.</p>
+     *
+     * @param unexecutedNodes the task nodes of the plan that have not finished executing yet. Nodes are removed from the set concurrently as they finish.
+     */
+    @Nullable
+    Runnable prepare(LocalTaskNode node, Set<LocalTaskNode> unexecutedNodes);
+
+    /**
+     * Releases whatever was prepared for the given node and is still held, as the node has finished executing or will not execute.
+     *
+     * <p>This method is called while holding the state lock, so should be cheap.</p>
+     */
+    default void discard(LocalTaskNode node) {
+    }
+
+    /**
+     * Returns a preparer that runs the preparation of each of the given preparers, in order.
+     */
+    static SpeculativeNodePreparer combine(List<SpeculativeNodePreparer> preparers) {
+        if (preparers.isEmpty()) {
+            return NONE;
+        }
+        if (preparers.size() == 1) {
+            return preparers.get(0);
+        }
+        return new SpeculativeNodePreparer() {
+            @Nullable
+            @Override
+            public Runnable prepare(LocalTaskNode node, Set<LocalTaskNode> unexecutedNodes) {
+                List<Runnable> work = new ArrayList<>(preparers.size());
+                for (SpeculativeNodePreparer preparer : preparers) {
+                    Runnable preparation = preparer.prepare(node, unexecutedNodes);
+                    if (preparation != null) {
+                        work.add(preparation);
+                    }
+                }
+                if (work.isEmpty()) {
+                    return null;
+                }
+                return () -> work.forEach(Runnable::run);
+            }
+
+            @Override
+            public void discard(LocalTaskNode node) {
+                for (SpeculativeNodePreparer preparer : preparers) {
+                    preparer.discard(node);
+                }
+            }
+        };
+    }
+}
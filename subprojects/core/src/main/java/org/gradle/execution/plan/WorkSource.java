@@ -187,6 +187,19 @@ public void describeTo(TreeFormatter formatter) {
 
     void finishedExecuting(T item, @Nullable Throwable failure);
 
+    /**
+     * Selects some optional work that prepares items that are not yet ready to start, to be run by a worker that would otherwise be idle.
+     * Returns {@code null} when there is no such work.
+     *
+     * <p>Note: the caller must hold a worker lease and should call this method only when {@link #selectNext()} has no work ready to start.</p>
+     *
+     * <p>The returned work is run without holding the state lock or the worker lease, and any failure is ignored.</p>
+     */
+    @Nullable
+    default Runnable selectSpeculativeWork() {
+        return null;
+    }
+
     void abortAllAndFail(Throwable t);
 
     void cancelExecution();
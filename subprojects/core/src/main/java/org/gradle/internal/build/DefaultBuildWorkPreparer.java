@@ -20,6 +20,8 @@
 import org.gradle.execution.plan.ExecutionPlan;
 import org.gradle.execution.plan.ExecutionPlanFactory;
 import org.gradle.execution.plan.FinalizedExecutionPlan;
+import org.gradle.execution.plan.NodeExecutionTimeEstimator;
+import org.gradle.execution.plan.SpeculativeNodePreparer;
 import org.gradle.execution.taskgraph.TaskExecutionGraphInternal;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
 
@@ -49,6 +51,8 @@ public FinalizedExecutionPlan finalizeWorkGraph(GradleInternal gradle, Execution
         if (gradle.getStartParameter().isContinueOnFailure()) {
             plan.setContinueOnFailure(true);
         }
+        plan.setSpeculativeNodePreparer(gradle.getServices().get(SpeculativeNodePreparer.class));
+        plan.setExecutionTimeEstimator(gradle.getServices().get(NodeExecutionTimeEstimator.class));
         FinalizedExecutionPlan finalizedExecutionPlan = plan.finalizePlan();
         taskGraph.populate(finalizedExecutionPlan);
         BuildOutputCleanupRegistry buildOutputCleanupRegistry = gradle.getServices().get(BuildOutputCleanupRegistry.class);
@@ -28,10 +28,15 @@
 
 public class DefaultCompileClasspathFingerprinter extends AbstractFileCollectionFingerprinter implements CompileClasspathFingerprinter {
     public DefaultCompileClasspathFingerprinter(ResourceSnapshotterCacheService cacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
+        this(cacheService, fileCollectionSnapshotter, stringInterner, false);
+    }
+
+    public DefaultCompileClasspathFingerprinter(ResourceSnapshotterCacheService cacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, boolean memoryMappedZipInput) {
         super(ClasspathFingerprintingStrategy.compileClasspath(
             new CachingResourceHasher(AbiExtractingClasspathResourceHasher.DEFAULT, cacheService),
             cacheService,
-            stringInterner
+            stringInterner,
+            memoryMappedZipInput
         ), fileCollectionSnapshotter);
     }
 
@@ -54,8 +54,20 @@ public FileCollectionFingerprinterRegistrations(
         ResourceEntryFilter metaInfFilter,
         Map<String, ResourceEntryFilter> propertiesFileFilters
         ) {
+        this(stringInterner, fileCollectionSnapshotter, resourceSnapshotterCacheService, resourceFilter, metaInfFilter, propertiesFileFilters, false);
+    }
 
-        List<? extends FileCollectionFingerprinter> insensitiveFingerprinters = insensitiveFingerprinters(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
+    public FileCollectionFingerprinterRegistrations(
+        StringInterner stringInterner,
+        FileCollectionSnapshotter fileCollectionSnapshotter,
+        ResourceSnapshotterCacheService resourceSnapshotterCacheService,
+        ResourceFilter resourceFilter,
+        ResourceEntryFilter metaInfFilter,
+        Map<String, ResourceEntryFilter> propertiesFileFilters,
+        boolean memoryMappedZipInput
+        ) {
+
+        List<? extends FileCollectionFingerprinter> insensitiveFingerprinters = insensitiveFingerprinters(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner, memoryMappedZipInput);
         this.registrants =
             withAllLineEndingSensitivities(lineEndingSensitivity -> {
                 FileSystemLocationSnapshotHasher normalizedContentHasher = normalizedContentHasher(lineEndingSensitivity, resourceSnapshotterCacheService);
@@ -68,7 +80,8 @@ public FileCollectionFingerprinterRegistrations(
                     resourceFilter,
                     metaInfFilter,
                     propertiesFileFilters,
-                    stringInterner
+                    stringInterner,
+                    memoryMappedZipInput
                 );
 
                 return withAllDirectorySensitivities(directorySensitivity ->
@@ -117,7 +130,8 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
         ResourceFilter resourceFilter,
         ResourceEntryFilter metaInfFilter,
         Map<String, ResourceEntryFilter> propertiesFileFilters,
-        StringInterner stringInterner
+        StringInterner stringInterner,
+        boolean memoryMappedZipInput
     ) {
         return Lists.newArrayList(
             new IgnoredPathFileCollectionFingerprinter(fileCollectionSnapshotter, normalizedContentHasher),
@@ -128,7 +142,8 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
                 metaInfFilter,
                 propertiesFileFilters,
                 stringInterner,
-                lineEndingSensitivity
+                lineEndingSensitivity,
+                memoryMappedZipInput
             )
         );
     }
@@ -136,9 +151,9 @@ private static List<? extends FileCollectionFingerprinter> directoryInsensitiveF
     /**
      * These fingerprinters do not care about line ending or directory sensitivity at all
      */
-    private static List<? extends FileCollectionFingerprinter> insensitiveFingerprinters(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
+    private static List<? extends FileCollectionFingerprinter> insensitiveFingerprinters(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, boolean memoryMappedZipInput) {
         return Lists.newArrayList(
-            new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner)
+            new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner, memoryMappedZipInput)
         );
     }
 
@@ -15,20 +15,27 @@
  */
 package org.gradle.internal.hash;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.FileTimeStampInspector;
+import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 
 import java.io.File;
+import java.util.Map;
 
 public class DefaultChecksumService implements ChecksumService {
     private final CachingFileHasher md5;
     private final CachingFileHasher sha1;
     private final CachingFileHasher sha256;
     private final CachingFileHasher sha512;
+    private final FileSystem fileSystem;
+    private final Cache<String, RecordedChecksums> recordedChecksums = CacheBuilder.newBuilder().maximumSize(10000).build();
 
     public DefaultChecksumService(
         StringInterner stringInterner,
@@ -37,6 +44,7 @@ public DefaultChecksumService(
         FileTimeStampInspector fileTimeStampInspector,
         FileHasherStatistics.Collector statisticsCollector
     ) {
+        this.fileSystem = fileSystem;
         md5 = createCache(stringInterner, fileStore, fileSystem, fileTimeStampInspector, "md5", Hashing.md5(), statisticsCollector);
         sha1 = createCache(stringInterner, fileStore, fileSystem, fileTimeStampInspector, "sha1", Hashing.sha1(), statisticsCollector);
         sha256 = createCache(stringInterner, fileStore, fileSystem, fileTimeStampInspector, "sha256", Hashing.sha256(), statisticsCollector);
@@ -57,22 +65,22 @@ private CachingFileHasher createCache(
 
     @Override
     public HashCode md5(File file) {
-        return doHash(file, md5);
+        return doHash(file, "md5", md5);
     }
 
     @Override
     public HashCode sha1(File file) {
-        return doHash(file, sha1);
+        return doHash(file, "sha1", sha1);
     }
 
     @Override
     public HashCode sha256(File file) {
-        return doHash(file, sha256);
+        return doHash(file, "sha256", sha256);
     }
 
     @Override
     public HashCode sha512(File file) {
-        return doHash(file, sha512);
+        return doHash(file, "sha512", sha512);
     }
 
     @Override
@@ -93,8 +101,38 @@ public HashCode hash(File src, String algorithm) {
         throw new UnsupportedOperationException("Cannot hash with algorith " + algorithm);
     }
 
-    private HashCode doHash(File file, CachingFileHasher hasher) {
+    @Override
+    public void recordChecksums(File file, Map<String, HashCode> checksums) {
+        FileMetadata metadata = fileSystem.stat(file);
+        recordedChecksums.put(file.getAbsolutePath(), new RecordedChecksums(metadata.getLength(), metadata.getLastModified(), ImmutableMap.copyOf(checksums)));
+    }
+
+    private HashCode doHash(File file, String algorithm, CachingFileHasher hasher) {
+        RecordedChecksums recorded = recordedChecksums.getIfPresent(file.getAbsolutePath());
+        if (recorded != null) {
+            FileMetadata metadata = fileSystem.stat(file);
+            if (metadata.getLength() == recorded.length && metadata.getLastModified() == recorded.lastModified) {
+                HashCode hash = recorded.checksums.get(algorithm);
+                if (hash != null) {
+                    return hash;
+                }
+            } else {
+                recordedChecksums.invalidate(file.getAbsolutePath());
+            }
+        }
         return hasher.hash(file);
     }
 
+    private static class RecordedChecksums {
+        private final long length;
+        private final long lastModified;
+        private final Map<String, HashCode> checksums;
+
+        RecordedChecksums(long length, long lastModified, Map<String, HashCode> checksums) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksums = checksums;
+        }
+    }
+
 }
@@ -18,14 +18,23 @@
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.DefaultExecutionHistoryCacheAccess;
+import org.gradle.api.internal.tasks.execution.SpeculativeBuildCachePrefetcher;
+import org.gradle.api.internal.tasks.execution.SpeculativeTaskInputSnapshotter;
+import org.gradle.api.internal.tasks.execution.TaskExecutionHistoryTimeEstimator;
 import org.gradle.api.problems.Problems;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.BuildScopedCacheBuilderFactory;
+import org.gradle.caching.internal.BuildCacheServices;
 import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
+import org.gradle.execution.plan.NodeExecutionTimeEstimator;
+import org.gradle.execution.plan.SpeculativeNodePreparer;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
@@ -33,12 +42,15 @@
 import org.gradle.internal.execution.OutputChangeListener;
 import org.gradle.internal.execution.OutputSnapshotter;
 import org.gradle.internal.execution.WorkInputListeners;
+import org.gradle.internal.execution.history.BuildCacheKeyHistory;
 import org.gradle.internal.execution.history.ExecutionHistoryCacheAccess;
 import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.execution.history.OutputFilesRepository;
 import org.gradle.internal.execution.history.OutputsCleaner;
 import org.gradle.internal.execution.history.OverlappingOutputDetector;
 import org.gradle.internal.execution.history.changes.ExecutionStateChangeDetector;
+import org.gradle.internal.execution.history.impl.AppendOnlyExecutionHistoryStore;
+import org.gradle.internal.execution.history.impl.DefaultBuildCacheKeyHistory;
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
@@ -70,18 +82,37 @@
 import org.gradle.internal.execution.timeout.TimeoutHandler;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CurrentBuildOperationRef;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
+import org.gradle.internal.vfs.FileSystemAccess;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.util.GradleVersion;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.function.Supplier;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class ExecutionGradleServices {
+    /**
+     * Keeps the execution history in an append-only log that is written concurrently, instead of the shared BTree cache.
+     */
+    public static final InternalFlag APPEND_ONLY_EXECUTION_HISTORY = new InternalFlag("org.gradle.internal.execution-history.append-only");
+
+    /**
+     * Uses idle worker threads to snapshot the input files of tasks that are waiting for their dependencies.
+     */
+    public static final InternalFlag SPECULATIVE_INPUT_SNAPSHOTTING = new InternalFlag("org.gradle.internal.execution.speculative-input-snapshotting");
+
+    /**
+     * Starts the tasks with the longest chain of dependents first, using the task execution times recorded in the execution history.
+     */
+    public static final InternalFlag CRITICAL_PATH_SCHEDULING = new InternalFlag("org.gradle.internal.execution.critical-path-scheduling");
+
     ExecutionHistoryCacheAccess createCacheAccess(BuildScopedCacheBuilderFactory cacheBuilderFactory) {
         return new DefaultExecutionHistoryCacheAccess(cacheBuilderFactory);
     }
@@ -90,16 +121,62 @@ ExecutionHistoryStore createExecutionHistoryStore(
         ExecutionHistoryCacheAccess executionHistoryCacheAccess,
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         StringInterner stringInterner,
-        ClassLoaderHierarchyHasher classLoaderHasher
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        InternalOptions internalOptions
     ) {
+        if (internalOptions.getOption(APPEND_ONLY_EXECUTION_HISTORY).get()) {
+            return AppendOnlyExecutionHistoryStore.open(
+                executionHistoryCacheAccess.get().getBaseDir(),
+                stringInterner,
+                classLoaderHasher
+            );
+        }
         return new DefaultExecutionHistoryStore(
             executionHistoryCacheAccess,
             inMemoryCacheDecoratorFactory,
             stringInterner,
-            classLoaderHasher
+            classLoaderHasher,
+            internalOptions.getOption(CRITICAL_PATH_SCHEDULING).get()
         );
     }
 
+    BuildCacheKeyHistory createBuildCacheKeyHistory(
+        ExecutionHistoryCacheAccess executionHistoryCacheAccess,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+        InternalOptions internalOptions
+    ) {
+        if (internalOptions.getOption(BuildCacheServices.REMOTE_PREFETCH).get()) {
+            return new DefaultBuildCacheKeyHistory(executionHistoryCacheAccess, inMemoryCacheDecoratorFactory);
+        }
+        return BuildCacheKeyHistory.NONE;
+    }
+
+    SpeculativeNodePreparer createSpeculativeNodePreparer(
+        ExecutionHistoryStore executionHistoryStore,
+        BuildCacheKeyHistory buildCacheKeyHistory,
+        BuildCacheController buildCacheController,
+        FileSystemAccess fileSystemAccess,
+        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
+        InternalOptions internalOptions
+    ) {
+        List<SpeculativeNodePreparer> preparers = new ArrayList<>();
+        if (buildCacheKeyHistory != BuildCacheKeyHistory.NONE) {
+            // Start the downloads first, as they take the longest
+            preparers.add(new SpeculativeBuildCachePrefetcher(buildCacheController, buildCacheKeyHistory, executionHistoryStore));
+        }
+        if (internalOptions.getOption(SPECULATIVE_INPUT_SNAPSHOTTING).get()) {
+            preparers.add(new SpeculativeTaskInputSnapshotter(executionHistoryStore, fileSystemAccess, executionNodeAccessHierarchies.getOutputHierarchy()));
+        }
+        return SpeculativeNodePreparer.combine(preparers);
+    }
+
+    NodeExecutionTimeEstimator createNodeExecutionTimeEstimator(ExecutionHistoryStore executionHistoryStore, InternalOptions internalOptions) {
+        if (internalOptions.getOption(CRITICAL_PATH_SCHEDULING).get()) {
+            return new TaskExecutionHistoryTimeEstimator(executionHistoryStore);
+        }
+        return NodeExecutionTimeEstimator.NONE;
+    }
+
     OutputFilesRepository createOutputFilesRepository(BuildScopedCacheBuilderFactory cacheBuilderFactory, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         PersistentCache cacheAccess = cacheBuilderFactory
             .createCrossVersionCacheBuilder("buildOutputCleanup")
@@ -117,6 +194,7 @@ OutputChangeListener createOutputChangeListener(ListenerManager listenerManager)
 
     public ExecutionEngine createExecutionEngine(
         BuildCacheController buildCacheController,
+        BuildCacheKeyHistory buildCacheKeyHistory,
         BuildCancellationToken cancellationToken,
         BuildInvocationScopeId buildInvocationScopeId,
         BuildOperationExecutor buildOperationExecutor,
@@ -130,6 +208,7 @@ public ExecutionEngine createExecutionEngine(
         WorkInputListeners workInputListeners, OutputFilesRepository outputFilesRepository,
         OutputSnapshotter outputSnapshotter,
         OverlappingOutputDetector overlappingOutputDetector,
+        StreamHasher streamHasher,
         TimeoutHandler timeoutHandler,
         ValidateStep.ValidationWarningRecorder validationWarningRecorder,
         VirtualFileSystem virtualFileSystem,
@@ -150,13 +229,13 @@ public ExecutionEngine createExecutionEngine(
             new SkipEmptyWorkStep(outputChangeListener, workInputListeners, skipEmptyWorkOutputsCleanerSupplier,
             new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classLoaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
             new ValidateStep<>(virtualFileSystem, validationWarningRecorder, problems,
-            new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(),
+            new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(), streamHasher.getHashFunction(),
             new MarkSnapshottingInputsFinishedStep<>(
             new ResolveChangesStep<>(changeDetector,
             new SkipUpToDateStep<>(
             new RecordOutputsStep<>(outputFilesRepository,
             new StoreExecutionStateStep<>(
-            new BuildCacheStep(buildCacheController, deleter, outputChangeListener,
+            new BuildCacheStep(buildCacheController, buildCacheKeyHistory, deleter, outputChangeListener,
             new ResolveInputChangesStep<>(
             new CaptureStateAfterExecutionStep<>(buildOperationExecutor, buildInvocationScopeId.getId(), outputSnapshotter, outputChangeListener,
             new CreateOutputsStep<>(
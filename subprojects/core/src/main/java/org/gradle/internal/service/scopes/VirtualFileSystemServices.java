@@ -20,6 +20,7 @@
 import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
 import net.rubygrapefruit.platform.file.FileSystems;
 import org.apache.tools.ant.DirectoryScanner;
+import org.gradle.StartParameter;
 import org.gradle.api.internal.DocumentationRegistry;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.BuildSessionScopeFileTimeStampInspector;
@@ -27,7 +28,10 @@
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
+import org.gradle.api.internal.changedetection.state.FileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
+import org.gradle.api.internal.changedetection.state.OffHeapFileInfoCache;
+import org.gradle.api.internal.changedetection.state.OffHeapFileInfoCaches;
 import org.gradle.api.internal.changedetection.state.PropertiesFileFilter;
 import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
 import org.gradle.api.internal.changedetection.state.ResourceFilter;
@@ -39,14 +43,17 @@
 import org.gradle.cache.GlobalCacheLocations;
 import org.gradle.cache.IndexedCache;
 import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.internal.HeapProportionalCacheSizer;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.BuildTreeScopedCacheBuilderFactory;
 import org.gradle.cache.scopes.GlobalScopedCacheBuilderFactory;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.internal.build.BuildAddedListener;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
 import org.gradle.internal.buildoption.IntegerInternalOption;
 import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.buildoption.InternalOptions;
+import org.gradle.internal.buildoption.Option;
 import org.gradle.internal.classloader.ClasspathHasher;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.FileCollectionFingerprinterRegistry;
@@ -68,6 +75,8 @@
 import org.gradle.internal.hash.DefaultFileHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
@@ -91,13 +100,17 @@
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
+import org.gradle.internal.watch.vfs.impl.PersistentVirtualFileSystemState;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
 import static org.gradle.internal.snapshot.CaseSensitivity.CASE_INSENSITIVE;
@@ -116,6 +129,62 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     public static final IntegerInternalOption MAX_HIERARCHIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.hierarchies.max", DEFAULT_MAX_HIERARCHIES_TO_WATCH);
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
+    /**
+     * The number of file hashes kept on the heap when the file hashes are cached off-heap.
+     */
+    private static final int FILE_HASHER_MEMORY_CACHE_SIZE_WITH_OFF_HEAP_CACHE = 10000;
+    /**
+     * When enabled, file hashes are cached outside the heap, and only a few of them are kept in the heap.
+     *
+     * The file hasher for global caches is shared between builds, and only reads the option from the system properties of the daemon.
+     */
+    public static final InternalFlag OFF_HEAP_FILE_HASH_CACHE_PROPERTY = new InternalFlag("org.gradle.internal.file-hashes.off-heap");
+    /**
+     * When enabled, the subdirectories of snapshotted directories are walked in parallel on the common fork/join pool.
+     *
+     * The file system access for global caches is shared between builds, and only reads the option from the system properties of the daemon.
+     */
+    public static final InternalFlag PARALLEL_SNAPSHOTTING_PROPERTY = new InternalFlag("org.gradle.vfs.parallel-snapshotting");
+    /**
+     * When enabled, the input file properties of a unit of work are fingerprinted in parallel on the common fork/join pool,
+     * and so are the jars of classpath properties.
+     */
+    public static final InternalFlag PARALLEL_INPUT_FINGERPRINTING_PROPERTY = new InternalFlag("org.gradle.internal.execution.parallel-input-fingerprinting");
+    /**
+     * When enabled, hashing a jar for one classpath normalization also hashes it for the other classpath normalizations used recently,
+     * e.g. for compile and runtime classpaths, reading the jar only once.
+     *
+     * The resource hashes for global caches are shared between builds, and only read the option from the system properties of the daemon.
+     */
+    public static final InternalFlag MULTI_VARIANT_JAR_HASHING_PROPERTY = new InternalFlag("org.gradle.internal.jar-hashes.multi-variant");
+    /**
+     * When enabled, jars on classpaths are read from their memory-mapped central directory, and only the entries which are hashed are inflated.
+     *
+     * The classpath fingerprinter for global caches is shared between builds, and only reads the option from the system properties of the daemon.
+     */
+    public static final InternalFlag MEMORY_MAPPED_ZIP_INPUT_PROPERTY = new InternalFlag("org.gradle.internal.zip-input.memory-mapped");
+    /**
+     * When enabled and file system watching is enabled, the state of the virtual file system is stored when the daemon stops,
+     * and the parts which did not change are restored by the next daemon.
+     *
+     * The virtual file system is shared between builds, so the option is only read from the system properties of the daemon.
+     */
+    public static final InternalFlag PERSISTENT_VFS_STATE_PROPERTY = new InternalFlag("org.gradle.vfs.persistent-state");
+    /**
+     * When enabled, the state of the virtual file system is kept between builds which do not watch the file system,
+     * and revalidated by comparing file attributes at the start of the next build instead of being dropped.
+     *
+     * The virtual file system is shared between builds, so the option is only read from the system properties of the daemon.
+     */
+    public static final InternalFlag RETAIN_UNWATCHED_VFS_STATE_PROPERTY = new InternalFlag("org.gradle.vfs.retain-unwatched-state");
+    /**
+     * Limits the number of directories watched on Linux, where each directory needs its own inotify watch.
+     * When the limit is reached, the least recently used directories are not watched anymore.
+     * When not set, defaults to three quarters of the inotify watches available to the user.
+     *
+     * The file watchers are shared between builds, so the option is only read from the system properties of the daemon.
+     */
+    public static final IntegerInternalOption MAX_DIRECTORIES_TO_WATCH_PROPERTY = new IntegerInternalOption("org.gradle.vfs.watch.directories.max", 0);
 
     public static boolean isDropVfs(InternalOptions options) {
         return options.getOption(VFS_DROP_PROPERTY).get();
@@ -125,6 +194,52 @@ public static int getMaximumNumberOfWatchedHierarchies(InternalOptions options)
         return options.getOption(MAX_HIERARCHIES_TO_WATCH_PROPERTY).get();
     }
 
+    /**
+     * Hashes created with different file content hash functions must not be mixed, so each function has its own persistent cache.
+     */
+    private static String fileHashesCacheName(StreamHasher streamHasher) {
+        HashFunction fileContentFunction = streamHasher.getHashFunction();
+        return fileContentFunction == Hashing.defaultFunction()
+            ? "fileHashes"
+            : "fileHashes-" + fileContentFunction.getAlgorithm().toLowerCase(Locale.ROOT);
+    }
+
+    private static CachingFileHasher newCachingFileHasher(
+        StreamHasher streamHasher,
+        CrossBuildFileHashCache store,
+        StringInterner stringInterner,
+        FileTimeStampInspector fileTimeStampInspector,
+        FileSystem fileSystem,
+        FileHasherStatistics.Collector statisticsCollector,
+        OffHeapFileInfoCaches offHeapFileInfoCaches,
+        InternalOptions options
+    ) {
+        String cacheName = fileHashesCacheName(streamHasher);
+        if (options.getOption(OFF_HEAP_FILE_HASH_CACHE_PROPERTY).get()) {
+            OffHeapFileInfoCache offHeapCache = offHeapFileInfoCaches.forStore(store, cacheName);
+            return new CachingFileHasher(new DefaultFileHasher(streamHasher), store, stringInterner, fileTimeStampInspector, cacheName, fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE_WITH_OFF_HEAP_CACHE, statisticsCollector, offHeapCache);
+        }
+        return new CachingFileHasher(new DefaultFileHasher(streamHasher), store, stringInterner, fileTimeStampInspector, cacheName, fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+    }
+
+    public static boolean isMemoryMappedZipInput(InternalOptions options) {
+        return options.getOption(MEMORY_MAPPED_ZIP_INPUT_PROPERTY).get();
+    }
+
+    private static boolean isMultiVariantJarHashing(InternalOptions options) {
+        return options.getOption(MULTI_VARIANT_JAR_HASHING_PROPERTY).get();
+    }
+
+    @Nullable
+    private static ForkJoinPool getSnapshottingPool(InternalOptions options) {
+        return options.getOption(PARALLEL_SNAPSHOTTING_PROPERTY).get() ? ForkJoinPool.commonPool() : null;
+    }
+
+    @Nullable
+    public static ForkJoinPool getInputFingerprintingPool(InternalOptions options) {
+        return options.getOption(PARALLEL_INPUT_FINGERPRINTING_PROPERTY).get() ? ForkJoinPool.commonPool() : null;
+    }
+
     @Override
     public void registerGlobalServices(ServiceRegistration registration) {
         registration.addProvider(new GlobalScopeServices());
@@ -157,15 +272,21 @@ CrossBuildFileHashCache createCrossBuildFileHashCache(GlobalScopedCacheBuilderFa
             return new CrossBuildFileHashCache(cacheBuilderFactory, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
 
+        OffHeapFileInfoCaches createOffHeapFileInfoCaches() {
+            // Sized like the in-memory caches it replaces
+            return new OffHeapFileInfoCaches(new HeapProportionalCacheSizer().scaleCacheSize(FILE_HASHER_MEMORY_CACHE_SIZE));
+        }
+
         FileHasher createCachingFileHasher(
             FileHasherStatistics.Collector statisticsCollector,
             CrossBuildFileHashCache fileStore,
             FileSystem fileSystem,
             GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
             StreamHasher streamHasher,
-            StringInterner stringInterner
+            StringInterner stringInterner,
+            OffHeapFileInfoCaches offHeapFileInfoCaches
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = newCachingFileHasher(streamHasher, fileStore, stringInterner, fileTimeStampInspector, fileSystem, statisticsCollector, offHeapFileInfoCaches, DefaultInternalOptions.ofSystemProperties());
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -198,27 +319,37 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             FileChangeListeners fileChangeListeners,
             FileSystem fileSystem,
             GlobalCacheLocations globalCacheLocations,
-            WatchableFileSystemDetector watchableFileSystemDetector
+            WatchableFileSystemDetector watchableFileSystemDetector,
+            GlobalScopedCacheBuilderFactory cacheBuilderFactory,
+            StreamHasher streamHasher
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(caseSensitivity);
             // All the changes in global caches should be done by Gradle itself, so in order
             // to minimize the number of watches we don't watch anything within the global caches.
             Predicate<String> watchFilter = path -> !globalCacheLocations.isInsideGlobalCache(path);
+            InternalOptions options = DefaultInternalOptions.ofSystemProperties();
+            PersistentVirtualFileSystemState persistentState = options.getOption(PERSISTENT_VFS_STATE_PROPERTY).get()
+                ? new PersistentVirtualFileSystemState(new File(cacheBuilderFactory.baseDirForCache("vfs"), "vfs-state.bin"), streamHasher.getHashFunction().getAlgorithm())
+                : null;
+            boolean retainUnwatchedState = options.getOption(RETAIN_UNWATCHED_VFS_STATE_PROPERTY).get();
 
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(
                 OperatingSystem.current(),
                 nativeCapabilities,
-                watchFilter)
+                watchFilter,
+                options)
                 .<BuildLifecycleAwareVirtualFileSystem>map(watcherRegistryFactory -> new WatchingVirtualFileSystem(
                     watcherRegistryFactory,
                     root,
                     sectionId -> documentationRegistry.getDocumentationRecommendationFor("details", "gradle_daemon", sectionId),
                     locationsWrittenByCurrentBuild,
                     watchableFileSystemDetector,
-                    fileChangeListeners
+                    fileChangeListeners,
+                    persistentState,
+                    retainUnwatchedState
                 ))
-                .orElse(new WatchingNotSupportedVirtualFileSystem(root));
+                .orElse(new WatchingNotSupportedVirtualFileSystem(root, retainUnwatchedState));
             listenerManager.addListener((BuildAddedListener) buildState -> {
                     File buildRootDir = buildState.getBuildRootDir();
                     virtualFileSystem.registerWatchableHierarchy(buildRootDir);
@@ -243,6 +374,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                getSnapshottingPool(DefaultInternalOptions.ofSystemProperties()),
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(defaultFileSystemAccess);
@@ -253,7 +385,8 @@ FileSystemAccess createFileSystemAccess(
         private Optional<FileWatcherRegistryFactory> determineWatcherRegistryFactory(
             OperatingSystem operatingSystem,
             NativeCapabilities nativeCapabilities,
-            Predicate<String> watchFilter
+            Predicate<String> watchFilter,
+            InternalOptions options
         ) {
             if (nativeCapabilities.useFileSystemWatching()) {
                 try {
@@ -262,7 +395,10 @@ private Optional<FileWatcherRegistryFactory> determineWatcherRegistryFactory(
                     } else if (operatingSystem.isWindows()) {
                         return Optional.of(new WindowsFileWatcherRegistryFactory(watchFilter));
                     } else if (operatingSystem.isLinux()) {
-                        return Optional.of(new LinuxFileWatcherRegistryFactory(watchFilter));
+                        Option.Value<Integer> maxWatchedDirectories = options.getOption(MAX_DIRECTORIES_TO_WATCH_PROPERTY);
+                        return Optional.of(new LinuxFileWatcherRegistryFactory(watchFilter, maxWatchedDirectories.isExplicit()
+                            ? maxWatchedDirectories.get()
+                            : LinuxFileWatcherRegistryFactory.defaultMaxWatchedDirectories()));
                     }
                 } catch (NativeIntegrationUnavailableException e) {
                     LOGGER.debug("Native file system watching is not available for this operating system.", e);
@@ -280,11 +416,11 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuild
                 IndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()),
                 400000,
                 true);
-            return new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            return new DefaultResourceSnapshotterCacheService(resourceHashesCache, isMultiVariantJarHashing(DefaultInternalOptions.ofSystemProperties()));
         }
 
         ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
-            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ResourceFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING, PropertiesFileFilter.FILTER_NOTHING, stringInterner, LineEndingSensitivity.DEFAULT);
+            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ResourceFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING, PropertiesFileFilter.FILTER_NOTHING, stringInterner, LineEndingSensitivity.DEFAULT, isMemoryMappedZipInput(DefaultInternalOptions.ofSystemProperties()));
         }
 
         ClasspathHasher createClasspathHasher(ClasspathFingerprinter fingerprinter, FileCollectionFactory fileCollectionFactory) {
@@ -300,6 +436,13 @@ FileChangeListeners createFileChangeListeners(ListenerManager listenerManager) {
     @VisibleForTesting
     static class BuildSessionServices {
 
+        /**
+         * The options of the build session, which are the same as the options of its build trees.
+         */
+        private static InternalOptions internalOptions(StartParameter startParameter) {
+            return new DefaultInternalOptions(startParameter.getSystemPropertiesArgs());
+        }
+
         FileSystemDefaultExcludesProvider createFileSystemDefaultExcludesProvider(ListenerManager listenerManager) {
             return new DefaultFileSystemDefaultExcludesProvider(listenerManager);
         }
@@ -316,9 +459,11 @@ FileHasher createFileHasher(
             FileSystem fileSystem,
             StreamHasher streamHasher,
             StringInterner stringInterner,
-            FileHasherStatistics.Collector statisticsCollector
+            FileHasherStatistics.Collector statisticsCollector,
+            OffHeapFileInfoCaches offHeapFileInfoCaches,
+            StartParameter startParameter
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = newCachingFileHasher(streamHasher, cacheAccess, stringInterner, fileTimeStampInspector, fileSystem, statisticsCollector, offHeapFileInfoCaches, internalOptions(startParameter));
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -329,7 +474,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            StartParameter startParameter
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -338,6 +484,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                getSnapshottingPool(internalOptions(startParameter)),
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -359,7 +506,8 @@ OutputSnapshotter createOutputSnapshotter(FileCollectionSnapshotter fileCollecti
         FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegistrations(
             StringInterner stringInterner,
             FileCollectionSnapshotter fileCollectionSnapshotter,
-            ResourceSnapshotterCacheService resourceSnapshotterCacheService
+            ResourceSnapshotterCacheService resourceSnapshotterCacheService,
+            StartParameter startParameter
         ) {
             return new FileCollectionFingerprinterRegistrations(
                 stringInterner,
@@ -367,7 +515,8 @@ FileCollectionFingerprinterRegistrations createFileCollectionFingerprinterRegist
                 resourceSnapshotterCacheService,
                 ResourceFilter.FILTER_NOTHING,
                 ResourceEntryFilter.FILTER_NOTHING,
-                PropertiesFileFilter.FILTER_NOTHING
+                PropertiesFileFilter.FILTER_NOTHING,
+                isMemoryMappedZipInput(internalOptions(startParameter))
             );
         }
 
@@ -378,18 +527,20 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Fi
         InputFingerprinter createInputFingerprinter(
             FileCollectionSnapshotter snapshotter,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
-            ValueSnapshotter valueSnapshotter
+            ValueSnapshotter valueSnapshotter,
+            StartParameter startParameter
         ) {
-            return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter);
+            return new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, getInputFingerprintingPool(internalOptions(startParameter)));
         }
 
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             GlobalCacheLocations globalCacheLocations,
             CrossBuildFileHashCache store,
-            ResourceSnapshotterCacheService globalCache
+            ResourceSnapshotterCacheService globalCache,
+            StartParameter startParameter
         ) {
             IndexedCache<HashCode, HashCode> resourceHashesCache = store.createIndexedCache(IndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()), 800000, true);
-            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache, isMultiVariantJarHashing(internalOptions(startParameter)));
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
         }
     }
@@ -35,6 +35,8 @@
 import org.gradle.cache.internal.DefaultCrossBuildInMemoryCacheFactory;
 import org.gradle.initialization.DefaultLegacyTypesSupport;
 import org.gradle.initialization.LegacyTypesSupport;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.buildoption.StringInternalOption;
 import org.gradle.internal.classloader.ClassLoaderFactory;
 import org.gradle.internal.classloader.DefaultClassLoaderFactory;
 import org.gradle.internal.classpath.ClassPath;
@@ -43,6 +45,7 @@
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.impl.DefaultDeleter;
 import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.Hashing;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.installation.CurrentGradleInstallation;
 import org.gradle.internal.instantiation.InstantiatorFactory;
@@ -72,6 +75,12 @@
 
 public class WorkerSharedGlobalScopeServices extends BasicGlobalScopeServices {
 
+    /**
+     * Selects the hash function for file contents.
+     * Supported values are {@code MD5}, the default, and {@code MURMUR3-128}.
+     */
+    public static final StringInternalOption FILE_CONTENT_HASH_ALGORITHM = new StringInternalOption("org.gradle.internal.hash.file-content-algorithm", "MD5");
+
     protected final ClassPath additionalModuleClassPath;
 
     public WorkerSharedGlobalScopeServices(ClassPath additionalModuleClassPath) {
@@ -79,7 +88,8 @@ public WorkerSharedGlobalScopeServices(ClassPath additionalModuleClassPath) {
     }
 
     protected CacheFactory createCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory) {
-        return new DefaultCacheFactory(fileLockManager, executorFactory, progressLoggerFactory);
+        // Cache directories are shared between builds, so the options can only be set as system properties
+        return new DefaultCacheFactory(fileLockManager, executorFactory, progressLoggerFactory, DefaultInternalOptions.ofSystemProperties());
     }
 
     LegacyTypesSupport createLegacyTypesSupport() {
@@ -115,7 +125,9 @@ DefaultFilePropertyFactory createFilePropertyFactory(PropertyHost propertyHost,
     }
 
     StreamHasher createStreamHasher() {
-        return new DefaultStreamHasher();
+        // File hashes are shared between builds, so the algorithm can only be selected by a system property of the process
+        String algorithm = DefaultInternalOptions.ofSystemProperties().getOption(FILE_CONTENT_HASH_ALGORITHM).get();
+        return new DefaultStreamHasher(Hashing.fileContentFunction(algorithm));
     }
 
     Deleter createDeleter(Clock clock, FileSystem fileSystem, OperatingSystem os) {
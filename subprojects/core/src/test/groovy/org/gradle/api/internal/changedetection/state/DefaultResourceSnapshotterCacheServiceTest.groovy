@@ -18,17 +18,25 @@ package org.gradle.api.internal.changedetection.state
 
 import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext
 import org.gradle.internal.fingerprint.hashing.ResourceHasher
+import org.gradle.internal.fingerprint.hashing.ZipEntryContext
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.Hashing
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.serialize.HashCodeSerializer
 import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testfixtures.internal.TestInMemoryIndexedCache
+import org.junit.Rule
 import spock.lang.Specification
 
 
 class DefaultResourceSnapshotterCacheServiceTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
     def delegate = Mock(ResourceHasher)
     def path = "some"
     def snapshot = new RegularFileSnapshot(path, "path", TestHashCodes.hashCodeFrom(456), DefaultFileMetadata.file(3456, 456, FileMetadata.AccessType.DIRECT))
@@ -78,6 +86,54 @@ class DefaultResourceSnapshotterCacheServiceTest extends Specification {
         0 * _
     }
 
+    def "hashes zip files for the other zip hashers it has been used with"() {
+        def cache = new DefaultResourceSnapshotterCacheService(new TestInMemoryIndexedCache(new HashCodeSerializer()), true)
+        def runtimeResourceHasher = Mock(ResourceHasher)
+        def compileResourceHasher = Mock(ResourceHasher)
+        def runtimeZipHasher = new ZipHasher(runtimeResourceHasher)
+        def compileZipHasher = new ZipHasher(compileResourceHasher)
+        def runtimeConfigurationHash = TestHashCodes.hashCodeFrom(1)
+        def compileConfigurationHash = TestHashCodes.hashCodeFrom(2)
+        def firstJar = zipContext(zipWithEntry("first", "a.txt"))
+        def secondJar = zipContext(zipWithEntry("second", "b.txt"))
+
+        when:
+        cache.hashFile(firstJar, runtimeZipHasher, runtimeConfigurationHash)
+        cache.hashFile(firstJar, compileZipHasher, compileConfigurationHash)
+        then:
+        1 * runtimeResourceHasher.hash({ ZipEntryContext entry -> entry.fullName == "a.txt" }) >> TestHashCodes.hashCodeFrom(123)
+        1 * compileResourceHasher.hash({ ZipEntryContext entry -> entry.fullName == "a.txt" }) >> TestHashCodes.hashCodeFrom(234)
+        0 * _
+
+        when:
+        def runtimeHash = cache.hashFile(secondJar, runtimeZipHasher, runtimeConfigurationHash)
+        then:
+        1 * runtimeResourceHasher.hash({ ZipEntryContext entry -> entry.fullName == "b.txt" }) >> TestHashCodes.hashCodeFrom(345)
+        1 * compileResourceHasher.hash({ ZipEntryContext entry -> entry.fullName == "b.txt" }) >> null
+        0 * _
+
+        when:
+        def compileHash = cache.hashFile(secondJar, compileZipHasher, compileConfigurationHash)
+        then:
+        0 * _
+        runtimeHash != null
+        compileHash != null
+        compileHash != runtimeHash
+    }
+
+    private TestFile zipWithEntry(String name, String entryName) {
+        def contents = temporaryFolder.createDir(name)
+        contents.file(entryName) << name
+        def zip = temporaryFolder.file("${name}.jar")
+        contents.zipTo(zip)
+        return zip
+    }
+
+    private static RegularFileSnapshotContext zipContext(TestFile zip) {
+        def snapshot = new RegularFileSnapshot(zip.absolutePath, zip.name, Hashing.hashFile(zip), DefaultFileMetadata.file(zip.lastModified(), zip.length(), FileMetadata.AccessType.DIRECT))
+        return new DefaultRegularFileSnapshotContext({ [zip.name] as String[] }, snapshot)
+    }
+
     private HashCode getConfigurationHash() {
         def hasher = Hashing.newHasher()
         hasher.putString(delegate.getClass().getName())
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+class OffHeapFileInfoCacheTest extends Specification {
+    def cache = new OffHeapFileInfoCache(1000)
+
+    def "returns cached hash when length and timestamp match"() {
+        def hash = Hashing.hashString("content")
+
+        when:
+        cache.put("/some/file", hash, 12, 1234)
+
+        then:
+        cache.getIfPresent("/some/file", 12, 1234) == hash
+        cache.getIfPresent("/some/file", 13, 1234) == null
+        cache.getIfPresent("/some/file", 12, 1235) == null
+        cache.getIfPresent("/some/other-file", 12, 1234) == null
+    }
+
+    def "replaces and removes entries"() {
+        def hash = Hashing.hashString("content")
+        def newHash = Hashing.hashString("new content")
+        cache.put("/some/file", hash, 12, 1234)
+
+        when:
+        cache.put("/some/file", newHash, 16, 1240)
+
+        then:
+        cache.getIfPresent("/some/file", 16, 1240) == newHash
+        cache.getIfPresent("/some/file", 12, 1234) == null
+
+        when:
+        cache.remove("/some/file")
+
+        then:
+        cache.getIfPresent("/some/file", 16, 1240) == null
+    }
+
+    def "does not cache hashes of other lengths"() {
+        def hash = Hashing.hashString("content")
+        cache.put("/some/file", hash, 12, 1234)
+
+        when:
+        cache.put("/some/file", Hashing.sha1().hashString("content"), 12, 1240)
+
+        then:
+        cache.getIfPresent("/some/file", 12, 1234) == null
+        cache.getIfPresent("/some/file", 12, 1240) == null
+    }
+
+    def "never returns the hash of another path when full"() {
+        def paths = (1..10000).collect { "/some/dir/file$it".toString() }
+
+        when:
+        paths.each { cache.put(it, Hashing.hashString(it), 1, 1) }
+
+        then:
+        def cached = paths.findAll { cache.getIfPresent(it, 1, 1) != null }
+        !cached.empty
+        cached.size() < paths.size()
+        cached.every { cache.getIfPresent(it, 1, 1) == Hashing.hashString(it) }
+    }
+
+    def "keeps the entry when the same hash is cached again"() {
+        def hash = Hashing.hashString("content")
+        cache.put("/some/file", hash, 12, 1234)
+
+        when:
+        cache.put("/some/file", hash, 12, 1234)
+
+        then:
+        cache.getIfPresent("/some/file", 12, 1234) == hash
+    }
+
+    def "closed cache contains no entries"() {
+        def hash = Hashing.hashString("content")
+        cache.put("/some/file", hash, 12, 1234)
+
+        when:
+        cache.close()
+        cache.put("/some/other-file", hash, 12, 1234)
+        cache.remove("/some/file")
+
+        then:
+        cache.getIfPresent("/some/file", 12, 1234) == null
+        cache.getIfPresent("/some/other-file", 12, 1234) == null
+
+        when:
+        cache.close()
+
+        then:
+        noExceptionThrown()
+    }
+}
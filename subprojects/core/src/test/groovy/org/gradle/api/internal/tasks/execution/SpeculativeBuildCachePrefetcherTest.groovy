@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.TaskInternal
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.execution.plan.LocalTaskNode
+import org.gradle.internal.execution.history.BuildCacheKeyHistory
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.TestHashCodes
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class SpeculativeBuildCachePrefetcherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def buildCacheController = Mock(BuildCacheController)
+    def buildCacheKeyHistory = Mock(BuildCacheKeyHistory)
+    def executionHistoryStore = Mock(ExecutionHistoryStore)
+    def prefetcher = new SpeculativeBuildCachePrefetcher(buildCacheController, buildCacheKeyHistory, executionHistoryStore)
+    def key = Stub(BuildCacheKey)
+    def outputFile = temporaryFolder.file("build/output.txt")
+    def node = Stub(LocalTaskNode) {
+        getTask() >> Stub(TaskInternal) {
+            getPath() >> ":compile"
+        }
+    }
+
+    def "prefetches the previous entry of a waiting task whose outputs were removed"() {
+        when:
+        def work = prefetcher.prepare(node, [] as Set)
+
+        then:
+        1 * buildCacheController.enabled >> true
+        0 * _
+
+        when:
+        work.run()
+
+        then:
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.of(key)
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecutionWithOutputFile())
+        1 * buildCacheController.prefetch([key])
+        0 * _
+    }
+
+    def "discards the prefetched entry once the task has finished"() {
+        when:
+        prefetcher.prepare(node, [] as Set).run()
+
+        then:
+        1 * buildCacheController.enabled >> true
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.of(key)
+        1 * executionHistoryStore.load(":compile") >> Optional.empty()
+        1 * buildCacheController.prefetch([key])
+
+        when:
+        prefetcher.discard(node)
+        prefetcher.discard(node)
+
+        then:
+        1 * buildCacheController.discardPrefetched([key])
+        0 * _
+    }
+
+    def "does not discard anything for a task without prefetched entry"() {
+        when:
+        prefetcher.discard(node)
+
+        then:
+        0 * _
+    }
+
+    def "does not prefetch when the outputs of the previous execution still exist"() {
+        outputFile.text = "output"
+
+        when:
+        prefetcher.prepare(node, [] as Set).run()
+
+        then:
+        1 * buildCacheController.enabled >> true
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.of(key)
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecutionWithOutputFile())
+        0 * buildCacheController.prefetch(_)
+    }
+
+    def "prefetches the previous entry when there is no execution history"() {
+        when:
+        prefetcher.prepare(node, [] as Set).run()
+
+        then:
+        1 * buildCacheController.enabled >> true
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.of(key)
+        1 * executionHistoryStore.load(":compile") >> Optional.empty()
+        1 * buildCacheController.prefetch([key])
+    }
+
+    def "ignores outputs that were missing after the previous execution"() {
+        def previousExecutionState = Stub(PreviousExecutionState) {
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of("missing", new MissingFileSnapshot(outputFile.absolutePath, AccessType.DIRECT))
+        }
+
+        when:
+        prefetcher.prepare(node, [] as Set).run()
+
+        then:
+        1 * buildCacheController.enabled >> true
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.of(key)
+        1 * executionHistoryStore.load(":compile") >> Optional.of(previousExecutionState)
+        0 * buildCacheController.prefetch(_)
+    }
+
+    def "does nothing for a task without recorded key"() {
+        when:
+        prefetcher.prepare(node, [] as Set).run()
+
+        then:
+        1 * buildCacheController.enabled >> true
+        1 * buildCacheKeyHistory.load(":compile") >> Optional.empty()
+        0 * _
+    }
+
+    def "does nothing when the build cache is disabled"() {
+        when:
+        def work = prefetcher.prepare(node, [] as Set)
+
+        then:
+        work == null
+        1 * buildCacheController.enabled >> false
+        0 * _
+    }
+
+    private PreviousExecutionState previousExecutionWithOutputFile() {
+        def outputSnapshot = new RegularFileSnapshot(outputFile.absolutePath, outputFile.name, TestHashCodes.hashCodeFrom(1234), DefaultFileMetadata.file(1, 6, AccessType.DIRECT))
+        Stub(PreviousExecutionState) {
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of("output", outputSnapshot)
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.TaskInternal
+import org.gradle.execution.plan.ExecutionNodeAccessHierarchy
+import org.gradle.execution.plan.LocalTaskNode
+import org.gradle.internal.execution.history.ExecutionHistoryStore
+import org.gradle.internal.execution.history.PreviousExecutionState
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.FileType
+import org.gradle.internal.fingerprint.FileCollectionFingerprint
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.vfs.FileSystemAccess
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+class SpeculativeTaskInputSnapshotterTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def executionHistoryStore = Mock(ExecutionHistoryStore)
+    def fileSystemAccess = Mock(FileSystemAccess)
+    def outputHierarchy = Stub(ExecutionNodeAccessHierarchy) {
+        getNodesAccessing(_) >> ([] as Set)
+    }
+    def snapshotter = new SpeculativeTaskInputSnapshotter(executionHistoryStore, fileSystemAccess, outputHierarchy)
+
+    def sourceFile = temporaryFolder.file("src/Source.java").absolutePath
+    def generatedDir = temporaryFolder.file("build/generated").absolutePath
+    def generatedFile = temporaryFolder.file("build/generated/Generated.java").absolutePath
+    def compile = taskNode(":compile")
+    def generate = taskNode(":generate")
+
+    def "does not snapshot inputs under the previous outputs of unexecuted tasks"() {
+        def unexecutedNodes = ConcurrentHashMap.newKeySet()
+        unexecutedNodes.addAll([compile, generate])
+        executionHistoryStore.load(":compile") >> Optional.of(previousExecution([sourceFile, generatedFile], temporaryFolder.file("build/classes").absolutePath))
+        executionHistoryStore.load(":generate") >> Optional.of(previousExecution([], generatedDir))
+
+        when:
+        snapshotter.prepare(compile, unexecutedNodes).run()
+
+        then:
+        1 * fileSystemAccess.readRegularFileContentHash(sourceFile)
+        0 * fileSystemAccess.readRegularFileContentHash(_)
+
+        when:
+        unexecutedNodes.remove(generate)
+        snapshotter.prepare(compile, unexecutedNodes).run()
+
+        then:
+        1 * fileSystemAccess.readRegularFileContentHash(sourceFile)
+        1 * fileSystemAccess.readRegularFileContentHash(generatedFile)
+    }
+
+    def "loads the execution history of each task at most once"() {
+        def unexecutedNodes = [compile, generate] as Set
+        def compileExecution = previousExecution([sourceFile, generatedFile], temporaryFolder.file("build/classes").absolutePath)
+        def generateExecution = previousExecution([], generatedDir)
+
+        when:
+        snapshotter.prepare(compile, unexecutedNodes).run()
+
+        then:
+        1 * executionHistoryStore.load(":compile") >> Optional.of(compileExecution)
+        1 * executionHistoryStore.load(":generate") >> Optional.of(generateExecution)
+        1 * fileSystemAccess.readRegularFileContentHash(sourceFile)
+        0 * _
+
+        when:
+        snapshotter.prepare(generate, unexecutedNodes).run()
+        snapshotter.prepare(compile, unexecutedNodes).run()
+
+        then:
+        1 * executionHistoryStore.load(":generate") >> Optional.of(generateExecution)
+        1 * executionHistoryStore.load(":compile") >> Optional.of(compileExecution)
+        1 * fileSystemAccess.readRegularFileContentHash(sourceFile)
+        0 * _
+    }
+
+    def "does nothing for a task without execution history"() {
+        when:
+        snapshotter.prepare(compile, [compile] as Set).run()
+
+        then:
+        1 * executionHistoryStore.load(":compile") >> Optional.empty()
+        0 * fileSystemAccess._
+    }
+
+    private LocalTaskNode taskNode(String path) {
+        Stub(LocalTaskNode) {
+            getTask() >> Stub(TaskInternal) {
+                getPath() >> path
+            }
+        }
+    }
+
+    private PreviousExecutionState previousExecution(List<String> inputFiles, String outputRoot) {
+        def fingerprints = inputFiles.collectEntries { path ->
+            [(path): Stub(FileSystemLocationFingerprint) {
+                getType() >> FileType.RegularFile
+            }]
+        }
+        Stub(PreviousExecutionState) {
+            getInputFileProperties() >> ImmutableSortedMap.of("sources", Stub(FileCollectionFingerprint) {
+                getFingerprints() >> fingerprints
+            })
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of("output", new MissingFileSnapshot(outputRoot, AccessType.DIRECT))
+        }
+    }
+}
@@ -35,6 +35,8 @@ import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
 import org.gradle.caching.internal.services.DefaultBuildCacheControllerFactory
 import org.gradle.caching.local.DirectoryBuildCache
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.buildoption.DefaultInternalOptions
+import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.vfs.FileSystemAccess
 import org.gradle.util.Path
@@ -68,7 +70,9 @@ class DefaultBuildCacheControllerFactoryTest extends Specification {
             Stub(FileSystemAccess),
             Stub(StringInterner),
             Stub(TemporaryFileProvider),
-            Stub(BuildCacheEntryPacker)
+            Stub(BuildCacheEntryPacker),
+            Stub(ExecutorFactory),
+            new DefaultInternalOptions([:])
         ).createController(Path.path("test"), config, TestUtil.instantiatorFactory().inject())
         assert controllerType.isInstance(controller)
         controllerType.cast(controller)
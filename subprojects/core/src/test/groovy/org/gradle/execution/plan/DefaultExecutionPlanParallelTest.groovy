@@ -123,6 +123,24 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         assertAllWorkComplete()
     }
 
+    def "starts task with longest critical path first when execution time estimates are available"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+        def estimates = [(a): 100L, (b): 10L, (c): 200L]
+        executionPlan.setExecutionTimeEstimator({ LocalTaskNode node -> estimates[node.task] } as NodeExecutionTimeEstimator)
+
+        when:
+        addToGraphAndPopulate(a, c)
+
+        then:
+        executionPlan.tasks as List == [a, b, c]
+        assertTasksReady(b, a)
+        assertTaskReadyAndNoMoreToStart(c)
+        assertAllWorkComplete()
+    }
+
     def "does not attempt to run finalizer of task whose dependencies have failed"() {
         given:
         Task broken = task("broken", type: Async, failure: new RuntimeException())
@@ -113,4 +113,45 @@ class DefaultPlanExecutorTest extends Specification {
         1 * workSource.collectFailures([])
         0 * workSource._
     }
+
+    def "runs speculative work without holding worker lease when no work is ready to start"() {
+        def node = Mock(LocalTaskNode)
+        def speculativeWork = Mock(Runnable)
+
+        when:
+        def result = executor.process(workSource, worker)
+
+        then:
+        result.failures.empty
+        1 * workerLeaseService.currentWorkerLease >> workerLease
+
+        then:
+        1 * cancellationHandler.isCancellationRequested() >> false
+        1 * workSource.executionState() >> WorkSource.State.MaybeWorkReadyToStart
+        1 * workerLease.tryLock() >> true
+        1 * workSource.selectNext() >> WorkSource.Selection.noWorkReadyToStart()
+        1 * workSource.selectSpeculativeWork() >> speculativeWork
+        1 * workerLease.unlock()
+
+        then:
+        1 * speculativeWork.run() >> { throw new RuntimeException("broken") }
+
+        then:
+        1 * cancellationHandler.isCancellationRequested() >> false
+        1 * workSource.executionState() >> WorkSource.State.MaybeWorkReadyToStart
+        1 * workerLease.tryLock() >> true
+        1 * workSource.selectNext() >> WorkSource.Selection.of(node)
+        1 * worker.execute(node)
+        1 * workSource.finishedExecuting(node, null)
+
+        then:
+        1 * cancellationHandler.isCancellationRequested() >> false
+        1 * workSource.executionState() >> WorkSource.State.NoMoreWorkToStart
+
+        then:
+        1 * workerLease.tryLock() >> true
+        3 * workSource.allExecutionComplete() >> true
+        1 * workSource.collectFailures([])
+        0 * workSource._
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache
+import org.gradle.api.internal.changedetection.state.FileHasherStatistics
+import org.gradle.api.internal.changedetection.state.FileTimeStampInspector
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.IndexedCache
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DefaultChecksumServiceTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def fileStore = Stub(CrossBuildFileHashCache) {
+        createIndexedCache(_, _, _) >> Stub(IndexedCache) {
+            getIfPresent(_) >> null
+        }
+    }
+    def statisticsCollector = Mock(FileHasherStatistics.Collector)
+    def checksumService = new DefaultChecksumService(new StringInterner(), fileStore, TestFiles.fileSystem(), Stub(FileTimeStampInspector), statisticsCollector)
+    def file = tmpDir.file("module.jar")
+    def recordedSha1 = TestHashCodes.hashCodeFrom(0x1234)
+
+    def setup() {
+        file.text = "content"
+        file.lastModified = System.currentTimeMillis() - 60_000
+    }
+
+    def "reuses recorded checksums of an unchanged file"() {
+        checksumService.recordChecksums(file, [sha1: recordedSha1])
+
+        when:
+        def sha1 = checksumService.sha1(file)
+        def sha1ByAlgorithm = checksumService.hash(file, "SHA-1")
+
+        then:
+        sha1 == recordedSha1
+        sha1ByAlgorithm == recordedSha1
+        0 * statisticsCollector._
+
+        when:
+        def sha256 = checksumService.sha256(file)
+
+        then:
+        sha256 == Hashing.sha256().hashBytes(file.bytes)
+        1 * statisticsCollector.reportFileHashed(file.length())
+    }
+
+    def "hashes the file when its length changed after recording checksums"() {
+        def lastModified = file.lastModified()
+        checksumService.recordChecksums(file, [sha1: recordedSha1])
+
+        when:
+        file << " changed"
+        file.lastModified = lastModified
+        def sha1 = checksumService.sha1(file)
+
+        then:
+        sha1 == Hashing.sha1().hashBytes(file.bytes)
+        1 * statisticsCollector.reportFileHashed(file.length())
+    }
+
+    def "hashes the file when its modification time changed after recording checksums"() {
+        checksumService.recordChecksums(file, [sha1: recordedSha1])
+
+        when:
+        file.lastModified = file.lastModified() + 2000
+        def sha1 = checksumService.sha1(file)
+
+        then:
+        sha1 == Hashing.sha1().hashBytes(file.bytes)
+        1 * statisticsCollector.reportFileHashed(file.length())
+    }
+
+    def "does not reuse recorded checksums once the file changed"() {
+        def lastModified = file.lastModified()
+        checksumService.recordChecksums(file, [sha1: recordedSha1])
+        file.lastModified = lastModified + 2000
+        checksumService.sha1(file)
+
+        when:
+        file.lastModified = lastModified
+        def sha1 = checksumService.sha1(file)
+
+        then:
+        sha1 == Hashing.sha1().hashBytes(file.bytes)
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.artifacts;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Sets;
 import org.gradle.StartParameter;
 import org.gradle.api.internal.ClassPathRegistry;
@@ -65,6 +66,7 @@
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransport;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory;
 import org.gradle.api.internal.artifacts.transform.TransformStepNodeDependencyResolver;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.artifacts.verification.signatures.DefaultSignatureVerificationServiceFactory;
 import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationServiceFactory;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
@@ -97,6 +99,7 @@
 import org.gradle.internal.build.BuildState;
 import org.gradle.internal.build.BuildStateRegistry;
 import org.gradle.internal.buildoption.FeatureFlags;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.classpath.ClasspathBuilder;
 import org.gradle.internal.classpath.ClasspathWalker;
 import org.gradle.internal.component.SelectionFailureHandler;
@@ -172,8 +175,10 @@
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * The set of dependency management services that are created per build in the tree.
@@ -265,8 +270,8 @@ RuntimeShadedJarFactory createRuntimeShadedJarFactory(GeneratedGradleJarCache ja
         return new RuntimeShadedJarFactory(jarCache, progressLoggerFactory, classpathWalker, classpathBuilder, executor);
     }
 
-    ModuleExclusions createModuleExclusions() {
-        return new ModuleExclusions();
+    ModuleExclusions createModuleExclusions(InternalOptions internalOptions) {
+        return new ModuleExclusions(internalOptions.getOption(ModuleExclusions.BITSET_EXCLUDES).get());
     }
 
     TextUriResourceLoader.Factory createTextUrlResourceLoaderFactory(FileStoreAndIndexProvider fileStoreAndIndexProvider, RepositoryTransportFactory repositoryTransportFactory, RelativeFilePathResolver resolver) {
@@ -313,8 +318,11 @@ RepositoryTransportFactory createRepositoryTransportFactory(
         ProducerGuard<ExternalResourceName> producerGuard,
         FileResourceRepository fileResourceRepository,
         ChecksumService checksumService,
-        StartParameterResolutionOverride startParameterResolutionOverride
+        StartParameterResolutionOverride startParameterResolutionOverride,
+        ServiceRegistry serviceRegistry
     ) {
+        // The verification override is looked up lazily, because it needs a transport factory to download keys
+        Supplier<Set<ChecksumKind>> verifiedChecksums = Suppliers.memoize(() -> serviceRegistry.get(DependencyVerificationOverride.class).getVerifiedChecksums());
         return artifactCachesProvider.withWritableCache((md, manager) -> new RepositoryTransportFactory(
             resourceConnectorFactories,
             temporaryFileProvider,
@@ -325,7 +333,8 @@ RepositoryTransportFactory createRepositoryTransportFactory(
             startParameterResolutionOverride,
             producerGuard,
             fileResourceRepository,
-            checksumService
+            checksumService,
+            verifiedChecksums
         ));
     }
 
@@ -29,6 +29,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.ExternalResourceCachePolicy;
 import org.gradle.api.internal.artifacts.repositories.resolver.MetadataFetchingCost;
 import org.gradle.api.internal.artifacts.verification.exceptions.DependencyVerificationException;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.artifacts.verification.signatures.BuildTreeDefinedKeys;
 import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationServiceFactory;
 import org.gradle.api.internal.component.ArtifactType;
@@ -68,6 +69,7 @@
 import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 
 @ServiceScope(Scopes.BuildTree.class)
 public class StartParameterResolutionOverride {
@@ -283,6 +285,11 @@ public ResolvedArtifactResult verifiedArtifact(ResolvedArtifactResult artifact)
             return delegate.verifiedArtifact(artifact);
         }
 
+        @Override
+        public Set<ChecksumKind> getVerifiedChecksums() {
+            return delegate.getVerifiedChecksums();
+        }
+
         @Override
         public void stop() {
             CompositeStoppable.stoppable(delegate).stop();
@@ -31,6 +31,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.report.DependencyVerificationReportWriter;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.verification.report.VerificationReport;
 import org.gradle.api.internal.artifacts.verification.exceptions.DependencyVerificationException;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.artifacts.verification.serializer.DependencyVerificationsXmlReader;
 import org.gradle.api.internal.artifacts.verification.signatures.BuildTreeDefinedKeys;
 import org.gradle.api.internal.artifacts.verification.signatures.SignatureVerificationService;
@@ -58,6 +59,7 @@
 import java.net.URI;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -199,6 +201,15 @@ public String buildConsoleErrorMessage(VerificationReport report) {
         return errorMessage;
     }
 
+    @Override
+    public Set<ChecksumKind> getVerifiedChecksums() {
+        Set<ChecksumKind> kinds = EnumSet.noneOf(ChecksumKind.class);
+        verifier.getVerificationMetadata().forEach(md -> md.getArtifactVerifications().forEach(av -> {
+            av.getChecksums().forEach(checksum -> kinds.add(checksum.getKind()));
+        }));
+        return kinds;
+    }
+
     @Override
     public ResolvedArtifactResult verifiedArtifact(ResolvedArtifactResult artifact) {
         return new ResolvedArtifactResult() {
@@ -19,9 +19,12 @@
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.internal.component.external.model.ModuleComponentGraphResolveState;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Set;
 
 public interface DependencyVerificationOverride {
     DependencyVerificationOverride NO_VERIFICATION = (original, resolveContextName, resolutionStrategy) -> original;
@@ -54,4 +57,12 @@ default void artifactsAccessed(String displayName) {
     default ResolvedArtifactResult verifiedArtifact(ResolvedArtifactResult artifact) {
         return artifact;
     }
+
+    /**
+     * Returns the kinds of checksums this override computes for the files it verifies,
+     * so that they can be computed while the files are downloaded.
+     */
+    default Set<ChecksumKind> getVerifiedChecksums() {
+        return Collections.emptySet();
+    }
 }
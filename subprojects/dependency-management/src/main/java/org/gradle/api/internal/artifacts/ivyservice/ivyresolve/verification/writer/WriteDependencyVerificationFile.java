@@ -77,6 +77,7 @@
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -179,6 +180,17 @@ public ModuleComponentRepository<ModuleComponentGraphResolveState> overrideDepen
         return new DependencyVerifyingModuleComponentRepository(original, this, generatePgpInfo);
     }
 
+    @Override
+    public Set<ChecksumKind> getVerifiedChecksums() {
+        Set<ChecksumKind> kinds = EnumSet.noneOf(ChecksumKind.class);
+        for (String checksum : checksums) {
+            if (!PGP.equals(checksum) && SUPPORTED_CHECKSUMS.contains(checksum)) {
+                kinds.add(ChecksumKind.valueOf(checksum));
+            }
+        }
+        return kinds;
+    }
+
     @Override
     public void buildFinished(GradleInternal gradle) {
         ensureOutputDirCreated();
@@ -46,6 +46,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.ComponentState;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.PrefetchingComponentMetaDataResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultCapabilitiesConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.LastCandidateCapabilityResolver;
@@ -60,10 +61,15 @@
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
 import org.gradle.api.specs.Spec;
 import org.gradle.internal.ImmutableActionSet;
+import org.gradle.internal.buildoption.IntegerInternalOption;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.component.external.model.ModuleComponentGraphResolveStateFactory;
 import org.gradle.internal.component.model.GraphVariantSelector;
 import org.gradle.internal.component.model.ComponentIdGenerator;
 import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.instantiation.InstantiatorFactory;
 import org.gradle.internal.model.CalculatedValueContainerFactory;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -81,6 +87,17 @@
 
 public class DefaultArtifactDependencyResolver implements ArtifactDependencyResolver {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultArtifactDependencyResolver.class);
+
+    /**
+     * Enables speculatively resolving the metadata of the dependencies of each resolved component, see {@link PrefetchingComponentMetaDataResolver}.
+     */
+    public static final InternalFlag METADATA_PREFETCHING = new InternalFlag("org.gradle.internal.dependency-resolution.metadata-prefetching");
+
+    /**
+     * The maximum number of components for which metadata is prefetched at the same time, per resolution.
+     */
+    public static final IntegerInternalOption METADATA_PREFETCHING_CONCURRENCY = new IntegerInternalOption("org.gradle.internal.dependency-resolution.metadata-prefetching.concurrency", 16);
+
     private final DependencyMetadataFactory dependencyMetadataFactory;
     private final List<ResolverProviderFactory> resolverFactories;
     private final ResolveIvyFactory ivyFactory;
@@ -100,6 +117,8 @@ public class DefaultArtifactDependencyResolver implements ArtifactDependencyReso
     private final ModuleComponentGraphResolveStateFactory moduleResolveStateFactory;
     private final ComponentIdGenerator idGenerator;
     private final GraphVariantSelector variantSelector;
+    private final ExecutorFactory executorFactory;
+    private final InternalOptions internalOptions;
 
     public DefaultArtifactDependencyResolver(
         BuildOperationExecutor buildOperationExecutor,
@@ -120,7 +139,9 @@ public DefaultArtifactDependencyResolver(
         AttributeDesugaring attributeDesugaring,
         ModuleComponentGraphResolveStateFactory moduleResolveStateFactory,
         ComponentIdGenerator idGenerator,
-        GraphVariantSelector variantSelector
+        GraphVariantSelector variantSelector,
+        ExecutorFactory executorFactory,
+        InternalOptions internalOptions
     ) {
         this.resolverFactories = resolverFactories;
         this.ivyFactory = ivyFactory;
@@ -141,6 +162,8 @@ public DefaultArtifactDependencyResolver(
         this.moduleResolveStateFactory = moduleResolveStateFactory;
         this.idGenerator = idGenerator;
         this.variantSelector = variantSelector;
+        this.executorFactory = executorFactory;
+        this.internalOptions = internalOptions;
     }
 
     @Override
@@ -162,13 +185,26 @@ public void resolve(
 
         ComponentResolvers userResolvers = createUserResolverChain(resolveContext, repositories, metadataHandler, consumerSchema);
         ComponentResolvers resolvers = createResolvers(resolveContext, projectDependencyResolver, userResolvers);
-        DependencyGraphBuilder builder = createDependencyGraphBuilder(resolvers, resolveContext.getResolutionStrategy(), metadataHandler, edgeFilter, consumerSchema, moduleExclusions);
+        ComponentMetaDataResolver componentMetaDataResolver = new ClientModuleResolver(resolvers.getComponentResolver(), dependencyMetadataFactory, moduleResolveStateFactory);
+        PrefetchingComponentMetaDataResolver prefetchingResolver = null;
+        if (internalOptions.getOption(METADATA_PREFETCHING).get()) {
+            ManagedExecutor executor = executorFactory.create("Dependency metadata prefetching", internalOptions.getOption(METADATA_PREFETCHING_CONCURRENCY).get());
+            prefetchingResolver = new PrefetchingComponentMetaDataResolver(componentMetaDataResolver, versionSelectorScheme, buildOperationExecutor, executor);
+            componentMetaDataResolver = prefetchingResolver;
+        }
+        DependencyGraphBuilder builder = createDependencyGraphBuilder(resolvers, componentMetaDataResolver, resolveContext.getResolutionStrategy(), metadataHandler, edgeFilter, consumerSchema, moduleExclusions);
 
         VariantArtifactResolver variantResolver = new DefaultVariantArtifactResolver(resolvers.getArtifactResolver(), artifactTypeRegistry, resolvedVariantCache);
         DependencyGraphVisitor artifactsGraphVisitor = new ResolvedArtifactsGraphVisitor(artifactsVisitor, variantResolver, artifactTypeRegistry, calculatedValueContainerFactory);
 
         // Resolve the dependency graph
-        builder.resolve(resolveContext, new CompositeDependencyGraphVisitor(graphVisitor, artifactsGraphVisitor), includeSyntheticDependencies);
+        try {
+            builder.resolve(resolveContext, new CompositeDependencyGraphVisitor(graphVisitor, artifactsGraphVisitor), includeSyntheticDependencies);
+        } finally {
+            if (prefetchingResolver != null) {
+                prefetchingResolver.stop();
+            }
+        }
     }
 
     private static void validateResolutionStrategy(ResolutionStrategyInternal resolutionStrategy) {
@@ -187,14 +223,13 @@ private static void failOnDependencyLockingConflictingWith(String conflicting) {
 
     private DependencyGraphBuilder createDependencyGraphBuilder(
         ComponentResolvers componentSource,
+        ComponentMetaDataResolver componentMetaDataResolver,
         ResolutionStrategyInternal resolutionStrategy,
         GlobalDependencyResolutionRules globalRules,
         Spec<? super DependencyMetadata> edgeFilter,
         AttributesSchemaInternal attributesSchema,
         ModuleExclusions moduleExclusions
     ) {
-        ComponentMetaDataResolver componentMetaDataResolver = new ClientModuleResolver(componentSource.getComponentResolver(), dependencyMetadataFactory, moduleResolveStateFactory);
-
         ModuleConflictHandler conflictHandler = createModuleConflictHandler(resolutionStrategy, globalRules);
         DefaultCapabilitiesConflictHandler capabilitiesConflictHandler = createCapabilitiesConflictHandler(resolutionStrategy.getCapabilitiesResolutionRules());
         DependencySubstitutionApplicator applicator = createDependencySubstitutionApplicator(resolutionStrategy);
@@ -22,8 +22,10 @@
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.LoggingExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.NormalizingExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.OptimizingExcludeFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.BitSetExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple.DefaultExcludeFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec;
+import org.gradle.internal.buildoption.InternalFlag;
 import org.gradle.internal.component.model.ExcludeMetadata;
 import org.gradle.internal.component.model.IvyArtifactName;
 
@@ -33,23 +35,33 @@
 import java.util.Set;
 
 public class ModuleExclusions {
+    /**
+     * Enables representing the sets of excluded modules and groups as bit sets, see {@link BitSetExcludeFactory}.
+     */
+    public static final InternalFlag BITSET_EXCLUDES = new InternalFlag("org.gradle.internal.dependency-resolution.bitset-excludes");
+
     private final CachingExcludeFactory.MergeCaches mergeCaches = new CachingExcludeFactory.MergeCaches();
-    // please keep the formatting below as it helps enabling or disabling stages
-    private final ExcludeFactory factory = new OptimizingExcludeFactory(// optimizes for nulls, 2-params, ... mandatory
-        new CachingExcludeFactory(// caches the result of TL operations
-            LoggingExcludeFactory.maybeLog(new NormalizingExcludeFactory(// performs algebra
-                new CachingExcludeFactory(// caches the result of optimization operations
-                    new DefaultExcludeFactory(), // the end of the chain, mandatory
-                    mergeCaches // shares the same caches as the top level one as after reducing we can find already cached merge operations
-                )
-            )),
-            mergeCaches
-        )
-    );
+    private final ExcludeFactory factory;
     private final Map<ExcludeMetadata, ExcludeSpec> metadataToExcludeCache = Maps.newConcurrentMap();
     private final ExcludeSpec nothing;
 
     public ModuleExclusions() {
+        this(false);
+    }
+
+    public ModuleExclusions(boolean bitSetExcludes) {
+        // please keep the formatting below as it helps enabling or disabling stages
+        factory = new OptimizingExcludeFactory(// optimizes for nulls, 2-params, ... mandatory
+            new CachingExcludeFactory(// caches the result of TL operations
+                LoggingExcludeFactory.maybeLog(new NormalizingExcludeFactory(// performs algebra
+                    new CachingExcludeFactory(// caches the result of optimization operations
+                        bitSetExcludes ? new BitSetExcludeFactory() : new DefaultExcludeFactory(), // the end of the chain, mandatory
+                        mergeCaches // shares the same caches as the top level one as after reducing we can find already cached merge operations
+                    )
+                )),
+                mergeCaches
+            )
+        );
         nothing = factory.nothing();
     }
 
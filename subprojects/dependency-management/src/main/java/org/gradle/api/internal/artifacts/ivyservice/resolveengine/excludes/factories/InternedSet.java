@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+import org.gradle.internal.Cast;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable set of values which have been interned in a {@link Table}, represented
+ * as a bit set of the indices of the values in the table.
+ *
+ * Unions, intersections and comparisons of sets interned in the same table are computed
+ * on the bit sets, without looking at the values. Other sets are handled as regular sets.
+ */
+public final class InternedSet<T> extends AbstractSet<T> {
+    private final Table<T> table;
+    private final BitSet indices;
+    private final int size;
+    private final int hashCode;
+
+    private InternedSet(Table<T> table, BitSet indices) {
+        this.table = table;
+        this.indices = indices;
+        this.size = indices.cardinality();
+        int hashCode = 0;
+        for (int index = indices.nextSetBit(0); index >= 0; index = indices.nextSetBit(index + 1)) {
+            hashCode += Objects.hashCode(table.get(index));
+        }
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns the intersection of the given sets, as a new set.
+     */
+    public static <T> Set<T> intersection(Set<T> left, Set<T> right) {
+        if (isSameTable(left, right)) {
+            InternedSet<T> internedLeft = (InternedSet<T>) left;
+            BitSet common = (BitSet) internedLeft.indices.clone();
+            common.and(((InternedSet<T>) right).indices);
+            return new InternedSet<>(internedLeft.table, common);
+        }
+        Set<T> common = Sets.newHashSet(right);
+        common.retainAll(left);
+        return common;
+    }
+
+    /**
+     * Returns the union of the given sets, as a new set.
+     */
+    public static <T> Set<T> union(Collection<? extends Set<T>> sets) {
+        Iterator<? extends Set<T>> iterator = sets.iterator();
+        Set<T> first = iterator.next();
+        if (first instanceof InternedSet && sets.stream().allMatch(set -> isSameTable(first, set))) {
+            BitSet all = new BitSet();
+            for (Set<T> set : sets) {
+                all.or(((InternedSet<T>) set).indices);
+            }
+            return new InternedSet<>(((InternedSet<T>) first).table, all);
+        }
+        Set<T> all = Sets.newHashSet();
+        for (Set<T> set : sets) {
+            all.addAll(set);
+        }
+        return all;
+    }
+
+    private static boolean isSameTable(Set<?> left, Set<?> right) {
+        return left instanceof InternedSet
+            && right instanceof InternedSet
+            && ((InternedSet<?>) left).table == ((InternedSet<?>) right).table;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int index = table.indexOf(o);
+        return index >= 0 && indices.get(index);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new AbstractIterator<T>() {
+            private int next = indices.nextSetBit(0);
+
+            @Override
+            protected T computeNext() {
+                if (next < 0) {
+                    return endOfData();
+                }
+                T value = table.get(next);
+                next = indices.nextSetBit(next + 1);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof InternedSet && ((InternedSet<?>) o).table == table) {
+            return indices.equals(((InternedSet<?>) o).indices);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * Assigns an index to each value it is asked to intern. Interning is thread-safe,
+     * and values are never removed from the table.
+     */
+    public static final class Table<T> {
+        private static final Object NULL_KEY = new Object();
+
+        private final Map<Object, Integer> indices = new ConcurrentHashMap<>();
+        private volatile Object[] values = new Object[64];
+        private int size;
+
+        /**
+         * Returns an interned set with the same values as the given set.
+         */
+        public Set<T> intern(Set<T> values) {
+            if (values instanceof InternedSet && ((InternedSet<T>) values).table == this) {
+                return values;
+            }
+            BitSet indices = new BitSet();
+            for (T value : values) {
+                indices.set(intern(value));
+            }
+            return new InternedSet<>(this, indices);
+        }
+
+        private int intern(T value) {
+            Object key = keyOf(value);
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            synchronized (this) {
+                index = indices.get(key);
+                if (index != null) {
+                    return index;
+                }
+                Object[] values = this.values;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size] = value;
+                // Publish the value before its index
+                this.values = values;
+                indices.put(key, size);
+                return size++;
+            }
+        }
+
+        private int indexOf(Object value) {
+            Integer index = indices.get(keyOf(value));
+            return index == null ? -1 : index;
+        }
+
+        private T get(int index) {
+            return Cast.uncheckedCast(values[index]);
+        }
+
+        private static Object keyOf(Object value) {
+            return value == null ? NULL_KEY : value;
+        }
+    }
+}
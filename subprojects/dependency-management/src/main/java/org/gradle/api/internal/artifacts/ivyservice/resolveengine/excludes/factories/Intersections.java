@@ -107,8 +107,7 @@ ExcludeSpec tryIntersect(ExcludeSpec left, ExcludeSpec right) {
     private ExcludeSpec intersectModuleSet(ModuleSetExclude left, ExcludeSpec right) {
         if (right instanceof ModuleSetExclude) {
             ModuleSetExclude msr = (ModuleSetExclude) right;
-            Set<String> modules = Sets.newHashSet(left.getModules());
-            modules.retainAll(msr.getModules());
+            Set<String> modules = InternedSet.intersection(msr.getModules(), left.getModules());
             if (modules.isEmpty()) {
                 return factory.nothing();
             }
@@ -226,8 +225,7 @@ private ExcludeSpec intersectModuleId(ModuleIdExclude left, ExcludeSpec right) {
     private ExcludeSpec intersectModuleIdSet(ModuleIdSetExclude left, ExcludeSpec right) {
         Set<ModuleIdentifier> moduleIds = left.getModuleIds();
         if (right instanceof ModuleIdSetExclude) {
-            Set<ModuleIdentifier> common = Sets.newHashSet(((ModuleIdSetExclude) right).getModuleIds());
-            common.retainAll(moduleIds);
+            Set<ModuleIdentifier> common = InternedSet.intersection(moduleIds, ((ModuleIdSetExclude) right).getModuleIds());
             return moduleIds(common);
         } else if (right instanceof ModuleSetExclude) {
             Set<String> modules = ((ModuleSetExclude) right).getModules();
@@ -301,8 +299,7 @@ private ExcludeSpec moduleIdSet(Set<ModuleIdentifier> moduleIds) {
     private ExcludeSpec intersectGroupSet(GroupSetExclude left, ExcludeSpec right) {
         Set<String> groups = left.getGroups();
         if (right instanceof GroupSetExclude) {
-            Set<String> common = Sets.newHashSet(((GroupSetExclude) right).getGroups());
-            common.retainAll(groups);
+            Set<String> common = InternedSet.intersection(groups, ((GroupSetExclude) right).getGroups());
             return groupSet(common);
         } else if (right instanceof ModuleIdExclude) {
             if (groups.contains(((ModuleIdExclude) right).getModuleId().getGroup())) {
@@ -182,13 +182,13 @@ private ExcludeSpec doUnion(Set<ExcludeSpec> specs) {
             }
         }
         if (moduleIdSetsExcludes.size() > 1) {
-            moduleIdSetsExcludes = ImmutableList.of(delegate.moduleIdSet(moduleIdSetsExcludes.stream().flatMap(e -> e.getModuleIds().stream()).collect(toSet())));
+            moduleIdSetsExcludes = ImmutableList.of(delegate.moduleIdSet(InternedSet.union(moduleIdSetsExcludes.stream().map(ModuleIdSetExclude::getModuleIds).collect(Collectors.toList()))));
         }
         if (groupSetExcludes.size() > 1) {
-            groupSetExcludes = ImmutableList.of(delegate.groupSet(groupSetExcludes.stream().flatMap(e -> e.getGroups().stream()).collect(toSet())));
+            groupSetExcludes = ImmutableList.of(delegate.groupSet(InternedSet.union(groupSetExcludes.stream().map(GroupSetExclude::getGroups).collect(Collectors.toList()))));
         }
         if (moduleSetExcludes.size() > 1) {
-            moduleSetExcludes = ImmutableList.of(delegate.moduleSet(moduleSetExcludes.stream().flatMap(e -> e.getModules().stream()).collect(toSet())));
+            moduleSetExcludes = ImmutableList.of(delegate.moduleSet(InternedSet.union(moduleSetExcludes.stream().map(ModuleSetExclude::getModules).collect(Collectors.toList()))));
         }
         ImmutableSet.Builder<ExcludeSpec> builder = ImmutableSet.builderWithExpectedSize(
             moduleIdExcludes.size() + groupExcludes.size() + moduleExcludes.size() +
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.InternedSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.GroupSetExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleIdSetExclude;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleSetExclude;
+
+import java.util.Set;
+
+/**
+ * A variant of the default exclude factory, which interns the module ids, groups and modules
+ * of set excludes, so that the specs created by this factory can be intersected, joined and
+ * compared as bit sets. The specs are otherwise the same as the ones of the default factory.
+ */
+public class BitSetExcludeFactory extends DefaultExcludeFactory {
+    private final InternedSet.Table<ModuleIdentifier> moduleIds = new InternedSet.Table<>();
+    private final InternedSet.Table<String> groups = new InternedSet.Table<>();
+    private final InternedSet.Table<String> modules = new InternedSet.Table<>();
+
+    @Override
+    public ModuleIdSetExclude moduleIdSet(Set<ModuleIdentifier> modules) {
+        return super.moduleIdSet(moduleIds.intern(modules));
+    }
+
+    @Override
+    public GroupSetExclude groupSet(Set<String> groups) {
+        return super.groupSet(this.groups.intern(groups));
+    }
+
+    @Override
+    public ModuleSetExclude moduleSet(Set<String> modules) {
+        return super.moduleSet(this.modules.intern(modules));
+    }
+}
@@ -17,6 +17,7 @@
 
 import com.google.common.collect.ImmutableSet;
 import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.InternedSet;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ModuleIdSetExclude;
 import org.gradle.internal.component.model.IvyArtifactName;
 
@@ -27,10 +28,11 @@ final class DefaultModuleIdSetExclude implements ModuleIdSetExclude {
     private final int hashCode;
 
     static ModuleIdSetExclude of(Set<ModuleIdentifier> ids) {
-        return new DefaultModuleIdSetExclude(ImmutableSet.copyOf(ids));
+        // Interned sets are immutable already
+        return new DefaultModuleIdSetExclude(ids instanceof InternedSet ? ids : ImmutableSet.copyOf(ids));
     }
 
-    private DefaultModuleIdSetExclude(ImmutableSet<ModuleIdentifier> moduleIds) {
+    private DefaultModuleIdSetExclude(Set<ModuleIdentifier> moduleIds) {
         this.moduleIds = moduleIds;
         this.hashCode = moduleIds.hashCode();
     }
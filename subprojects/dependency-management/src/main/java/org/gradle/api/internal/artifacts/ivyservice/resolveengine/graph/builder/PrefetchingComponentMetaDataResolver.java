@@ -0,0 +1,252 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.VersionConstraint;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.model.ComponentVariant;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.ExternalDependencyDescriptor;
+import org.gradle.internal.component.external.model.ModuleComponentGraphResolveState;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.ivy.IvyModuleResolveMetadata;
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor;
+import org.gradle.internal.component.external.model.maven.MavenModuleResolveMetadata;
+import org.gradle.internal.component.model.ComponentGraphResolveState;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.BuildOperationRunner;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link ComponentMetaDataResolver} which speculatively resolves the metadata of the dependencies of each resolved component,
+ * before the graph traversal reaches them.
+ *
+ * <p>Without prefetching, metadata is only downloaded in parallel for the outgoing edges of the node being visited,
+ * so deep graphs are fetched level by level. With prefetching, as soon as the metadata of a module is available,
+ * the modules it declares dependencies on with a fixed version are resolved on a bounded pool of threads, and so on transitively.
+ * The graph itself is still built serially by {@link DependencyGraphBuilder}, which picks up the prefetched metadata when it selects those components.</p>
+ *
+ * <p>The prefetched dependencies are taken from the declared dependencies of the metadata, before any rules or substitutions are applied,
+ * so some prefetched components may never be selected. Only successful results are reused, and only for requests without overrides.
+ * A failed prefetch is resolved again by the graph traversal, so failures are reported the same way as without prefetching.</p>
+ */
+public class PrefetchingComponentMetaDataResolver implements ComponentMetaDataResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchingComponentMetaDataResolver.class);
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final BuildOperationRunner buildOperationRunner;
+    private final ManagedExecutor executor;
+    @Nullable
+    private final BuildOperationRef parentOperation;
+    private final ConcurrentMap<ComponentIdentifier, Prefetch> prefetches = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    public PrefetchingComponentMetaDataResolver(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, BuildOperationRunner buildOperationRunner, ManagedExecutor executor) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.buildOperationRunner = buildOperationRunner;
+        this.executor = executor;
+        this.parentOperation = CurrentBuildOperationRef.instance().get();
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        Prefetch prefetch = DefaultComponentOverrideMetadata.EMPTY.equals(componentOverrideMetadata) ? prefetches.get(identifier) : null;
+        if (prefetch != null && prefetch.awaitOrRun()) {
+            DefaultBuildableComponentResolveResult prefetched = prefetch.result;
+            prefetched.applyTo(result);
+            result.resolved(prefetched.getState(), prefetched.getGraphState());
+            return;
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+        if (result.hasResult() && result.getFailure() == null) {
+            prefetchDependencies(result.getState());
+        }
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        Prefetch prefetch = prefetches.get(identifier);
+        return (prefetch != null && prefetch.isSuccessful()) || delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Stops prefetching, waiting for the prefetches which are currently running to complete.
+     */
+    public void stop() {
+        stopped = true;
+        executor.stop();
+    }
+
+    private void prefetchDependencies(ComponentGraphResolveState state) {
+        if (stopped || !(state instanceof ModuleComponentGraphResolveState)) {
+            return;
+        }
+        ModuleComponentResolveMetadata metadata = ((ModuleComponentGraphResolveState) state).getModuleResolveMetadata();
+        if (!metadata.getVariants().isEmpty()) {
+            for (ComponentVariant variant : metadata.getVariants()) {
+                for (ComponentVariant.Dependency dependency : variant.getDependencies()) {
+                    maybePrefetch(DefaultModuleIdentifier.newId(dependency.getGroup(), dependency.getModule()), dependency.getVersionConstraint());
+                }
+            }
+        } else if (metadata instanceof MavenModuleResolveMetadata) {
+            for (MavenDependencyDescriptor dependency : ((MavenModuleResolveMetadata) metadata).getDependencies()) {
+                if (!dependency.isConstraint() && !dependency.isOptional() && (dependency.getScope() == MavenScope.Compile || dependency.getScope() == MavenScope.Runtime)) {
+                    maybePrefetch(dependency);
+                }
+            }
+        } else if (metadata instanceof IvyModuleResolveMetadata) {
+            for (ExternalDependencyDescriptor dependency : ((IvyModuleResolveMetadata) metadata).getDependencies()) {
+                if (!dependency.isConstraint() && !dependency.isOptional()) {
+                    maybePrefetch(dependency);
+                }
+            }
+        }
+    }
+
+    private void maybePrefetch(ExternalDependencyDescriptor dependency) {
+        if (!dependency.isChanging()) {
+            ModuleComponentSelector selector = dependency.getSelector();
+            maybePrefetch(selector.getModuleIdentifier(), selector.getVersionConstraint());
+        }
+    }
+
+    /**
+     * Prefetches the given module, if the version constraint selects a single version which can be known without listing the versions of the module.
+     */
+    private void maybePrefetch(ModuleIdentifier module, VersionConstraint versionConstraint) {
+        String version = versionConstraint.getStrictVersion().isEmpty() ? versionConstraint.getRequiredVersion() : versionConstraint.getStrictVersion();
+        if (version.isEmpty() || version.endsWith("-SNAPSHOT") || versionSelectorScheme.parseSelector(version).isDynamic()) {
+            return;
+        }
+        ComponentIdentifier identifier = DefaultModuleComponentIdentifier.newId(module, version);
+        if (prefetches.containsKey(identifier) || delegate.isFetchingMetadataCheap(identifier)) {
+            return;
+        }
+        Prefetch prefetch = new Prefetch(identifier);
+        if (prefetches.putIfAbsent(identifier, prefetch) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                if (!stopped) {
+                    CurrentBuildOperationRef.instance().with(parentOperation, () -> buildOperationRunner.run(prefetch));
+                }
+                // Release anyone waiting for a prefetch which will not run anymore
+                prefetch.skip();
+            });
+        } catch (RejectedExecutionException e) {
+            // Stopped in the meantime
+            prefetch.skip();
+        }
+    }
+
+    /**
+     * The metadata of a component, which is resolved either by the prefetching threads or by the first thread which needs it.
+     */
+    private class Prefetch implements RunnableBuildOperation {
+        private final ComponentIdentifier identifier;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        private volatile boolean successful;
+
+        Prefetch(ComponentIdentifier identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            if (claimed.compareAndSet(false, true)) {
+                resolve();
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch metadata of " + identifier);
+        }
+
+        void skip() {
+            if (claimed.compareAndSet(false, true)) {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Waits for the prefetch to complete, resolving the component on the current thread if no prefetching thread has started yet.
+         *
+         * @return whether the component was resolved successfully.
+         */
+        boolean awaitOrRun() {
+            if (claimed.compareAndSet(false, true)) {
+                resolve();
+            } else {
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return successful;
+        }
+
+        boolean isSuccessful() {
+            return successful;
+        }
+
+        private void resolve() {
+            try {
+                delegate.resolve(identifier, DefaultComponentOverrideMetadata.EMPTY, result);
+                if (result.hasResult() && result.getFailure() == null) {
+                    successful = true;
+                    // Schedule the dependencies before anyone uses this component, so they are not resolved twice
+                    prefetchDependencies(result.getState());
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not prefetch metadata of {}", identifier, e);
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.StartParameterResolutionOverride;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.DefaultExternalResourceCachePolicy;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.ExternalResourceCachePolicy;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.authentication.Authentication;
 import org.gradle.cache.internal.ProducerGuard;
@@ -46,6 +47,7 @@
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 
 @ServiceScope(Scopes.Build.class)
 public class RepositoryTransportFactory {
@@ -60,6 +62,7 @@ public class RepositoryTransportFactory {
     private final ProducerGuard<ExternalResourceName> producerGuard;
     private final FileResourceRepository fileRepository;
     private final ChecksumService checksumService;
+    private final Supplier<Set<ChecksumKind>> downloadChecksums;
 
     public RepositoryTransportFactory(Collection<ResourceConnectorFactory> resourceConnectorFactory,
                                       TemporaryFileProvider temporaryFileProvider,
@@ -70,7 +73,8 @@ public RepositoryTransportFactory(Collection<ResourceConnectorFactory> resourceC
                                       StartParameterResolutionOverride startParameterResolutionOverride,
                                       ProducerGuard<ExternalResourceName> producerGuard,
                                       FileResourceRepository fileRepository,
-                                      ChecksumService checksumService) {
+                                      ChecksumService checksumService,
+                                      Supplier<Set<ChecksumKind>> downloadChecksums) {
         this.temporaryFileProvider = temporaryFileProvider;
         this.cachedExternalResourceIndex = cachedExternalResourceIndex;
         this.timeProvider = timeProvider;
@@ -80,6 +84,7 @@ public RepositoryTransportFactory(Collection<ResourceConnectorFactory> resourceC
         this.producerGuard = producerGuard;
         this.fileRepository = fileRepository;
         this.checksumService = checksumService;
+        this.downloadChecksums = downloadChecksums;
 
         registeredProtocols.addAll(resourceConnectorFactory);
     }
@@ -93,7 +98,7 @@ public Set<String> getRegisteredProtocols() {
     }
 
     public RepositoryTransport createFileTransport(String name) {
-        return new FileTransport(name, fileRepository, cachedExternalResourceIndex, temporaryFileProvider, timeProvider, artifactCacheLockingManager, producerGuard, checksumService);
+        return new FileTransport(name, fileRepository, cachedExternalResourceIndex, temporaryFileProvider, timeProvider, artifactCacheLockingManager, producerGuard, checksumService, downloadChecksums);
     }
 
     public RepositoryTransport createTransport(String scheme, String name, Collection<Authentication> authentications, HttpRedirectVerifier redirectVerifier) {
@@ -123,7 +128,7 @@ public RepositoryTransport createTransport(Set<String> schemes, String name, Col
         ExternalResourceCachePolicy cachePolicy = new DefaultExternalResourceCachePolicy();
         cachePolicy = startParameterResolutionOverride.overrideExternalResourceCachePolicy(cachePolicy);
 
-        return new ResourceConnectorRepositoryTransport(name, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, artifactCacheLockingManager, resourceConnector, buildOperationExecutor, cachePolicy, producerGuard, fileRepository, checksumService);
+        return new ResourceConnectorRepositoryTransport(name, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, artifactCacheLockingManager, resourceConnector, buildOperationExecutor, cachePolicy, producerGuard, fileRepository, checksumService, downloadChecksums);
     }
 
     private void validateSchemes(Set<String> schemes) {
@@ -22,6 +22,7 @@
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingAccessCoordinator;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.ExternalResourceCachePolicy;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
 import org.gradle.cache.internal.ProducerGuard;
 import org.gradle.internal.hash.ChecksumService;
@@ -47,6 +48,11 @@
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExternalResourceAccessor {
 
@@ -61,8 +67,12 @@ public class DefaultCacheAwareExternalResourceAccessor implements CacheAwareExte
     private final ProducerGuard<ExternalResourceName> producerGuard;
     private final FileResourceRepository fileResourceRepository;
     private final ChecksumService checksumService;
+    private final Supplier<Set<ChecksumKind>> downloadChecksums;
 
-    public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository delegate, CachedExternalResourceIndex<String> cachedExternalResourceIndex, BuildCommencedTimeProvider timeProvider, TemporaryFileProvider temporaryFileProvider, ArtifactCacheLockingAccessCoordinator cacheAccessCoordinator, ExternalResourceCachePolicy externalResourceCachePolicy, ProducerGuard<ExternalResourceName> producerGuard, FileResourceRepository fileResourceRepository, ChecksumService checksumService) {
+    /**
+     * @param downloadChecksums the checksums to compute while downloading a resource, in addition to the SHA-1 checksum used by the file store.
+     */
+    public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository delegate, CachedExternalResourceIndex<String> cachedExternalResourceIndex, BuildCommencedTimeProvider timeProvider, TemporaryFileProvider temporaryFileProvider, ArtifactCacheLockingAccessCoordinator cacheAccessCoordinator, ExternalResourceCachePolicy externalResourceCachePolicy, ProducerGuard<ExternalResourceName> producerGuard, FileResourceRepository fileResourceRepository, ChecksumService checksumService, Supplier<Set<ChecksumKind>> downloadChecksums) {
         this.delegate = delegate;
         this.cachedExternalResourceIndex = cachedExternalResourceIndex;
         this.timeProvider = timeProvider;
@@ -72,6 +82,7 @@ public DefaultCacheAwareExternalResourceAccessor(ExternalResourceRepository dele
         this.producerGuard = producerGuard;
         this.fileResourceRepository = fileResourceRepository;
         this.checksumService = checksumService;
+        this.downloadChecksums = downloadChecksums;
     }
 
     @Nullable
@@ -175,7 +186,7 @@ private LocallyAvailableExternalResource copyCandidateToCache(ExternalResourceNa
             if (!localChecksum.equals(remoteChecksum)) {
                 return null;
             }
-            return moveIntoCache(source, destination, fileStore, remoteMetaData);
+            return moveIntoCache(source, destination, fileStore, remoteMetaData, Collections.singletonMap(ChecksumKind.sha1.name(), localChecksum));
         } finally {
             destination.delete();
         }
@@ -183,8 +194,10 @@ private LocallyAvailableExternalResource copyCandidateToCache(ExternalResourceNa
 
     @Nullable
     private LocallyAvailableExternalResource copyToCache(final ExternalResourceName source, final ResourceFileStore fileStore, final ExternalResource resource) {
-        // Download to temporary location
-        DownloadAction downloadAction = new DownloadAction(source, temporaryFileProvider, LOGGER);
+        // Download to temporary location, computing the checksums on the fly
+        Set<ChecksumKind> checksumKinds = EnumSet.of(ChecksumKind.sha1);
+        checksumKinds.addAll(downloadChecksums.get());
+        DownloadAction downloadAction = new DownloadAction(source, temporaryFileProvider, LOGGER, checksumKinds);
         resource.withContentIfPresent(downloadAction);
         if (downloadAction.getMetaData() == null) {
             return null;
@@ -192,16 +205,24 @@ private LocallyAvailableExternalResource copyToCache(final ExternalResourceName
 
         // Move into cache
         try {
-            return moveIntoCache(source, downloadAction.getDestination(), fileStore, downloadAction.getMetaData());
+            return moveIntoCache(source, downloadAction.getDestination(), fileStore, downloadAction.getMetaData(), downloadAction.getChecksums());
         } finally {
             downloadAction.getDestination().delete();
         }
     }
 
-    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData) {
+    private LocallyAvailableExternalResource moveIntoCache(final ExternalResourceName source, final File destination, final ResourceFileStore fileStore, final ExternalResourceMetaData metaData, final Map<String, HashCode> checksums) {
+        // The file store and dependency verification would otherwise read the file again to hash it
+        checksumService.recordChecksums(destination, checksums);
+        long length = destination.length();
+        long lastModified = destination.lastModified();
         return cacheAccessCoordinator.useCache(() -> {
             LocallyAvailableResource cachedResource = fileStore.moveIntoCache(destination);
             File fileInFileStore = cachedResource.getFile();
+            // Only reuse the checksums when the file was moved into the store, not when the store already had a file at that location
+            if (fileInFileStore.length() == length && fileInFileStore.lastModified() == lastModified) {
+                checksumService.recordChecksums(fileInFileStore, checksums);
+            }
             cachedExternalResourceIndex.store(source.toString(), fileInFileStore, metaData);
             return fileResourceRepository.resource(fileInFileStore, source.getUri(), metaData);
         });
@@ -16,8 +16,14 @@
 
 package org.gradle.internal.resource.transfer;
 
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.io.IOUtils;
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.HashingOutputStream;
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.ExternalResourceName;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
@@ -30,7 +36,15 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Downloads a resource to a temporary file, computing the requested checksums of the content while it is written.
+ */
 public class DownloadAction implements ExternalResource.ContentAndMetadataAction<Object> {
     private File destination;
     private ExternalResourceMetaData metaData;
@@ -38,11 +52,18 @@ public class DownloadAction implements ExternalResource.ContentAndMetadataAction
     private final TemporaryFileProvider temporaryFileProvider;
     @Nullable
     private final Logger logger;
+    private final Set<ChecksumKind> checksumKinds;
+    private Map<String, HashCode> checksums = Collections.emptyMap();
 
     public DownloadAction(ExternalResourceName source, TemporaryFileProvider temporaryFileProvider, @Nullable Logger logger) {
+        this(source, temporaryFileProvider, logger, Collections.emptySet());
+    }
+
+    public DownloadAction(ExternalResourceName source, TemporaryFileProvider temporaryFileProvider, @Nullable Logger logger, Set<ChecksumKind> checksumKinds) {
         this.source = source;
         this.temporaryFileProvider = temporaryFileProvider;
         this.logger = logger;
+        this.checksumKinds = checksumKinds;
     }
 
     @Override
@@ -55,12 +76,37 @@ public Object execute(InputStream inputStream, ExternalResourceMetaData metaData
         if (destination.getParentFile() != null) {
             GFileUtils.mkdirs(destination.getParentFile());
         }
-        try (FileOutputStream outputStream = new FileOutputStream(destination)) {
+        Map<ChecksumKind, HashingOutputStream> hashingStreams = new LinkedHashMap<>();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(destination)) {
+            OutputStream outputStream = fileOutputStream;
+            for (ChecksumKind kind : checksumKinds) {
+                HashingOutputStream hashingStream = new HashingOutputStream(hashFunctionFor(kind), outputStream);
+                hashingStreams.put(kind, hashingStream);
+                outputStream = hashingStream;
+            }
             IOUtils.copyLarge(inputStream, outputStream);
         }
+        ImmutableMap.Builder<String, HashCode> checksums = ImmutableMap.builder();
+        hashingStreams.forEach((kind, hashingStream) -> checksums.put(kind.name(), hashingStream.hash()));
+        this.checksums = checksums.build();
         return null;
     }
 
+    private static HashFunction hashFunctionFor(ChecksumKind kind) {
+        switch (kind) {
+            case md5:
+                return Hashing.md5();
+            case sha1:
+                return Hashing.sha1();
+            case sha256:
+                return Hashing.sha256();
+            case sha512:
+                return Hashing.sha512();
+            default:
+                throw new IllegalArgumentException("Unsupported checksum kind " + kind);
+        }
+    }
+
     @Nonnull
     public File getDestination() {
         return destination;
@@ -70,4 +116,11 @@ public File getDestination() {
     public ExternalResourceMetaData getMetaData() {
         return metaData;
     }
+
+    /**
+     * Returns the checksums of the downloaded content, keyed by algorithm name.
+     */
+    public Map<String, HashCode> getChecksums() {
+        return checksums;
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.simple
+
+import org.gradle.api.artifacts.ModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.CachingExcludeFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.ExcludeFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.InternedSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.NormalizingExcludeFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.factories.OptimizingExcludeFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.specs.ExcludeSpec
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleIdentifier.newId
+
+class BitSetExcludeFactoryTest extends Specification {
+    private static final List<String> GROUPS = ["g1", "g2", "g3", "g4"]
+    private static final List<String> MODULES = ["m1", "m2", "m3", "m4"]
+
+    def "interned sets behave like regular sets"() {
+        def table = new InternedSet.Table<String>()
+
+        when:
+        def first = table.intern(["a", "b", "c"] as Set)
+        def second = table.intern(["c", "d"] as Set)
+
+        then:
+        first == ["a", "b", "c"] as Set
+        ["a", "b", "c"] as Set == first
+        first.hashCode() == (["a", "b", "c"] as Set).hashCode()
+        first.contains("b")
+        !first.contains("d")
+        !first.contains("unknown")
+        table.intern(first).is(first)
+        table.intern(["c", "b", "a"] as Set) == first
+        InternedSet.intersection(first, second) == ["c"] as Set
+        InternedSet.intersection(first, second) instanceof InternedSet
+        InternedSet.union([first, second]) == ["a", "b", "c", "d"] as Set
+        InternedSet.union([first, second]) instanceof InternedSet
+        InternedSet.intersection(first, ["b", "c", "d"] as Set) == ["b", "c"] as Set
+        InternedSet.union([first, ["e"] as Set]) == ["a", "b", "c", "e"] as Set
+    }
+
+    def "creates the same specs as the default factory"() {
+        def defaultFactory = chain(new DefaultExcludeFactory())
+        def bitSetFactory = chain(new BitSetExcludeFactory())
+
+        expect:
+        (0..<2000).each { seed ->
+            def expected = randomSpec(defaultFactory, new Random(seed), 4)
+            def actual = randomSpec(bitSetFactory, new Random(seed), 4)
+            assert actual == expected
+            assert expected == actual
+            assert actual.hashCode() == expected.hashCode()
+            GROUPS.each { group ->
+                MODULES.each { module ->
+                    assert actual.excludes(newId(group, module)) == expected.excludes(newId(group, module))
+                }
+            }
+        }
+    }
+
+    private static ExcludeFactory chain(ExcludeFactory endOfChain) {
+        def mergeCaches = new CachingExcludeFactory.MergeCaches()
+        new OptimizingExcludeFactory(new CachingExcludeFactory(new NormalizingExcludeFactory(new CachingExcludeFactory(endOfChain, mergeCaches)), mergeCaches))
+    }
+
+    private static ExcludeSpec randomSpec(ExcludeFactory factory, Random random, int depth) {
+        switch (random.nextInt(depth > 0 ? 9 : 6)) {
+            case 0:
+                return factory.group(pick(random, GROUPS))
+            case 1:
+                return factory.module(pick(random, MODULES))
+            case 2:
+                return factory.moduleId(newId(pick(random, GROUPS), pick(random, MODULES)))
+            case 3:
+                return factory.groupSet(randomSet(random) { pick(random, GROUPS) })
+            case 4:
+                return factory.moduleSet(randomSet(random) { pick(random, MODULES) })
+            case 5:
+                return factory.moduleIdSet(randomSet(random) { newId(pick(random, GROUPS), pick(random, MODULES)) } as Set<ModuleIdentifier>)
+            case 6:
+            case 7:
+                return factory.anyOf(randomSpec(factory, random, depth - 1), randomSpec(factory, random, depth - 1))
+            default:
+                return factory.allOf(randomSpec(factory, random, depth - 1), randomSpec(factory, random, depth - 1))
+        }
+    }
+
+    private static <T> Set<T> randomSet(Random random, Closure<T> element) {
+        (0..random.nextInt(4)).collect { element() } as Set<T>
+    }
+
+    private static String pick(Random random, List<String> values) {
+        values[random.nextInt(values.size())]
+    }
+}
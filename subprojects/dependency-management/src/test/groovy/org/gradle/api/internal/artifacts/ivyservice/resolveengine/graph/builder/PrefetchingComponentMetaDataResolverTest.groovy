@@ -0,0 +1,169 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import com.google.common.collect.ImmutableList
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionParser
+import org.gradle.internal.component.external.descriptor.MavenScope
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.external.model.ModuleComponentGraphResolveState
+import org.gradle.internal.component.external.model.maven.MavenDependencyDescriptor
+import org.gradle.internal.component.external.model.maven.MavenDependencyType
+import org.gradle.internal.component.external.model.maven.MavenModuleResolveMetadata
+import org.gradle.internal.component.model.ComponentGraphSpecificResolveState
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+class PrefetchingComponentMetaDataResolverTest extends Specification {
+    def executorFactory = new DefaultExecutorFactory()
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator(), new VersionParser())
+    def metadataResolver = new RecordingResolver()
+    def resolver = new PrefetchingComponentMetaDataResolver(metadataResolver, versionSelectorScheme, new TestBuildOperationExecutor(), executorFactory.create("test", 4))
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "prefetches fixed versions of the dependencies of resolved components"() {
+        module("a", "1.0", [dependency("b", "1.0"), dependency("c", "[1.0,2.0)"), dependency("d", "1.0", MavenScope.Test)])
+        module("b", "1.0", [dependency("e", "2.0")])
+        module("e", "2.0", [])
+
+        when:
+        def a = resolve("a", "1.0")
+        def b = resolve("b", "1.0")
+        def e = resolve("e", "2.0")
+        resolver.stop()
+
+        then:
+        a.state.id == id("a", "1.0")
+        b.state.id == id("b", "1.0")
+        e.state.id == id("e", "2.0")
+        metadataResolver.resolveCount(id("a", "1.0")) == 1
+        metadataResolver.resolveCount(id("b", "1.0")) == 1
+        metadataResolver.resolveCount(id("e", "2.0")) == 1
+        metadataResolver.resolveCount(id("d", "1.0")) == 0
+        metadataResolver.resolved.keySet().every { it.group == "org" && it.module in ["a", "b", "e"] }
+    }
+
+    def "resolves component again when prefetching it failed"() {
+        module("a", "1.0", [dependency("b", "1.0")])
+
+        when:
+        resolve("a", "1.0")
+        def b = resolve("b", "1.0")
+        resolver.stop()
+
+        then:
+        b.failure != null
+        metadataResolver.resolveCount(id("b", "1.0")) == 2
+    }
+
+    def "does not use prefetched component when resolving with overrides"() {
+        module("a", "1.0", [dependency("b", "1.0")])
+        module("b", "1.0", [])
+
+        when:
+        resolve("a", "1.0")
+        resolve("b", "1.0", DefaultComponentOverrideMetadata.forDependency(true, null, null))
+        resolver.stop()
+
+        then:
+        // The prefetch may have been skipped when stopping
+        metadataResolver.resolveCount(id("b", "1.0")) in [1, 2]
+        metadataResolver.overrides[id("b", "1.0")].any { it.changing }
+    }
+
+    def "does not prefetch after being stopped"() {
+        module("a", "1.0", [dependency("b", "1.0")])
+        resolver.stop()
+
+        when:
+        resolve("a", "1.0")
+
+        then:
+        metadataResolver.resolveCount(id("b", "1.0")) == 0
+    }
+
+    private void module(String module, String version, List<MavenDependencyDescriptor> dependencies) {
+        def metadata = Stub(MavenModuleResolveMetadata) {
+            getVariants() >> ImmutableList.of()
+            getDependencies() >> ImmutableList.copyOf(dependencies)
+        }
+        def state = Stub(ModuleComponentGraphResolveState) {
+            getId() >> id(module, version)
+            getModuleResolveMetadata() >> metadata
+        }
+        metadataResolver.modules.put(id(module, version), state)
+    }
+
+    private DefaultBuildableComponentResolveResult resolve(String module, String version, ComponentOverrideMetadata overrides = DefaultComponentOverrideMetadata.EMPTY) {
+        def result = new DefaultBuildableComponentResolveResult()
+        resolver.resolve(id(module, version), overrides, result)
+        return result
+    }
+
+    private static ModuleComponentIdentifier id(String module, String version) {
+        DefaultModuleComponentIdentifier.newId(DefaultModuleIdentifier.newId("org", module), version)
+    }
+
+    private static MavenDependencyDescriptor dependency(String module, String version, MavenScope scope = MavenScope.Compile) {
+        new MavenDependencyDescriptor(scope, MavenDependencyType.DEPENDENCY, DefaultModuleComponentSelector.newSelector(DefaultModuleIdentifier.newId("org", module), version), null, [])
+    }
+
+    private static class RecordingResolver implements ComponentMetaDataResolver {
+        final Map<ComponentIdentifier, ModuleComponentGraphResolveState> modules = new ConcurrentHashMap<>()
+        final Map<ComponentIdentifier, AtomicInteger> resolved = new ConcurrentHashMap<>()
+        final Map<ComponentIdentifier, List<ComponentOverrideMetadata>> overrides = new ConcurrentHashMap<>()
+
+        int resolveCount(ComponentIdentifier identifier) {
+            resolved[identifier]?.get() ?: 0
+        }
+
+        @Override
+        void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+            resolved.computeIfAbsent(identifier) { new AtomicInteger() }.incrementAndGet()
+            overrides.computeIfAbsent(identifier) { Collections.synchronizedList([]) }.add(componentOverrideMetadata)
+            def state = modules[identifier]
+            if (state == null) {
+                result.notFound(identifier as ModuleComponentIdentifier)
+            } else {
+                result.resolved(state, ComponentGraphSpecificResolveState.EMPTY_STATE)
+            }
+        }
+
+        @Override
+        boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+            return false
+        }
+    }
+}
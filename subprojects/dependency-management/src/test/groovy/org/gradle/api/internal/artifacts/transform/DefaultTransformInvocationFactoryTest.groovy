@@ -43,6 +43,7 @@ import org.gradle.internal.execution.InputFingerprinter
 import org.gradle.internal.execution.OutputChangeListener
 import org.gradle.internal.execution.TestExecutionHistoryStore
 import org.gradle.internal.execution.WorkInputListeners
+import org.gradle.internal.execution.history.BuildCacheKeyHistory
 import org.gradle.internal.execution.history.OutputFilesRepository
 import org.gradle.internal.execution.history.changes.DefaultExecutionStateChangeDetector
 import org.gradle.internal.execution.history.impl.DefaultOverlappingOutputDetector
@@ -136,6 +137,7 @@ class DefaultTransformInvocationFactoryTest extends AbstractProjectBuilderSpec {
     def validationWarningRecorder = Mock(ValidateStep.ValidationWarningRecorder)
     def executionEngine = new ExecutionGradleServices().createExecutionEngine(
         buildCacheController,
+        BuildCacheKeyHistory.NONE,
         cancellationToken,
         buildInvocationScopeId,
         buildOperationExecutor,
@@ -150,6 +152,7 @@ class DefaultTransformInvocationFactoryTest extends AbstractProjectBuilderSpec {
         outputFilesRepository,
         outputSnapshotter,
         new DefaultOverlappingOutputDetector(),
+        TestFiles.streamHasher(),
         Mock(TimeoutHandler),
         validationWarningRecorder,
         virtualFileSystem,
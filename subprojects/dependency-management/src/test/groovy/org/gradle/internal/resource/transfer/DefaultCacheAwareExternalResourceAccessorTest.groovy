@@ -21,6 +21,7 @@ import org.gradle.api.internal.artifacts.ivyservice.ArtifactCacheLockingAccessCo
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.DefaultExternalResourceCachePolicy
 import org.gradle.api.internal.file.temp.TemporaryFileProvider
 import org.gradle.cache.internal.ProducerGuard
+import org.gradle.internal.hash.ChecksumService
 import org.gradle.internal.hash.Hashing
 import org.gradle.internal.resource.ExternalResource
 import org.gradle.internal.resource.ExternalResourceName
@@ -62,7 +63,7 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
             supplier.get()
         }
     }
-    final cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheAccessCoordinator, cachePolicy, producerGuard, fileRepository, TestUtil.checksumService)
+    final cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheAccessCoordinator, cachePolicy, producerGuard, fileRepository, TestUtil.checksumService, { [] as Set })
 
     def "returns null when the request resource is not cached and does not exist in the remote repository"() {
         def location = new ExternalResourceName("thing")
@@ -437,4 +438,66 @@ class DefaultCacheAwareExternalResourceAccessorTest extends Specification {
         1 * fileRepository.resource(cachedFile, location.uri, remoteMetaData) >> resultResource
         0 * _._
     }
+
+    def "records the checksums computed while downloading for the file moved into the cache"() {
+        def checksumService = Mock(ChecksumService)
+        def cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheAccessCoordinator, cachePolicy, producerGuard, fileRepository, checksumService, { [] as Set })
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def localCandidates = Stub(LocallyAvailableResourceCandidates) {
+            isNone() >> true
+        }
+        def remoteResource = Mock(ExternalResource)
+        def metaData = Mock(ExternalResourceMetaData)
+        def content = "content".bytes
+        def checksums = [sha1: Hashing.sha1().hashBytes(content)]
+
+        when:
+        cache.getResource(location, null, fileStore, localCandidates)
+
+        then:
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resource(location) >> remoteResource
+        1 * remoteResource.withContentIfPresent(_) >> { ExternalResource.ContentAndMetadataAction a ->
+            a.execute(new ByteArrayInputStream(content), metaData)
+        }
+        1 * checksumService.recordChecksums(tempFile, checksums)
+
+        then:
+        1 * fileStore.moveIntoCache(tempFile) >> {
+            assert tempFile.renameTo(cachedFile)
+            new DefaultLocallyAvailableResource(cachedFile, TestUtil.checksumService)
+        }
+        1 * checksumService.recordChecksums(cachedFile, checksums)
+        0 * checksumService._
+    }
+
+    def "does not record checksums for the file the cache already held"() {
+        def checksumService = Mock(ChecksumService)
+        def cache = new DefaultCacheAwareExternalResourceAccessor(repository, index, timeProvider, temporaryFileProvider, cacheAccessCoordinator, cachePolicy, producerGuard, fileRepository, checksumService, { [] as Set })
+        def location = new ExternalResourceName("thing")
+        def fileStore = Mock(CacheAwareExternalResourceAccessor.ResourceFileStore)
+        def localCandidates = Stub(LocallyAvailableResourceCandidates) {
+            isNone() >> true
+        }
+        def remoteResource = Mock(ExternalResource)
+        def metaData = Mock(ExternalResourceMetaData)
+        cachedFile.text = "previously cached content"
+        cachedFile.lastModified = System.currentTimeMillis() - 60_000
+
+        when:
+        cache.getResource(location, null, fileStore, localCandidates)
+
+        then:
+        1 * repository.withProgressLogging() >> progressLoggingRepo
+        1 * progressLoggingRepo.resource(location) >> remoteResource
+        1 * remoteResource.withContentIfPresent(_) >> { ExternalResource.ContentAndMetadataAction a ->
+            a.execute(new ByteArrayInputStream("content".bytes), metaData)
+        }
+        1 * checksumService.recordChecksums(tempFile, _)
+
+        then:
+        1 * fileStore.moveIntoCache(tempFile) >> new DefaultLocallyAvailableResource(cachedFile, TestUtil.checksumService)
+        0 * checksumService._
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transfer
+
+import org.gradle.api.internal.artifacts.verification.model.ChecksumKind
+import org.gradle.api.internal.file.temp.TemporaryFileProvider
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.resource.ExternalResourceName
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class DownloadActionTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider(getClass())
+    final tempFile = tempDir.file("temp-file")
+    final temporaryFileProvider = Stub(TemporaryFileProvider) {
+        createTemporaryFile(_, _, _) >> tempFile
+    }
+    final content = "some content".bytes
+
+    def "computes the requested checksums while downloading"() {
+        def action = new DownloadAction(new ExternalResourceName("thing"), temporaryFileProvider, null, EnumSet.of(ChecksumKind.sha1, ChecksumKind.sha512))
+
+        when:
+        action.execute(new ByteArrayInputStream(content), Stub(ExternalResourceMetaData))
+
+        then:
+        action.destination == tempFile
+        tempFile.bytes == content
+        action.checksums == [sha1: Hashing.sha1().hashBytes(content), sha512: Hashing.sha512().hashBytes(content)]
+    }
+
+    def "computes no checksums by default"() {
+        def action = new DownloadAction(new ExternalResourceName("thing"), temporaryFileProvider, null)
+
+        when:
+        action.execute(new ByteArrayInputStream(content), Stub(ExternalResourceMetaData))
+
+        then:
+        tempFile.bytes == content
+        action.checksums.isEmpty()
+    }
+}
@@ -1,5 +1,6 @@
 plugins {
     id("gradlebuild.distribution.api-java")
+    id("gradlebuild.jmh")
 }
 
 description = "Execution engine that takes a unit of work and makes it happen"
@@ -26,6 +27,10 @@ dependencies {
     implementation(libs.commonsLang)
     implementation(libs.inject)
 
+    jmhImplementation(platform(project(":distributions-dependencies")))
+    jmhImplementation(project(":hashing"))
+    jmhImplementation(libs.commonsIo)
+
     testImplementation(project(":native"))
     testImplementation(project(":logging"))
     testImplementation(project(":process-services"))
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.snapshot.ValueSnapshot;
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
+import org.gradle.internal.snapshot.impl.StringValueSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the append-only execution history store with the BTree based cache backing {@link DefaultExecutionHistoryStore}.
+ *
+ * The BTree cache is not thread-safe, so access to it is serialized in the same way as the cache access in a build.
+ */
+@Threads(8)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ExecutionHistoryStoreBenchmark {
+    private static final int KEY_COUNT = 10_000;
+    private static final ClassLoaderHierarchyHasher CLASS_LOADER_HASHER = classLoader -> null;
+
+    @Param({"btree", "append-only"})
+    String store;
+
+    @Param({"10"})
+    int inputProperties;
+
+    File directory;
+    ExecutionHistoryStore executionHistoryStore;
+    AfterExecutionState executionState;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("execution-history").toFile();
+        executionHistoryStore = createStore(store, directory);
+        executionState = createExecutionState(inputProperties);
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = ":project:task" + i;
+            executionHistoryStore.store(keys[i], true, executionState);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((AutoCloseable) executionHistoryStore).close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public Optional<PreviousExecutionState> load() {
+        return executionHistoryStore.load(randomKey());
+    }
+
+    @Benchmark
+    public void store() {
+        executionHistoryStore.store(randomKey(), true, executionState);
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)];
+    }
+
+    private static ExecutionHistoryStore createStore(String store, File directory) {
+        switch (store) {
+            case "btree":
+                return new BTreeExecutionHistoryStore(new File(directory, "executionHistory.bin"));
+            case "append-only":
+                return AppendOnlyExecutionHistoryStore.tryOpen(directory, Interners.newStrongInterner(), CLASS_LOADER_HASHER)
+                    .orElseThrow(() -> new IllegalStateException("Could not open execution history in " + directory));
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    private static AfterExecutionState createExecutionState(int inputPropertyCount) {
+        ImmutableSortedMap.Builder<String, ValueSnapshot> inputProperties = ImmutableSortedMap.naturalOrder();
+        for (int i = 0; i < inputPropertyCount; i++) {
+            inputProperties.put("input" + i, new StringValueSnapshot("value of input " + i));
+        }
+        ImplementationSnapshot implementation = ImplementationSnapshot.of("org.gradle.WorkType", Hashing.signature("WorkType"));
+        return new DefaultAfterExecutionState(
+            new DefaultBeforeExecutionState(
+                implementation,
+                ImmutableList.of(implementation),
+                inputProperties.build(),
+                ImmutableSortedMap.of(),
+                ImmutableSortedMap.of(),
+                null
+            ),
+            ImmutableSortedMap.of(),
+            new OriginMetadata("build-invocation-id", Duration.ofMillis(100)),
+            false
+        );
+    }
+
+    private static class BTreeExecutionHistoryStore implements ExecutionHistoryStore, AutoCloseable {
+        private final BTreePersistentIndexedCache<String, PreviousExecutionState> cache;
+
+        BTreeExecutionHistoryStore(File cacheFile) {
+            this.cache = new BTreePersistentIndexedCache<>(
+                cacheFile,
+                BaseSerializerFactory.STRING_SERIALIZER,
+                DefaultExecutionHistoryStore.createSerializer(Interners.newStrongInterner(), CLASS_LOADER_HASHER)
+            );
+        }
+
+        @Override
+        public synchronized Optional<PreviousExecutionState> load(String key) {
+            return Optional.ofNullable(cache.get(key));
+        }
+
+        @Override
+        public synchronized void store(String key, boolean successful, AfterExecutionState executionState) {
+            cache.put(key, DefaultExecutionHistoryStore.toPreviousExecutionState(successful, executionState));
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            cache.remove(key);
+        }
+
+        @Override
+        public synchronized void close() {
+            cache.close();
+        }
+    }
+}
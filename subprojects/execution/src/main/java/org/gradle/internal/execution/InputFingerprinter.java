@@ -55,6 +55,11 @@ interface Result {
          */
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> getAllFileFingerprints();
 
+        /**
+         * Returns the time in nanoseconds it took to snapshot and fingerprint each of the files fingerprinted just now.
+         */
+        ImmutableSortedMap<String, Long> getFileFingerprintingTimes();
+
         /**
          * Returns the file property names which need an isEmpty() check when used with {@link org.gradle.api.tasks.SkipWhenEmpty}.
          *
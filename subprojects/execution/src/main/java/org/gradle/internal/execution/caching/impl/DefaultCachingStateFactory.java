@@ -22,21 +22,30 @@
 import org.gradle.internal.execution.caching.CachingState;
 import org.gradle.internal.execution.caching.CachingStateFactory;
 import org.gradle.internal.execution.history.BeforeExecutionState;
+import org.gradle.internal.hash.HashFunction;
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
 import org.slf4j.Logger;
 
 public class DefaultCachingStateFactory implements CachingStateFactory {
     private final Logger logger;
+    private final HashFunction fileContentFunction;
 
-    public DefaultCachingStateFactory(Logger logger) {
+    public DefaultCachingStateFactory(Logger logger, HashFunction fileContentFunction) {
         this.logger = logger;
+        this.fileContentFunction = fileContentFunction;
     }
 
     @Override
     public final CachingState createCachingState(BeforeExecutionState beforeExecutionState, ImmutableList<CachingDisabledReason> cachingDisabledReasons) {
         final Hasher cacheKeyHasher = Hashing.newHasher();
 
+        if (fileContentFunction != Hashing.defaultFunction()) {
+            // Keep the cache keys of builds hashing file contents with a different function apart from each other
+            logger.warn("Appending file content hash algorithm to build cache key: {}", fileContentFunction.getAlgorithm());
+            cacheKeyHasher.putString(fileContentFunction.getAlgorithm());
+        }
+
         logger.warn("Appending implementation to build cache key: {}",
             beforeExecutionState.getImplementation());
         beforeExecutionState.getImplementation().appendToHasher(cacheKeyHasher);
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history;
+
+import org.gradle.caching.BuildCacheKey;
+
+import java.util.Optional;
+
+/**
+ * Records the build cache key that the outputs of each unit of work were last loaded or stored with.
+ *
+ * <p>As the inputs of most work do not change between builds, the recorded key is a good guess for the key of the next execution.
+ * It can be used to fetch the cache entry before the actual key is calculated.</p>
+ */
+public interface BuildCacheKeyHistory {
+    BuildCacheKeyHistory NONE = new BuildCacheKeyHistory() {
+        @Override
+        public Optional<BuildCacheKey> load(String identity) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void record(String identity, BuildCacheKey key) {
+        }
+    };
+
+    Optional<BuildCacheKey> load(String identity);
+
+    void record(String identity, BuildCacheKey key);
+}
@@ -16,11 +16,21 @@
 
 package org.gradle.internal.execution.history;
 
+import java.time.Duration;
 import java.util.Optional;
 
 public interface ExecutionHistoryStore {
     Optional<PreviousExecutionState> load(String key);
 
+    /**
+     * Loads only the execution time recorded in the origin metadata of the previous execution.
+     *
+     * <p>Implementations can override this to avoid loading the whole previous execution state.</p>
+     */
+    default Optional<Duration> loadExecutionTime(String key) {
+        return load(key).map(previousExecutionState -> previousExecutionState.getOriginMetadata().getExecutionTime());
+    }
+
     void store(
         String key,
         boolean successful,
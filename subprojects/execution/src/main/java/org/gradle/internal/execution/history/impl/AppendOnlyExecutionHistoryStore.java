@@ -0,0 +1,465 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.execution.history.AfterExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+import org.gradle.internal.execution.history.PreviousExecutionState;
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An execution history store that appends execution states to a log file, so that loads and stores from many workers can proceed concurrently.
+ *
+ * A store reserves a region at the end of the log and writes its record there using a positional write, without blocking stores for other keys.
+ * Reserving the region, writing the record and updating the index happen atomically for each key, so the index always points to the record written last.
+ * A load reads the latest record for its key using a positional read.
+ * The location of the latest record for each key is kept in an in-memory index, which is rebuilt from the record headers when the store is opened.
+ *
+ * When the log has grown to more than twice the size of its live records, it is compacted, both when the store is opened and while it is in use.
+ * Loads and stores wait while the log is being compacted.
+ * A log ending with an incomplete record, for example after a crash, is truncated to its last complete record.
+ * Records are checksummed, and a corrupt record is treated as missing history.
+ *
+ * The log is owned by a single process at a time. When the log is in use by another process or another build in this process,
+ * the store is opened read-only: it loads the history recorded so far, and forgets the history of work stored or removed by this build
+ * instead of recording it, see {@link #open(File, Interner, ClassLoaderHierarchyHasher)}.
+ */
+public class AppendOnlyExecutionHistoryStore implements ExecutionHistoryStore, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppendOnlyExecutionHistoryStore.class);
+
+    private static final String LOG_FILE_NAME = "executionHistory.log";
+    private static final String LOCK_FILE_NAME = "executionHistory.log.lock";
+    /**
+     * Record length, checksum of the key and the state, key length.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+    private static final long MIN_COMPACTION_SIZE = 16 * 1024 * 1024;
+
+    private final File logFile;
+    private final Serializer<PreviousExecutionState> serializer;
+    @Nullable
+    private final FileChannel lockChannel;
+    @Nullable
+    private final FileLock lock;
+    private final long minCompactionSize;
+    private final Map<String, RecordLocation> index;
+    private final AtomicLong end;
+    private final AtomicLong liveSize;
+    /**
+     * Held for reading by loads and stores, and for writing while compacting the log.
+     */
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    private AppendOnlyExecutionHistoryStore(
+        File logFile,
+        Serializer<PreviousExecutionState> serializer,
+        @Nullable FileChannel lockChannel,
+        @Nullable FileLock lock,
+        long minCompactionSize,
+        FileChannel channel,
+        Map<String, RecordLocation> index,
+        long end,
+        long liveSize
+    ) {
+        this.logFile = logFile;
+        this.serializer = serializer;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.minCompactionSize = minCompactionSize;
+        this.channel = channel;
+        this.index = index;
+        this.end = new AtomicLong(end);
+        this.liveSize = new AtomicLong(liveSize);
+    }
+
+    /**
+     * Opens the store in the given directory. The store is read-only when the log is in use by another process or another build in this process.
+     */
+    public static AppendOnlyExecutionHistoryStore open(File directory, Interner<String> stringInterner, ClassLoaderHierarchyHasher classLoaderHasher) {
+        return open(directory, DefaultExecutionHistoryStore.createSerializer(stringInterner, classLoaderHasher), MIN_COMPACTION_SIZE);
+    }
+
+    @VisibleForTesting
+    static AppendOnlyExecutionHistoryStore open(File directory, Serializer<PreviousExecutionState> serializer, long minCompactionSize) {
+        File logFile = new File(directory, LOG_FILE_NAME);
+        FileChannel lockChannel = null;
+        FileChannel channel = null;
+        try {
+            lockChannel = FileChannel.open(new File(directory, LOCK_FILE_NAME).toPath(), CREATE, WRITE);
+            FileLock lock;
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                lockChannel.close();
+                lockChannel = null;
+                LOGGER.info("Execution history in {} is in use by another build, opening it read-only. The execution history of this build is not recorded.", logFile);
+            }
+
+            Map<String, RecordLocation> index = new ConcurrentHashMap<>();
+            channel = FileChannel.open(logFile.toPath(), CREATE, READ, WRITE);
+            long end = readIndex(channel, index);
+            long liveSize = index.values().stream().mapToLong(location -> location.length).sum();
+            if (lock != null) {
+                if (end < channel.size()) {
+                    LOGGER.info("Discarding incomplete records at the end of {}", logFile);
+                    channel.truncate(end);
+                }
+                if (requiresCompaction(end, liveSize, minCompactionSize)) {
+                    channel = compact(logFile, channel, index);
+                    end = liveSize;
+                }
+            }
+            return new AppendOnlyExecutionHistoryStore(logFile, serializer, lockChannel, lock, minCompactionSize, channel, index, end, liveSize);
+        } catch (IOException e) {
+            for (FileChannel opened : new FileChannel[]{channel, lockChannel}) {
+                if (opened != null) {
+                    try {
+                        opened.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+            }
+            throw new UncheckedIOException("Could not open execution history in " + directory, e);
+        }
+    }
+
+    private static boolean requiresCompaction(long size, long liveSize, long minCompactionSize) {
+        return size > minCompactionSize && size > 2 * liveSize;
+    }
+
+    /**
+     * Reads the record headers of the log into the index and returns the end of the last complete record.
+     */
+    private static long readIndex(FileChannel channel, Map<String, RecordLocation> index) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            int keyLength = header.getInt(8);
+            if (keyLength <= 0 || length < HEADER_SIZE + keyLength || position + length > size) {
+                break;
+            }
+            ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+            readFully(channel, keyBuffer, position + HEADER_SIZE);
+            String key = new String(keyBuffer.array(), UTF_8);
+            if (length == HEADER_SIZE + keyLength) {
+                index.remove(key);
+            } else {
+                index.put(key, new RecordLocation(position, length));
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * Rewrites the log with only the live records, updating the index to the new locations.
+     */
+    private static FileChannel compact(File logFile, FileChannel channel, Map<String, RecordLocation> index) throws IOException {
+        LOGGER.info("Compacting {}", logFile);
+        File compactedFile = new File(logFile.getParentFile(), logFile.getName() + ".compacted");
+        List<Map.Entry<String, RecordLocation>> records = new ArrayList<>(index.entrySet());
+        // Copy in log order to read the old log sequentially
+        records.sort(Comparator.comparingLong(entry -> entry.getValue().position));
+        try (FileChannel compacted = FileChannel.open(compactedFile.toPath(), CREATE, WRITE)) {
+            compacted.truncate(0);
+            long position = 0;
+            for (Map.Entry<String, RecordLocation> record : records) {
+                RecordLocation location = record.getValue();
+                long copied = 0;
+                while (copied < location.length) {
+                    copied += channel.transferTo(location.position + copied, location.length - copied, compacted);
+                }
+                record.setValue(new RecordLocation(position, location.length));
+                position += location.length;
+            }
+        }
+        channel.close();
+        Files.move(compactedFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return FileChannel.open(logFile.toPath(), CREATE, READ, WRITE);
+    }
+
+    @Override
+    public Optional<PreviousExecutionState> load(String key) {
+        RecordLocation location;
+        byte[] record;
+        Lock readLock = compactionLock.readLock();
+        readLock.lock();
+        try {
+            location = index.get(key);
+            if (location == null) {
+                return Optional.empty();
+            }
+            record = new byte[location.length];
+            withChannel(channel -> readFully(channel, ByteBuffer.wrap(record), location.position));
+        } finally {
+            readLock.unlock();
+        }
+        ByteBuffer header = ByteBuffer.wrap(record);
+        int checksum = header.getInt(4);
+        int keyLength = header.getInt(8);
+        if (checksum != checksum(record, HEADER_SIZE, record.length - HEADER_SIZE)) {
+            LOGGER.warn("Discarding corrupt execution history for {} in {}", key, logFile);
+            discard(key, location);
+            return Optional.empty();
+        }
+        int stateOffset = HEADER_SIZE + keyLength;
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(record, stateOffset, record.length - stateOffset));
+            return Optional.of(serializer.read(decoder));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private void discard(String key, RecordLocation location) {
+        Lock readLock = compactionLock.readLock();
+        readLock.lock();
+        try {
+            index.computeIfPresent(key, (k, current) -> {
+                if (current != location) {
+                    return current;
+                }
+                liveSize.addAndGet(-current.length);
+                return null;
+            });
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void store(String key, boolean successful, AfterExecutionState executionState) {
+        append(key, DefaultExecutionHistoryStore.toPreviousExecutionState(successful, executionState));
+    }
+
+    @Override
+    public void remove(String key) {
+        append(key, null);
+    }
+
+    private void append(String key, @Nullable PreviousExecutionState state) {
+        if (lock == null) {
+            // Read-only, the history loaded for the key is not up-to-date anymore
+            index.remove(key);
+            return;
+        }
+        byte[] keyBytes = key.getBytes(UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+        output.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        output.write(keyBytes, 0, keyBytes.length);
+        if (state != null) {
+            KryoBackedEncoder encoder = new KryoBackedEncoder(output);
+            try {
+                serializer.write(encoder, state);
+                encoder.flush();
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        byte[] record = output.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, record.length);
+        buffer.putInt(4, checksum(record, HEADER_SIZE, record.length - HEADER_SIZE));
+        buffer.putInt(8, keyBytes.length);
+
+        Lock readLock = compactionLock.readLock();
+        readLock.lock();
+        try {
+            // Append under the lock of the key in the index, so that a concurrent store for the same key cannot overtake this one
+            index.compute(key, (k, previous) -> {
+                long position = end.getAndAdd(record.length);
+                withChannel(channel -> {
+                    buffer.clear();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, position + buffer.position());
+                    }
+                });
+                long previousLength = previous == null ? 0 : previous.length;
+                if (state == null) {
+                    liveSize.addAndGet(-previousLength);
+                    return null;
+                }
+                liveSize.addAndGet(record.length - previousLength);
+                return new RecordLocation(position, record.length);
+            });
+        } finally {
+            readLock.unlock();
+        }
+        compactIfRequired();
+    }
+
+    private void compactIfRequired() {
+        if (!requiresCompaction(end.get(), liveSize.get(), minCompactionSize)) {
+            return;
+        }
+        Lock writeLock = compactionLock.writeLock();
+        writeLock.lock();
+        // An interrupt during the compaction would close the log
+        boolean interrupted = Thread.interrupted();
+        try {
+            long compactedSize = liveSize.get();
+            if (!closed && requiresCompaction(end.get(), compactedSize, minCompactionSize)) {
+                channel = compact(logFile, channel, index);
+                end.set(compactedSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compact execution history in " + logFile, e);
+        } finally {
+            writeLock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs the given action against the log, even when the current thread has been interrupted.
+     *
+     * An interrupt during an operation on a file channel closes the channel, so the interrupt status is cleared for the
+     * duration of the operation, and the channel is reopened if it has been closed by an interrupt anyway,
+     * possibly of another thread using the channel at the same time.
+     */
+    private void withChannel(ChannelAction action) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            FileChannel current = channel;
+            try {
+                action.execute(current);
+            } catch (ClosedChannelException e) {
+                if (closed) {
+                    throw e;
+                }
+                // Closed by an interrupt of this or another thread
+                interrupted |= Thread.interrupted();
+                action.execute(reopen(current));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not access execution history in " + logFile, e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized FileChannel reopen(FileChannel closedChannel) throws IOException {
+        if (channel == closedChannel) {
+            channel = FileChannel.open(logFile.toPath(), READ, WRITE);
+        }
+        return channel;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Lock writeLock = compactionLock.writeLock();
+        writeLock.lock();
+        try {
+            closed = true;
+            channel.close();
+        } finally {
+            writeLock.unlock();
+            if (lock != null) {
+                try {
+                    lock.release();
+                } finally {
+                    lockChannel.close();
+                }
+            }
+        }
+    }
+
+    private interface ChannelAction {
+        void execute(FileChannel channel) throws IOException;
+    }
+
+    private static class RecordLocation {
+        private final long position;
+        private final int length;
+
+        RecordLocation(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
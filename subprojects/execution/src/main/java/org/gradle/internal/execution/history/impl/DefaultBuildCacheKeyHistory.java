@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl;
+
+import org.gradle.cache.IndexedCache;
+import org.gradle.cache.IndexedCacheParameters;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.DefaultBuildCacheKey;
+import org.gradle.internal.execution.history.BuildCacheKeyHistory;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.HashCodeSerializer;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+public class DefaultBuildCacheKeyHistory implements BuildCacheKeyHistory {
+
+    private final IndexedCache<String, HashCode> store;
+
+    public DefaultBuildCacheKeyHistory(
+        Supplier<PersistentCache> cache,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory
+    ) {
+        this.store = cache.get().createIndexedCache(
+            IndexedCacheParameters.of("buildCacheKeys", String.class, new HashCodeSerializer())
+                .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+        );
+    }
+
+    @Override
+    public Optional<BuildCacheKey> load(String identity) {
+        return Optional.ofNullable(store.getIfPresent(identity))
+            .map(DefaultBuildCacheKey::new);
+    }
+
+    @Override
+    public void record(String identity, BuildCacheKey key) {
+        HashCode hashCode = HashCode.fromBytes(key.toByteArray());
+        if (!hashCode.equals(store.getIfPresent(identity))) {
+            store.put(identity, hashCode);
+        }
+    }
+}
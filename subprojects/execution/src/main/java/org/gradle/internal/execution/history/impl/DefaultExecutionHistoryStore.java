@@ -29,7 +29,10 @@
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.serialize.BaseSerializerFactory;
 
+import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -39,6 +42,10 @@
 public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
 
     private final IndexedCache<String, PreviousExecutionState> store;
+    // The execution times of the previous executions, so that they can be looked up without loading the whole execution state.
+    // Only maintained when execution times are looked up, i.e. when scheduling by critical path.
+    @Nullable
+    private final IndexedCache<String, Long> executionTimes;
 
     public DefaultExecutionHistoryStore(
         Supplier<PersistentCache> cache,
@@ -46,17 +53,38 @@ public DefaultExecutionHistoryStore(
         Interner<String> stringInterner,
         ClassLoaderHierarchyHasher classLoaderHasher
     ) {
-        DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
-            new FileCollectionFingerprintSerializer(stringInterner),
-            new FileSystemSnapshotSerializer(stringInterner),
-            classLoaderHasher
-        );
+        this(cache, inMemoryCacheDecoratorFactory, stringInterner, classLoaderHasher, false);
+    }
+
+    public DefaultExecutionHistoryStore(
+        Supplier<PersistentCache> cache,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+        Interner<String> stringInterner,
+        ClassLoaderHierarchyHasher classLoaderHasher,
+        boolean indexExecutionTimes
+    ) {
+        DefaultPreviousExecutionStateSerializer serializer = createSerializer(stringInterner, classLoaderHasher);
 
         CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
-        this.store = cache.get().createIndexedCache(
+        PersistentCache persistentCache = cache.get();
+        this.store = persistentCache.createIndexedCache(
             IndexedCacheParameters.of("executionHistory", String.class, serializer)
             .withCacheDecorator(inMemoryCacheDecorator)
         );
+        this.executionTimes = indexExecutionTimes
+            ? persistentCache.createIndexedCache(
+                IndexedCacheParameters.of("executionTimes", String.class, BaseSerializerFactory.LONG_SERIALIZER)
+                .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, false))
+            )
+            : null;
+    }
+
+    static DefaultPreviousExecutionStateSerializer createSerializer(Interner<String> stringInterner, ClassLoaderHierarchyHasher classLoaderHasher) {
+        return new DefaultPreviousExecutionStateSerializer(
+            new FileCollectionFingerprintSerializer(stringInterner),
+            new FileSystemSnapshotSerializer(stringInterner),
+            classLoaderHasher
+        );
     }
 
     @Override
@@ -64,9 +92,36 @@ public Optional<PreviousExecutionState> load(String key) {
         return Optional.ofNullable(store.getIfPresent(key));
     }
 
+    @Override
+    public Optional<Duration> loadExecutionTime(String key) {
+        if (executionTimes != null) {
+            Long executionTime = executionTimes.getIfPresent(key);
+            if (executionTime != null) {
+                return Optional.of(Duration.ofMillis(executionTime));
+            }
+        }
+        // The history may have been stored while execution times were not indexed
+        return ExecutionHistoryStore.super.loadExecutionTime(key);
+    }
+
     @Override
     public void store(String key, boolean successful, AfterExecutionState executionState) {
-        store.put(key, new DefaultPreviousExecutionState(
+        store.put(key, toPreviousExecutionState(successful, executionState));
+        if (executionTimes != null) {
+            executionTimes.put(key, executionState.getOriginMetadata().getExecutionTime().toMillis());
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        store.remove(key);
+        if (executionTimes != null) {
+            executionTimes.remove(key);
+        }
+    }
+
+    static PreviousExecutionState toPreviousExecutionState(boolean successful, AfterExecutionState executionState) {
+        return new DefaultPreviousExecutionState(
             executionState.getOriginMetadata(),
             executionState.getImplementation(),
             executionState.getAdditionalImplementations(),
@@ -74,12 +129,7 @@ public void store(String key, boolean successful, AfterExecutionState executionS
             prepareForSerialization(executionState.getInputFileProperties()),
             executionState.getOutputFilesProducedByWork(),
             successful
-        ));
-    }
-
-    @Override
-    public void remove(String key) {
-        store.remove(key);
+        );
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
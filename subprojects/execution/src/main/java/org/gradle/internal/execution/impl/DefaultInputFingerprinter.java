@@ -31,24 +31,47 @@
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.properties.InputBehavior;
 import org.gradle.internal.snapshot.ValueSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 
+/**
+ * Fingerprints the inputs of a unit of work.
+ *
+ * <p>When a fork/join pool is given, the file collections of the input file properties are still resolved and snapshotted on the calling thread,
+ * while the snapshots are fingerprinted in parallel on the pool. The fingerprints are the same as when fingerprinting sequentially.</p>
+ */
 public class DefaultInputFingerprinter implements InputFingerprinter {
 
     private final FileCollectionSnapshotter snapshotter;
     private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
     private final ValueSnapshotter valueSnapshotter;
+    private final ForkJoinPool fingerprintingPool;
 
     public DefaultInputFingerprinter(
         FileCollectionSnapshotter snapshotter,
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
         ValueSnapshotter valueSnapshotter
+    ) {
+        this(snapshotter, fingerprinterRegistry, valueSnapshotter, null);
+    }
+
+    public DefaultInputFingerprinter(
+        FileCollectionSnapshotter snapshotter,
+        FileCollectionFingerprinterRegistry fingerprinterRegistry,
+        ValueSnapshotter valueSnapshotter,
+        @Nullable ForkJoinPool fingerprintingPool
     ) {
         this.snapshotter = snapshotter;
         this.fingerprinterRegistry = fingerprinterRegistry;
         this.valueSnapshotter = valueSnapshotter;
+        this.fingerprintingPool = fingerprintingPool;
     }
 
     @Override
@@ -59,7 +82,7 @@ public Result fingerprintInputProperties(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints,
         Consumer<InputVisitor> inputs
     ) {
-        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, knownCurrentValueSnapshots, knownCurrentFingerprints);
+        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, previousFingerprints, snapshotter, fingerprinterRegistry, valueSnapshotter, fingerprintingPool, knownCurrentValueSnapshots, knownCurrentFingerprints);
         inputs.accept(visitor);
         return visitor.complete();
     }
@@ -70,12 +93,15 @@ private static class InputCollectingVisitor implements InputVisitor {
         private final FileCollectionSnapshotter snapshotter;
         private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
         private final ValueSnapshotter valueSnapshotter;
+        private final ForkJoinPool fingerprintingPool;
         private final ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints;
 
         private final ImmutableSortedMap.Builder<String, ValueSnapshot> valueSnapshotsBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
+        private final ImmutableSortedMap.Builder<String, Long> fingerprintingTimesBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSet.Builder<String> propertiesRequiringIsEmptyCheck = ImmutableSet.builder();
+        private final List<FingerprintFileProperty> pendingFingerprints = new ArrayList<>();
 
         public InputCollectingVisitor(
             ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots,
@@ -83,6 +109,7 @@ public InputCollectingVisitor(
             FileCollectionSnapshotter snapshotter,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
             ValueSnapshotter valueSnapshotter,
+            @Nullable ForkJoinPool fingerprintingPool,
             ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints
         ) {
@@ -91,6 +118,7 @@ public InputCollectingVisitor(
             this.snapshotter = snapshotter;
             this.fingerprinterRegistry = fingerprinterRegistry;
             this.valueSnapshotter = valueSnapshotter;
+            this.fingerprintingPool = fingerprintingPool;
             this.knownCurrentValueSnapshots = knownCurrentValueSnapshots;
             this.knownCurrentFingerprints = knownCurrentFingerprints;
         }
@@ -109,6 +137,7 @@ public void visitInputProperty(String propertyName, ValueSupplier value) {
                     valueSnapshotsBuilder.put(propertyName, valueSnapshotter.snapshot(actualValue, previousSnapshot));
                 }
             } catch (Exception e) {
+                completePendingFingerprints();
                 throw new InputFingerprintingException(
                     propertyName,
                     String.format("value '%s' cannot be serialized",
@@ -129,25 +158,86 @@ public void visitInputFileProperty(String propertyName, InputBehavior behavior,
                 value.getDirectorySensitivity(),
                 value.getLineEndingNormalization());
             FileCollectionFingerprinter fingerprinter = fingerprinterRegistry.getFingerprinter(normalizationSpec);
+            long startTime = System.nanoTime();
+            FileCollectionSnapshotter.Result result;
             try {
-                FileCollectionSnapshotter.Result result = snapshotter.snapshot(value.getFiles());
-                CurrentFileCollectionFingerprint fingerprint = fingerprinter.fingerprint(result.getSnapshot(), previousFingerprint);
-                fingerprintsBuilder.put(propertyName, fingerprint);
-                if (result.containsArchiveTrees()) {
-                    propertiesRequiringIsEmptyCheck.add(propertyName);
-                }
+                result = snapshotter.snapshot(value.getFiles());
             } catch (Exception e) {
+                // Report failures in the order of the properties, as when fingerprinting sequentially
+                completePendingFingerprints();
                 throw new InputFileFingerprintingException(propertyName, e);
             }
+            FingerprintFileProperty fingerprintTask = new FingerprintFileProperty(propertyName, fingerprinter, result.getSnapshot(), previousFingerprint, System.nanoTime() - startTime);
+            if (fingerprintingPool == null) {
+                fingerprintTask.invoke();
+                completeFingerprint(fingerprintTask);
+            } else {
+                fingerprintingPool.execute(fingerprintTask);
+                pendingFingerprints.add(fingerprintTask);
+            }
+            if (result.containsArchiveTrees()) {
+                propertiesRequiringIsEmptyCheck.add(propertyName);
+            }
+        }
+
+        private void completePendingFingerprints() {
+            for (FingerprintFileProperty fingerprintTask : pendingFingerprints) {
+                fingerprintTask.join();
+                completeFingerprint(fingerprintTask);
+            }
+            pendingFingerprints.clear();
+        }
+
+        private void completeFingerprint(FingerprintFileProperty fingerprintTask) {
+            if (fingerprintTask.failure != null) {
+                throw new InputFileFingerprintingException(fingerprintTask.propertyName, fingerprintTask.failure);
+            }
+            fingerprintsBuilder.put(fingerprintTask.propertyName, fingerprintTask.fingerprint);
+            fingerprintingTimesBuilder.put(fingerprintTask.propertyName, fingerprintTask.time);
         }
 
         public Result complete() {
+            completePendingFingerprints();
             return new InputFingerprints(
                 knownCurrentValueSnapshots,
                 valueSnapshotsBuilder.build(),
                 knownCurrentFingerprints,
                 fingerprintsBuilder.build(),
-                propertiesRequiringIsEmptyCheck.build());
+                propertiesRequiringIsEmptyCheck.build(),
+                fingerprintingTimesBuilder.build());
+        }
+    }
+
+    /**
+     * Fingerprints the snapshot of an input file property, keeping the failure instead of throwing it,
+     * so it is reported in the same way no matter on which thread the fingerprint has been calculated.
+     */
+    private static class FingerprintFileProperty extends RecursiveAction {
+        private final String propertyName;
+        private final FileCollectionFingerprinter fingerprinter;
+        private final FileSystemSnapshot snapshot;
+        private final FileCollectionFingerprint previousFingerprint;
+        private long time;
+        private CurrentFileCollectionFingerprint fingerprint;
+        private Exception failure;
+
+        public FingerprintFileProperty(String propertyName, FileCollectionFingerprinter fingerprinter, FileSystemSnapshot snapshot, @Nullable FileCollectionFingerprint previousFingerprint, long snapshottingTime) {
+            this.propertyName = propertyName;
+            this.fingerprinter = fingerprinter;
+            this.snapshot = snapshot;
+            this.previousFingerprint = previousFingerprint;
+            this.time = snapshottingTime;
+        }
+
+        @Override
+        protected void compute() {
+            long startTime = System.nanoTime();
+            try {
+                fingerprint = fingerprinter.fingerprint(snapshot, previousFingerprint);
+            } catch (Exception e) {
+                failure = e;
+            }
+            time += System.nanoTime() - startTime;
         }
     }
 
@@ -158,6 +248,7 @@ public static class InputFingerprints implements InputFingerprinter.Result {
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fileFingerprints;
         private final ImmutableSet<String> propertiesRequiringIsEmptyCheck;
+        private final ImmutableSortedMap<String, Long> fileFingerprintingTimes;
 
         public InputFingerprints(
             ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots,
@@ -165,12 +256,24 @@ public InputFingerprints(
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fileFingerprints,
             ImmutableSet<String> propertiesRequiringIsEmptyCheck
+        ) {
+            this(knownCurrentValueSnapshots, valueSnapshots, knownCurrentFingerprints, fileFingerprints, propertiesRequiringIsEmptyCheck, ImmutableSortedMap.of());
+        }
+
+        public InputFingerprints(
+            ImmutableSortedMap<String, ValueSnapshot> knownCurrentValueSnapshots,
+            ImmutableSortedMap<String, ValueSnapshot> valueSnapshots,
+            ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownCurrentFingerprints,
+            ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fileFingerprints,
+            ImmutableSet<String> propertiesRequiringIsEmptyCheck,
+            ImmutableSortedMap<String, Long> fileFingerprintingTimes
         ) {
             this.knownCurrentValueSnapshots = knownCurrentValueSnapshots;
             this.valueSnapshots = valueSnapshots;
             this.knownCurrentFingerprints = knownCurrentFingerprints;
             this.fileFingerprints = fileFingerprints;
             this.propertiesRequiringIsEmptyCheck = propertiesRequiringIsEmptyCheck;
+            this.fileFingerprintingTimes = fileFingerprintingTimes;
         }
 
         public ImmutableSortedMap<String, ValueSnapshot> getValueSnapshots() {
@@ -191,6 +294,11 @@ public ImmutableSortedMap<String, CurrentFileCollectionFingerprint> getAllFileFi
             return union(knownCurrentFingerprints, fileFingerprints);
         }
 
+        @Override
+        public ImmutableSortedMap<String, Long> getFileFingerprintingTimes() {
+            return fileFingerprintingTimes;
+        }
+
         @Override
         public ImmutableSet<String> getPropertiesRequiringIsEmptyCheck() {
             return propertiesRequiringIsEmptyCheck;
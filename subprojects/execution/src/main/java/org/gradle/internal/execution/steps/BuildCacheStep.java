@@ -30,6 +30,7 @@
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.execution.history.AfterExecutionState;
 import org.gradle.internal.execution.history.BeforeExecutionState;
+import org.gradle.internal.execution.history.BuildCacheKeyHistory;
 import org.gradle.internal.execution.history.impl.DefaultAfterExecutionState;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.TreeType;
@@ -47,17 +48,20 @@ public class BuildCacheStep implements Step<IncrementalChangesContext, AfterExec
     private static final Logger LOGGER = LoggerFactory.getLogger(BuildCacheStep.class);
 
     private final BuildCacheController buildCache;
+    private final BuildCacheKeyHistory buildCacheKeyHistory;
     private final Deleter deleter;
     private final OutputChangeListener outputChangeListener;
     private final Step<? super IncrementalChangesContext, ? extends AfterExecutionResult> delegate;
 
     public BuildCacheStep(
         BuildCacheController buildCache,
+        BuildCacheKeyHistory buildCacheKeyHistory,
         Deleter deleter,
         OutputChangeListener outputChangeListener,
         Step<? super IncrementalChangesContext, ? extends AfterExecutionResult> delegate
     ) {
         this.buildCache = buildCache;
+        this.buildCacheKeyHistory = buildCacheKeyHistory;
         this.deleter = deleter;
         this.outputChangeListener = outputChangeListener;
         this.delegate = delegate;
@@ -84,6 +88,7 @@ private AfterExecutionResult executeWithCache(UnitOfWork work, IncrementalChange
                             work.getDisplayName(), cacheKey.getHashCode());
                     }
                     cleanLocalState(context.getWorkspace(), work);
+                    buildCacheKeyHistory.record(cacheableWork.getIdentity(), cacheKey);
                     OriginMetadata originMetadata = cacheHit.getOriginMetadata();
                     AfterExecutionState afterExecutionState = new DefaultAfterExecutionState(
                         beforeExecutionState,
@@ -161,6 +166,7 @@ private void storeInCacheUnlessDisabled(CacheableWork cacheableWork, BuildCacheK
     private void store(CacheableWork work, BuildCacheKey cacheKey, ImmutableSortedMap<String, FileSystemSnapshot> outputFilesProducedByWork, Duration executionTime) {
         try {
             buildCache.store(cacheKey, work, outputFilesProducedByWork, executionTime);
+            buildCacheKeyHistory.record(work.getIdentity(), cacheKey);
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Stored cache entry for {} with cache key {}",
                     work.getDisplayName(), cacheKey.getHashCode());
@@ -29,6 +29,7 @@
 import org.gradle.internal.execution.history.impl.DefaultBeforeExecutionState;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.hash.ClassLoaderHierarchyHasher;
+import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.BuildOperationType;
@@ -40,6 +41,7 @@
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Map;
 import java.util.Optional;
 
 public class CaptureStateBeforeExecutionStep<C extends PreviousExecutionContext, R extends CachingResult> extends BuildOperationStep<C, R> {
@@ -79,9 +81,7 @@ private BeforeExecutionState captureExecutionState(UnitOfWork work, PreviousExec
 
                 OverlappingOutputs overlappingOutputs = detectOverlappingOutputs(work, context, unfilteredOutputSnapshots);
 
-                BeforeExecutionState executionState = captureExecutionStateWithOutputs(work, context, unfilteredOutputSnapshots, overlappingOutputs);
-                operationContext.setResult(Operation.Result.INSTANCE);
-                return executionState;
+                return captureExecutionStateWithOutputs(work, context, unfilteredOutputSnapshots, overlappingOutputs, operationContext);
             },
             BuildOperationDescriptor
                 .displayName("Snapshot inputs and outputs before executing " + work.getDisplayName())
@@ -100,7 +100,13 @@ private OverlappingOutputs detectOverlappingOutputs(UnitOfWork work, PreviousExe
         return overlappingOutputDetector.detect(previousOutputSnapshots, unfilteredOutputSnapshots);
     }
 
-    private BeforeExecutionState captureExecutionStateWithOutputs(UnitOfWork work, PreviousExecutionContext context, ImmutableSortedMap<String, FileSystemSnapshot> unfilteredOutputSnapshots, @Nullable OverlappingOutputs overlappingOutputs) {
+    private BeforeExecutionState captureExecutionStateWithOutputs(
+        UnitOfWork work,
+        PreviousExecutionContext context,
+        ImmutableSortedMap<String, FileSystemSnapshot> unfilteredOutputSnapshots,
+        @Nullable OverlappingOutputs overlappingOutputs,
+        BuildOperationContext operationContext
+    ) {
         Optional<PreviousExecutionState> previousExecutionState = context.getPreviousExecutionState();
 
         ImplementationsBuilder implementationsBuilder = new ImplementationsBuilder(classLoaderHierarchyHasher);
@@ -127,6 +133,13 @@ private BeforeExecutionState captureExecutionStateWithOutputs(UnitOfWork work, P
             context.getInputFileProperties(),
             work::visitRegularInputs
         );
+        ImmutableSortedMap<String, Long> fileFingerprintingTimes = newInputs.getFileFingerprintingTimes();
+        operationContext.setResult(new Operation.Result() {
+            @Override
+            public Map<String, Long> getInputFileFingerprintingTimes() {
+                return fileFingerprintingTimes;
+            }
+        });
 
         return new DefaultBeforeExecutionState(
             implementation,
@@ -183,8 +196,10 @@ interface Details {
         }
 
         interface Result {
-            Result INSTANCE = new Result() {
-            };
+            /**
+             * Returns the time in nanoseconds it took to snapshot and fingerprint each input file property which was fingerprinted by the operation.
+             */
+            Map<String, Long> getInputFileFingerprintingTimes();
         }
     }
 }
@@ -27,6 +27,8 @@
 import org.gradle.internal.execution.caching.impl.DefaultCachingStateFactory;
 import org.gradle.internal.execution.history.BeforeExecutionState;
 import org.gradle.internal.execution.history.OverlappingOutputs;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.NOPLogger;
@@ -43,15 +45,29 @@
 
     private final BuildCacheController buildCache;
     private final boolean buildScansEnabled;
+    private final HashFunction fileContentFunction;
     private final Step<? super CachingContext, ? extends UpToDateResult> delegate;
 
     public ResolveCachingStateStep(
         BuildCacheController buildCache,
         boolean buildScansEnabled,
         Step<? super CachingContext, ? extends UpToDateResult> delegate
+    ) {
+        this(buildCache, buildScansEnabled, Hashing.defaultFunction(), delegate);
+    }
+
+    /**
+     * @param fileContentFunction The function used to hash the contents of the input files of the work.
+     */
+    public ResolveCachingStateStep(
+        BuildCacheController buildCache,
+        boolean buildScansEnabled,
+        HashFunction fileContentFunction,
+        Step<? super CachingContext, ? extends UpToDateResult> delegate
     ) {
         this.buildCache = buildCache;
         this.buildScansEnabled = buildScansEnabled;
+        this.fileContentFunction = fileContentFunction;
         this.delegate = delegate;
     }
 
@@ -81,7 +97,7 @@ private CachingState calculateCachingState(UnitOfWork work, BeforeExecutionState
         Logger logger = buildCache.isEmitDebugLogging()
             ? LOGGER
             : NOPLogger.NOP_LOGGER;
-        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger);
+        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger, fileContentFunction);
 
         ImmutableList.Builder<CachingDisabledReason> cachingDisabledReasonsBuilder = ImmutableList.builder();
         if (!buildCache.isEnabled()) {
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import com.google.common.collect.Interners
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.execution.history.AfterExecutionState
+import org.gradle.internal.hash.ClassLoaderHierarchyHasher
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.time.Duration
+
+import static org.gradle.internal.hash.TestHashCodes.hashCodeFrom
+
+class AppendOnlyExecutionHistoryStoreTest extends Specification {
+
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = TestNameTestDirectoryProvider.newInstance(getClass())
+
+    def classLoaderHasher = Stub(ClassLoaderHierarchyHasher)
+    def stores = []
+
+    def cleanup() {
+        stores*.close()
+    }
+
+    def "loads stored execution state"() {
+        def store = open()
+
+        when:
+        store.store("key", true, executionState("build-1"))
+        def loaded = store.load("key")
+
+        then:
+        loaded.present
+        loaded.get().originMetadata.buildInvocationId == "build-1"
+        loaded.get().implementation.classIdentifier == "WorkType"
+        loaded.get().successful
+        !store.load("other").present
+    }
+
+    def "loads latest execution state after reopening"() {
+        def store = open()
+        store.store("key", true, executionState("build-1"))
+        store.store("other", true, executionState("build-1"))
+        store.store("key", false, executionState("build-2"))
+        store.remove("other")
+        close(store)
+
+        when:
+        def reopened = open()
+
+        then:
+        reopened.load("key").get().originMetadata.buildInvocationId == "build-2"
+        !reopened.load("key").get().successful
+        !reopened.load("other").present
+    }
+
+    def "discards incomplete record at the end of the log"() {
+        def store = open()
+        store.store("key", true, executionState("build-1"))
+        store.store("other", true, executionState("build-1"))
+        close(store)
+        def log = temporaryFolder.file("executionHistory.log")
+        def bytes = log.bytes
+        log.bytes = Arrays.copyOf(bytes, bytes.length - 3)
+
+        when:
+        def reopened = open()
+
+        then:
+        reopened.load("key").present
+        !reopened.load("other").present
+
+        when:
+        reopened.store("other", true, executionState("build-2"))
+
+        then:
+        reopened.load("other").get().originMetadata.buildInvocationId == "build-2"
+    }
+
+    def "opens read-only while in use"() {
+        def owner = open()
+        owner.store("key", true, executionState("build-1"))
+        owner.store("other", true, executionState("build-1"))
+
+        when:
+        def readOnly = open()
+
+        then:
+        readOnly.load("key").get().originMetadata.buildInvocationId == "build-1"
+
+        when:
+        readOnly.store("key", true, executionState("build-2"))
+        readOnly.remove("other")
+
+        then:
+        !readOnly.load("key").present
+        owner.load("key").get().originMetadata.buildInvocationId == "build-1"
+        owner.load("other").present
+
+        when:
+        close(readOnly)
+        close(owner)
+        def reopened = open()
+
+        then:
+        reopened.load("key").get().originMetadata.buildInvocationId == "build-1"
+        reopened.load("other").present
+    }
+
+    def "compacts the log while in use"() {
+        def store = open(1024)
+        def log = temporaryFolder.file("executionHistory.log")
+
+        when:
+        (1..100).each { index ->
+            store.store("key", true, executionState("build-$index"))
+            store.store("other", true, executionState("build-$index"))
+        }
+
+        then:
+        log.length() < 2048
+        store.load("key").get().originMetadata.buildInvocationId == "build-100"
+        store.load("other").get().originMetadata.buildInvocationId == "build-100"
+
+        when:
+        close(store)
+        def reopened = open()
+
+        then:
+        reopened.load("key").get().originMetadata.buildInvocationId == "build-100"
+        reopened.load("other").get().originMetadata.buildInvocationId == "build-100"
+    }
+
+    def "keeps the latest record of a key stored concurrently"() {
+        def store = open(1024)
+
+        when:
+        (1..8).collect { thread ->
+            Thread.start {
+                (1..50).each { index ->
+                    store.store("key", true, executionState("build-$thread-$index"))
+                }
+            }
+        }*.join()
+        def loaded = store.load("key").get().originMetadata.buildInvocationId
+        close(store)
+        def reopened = open()
+
+        then:
+        reopened.load("key").get().originMetadata.buildInvocationId == loaded
+    }
+
+    def "can store and load concurrently"() {
+        def store = open()
+
+        when:
+        (1..8).collect { thread ->
+            Thread.start {
+                (1..50).each { index ->
+                    store.store("key-$thread-$index", true, executionState("build-$thread-$index"))
+                    assert store.load("key-$thread-$index").get().originMetadata.buildInvocationId == "build-$thread-$index"
+                }
+            }
+        }*.join()
+        close(store)
+        def reopened = open()
+
+        then:
+        (1..8).every { thread ->
+            (1..50).every { index ->
+                reopened.load("key-$thread-$index").get().originMetadata.buildInvocationId == "build-$thread-$index"
+            }
+        }
+    }
+
+    private AppendOnlyExecutionHistoryStore open() {
+        def store = AppendOnlyExecutionHistoryStore.open(temporaryFolder.testDirectory, Interners.newStrongInterner(), classLoaderHasher)
+        stores << store
+        return store
+    }
+
+    private AppendOnlyExecutionHistoryStore open(long minCompactionSize) {
+        def serializer = DefaultExecutionHistoryStore.createSerializer(Interners.newStrongInterner(), classLoaderHasher)
+        def store = AppendOnlyExecutionHistoryStore.open(temporaryFolder.testDirectory, serializer, minCompactionSize)
+        stores << store
+        return store
+    }
+
+    private void close(AppendOnlyExecutionHistoryStore store) {
+        store.close()
+        stores.remove(store)
+    }
+
+    private AfterExecutionState executionState(String buildInvocationId) {
+        Stub(AfterExecutionState) {
+            getOriginMetadata() >> new OriginMetadata(buildInvocationId, Duration.ofMillis(10))
+            getImplementation() >> ImplementationSnapshot.of("WorkType", hashCodeFrom(1))
+            getAdditionalImplementations() >> ImmutableList.of()
+            getInputProperties() >> ImmutableSortedMap.of()
+            getInputFileProperties() >> ImmutableSortedMap.of()
+            getOutputFilesProducedByWork() >> ImmutableSortedMap.of()
+        }
+    }
+}
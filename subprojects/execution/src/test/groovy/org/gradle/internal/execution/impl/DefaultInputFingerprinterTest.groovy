@@ -36,6 +36,8 @@ import org.gradle.internal.snapshot.ValueSnapshot
 import org.gradle.internal.snapshot.ValueSnapshotter
 import spock.lang.Specification
 
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinWorkerThread
 import java.util.function.Consumer
 
 import static org.gradle.internal.properties.InputBehavior.NON_INCREMENTAL
@@ -78,6 +80,89 @@ class DefaultInputFingerprinterTest extends Specification {
         then:
         result.valueSnapshots as Map == ["input": inputSnapshot]
         result.fileFingerprints as Map == ["file": fileInputFingerprint]
+        result.fileFingerprintingTimes.keySet() == ["file"] as Set
+    }
+
+    def "fingerprints file properties in parallel on the fingerprinting pool"() {
+        def pool = new ForkJoinPool(2)
+        inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, pool)
+        def otherFileInput = Mock(FileCollection)
+        def otherFileInputSnapshotResult = Mock(FileCollectionSnapshotter.Result)
+        def otherFileInputSnapshot = Mock(FileSystemSnapshot)
+        def otherFileInputFingerprint = Mock(CurrentFileCollectionFingerprint)
+        def fingerprintingThreads = [].asSynchronized()
+
+        when:
+        def result = fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(fileInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "otherFile",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(otherFileInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { otherFileInput }))
+        }
+
+        then:
+        1 * snapshotter.snapshot(fileInput) >> fileInputSnapshotResult
+        _ * fileInputSnapshotResult.containsArchiveTrees() >> false
+        1 * fileInputSnapshotResult.snapshot >> fileInputSnapshot
+        1 * snapshotter.snapshot(otherFileInput) >> otherFileInputSnapshotResult
+        _ * otherFileInputSnapshotResult.containsArchiveTrees() >> false
+        1 * otherFileInputSnapshotResult.snapshot >> otherFileInputSnapshot
+        1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> {
+            fingerprintingThreads << Thread.currentThread()
+            fileInputFingerprint
+        }
+        1 * fingerprinter.fingerprint(otherFileInputSnapshot, null) >> {
+            fingerprintingThreads << Thread.currentThread()
+            otherFileInputFingerprint
+        }
+        0 * _
+
+        then:
+        result.fileFingerprints as Map == ["file": fileInputFingerprint, "otherFile": otherFileInputFingerprint]
+        result.fileFingerprintingTimes.keySet() == ["file", "otherFile"] as Set
+        fingerprintingThreads.every { it instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) it).pool == pool }
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "reports the file fingerprinting problem of the first property when fingerprinting in parallel"() {
+        def pool = new ForkJoinPool(2)
+        inputFingerprinter = new DefaultInputFingerprinter(snapshotter, fingerprinterRegistry, valueSnapshotter, pool)
+        def failure = new UncheckedIOException(new IOException("Error"))
+        def failingInput = Mock(FileCollection)
+
+        when:
+        fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(fileInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "failing",
+                NON_INCREMENTAL,
+                new InputFileValueSupplier(failingInput, normalizer, DirectorySensitivity.DEFAULT, LineEndingSensitivity.DEFAULT, { failingInput }))
+        }
+
+        then:
+        1 * snapshotter.snapshot(fileInput) >> fileInputSnapshotResult
+        _ * fileInputSnapshotResult.containsArchiveTrees() >> false
+        1 * fileInputSnapshotResult.snapshot >> fileInputSnapshot
+        1 * fingerprinter.fingerprint(fileInputSnapshot, null) >> { throw failure }
+        1 * snapshotter.snapshot(failingInput) >> { throw new RuntimeException("Should not be reported") }
+        0 * _
+
+        then:
+        def ex = thrown InputFingerprinter.InputFileFingerprintingException
+        ex.propertyName == "file"
+        ex.cause == failure
+
+        cleanup:
+        pool.shutdown()
     }
 
     def "marks archive trees as properties requiring empty check"() {
@@ -29,6 +29,7 @@ import org.gradle.internal.execution.caching.CachingDisabledReasonCategory
 import org.gradle.internal.execution.caching.CachingState
 import org.gradle.internal.execution.history.AfterExecutionState
 import org.gradle.internal.execution.history.BeforeExecutionState
+import org.gradle.internal.execution.history.BuildCacheKeyHistory
 import org.gradle.internal.file.Deleter
 
 import java.time.Duration
@@ -38,6 +39,7 @@ import static org.gradle.internal.execution.ExecutionEngine.ExecutionOutcome.FRO
 
 class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements SnapshotterFixture {
     def buildCacheController = Mock(BuildCacheController)
+    def buildCacheKeyHistory = Mock(BuildCacheKeyHistory)
 
     def beforeExecutionState = Stub(BeforeExecutionState)
 
@@ -49,7 +51,7 @@ class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements
     def deleter = Mock(Deleter)
     def outputChangeListener = Mock(OutputChangeListener)
 
-    def step = new BuildCacheStep(buildCacheController, deleter, outputChangeListener, delegate)
+    def step = new BuildCacheStep(buildCacheController, buildCacheKeyHistory, deleter, outputChangeListener, delegate)
     def delegateResult = Mock(AfterExecutionResult)
 
     def "loads from cache"() {
@@ -82,6 +84,7 @@ class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements
             assert root == localStateFile
             return true
         }
+        interaction { keyRecorded() }
 
         then:
         1 * loadMetadata.originMetadata >> cachedOriginMetadata
@@ -113,6 +116,9 @@ class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements
 
         then:
         interaction { outputStored {} }
+
+        then:
+        interaction { keyRecorded() }
         0 * _
     }
 
@@ -215,6 +221,9 @@ class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements
 
         then:
         interaction { outputStored {} }
+
+        then:
+        interaction { keyRecorded() }
         0 * _
     }
 
@@ -291,4 +300,8 @@ class BuildCacheStepTest extends StepSpec<IncrementalChangesContext> implements
         1 * originMetadata.executionTime >> Duration.ofMillis(123L)
         1 * buildCacheController.store(cacheKey, _, outputFilesProducedByWork, Duration.ofMillis(123L)) >> { storeResult() }
     }
+
+    private void keyRecorded() {
+        1 * buildCacheKeyHistory.record(":test", cacheKey)
+    }
 }
@@ -116,7 +116,8 @@ class CaptureStateBeforeExecutionStepTest extends StepSpec<BeforeExecutionContex
             ImmutableSortedMap.of("input", inputSnapshot),
             knownInputFileProperties,
             ImmutableSortedMap.of("input-file", inputFileFingerprint),
-            ImmutableSet.of())
+            ImmutableSet.of(),
+            ImmutableSortedMap.of("input-file", 1234L))
         interaction { snapshotState() }
         1 * delegate.execute(work, _ as BeforeExecutionContext) >> { UnitOfWork work, BeforeExecutionContext delegateContext ->
             def state = delegateContext.beforeExecutionState.get()
@@ -126,7 +127,7 @@ class CaptureStateBeforeExecutionStepTest extends StepSpec<BeforeExecutionContex
         }
         0 * _
 
-        assertOperation()
+        assertOperation(null, ["input-file": 1234L])
     }
 
     def "output file properties are snapshotted"() {
@@ -231,9 +232,12 @@ class CaptureStateBeforeExecutionStepTest extends StepSpec<BeforeExecutionContex
         _ * context.history >> Optional.of(executionHistoryStore)
     }
 
-    private void assertOperation(Throwable expectedFailure = null) {
+    private void assertOperation(Throwable expectedFailure = null, Map<String, Long> expectedFingerprintingTimes = [:]) {
         if (expectedFailure == null) {
-            assertSuccessfulOperation(CaptureStateBeforeExecutionStep.Operation, "Snapshot inputs and outputs before executing job ':test'", CaptureStateBeforeExecutionStep.Operation.Result.INSTANCE)
+            withOnlyOperation(CaptureStateBeforeExecutionStep.Operation) {
+                assert it.descriptor.displayName == "Snapshot inputs and outputs before executing job ':test'"
+                assert it.result.inputFileFingerprintingTimes == expectedFingerprintingTimes
+            }
         } else {
             assertFailedOperation(CaptureStateBeforeExecutionStep.Operation, "Snapshot inputs and outputs before executing job ':test'", expectedFailure)
         }
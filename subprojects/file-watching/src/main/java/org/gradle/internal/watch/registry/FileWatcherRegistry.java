@@ -82,6 +82,14 @@ enum Type {
     @CheckReturnValue
     SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems);
 
+    /**
+     * Get the snapshots removed from the virtual file system by {@link #updateVfsOnBuildFinished(SnapshotHierarchy, WatchMode, int, List)},
+     * since their directories are not watched anymore to stay within the limit of watched directories.
+     *
+     * Changes to them are not noticed anymore, so they need to be checked against the file system before using them again.
+     */
+    Collection<FileSystemLocationSnapshot> getAndResetEvictedSnapshots();
+
     /**
      * Get statistics about the received changes.
      */
@@ -105,5 +113,7 @@ interface FileWatchingStatistics {
         boolean isUnknownEventEncountered();
         int getNumberOfReceivedEvents();
         int getNumberOfWatchedHierarchies();
+        int getNumberOfWatchedDirectories();
+        int getNumberOfEvictedDirectories();
     }
 }
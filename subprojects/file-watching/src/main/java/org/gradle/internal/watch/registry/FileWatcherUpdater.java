@@ -112,4 +112,21 @@ public interface FileWatcherUpdater {
      * @see FileWatcherUpdater
      */
     FileHierarchySet getWatchedFiles();
+
+    /**
+     * The number of directories the operating system is watching right now.
+     */
+    int getNumberOfWatchedDirectories();
+
+    /**
+     * The number of directories which have not been watched anymore to stay within the limit of watched directories since the last call.
+     */
+    int getAndResetNumberOfEvictedDirectories();
+
+    /**
+     * The snapshots removed from the root since the last call, since their directories are not watched anymore.
+     *
+     * @see FileWatcherRegistry#getAndResetEvictedSnapshots()
+     */
+    Collection<FileSystemLocationSnapshot> getAndResetEvictedSnapshots();
 }
@@ -184,6 +184,8 @@ public FileWatchingStatistics getAndResetStatistics() {
         fileWatchingStatistics = new MutableFileWatchingStatistics();
         AtomicInteger numberOfWatchedHierarchies = new AtomicInteger();
         fileWatcherUpdater.getWatchedFiles().visitRoots(root -> numberOfWatchedHierarchies.incrementAndGet());
+        int numberOfWatchedDirectories = fileWatcherUpdater.getNumberOfWatchedDirectories();
+        int numberOfEvictedDirectories = fileWatcherUpdater.getAndResetNumberOfEvictedDirectories();
         return new FileWatchingStatistics() {
             @Override
             public Optional<Throwable> getErrorWhileReceivingFileChanges() {
@@ -204,9 +206,24 @@ public int getNumberOfReceivedEvents() {
             public int getNumberOfWatchedHierarchies() {
                 return numberOfWatchedHierarchies.get();
             }
+
+            @Override
+            public int getNumberOfWatchedDirectories() {
+                return numberOfWatchedDirectories;
+            }
+
+            @Override
+            public int getNumberOfEvictedDirectories() {
+                return numberOfEvictedDirectories;
+            }
         };
     }
 
+    @Override
+    public Collection<FileSystemLocationSnapshot> getAndResetEvictedSnapshots() {
+        return fileWatcherUpdater.getAndResetEvictedSnapshots();
+    }
+
     @Override
     public void setDebugLoggingEnabled(boolean debugLoggingEnabled) {
         java.util.logging.Logger.getLogger(NativeLogger.class.getName()).setLevel(debugLoggingEnabled
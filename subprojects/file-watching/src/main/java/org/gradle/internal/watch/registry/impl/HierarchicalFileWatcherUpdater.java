@@ -94,6 +94,22 @@ public SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchM
         return newRoot;
     }
 
+    @Override
+    public int getNumberOfWatchedDirectories() {
+        return watchedHierarchies.size();
+    }
+
+    @Override
+    public int getAndResetNumberOfEvictedDirectories() {
+        // Watching a hierarchy needs a single watch, so there is no need to evict anything
+        return 0;
+    }
+
+    @Override
+    public Collection<FileSystemLocationSnapshot> getAndResetEvictedSnapshots() {
+        return ImmutableList.of();
+    }
+
     @Override
     protected void updateWatchesOnChangedWatchedFiles(FileHierarchySet newWatchedFiles) {
         ImmutableSet<File> oldWatchedHierarchies = watchedHierarchies;
@@ -25,17 +25,45 @@
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.watch.registry.FileWatcherProbeRegistry;
 import org.gradle.internal.watch.registry.FileWatcherUpdater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistryFactory<LinuxFileEventFunctions, LinuxFileWatcher> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LinuxFileWatcherRegistryFactory.class);
+    private static final String MAX_USER_WATCHES_FILE = "/proc/sys/fs/inotify/max_user_watches";
+
+    private final int maxWatchedDirectories;
 
     public LinuxFileWatcherRegistryFactory(Predicate<String> watchFilter) throws NativeIntegrationUnavailableException {
+        this(watchFilter, Integer.MAX_VALUE);
+    }
+
+    public LinuxFileWatcherRegistryFactory(Predicate<String> watchFilter, int maxWatchedDirectories) throws NativeIntegrationUnavailableException {
         super(FileEvents.get(LinuxFileEventFunctions.class), watchFilter);
+        this.maxWatchedDirectories = maxWatchedDirectories;
+    }
+
+    /**
+     * The default number of directories to watch, which leaves a quarter of the inotify watches of the user to other processes.
+     */
+    public static int defaultMaxWatchedDirectories() {
+        try {
+            int maxUserWatches = Integer.parseInt(new String(Files.readAllBytes(Paths.get(MAX_USER_WATCHES_FILE)), StandardCharsets.US_ASCII).trim());
+            return maxUserWatches / 4 * 3;
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.debug("Unable to read the maximum number of inotify watches, not limiting the number of watched directories", e);
+            return Integer.MAX_VALUE;
+        }
     }
 
     @Override
@@ -46,7 +74,7 @@ protected LinuxFileWatcher createFileWatcher(BlockingQueue<FileWatchEvent> fileE
 
     @Override
     protected FileWatcherUpdater createFileWatcherUpdater(LinuxFileWatcher watcher, FileWatcherProbeRegistry probeRegistry, WatchableHierarchies watchableHierarchies) {
-        return new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies, new LinuxMovedDirectoryHandler(watcher, watchableHierarchies));
+        return new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies, new LinuxMovedDirectoryHandler(watcher, watchableHierarchies), maxWatchedDirectories);
     }
 
     private static class LinuxMovedDirectoryHandler implements AbstractFileWatcherUpdater.MovedDirectoryHandler {
@@ -17,6 +17,7 @@
 package org.gradle.internal.watch.registry.impl;
 
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multiset;
 import net.rubygrapefruit.platform.NativeException;
@@ -32,34 +33,129 @@
 import org.gradle.internal.snapshot.SnapshotVisitResult;
 import org.gradle.internal.watch.WatchingNotSupportedException;
 import org.gradle.internal.watch.registry.FileWatcherProbeRegistry;
+import org.gradle.internal.watch.registry.WatchMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.function.Consumer;
 
+/**
+ * Watches each directory which has content in the virtual file system individually.
+ *
+ * <p>The number of watched directories is limited by a budget, since the operating system limits the number of watches per user.
+ * When the budget is exhausted, the least recently used directories are not watched anymore.
+ * A directory is used when content in it is added to the virtual file system, or when the watchable hierarchy it is in is registered by a build.
+ * Content of directories which are not watched anymore is removed from the virtual file system at the end of the build,
+ * and is available via {@link #getAndResetEvictedSnapshots()} so it can be checked against the file system later.</p>
+ */
 public class NonHierarchicalFileWatcherUpdater extends AbstractFileWatcherUpdater {
     private static final Logger LOGGER = LoggerFactory.getLogger(NonHierarchicalFileWatcherUpdater.class);
 
     private final FileWatcher fileWatcher;
+    private final int maxWatchedDirectories;
+    /**
+     * The directories we need to watch, with the number of reasons to watch them.
+     */
     private final Multiset<String> watchedDirectories = HashMultiset.create();
     private final Map<String, String> watchedDirectoryForSnapshot = new HashMap<>();
     private final Set<String> watchedWatchableHierarchies = new HashSet<>();
+    private final Set<String> watchedProbeDirectories = new HashSet<>();
+    /**
+     * The directories actually being watched, least recently used first.
+     */
+    private final LinkedHashMap<String, Boolean> recentlyUsedDirectories = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The directories we need to watch, but which are not being watched to stay within the budget.
+     */
+    private final Set<String> evictedDirectories = new HashSet<>();
+    private int numberOfEvictedDirectories;
+    private List<FileSystemLocationSnapshot> evictedSnapshots = new ArrayList<>();
 
     public NonHierarchicalFileWatcherUpdater(
         FileWatcher fileWatcher,
         FileWatcherProbeRegistry probeRegistry,
         WatchableHierarchies watchableHierarchies,
         MovedDirectoryHandler movedDirectoryHandler
+    ) {
+        this(fileWatcher, probeRegistry, watchableHierarchies, movedDirectoryHandler, Integer.MAX_VALUE);
+    }
+
+    public NonHierarchicalFileWatcherUpdater(
+        FileWatcher fileWatcher,
+        FileWatcherProbeRegistry probeRegistry,
+        WatchableHierarchies watchableHierarchies,
+        MovedDirectoryHandler movedDirectoryHandler,
+        int maxWatchedDirectories
     ) {
         super(probeRegistry, watchableHierarchies, movedDirectoryHandler);
         this.fileWatcher = fileWatcher;
+        this.maxWatchedDirectories = maxWatchedDirectories;
+    }
+
+    @Override
+    public void registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarchy root) {
+        super.registerWatchableHierarchy(watchableHierarchy, root);
+        // The build uses the hierarchy, so the directories in there are recently used
+        String hierarchyPath = watchableHierarchy.getAbsolutePath();
+        String hierarchyPrefix = hierarchyPath + File.separatorChar;
+        List<String> directoriesInHierarchy = new ArrayList<>();
+        recentlyUsedDirectories.keySet().forEach(directory -> {
+            if (directory.equals(hierarchyPath) || directory.startsWith(hierarchyPrefix)) {
+                directoriesInHierarchy.add(directory);
+            }
+        });
+        directoriesInHierarchy.forEach(directory -> recentlyUsedDirectories.put(directory, Boolean.TRUE));
+    }
+
+    @Override
+    public SnapshotHierarchy updateVfsOnBuildFinished(SnapshotHierarchy root, WatchMode watchMode, int maximumNumberOfWatchedHierarchies, List<File> unsupportedFileSystems) {
+        SnapshotHierarchy newRoot = super.updateVfsOnBuildFinished(root, watchMode, maximumNumberOfWatchedHierarchies, unsupportedFileSystems);
+        if (evictedDirectories.isEmpty()) {
+            return newRoot;
+        }
+        // Changes in evicted directories may go unnoticed from now on, so remove their content.
+        // Sorting handles parents before their children, so nothing is removed twice.
+        WatchableHierarchies.Invalidator invalidator = createInvalidator();
+        for (String evictedDirectory : new TreeSet<>(evictedDirectories)) {
+            newRoot.rootSnapshotsUnder(evictedDirectory).forEach(evictedSnapshots::add);
+            newRoot = invalidator.invalidate(evictedDirectory, newRoot);
+        }
+        LOGGER.info("Removed {} locations from the virtual file system since their directories are not watched", evictedSnapshots.size());
+        return newRoot;
+    }
+
+    @Override
+    public int getNumberOfWatchedDirectories() {
+        return watchedDirectories.elementSet().size() - evictedDirectories.size();
+    }
+
+    @Override
+    public int getAndResetNumberOfEvictedDirectories() {
+        int evicted = numberOfEvictedDirectories;
+        numberOfEvictedDirectories = 0;
+        return evicted;
+    }
+
+    @Override
+    public Collection<FileSystemLocationSnapshot> getAndResetEvictedSnapshots() {
+        if (evictedSnapshots.isEmpty()) {
+            return ImmutableList.of();
+        }
+        List<FileSystemLocationSnapshot> result = evictedSnapshots;
+        evictedSnapshots = new ArrayList<>();
+        return result;
     }
 
     @Override
@@ -120,34 +216,49 @@ protected WatchableHierarchies.Invalidator createInvalidator() {
 
     @Override
     protected void startWatchingProbeDirectory(File probeDirectory) {
+        watchedProbeDirectories.add(probeDirectory.getAbsolutePath());
         updateWatchedDirectories(ImmutableMap.of(probeDirectory.getAbsolutePath(), 1));
     }
 
     @Override
     protected void stopWatchingProbeDirectory(File probeDirectory) {
+        watchedProbeDirectories.remove(probeDirectory.getAbsolutePath());
         updateWatchedDirectories(ImmutableMap.of(probeDirectory.getAbsolutePath(), -1));
     }
 
     private void updateWatchedDirectories(Map<String, Integer> changedWatchDirectories) {
         Set<File> directoriesToStopWatching = new HashSet<>();
-        Set<File> directoriesToStartWatching = new HashSet<>();
+        Set<String> directoriesToStartWatching = new HashSet<>();
+        List<String> usedDirectories = new ArrayList<>();
         changedWatchDirectories.forEach((absolutePath, value) -> {
             int count = value;
             if (count < 0) {
                 int toRemove = -count;
                 int contained = watchedDirectories.remove(absolutePath, toRemove);
                 if (contained <= toRemove) {
-                    directoriesToStopWatching.add(new File(absolutePath));
+                    recentlyUsedDirectories.remove(absolutePath);
+                    if (!evictedDirectories.remove(absolutePath)) {
+                        directoriesToStopWatching.add(new File(absolutePath));
+                    }
                 }
             } else if (count > 0) {
                 int contained = watchedDirectories.add(absolutePath, count);
                 if (contained == 0) {
-                    directoriesToStartWatching.add(new File(absolutePath));
+                    directoriesToStartWatching.add(absolutePath);
+                } else if (!evictedDirectories.contains(absolutePath)) {
+                    usedDirectories.add(absolutePath);
+                } else if (isPinned(absolutePath)) {
+                    // The directory became the root of a watched hierarchy
+                    evictedDirectories.remove(absolutePath);
+                    directoriesToStartWatching.add(absolutePath);
                 }
             }
         });
+        evictDirectoriesOverBudget(directoriesToStartWatching, directoriesToStopWatching);
+        usedDirectories.forEach(directory -> recentlyUsedDirectories.put(directory, Boolean.TRUE));
+        directoriesToStartWatching.forEach(directory -> recentlyUsedDirectories.put(directory, Boolean.TRUE));
 
-        LOGGER.info("Watching {} directories to track changes", watchedDirectories.entrySet().size());
+        LOGGER.info("Watching {} directories to track changes", getNumberOfWatchedDirectories());
 
         try {
             if (!directoriesToStopWatching.isEmpty()) {
@@ -156,7 +267,9 @@ private void updateWatchedDirectories(Map<String, Integer> changedWatchDirectori
                 }
             }
             if (!directoriesToStartWatching.isEmpty()) {
-                fileWatcher.startWatching(directoriesToStartWatching);
+                fileWatcher.startWatching(directoriesToStartWatching.stream()
+                    .map(File::new)
+                    .collect(ImmutableList.toImmutableList()));
             }
         } catch (NativeException e) {
             if (e.getMessage().contains("Already watching path: ")) {
@@ -166,6 +279,45 @@ private void updateWatchedDirectories(Map<String, Integer> changedWatchDirectori
         }
     }
 
+    /**
+     * Stops watching the least recently used directories, so the directories to start watching fit into the budget.
+     *
+     * If that is not enough, some of the directories to start watching are not watched either.
+     * Probe directories and the roots of the watched hierarchies are always watched.
+     */
+    private void evictDirectoriesOverBudget(Set<String> directoriesToStartWatching, Set<File> directoriesToStopWatching) {
+        int overBudget = getNumberOfWatchedDirectories() - maxWatchedDirectories;
+        if (overBudget <= 0) {
+            return;
+        }
+        int evictedBefore = evictedDirectories.size();
+        Iterator<String> leastRecentlyUsed = recentlyUsedDirectories.keySet().iterator();
+        while (overBudget > 0 && leastRecentlyUsed.hasNext()) {
+            String directory = leastRecentlyUsed.next();
+            if (!isPinned(directory)) {
+                leastRecentlyUsed.remove();
+                evictedDirectories.add(directory);
+                directoriesToStopWatching.add(new File(directory));
+                overBudget--;
+            }
+        }
+        Iterator<String> toStart = directoriesToStartWatching.iterator();
+        while (overBudget > 0 && toStart.hasNext()) {
+            String directory = toStart.next();
+            if (!isPinned(directory)) {
+                toStart.remove();
+                evictedDirectories.add(directory);
+                overBudget--;
+            }
+        }
+        numberOfEvictedDirectories += evictedDirectories.size() - evictedBefore;
+        LOGGER.info("Not watching {} directories to stay within the limit of {} watched directories", evictedDirectories.size(), maxWatchedDirectories);
+    }
+
+    private boolean isPinned(String directory) {
+        return watchedProbeDirectories.contains(directory) || watchedWatchableHierarchies.contains(directory);
+    }
+
     private static void decrement(String path, Map<String, Integer> changedWatchedDirectories) {
         changedWatchedDirectories.compute(path, (key, value) -> zeroToNull(nullToZero(value) - 1));
     }
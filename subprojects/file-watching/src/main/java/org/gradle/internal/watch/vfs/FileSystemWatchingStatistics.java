@@ -19,6 +19,8 @@
 public interface FileSystemWatchingStatistics {
     int getNumberOfReceivedEvents();
     int getNumberOfWatchedHierarchies();
+    int getNumberOfWatchedDirectories();
+    int getNumberOfEvictedDirectories();
 
     int getRetainedRegularFiles();
     int getRetainedDirectories();
@@ -47,6 +47,16 @@ public int getNumberOfWatchedHierarchies() {
         return fileWatchingStatistics.getNumberOfWatchedHierarchies();
     }
 
+    @Override
+    public int getNumberOfWatchedDirectories() {
+        return fileWatchingStatistics.getNumberOfWatchedDirectories();
+    }
+
+    @Override
+    public int getNumberOfEvictedDirectories() {
+        return fileWatchingStatistics.getNumberOfEvictedDirectories();
+    }
+
     @Override
     public int getRetainedRegularFiles() {
         return vfsStatistics.getRetained(FileType.RegularFile);
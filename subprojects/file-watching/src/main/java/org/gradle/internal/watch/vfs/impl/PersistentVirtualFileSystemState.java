@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the {@link RetainedVirtualFileSystemState} in a file, so it can be restored by the next daemon.
+ *
+ * <p>The file records the algorithm used to hash file contents. State hashed with a different algorithm is not restored,
+ * as its hashes must not be mixed with the hashes of the current daemon.</p>
+ */
+public class PersistentVirtualFileSystemState {
+    private static final int FORMAT_VERSION = 3;
+    private static final byte DIRECTORY = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte MISSING = 2;
+
+    private final File stateFile;
+    private final String fileContentHashAlgorithm;
+
+    public PersistentVirtualFileSystemState(File stateFile, String fileContentHashAlgorithm) {
+        this.stateFile = stateFile;
+        this.fileContentHashAlgorithm = fileContentHashAlgorithm;
+    }
+
+    public void write(RetainedVirtualFileSystemState state) throws IOException {
+        Path stateDir = Files.createDirectories(stateFile.getParentFile().toPath());
+        // Daemons sharing the Gradle user home may write the state at the same time, the last one wins
+        Path tempFile = Files.createTempFile(stateDir, stateFile.getName(), ".tmp");
+        try {
+            writeTo(tempFile, state);
+            Files.move(tempFile, stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    private void writeTo(Path file, RetainedVirtualFileSystemState state) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(fileContentHashAlgorithm);
+            output.writeLong(state.getRetainedAt());
+            for (FileSystemLocationSnapshot rootSnapshot : state.getRootSnapshots()) {
+                output.writeBoolean(true);
+                output.writeUTF(rootSnapshot.getAbsolutePath());
+                writeSnapshot(output, rootSnapshot, state);
+            }
+            output.writeBoolean(false);
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream output, FileSystemLocationSnapshot snapshot, RetainedVirtualFileSystemState state) throws IOException {
+        switch (snapshot.getType()) {
+            case Directory:
+                DirectorySnapshot directorySnapshot = (DirectorySnapshot) snapshot;
+                output.writeByte(DIRECTORY);
+                output.writeByte(snapshot.getAccessType().ordinal());
+                output.writeLong(state.getDirectoryModificationTime(snapshot.getAbsolutePath()));
+                writeHashCode(output, directorySnapshot.getHash());
+                List<FileSystemLocationSnapshot> children = directorySnapshot.getChildren();
+                output.writeInt(children.size());
+                for (FileSystemLocationSnapshot child : children) {
+                    output.writeUTF(child.getName());
+                    writeSnapshot(output, child, state);
+                }
+                break;
+            case RegularFile:
+                RegularFileSnapshot fileSnapshot = (RegularFileSnapshot) snapshot;
+                output.writeByte(REGULAR_FILE);
+                output.writeByte(snapshot.getAccessType().ordinal());
+                writeHashCode(output, fileSnapshot.getHash());
+                output.writeLong(fileSnapshot.getMetadata().getLastModified());
+                output.writeLong(fileSnapshot.getMetadata().getLength());
+                break;
+            case Missing:
+                output.writeByte(MISSING);
+                output.writeByte(snapshot.getAccessType().ordinal());
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static void writeHashCode(DataOutputStream output, HashCode hashCode) throws IOException {
+        byte[] bytes = hashCode.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads the stored state, which still needs to be {@linkplain RetainedVirtualFileSystemState#revalidate() revalidated} before using it.
+     *
+     * @return the stored state, or {@code null} if there is no state file with a known format and the same file content hash algorithm.
+     */
+    @Nullable
+    public RetainedVirtualFileSystemState restore() throws IOException {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile.toPath())))) {
+            if (input.readInt() != FORMAT_VERSION || !input.readUTF().equals(fileContentHashAlgorithm)) {
+                return null;
+            }
+            long retainedAt = input.readLong();
+            List<FileSystemLocationSnapshot> rootSnapshots = new ArrayList<>();
+            Map<String, Long> directoryModificationTimes = new HashMap<>();
+            while (input.readBoolean()) {
+                String absolutePath = input.readUTF();
+                rootSnapshots.add(readSnapshot(input, absolutePath, PathUtil.getFileName(absolutePath), directoryModificationTimes));
+            }
+            return new RetainedVirtualFileSystemState(rootSnapshots, directoryModificationTimes, retainedAt);
+        }
+    }
+
+    private static FileSystemLocationSnapshot readSnapshot(DataInputStream input, String absolutePath, String name, Map<String, Long> directoryModificationTimes) throws IOException {
+        byte type = input.readByte();
+        AccessType accessType = AccessType.values()[input.readByte()];
+        switch (type) {
+            case DIRECTORY:
+                directoryModificationTimes.put(absolutePath, input.readLong());
+                HashCode hash = readHashCode(input);
+                int childCount = input.readInt();
+                List<FileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    String childName = input.readUTF();
+                    children.add(readSnapshot(input, absolutePath + File.separatorChar + childName, childName, directoryModificationTimes));
+                }
+                return new DirectorySnapshot(absolutePath, name, accessType, hash, children);
+            case REGULAR_FILE:
+                HashCode contentHash = readHashCode(input);
+                long lastModified = input.readLong();
+                long length = input.readLong();
+                return new RegularFileSnapshot(absolutePath, name, contentHash, DefaultFileMetadata.file(lastModified, length, accessType));
+            case MISSING:
+                return new MissingFileSnapshot(absolutePath, name, accessType);
+            default:
+                throw new IOException("Unknown entry type " + type);
+        }
+    }
+
+    private static HashCode readHashCode(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+}
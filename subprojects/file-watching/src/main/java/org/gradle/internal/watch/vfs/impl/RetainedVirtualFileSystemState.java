@@ -0,0 +1,221 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Snapshots of the virtual file system which have been retained while no one was watching the file system for changes.
+ *
+ * <p>Besides the snapshots, the state contains the modification time of each directory at the time the state was retained,
+ * so adding or removing entries of a directory is detected without listing the directory.
+ * Before using the snapshots again, they are revalidated by comparing the attributes of each entry with the file system, without hashing any content.
+ * Complete subtrees which did not change are kept as they are, the others are dropped.</p>
+ *
+ * <p>Entries with a modification time not before the time the state was retained, i.e. the time since when the snapshots may have missed changes, are not trusted,
+ * in the same way as {@link FileMetadata} of files modified at the end of a build is not trusted for file hashes.
+ * Entries accessed via symlinks are never kept, since changes to the target of a symlink are not detected.</p>
+ */
+public class RetainedVirtualFileSystemState {
+    public static final long UNKNOWN_MODIFICATION_TIME = -1;
+
+    private final List<FileSystemLocationSnapshot> rootSnapshots;
+    private final Map<String, Long> directoryModificationTimes;
+    private final long retainedAt;
+
+    public RetainedVirtualFileSystemState(List<FileSystemLocationSnapshot> rootSnapshots, Map<String, Long> directoryModificationTimes, long retainedAt) {
+        this.rootSnapshots = rootSnapshots;
+        this.directoryModificationTimes = directoryModificationTimes;
+        this.retainedAt = retainedAt;
+    }
+
+    /**
+     * Retains the given snapshots, which may have missed changes since the given time.
+     *
+     * <p>The modification times of the directories are recorded now, and may be newer than the snapshots.
+     * The given time must therefore not be after any of the snapshots has been taken, e.g. the start of the build which took them.
+     * Directories modified since then are not trusted.</p>
+     */
+    public static RetainedVirtualFileSystemState capture(Stream<FileSystemLocationSnapshot> rootSnapshots, long retainedAt) {
+        List<FileSystemLocationSnapshot> roots = rootSnapshots.collect(Collectors.toList());
+        Map<String, Long> directoryModificationTimes = new HashMap<>();
+        roots.forEach(root -> recordDirectoryModificationTimes(root, directoryModificationTimes));
+        return new RetainedVirtualFileSystemState(roots, directoryModificationTimes, retainedAt);
+    }
+
+    private static void recordDirectoryModificationTimes(FileSystemLocationSnapshot snapshot, Map<String, Long> directoryModificationTimes) {
+        if (snapshot.getType() == FileType.Directory) {
+            BasicFileAttributes attributes = readAttributes(snapshot.getAbsolutePath());
+            directoryModificationTimes.put(snapshot.getAbsolutePath(), attributes != null && attributes.isDirectory()
+                ? attributes.lastModifiedTime().toMillis()
+                : UNKNOWN_MODIFICATION_TIME);
+            ((DirectorySnapshot) snapshot).getChildren().forEach(child -> recordDirectoryModificationTimes(child, directoryModificationTimes));
+        }
+    }
+
+    public List<FileSystemLocationSnapshot> getRootSnapshots() {
+        return rootSnapshots;
+    }
+
+    public long getDirectoryModificationTime(String absolutePath) {
+        Long modificationTime = directoryModificationTimes.get(absolutePath);
+        return modificationTime == null ? UNKNOWN_MODIFICATION_TIME : modificationTime;
+    }
+
+    public long getRetainedAt() {
+        return retainedAt;
+    }
+
+    /**
+     * Compares the retained snapshots with the file system, checking subdirectories in parallel.
+     *
+     * @return the snapshots which still match the file system.
+     */
+    public List<FileSystemLocationSnapshot> revalidate() {
+        // Use a dedicated pool, since the tasks block on reading file attributes
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), RevalidationThread::new, null, false);
+        try {
+            return pool.invoke(new RecursiveTask<List<FileSystemLocationSnapshot>>() {
+                @Override
+                protected List<FileSystemLocationSnapshot> compute() {
+                    List<FileSystemLocationSnapshot> unchangedSnapshots = new ArrayList<>();
+                    revalidateAll(rootSnapshots, unchangedSnapshots);
+                    return unchangedSnapshots;
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class RevalidationThread extends ForkJoinWorkerThread {
+        public RevalidationThread(ForkJoinPool pool) {
+            super(pool);
+            setName("VFS revalidation thread " + getPoolIndex());
+        }
+    }
+
+    /**
+     * Revalidates the given snapshots, forking a task for each directory.
+     *
+     * @return whether all the snapshots are unchanged.
+     */
+    private boolean revalidateAll(List<FileSystemLocationSnapshot> snapshots, List<FileSystemLocationSnapshot> unchangedSubtrees) {
+        boolean allUnchanged = true;
+        List<RevalidateDirectory> directoryTasks = new ArrayList<>();
+        for (FileSystemLocationSnapshot snapshot : snapshots) {
+            if (snapshot.getType() == FileType.Directory) {
+                RevalidateDirectory task = new RevalidateDirectory((DirectorySnapshot) snapshot);
+                task.fork();
+                directoryTasks.add(task);
+            } else if (isUnchanged(snapshot)) {
+                unchangedSubtrees.add(snapshot);
+            } else {
+                allUnchanged = false;
+            }
+        }
+        for (RevalidateDirectory task : directoryTasks) {
+            List<FileSystemLocationSnapshot> unchangedInDirectory = task.join();
+            allUnchanged &= unchangedInDirectory.size() == 1 && unchangedInDirectory.get(0) == task.directory;
+            unchangedSubtrees.addAll(unchangedInDirectory);
+        }
+        return allUnchanged;
+    }
+
+    /**
+     * Returns a list with only the directory snapshot if the directory is unchanged, and the unchanged subtrees of the directory otherwise.
+     */
+    private class RevalidateDirectory extends RecursiveTask<List<FileSystemLocationSnapshot>> {
+        private final DirectorySnapshot directory;
+
+        public RevalidateDirectory(DirectorySnapshot directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<FileSystemLocationSnapshot> compute() {
+            List<FileSystemLocationSnapshot> unchangedSubtrees = new ArrayList<>();
+            boolean allChildrenUnchanged = revalidateAll(directory.getChildren(), unchangedSubtrees);
+            return allChildrenUnchanged && isUnchanged(directory)
+                ? Collections.singletonList(directory)
+                : unchangedSubtrees;
+        }
+    }
+
+    private boolean isUnchanged(FileSystemLocationSnapshot snapshot) {
+        if (snapshot.getAccessType() != AccessType.DIRECT) {
+            return false;
+        }
+        BasicFileAttributes attributes = readAttributes(snapshot.getAbsolutePath());
+        switch (snapshot.getType()) {
+            case Directory:
+                return attributes != null
+                    && attributes.isDirectory()
+                    && isTrusted(attributes.lastModifiedTime().toMillis(), getDirectoryModificationTime(snapshot.getAbsolutePath()));
+            case RegularFile:
+                FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                return attributes != null
+                    && attributes.isRegularFile()
+                    && attributes.size() == metadata.getLength()
+                    && isTrusted(attributes.lastModifiedTime().toMillis(), metadata.getLastModified());
+            case Missing:
+                return attributes == null && Files.notExists(Paths.get(snapshot.getAbsolutePath()), LinkOption.NOFOLLOW_LINKS);
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private boolean isTrusted(long currentModificationTime, long retainedModificationTime) {
+        return currentModificationTime == retainedModificationTime
+            && retainedModificationTime != UNKNOWN_MODIFICATION_TIME
+            && retainedModificationTime < retainedAt;
+    }
+
+    /**
+     * Returns the attributes of the given location, or {@code null} if they cannot be read, e.g. because the location does not exist.
+     */
+    @Nullable
+    private static BasicFileAttributes readAttributes(String absolutePath) {
+        try {
+            return Files.readAttributes(Paths.get(absolutePath), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -34,6 +35,7 @@
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * A {@link VirtualFileSystem} which is not able to register any watches.
@@ -42,8 +44,20 @@ public class WatchingNotSupportedVirtualFileSystem extends AbstractVirtualFileSy
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WatchingNotSupportedVirtualFileSystem.class);
 
+    private final boolean retainStateBetweenBuilds;
+    private RetainedVirtualFileSystemState retainedState;
+    private long buildStartedAt;
+
     public WatchingNotSupportedVirtualFileSystem(SnapshotHierarchy root) {
+        this(root, false);
+    }
+
+    /**
+     * @param retainStateBetweenBuilds whether to keep the state between builds, revalidating it at the start of the next build.
+     */
+    public WatchingNotSupportedVirtualFileSystem(SnapshotHierarchy root, boolean retainStateBetweenBuilds) {
         super(root);
+        this.retainStateBetweenBuilds = retainStateBetweenBuilds;
     }
 
     @Override
@@ -61,11 +75,12 @@ public boolean afterBuildStarted(
         if (watchMode == WatchMode.ENABLED) {
             LOGGER.warn("Watching the file system is not supported.");
         }
+        buildStartedAt = System.currentTimeMillis();
         updateRootUnderLock(vfsRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 context.setResult(BuildStartedFileSystemWatchingBuildOperationType.Result.WATCHING_DISABLED);
-                return vfsRoot.empty();
+                return restoreRetainedState(vfsRoot.empty());
             }
 
             @Override
@@ -93,6 +108,10 @@ public void beforeBuildFinished(
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 context.setResult(BuildFinishedFileSystemWatchingBuildOperationType.Result.WATCHING_DISABLED);
+                if (retainStateBetweenBuilds) {
+                    // The snapshots have been taken during the build, without noticing changes
+                    retainedState = RetainedVirtualFileSystemState.capture(vfsRoot.rootSnapshots(), buildStartedAt);
+                }
                 return vfsRoot.empty();
             }
 
@@ -104,6 +123,21 @@ public BuildOperationDescriptor.Builder description() {
         }));
     }
 
+    private SnapshotHierarchy restoreRetainedState(SnapshotHierarchy emptyRoot) {
+        RetainedVirtualFileSystemState state = retainedState;
+        if (state == null) {
+            return emptyRoot;
+        }
+        retainedState = null;
+        List<FileSystemLocationSnapshot> unchangedSnapshots = state.revalidate();
+        LOGGER.info("Retained {} unchanged locations of the virtual file system since the last build", unchangedSnapshots.size());
+        SnapshotHierarchy newRoot = emptyRoot;
+        for (FileSystemLocationSnapshot snapshot : unchangedSnapshots) {
+            newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        return newRoot;
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         return false;
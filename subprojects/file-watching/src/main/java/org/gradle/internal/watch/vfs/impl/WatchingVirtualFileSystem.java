@@ -24,6 +24,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -52,6 +53,7 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -67,6 +69,9 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final WatchableFileSystemDetector watchableFileSystemDetector;
     private final FileChangeListeners fileChangeListeners;
+    @Nullable
+    private final PersistentVirtualFileSystemState persistentState;
+    private final boolean retainStateWhenNotWatching;
     private final List<File> unsupportedFileSystems = new ArrayList<>();
     private Logger warningLogger = LOGGER;
 
@@ -78,6 +83,10 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
     private boolean stateInvalidatedAtStartOfBuild;
+    private boolean persistentStateRestored;
+    private RetainedVirtualFileSystemState stateRetainedWhenNotWatching;
+    private RetainedVirtualFileSystemState stateEvictedFromWatching;
+    private long buildStartedAt;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
@@ -86,6 +95,23 @@ public WatchingVirtualFileSystem(
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
         WatchableFileSystemDetector watchableFileSystemDetector,
         FileChangeListeners fileChangeListeners
+    ) {
+        this(watcherRegistryFactory, root, daemonDocumentationIndex, locationsWrittenByCurrentBuild, watchableFileSystemDetector, fileChangeListeners, null, false);
+    }
+
+    /**
+     * @param persistentState where to keep the state of the virtual file system between daemons, or {@code null} to drop the state when the daemon stops.
+     * @param retainStateWhenNotWatching whether to keep the state between builds with file system watching disabled, revalidating it at the start of the next build.
+     */
+    public WatchingVirtualFileSystem(
+        FileWatcherRegistryFactory watcherRegistryFactory,
+        SnapshotHierarchy root,
+        DaemonDocumentationIndex daemonDocumentationIndex,
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        WatchableFileSystemDetector watchableFileSystemDetector,
+        FileChangeListeners fileChangeListeners,
+        @Nullable PersistentVirtualFileSystemState persistentState,
+        boolean retainStateWhenNotWatching
     ) {
         super(root);
         this.watcherRegistryFactory = watcherRegistryFactory;
@@ -93,6 +119,8 @@ public WatchingVirtualFileSystem(
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
         this.fileChangeListeners = fileChangeListeners;
+        this.persistentState = persistentState;
+        this.retainStateWhenNotWatching = retainStateWhenNotWatching;
     }
 
     @Override
@@ -118,10 +146,13 @@ public boolean afterBuildStarted(
         warningLogger = watchMode.loggerForWarnings(LOGGER);
         stateInvalidatedAtStartOfBuild = false;
         reasonForNotWatchingFiles = null;
+        buildStartedAt = System.currentTimeMillis();
         updateRootUnderLock(currentRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
             @Override
             public SnapshotHierarchy call(BuildOperationContext context) {
                 if (watchMode.isEnabled()) {
+                    // The state retained without watching is outdated once watching starts, since changes since then would go unnoticed
+                    stateRetainedWhenNotWatching = null;
                     SnapshotHierarchy newRoot;
                     boolean couldDetectUnsupportedFileSystems;
                     try {
@@ -151,11 +182,15 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                             newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot, watchMode, unsupportedFileSystems);
                         }
                         stateInvalidatedAtStartOfBuild = newRoot != currentRoot;
+                        newRoot = restoreStateEvictedFromWatching(newRoot);
                         statisticsSinceLastBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events since last build while watching {} locations",
                                 statisticsSinceLastBuild.getNumberOfReceivedEvents(),
                                 statisticsSinceLastBuild.getNumberOfWatchedHierarchies());
+                            LOGGER.warn("Watching {} directories, stopped watching {} directories to stay within the limit since last build",
+                                statisticsSinceLastBuild.getNumberOfWatchedDirectories(),
+                                statisticsSinceLastBuild.getNumberOfEvictedDirectories());
                             LOGGER.warn("Virtual file system retained information about {} files, {} directories and {} missing files since last build",
                                 statisticsSinceLastBuild.getRetainedRegularFiles(),
                                 statisticsSinceLastBuild.getRetainedDirectories(),
@@ -189,7 +224,7 @@ public FileSystemWatchingStatistics getStatistics() {
                     return newRoot;
                 } else {
                     context.setResult(BuildStartedFileSystemWatchingBuildOperationType.Result.WATCHING_DISABLED);
-                    return stopWatchingAndInvalidateHierarchy(currentRoot);
+                    return restoreStateRetainedWhenNotWatching(stopWatchingAndInvalidateHierarchy(currentRoot));
                 }
             }
 
@@ -245,12 +280,16 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                             newRoot = stopWatchingAndInvalidateHierarchyAfterError(currentRoot);
                         } else {
                             newRoot = withWatcherChangeErrorHandling(currentRoot, () -> watchRegistry.updateVfsOnBuildFinished(currentRoot, watchMode, maximumNumberOfWatchedHierarchies, unsupportedFileSystems));
+                            retainStateEvictedFromWatching();
                         }
                         statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events during the current build while watching {} locations",
                                 statisticsDuringBuild.getNumberOfReceivedEvents(),
                                 statisticsDuringBuild.getNumberOfWatchedHierarchies());
+                            LOGGER.warn("Watching {} directories, stopped watching {} directories to stay within the limit during the current build",
+                                statisticsDuringBuild.getNumberOfWatchedDirectories(),
+                                statisticsDuringBuild.getNumberOfEvictedDirectories());
                             LOGGER.warn("Virtual file system retains information about {} files, {} directories and {} missing files until next build",
                                 statisticsDuringBuild.getRetainedRegularFiles(),
                                 statisticsDuringBuild.getRetainedDirectories(),
@@ -288,6 +327,10 @@ public FileSystemWatchingStatistics getStatistics() {
                     return newRoot;
                 } else {
                     context.setResult(BuildFinishedFileSystemWatchingBuildOperationType.Result.WATCHING_DISABLED);
+                    if (retainStateWhenNotWatching) {
+                        // The snapshots have been taken during the build, without noticing changes
+                        stateRetainedWhenNotWatching = RetainedVirtualFileSystemState.capture(currentRoot.rootSnapshots(), buildStartedAt);
+                    }
                     return currentRoot.empty();
                 }
             }
@@ -316,7 +359,7 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
             SnapshotHierarchy newRoot = watchRegistry.updateVfsOnBuildStarted(currentRoot.empty(), watchMode, unsupportedFileSystems);
             watchableHierarchiesRegisteredEarly.forEach(watchableHierarchy -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, newRoot));
             watchableHierarchiesRegisteredEarly.clear();
-            return newRoot;
+            return restorePersistentState(newRoot);
         } catch (Exception ex) {
             logWatchingError(ex, FILE_WATCHING_ERROR_MESSAGE_DURING_BUILD, null);
             closeUnderLock();
@@ -324,6 +367,89 @@ private SnapshotHierarchy startWatching(SnapshotHierarchy currentRoot, WatchMode
         }
     }
 
+    /**
+     * Adds the snapshots kept by the previous daemon which still match the file system.
+     *
+     * Only done once per daemon, when watching has been started, so changes to the restored locations are noticed from now on.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restorePersistentState(SnapshotHierarchy currentRoot) {
+        if (persistentState == null || persistentStateRestored) {
+            return currentRoot;
+        }
+        persistentStateRestored = true;
+        List<FileSystemLocationSnapshot> unchangedSnapshots;
+        try {
+            RetainedVirtualFileSystemState state = persistentState.restore();
+            if (state == null) {
+                return currentRoot;
+            }
+            unchangedSnapshots = state.revalidate();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.info("Unable to restore the virtual file system state of the previous daemon", e);
+            return currentRoot;
+        }
+        LOGGER.info("Restored {} unchanged locations from the virtual file system state of the previous daemon", unchangedSnapshots.size());
+        return storeSnapshots(currentRoot, unchangedSnapshots);
+    }
+
+    /**
+     * Adds the snapshots retained at the end of the last build which still match the file system.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restoreStateRetainedWhenNotWatching(SnapshotHierarchy currentRoot) {
+        RetainedVirtualFileSystemState state = stateRetainedWhenNotWatching;
+        if (state == null) {
+            return currentRoot;
+        }
+        stateRetainedWhenNotWatching = null;
+        List<FileSystemLocationSnapshot> unchangedSnapshots = state.revalidate();
+        LOGGER.info("Retained {} unchanged locations of the virtual file system since the last build", unchangedSnapshots.size());
+        return storeSnapshots(currentRoot, unchangedSnapshots);
+    }
+
+    /**
+     * Keeps the snapshots removed from the virtual file system since their directories are not watched anymore.
+     *
+     * The directories may have been evicted at any time during the build, so changes since the start of the build are not trusted.
+     */
+    private void retainStateEvictedFromWatching() {
+        FileWatcherRegistry watchRegistry = this.watchRegistry;
+        if (watchRegistry == null) {
+            return;
+        }
+        Collection<FileSystemLocationSnapshot> evictedSnapshots = watchRegistry.getAndResetEvictedSnapshots();
+        if (!evictedSnapshots.isEmpty()) {
+            stateEvictedFromWatching = RetainedVirtualFileSystemState.capture(evictedSnapshots.stream(), buildStartedAt);
+        }
+    }
+
+    /**
+     * Adds the snapshots evicted from watching at the end of the last build which still match the file system.
+     */
+    @CheckReturnValue
+    private SnapshotHierarchy restoreStateEvictedFromWatching(SnapshotHierarchy currentRoot) {
+        RetainedVirtualFileSystemState state = stateEvictedFromWatching;
+        if (state == null || watchRegistry == null) {
+            return currentRoot;
+        }
+        stateEvictedFromWatching = null;
+        List<FileSystemLocationSnapshot> unchangedSnapshots = state.revalidate();
+        LOGGER.info("Restored {} unchanged locations which have not been watched since the last build", unchangedSnapshots.size());
+        return storeSnapshots(currentRoot, unchangedSnapshots);
+    }
+
+    @CheckReturnValue
+    private SnapshotHierarchy storeSnapshots(SnapshotHierarchy currentRoot, List<FileSystemLocationSnapshot> snapshots) {
+        return updateNotifyingListeners(diffListener -> {
+            SnapshotHierarchy newRoot = currentRoot;
+            for (FileSystemLocationSnapshot snapshot : snapshots) {
+                newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            }
+            return newRoot;
+        });
+    }
+
     @Override
     public boolean isWatchingAnyLocations() {
         FileWatcherRegistry watchRegistry = this.watchRegistry;
@@ -478,6 +604,7 @@ private SnapshotHierarchy stopWatchingAndInvalidateHierarchyAfterError(SnapshotH
     }
 
     private SnapshotHierarchy stopWatchingAndInvalidateHierarchy(SnapshotHierarchy currentRoot) {
+        stateEvictedFromWatching = null;
         if (watchRegistry != null) {
             try {
                 FileWatcherRegistry toBeClosed = watchRegistry;
@@ -505,7 +632,18 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
     @Override
     public void close() {
         LOGGER.debug("Closing VFS, dropping state");
+        stateRetainedWhenNotWatching = null;
+        stateEvictedFromWatching = null;
         updateRootUnderLock(currentRoot -> {
+            // Only the state of watched locations is known to be up-to-date
+            if (persistentState != null && watchRegistry != null) {
+                try {
+                    // Changes during the last build may not have been received yet
+                    persistentState.write(RetainedVirtualFileSystemState.capture(currentRoot.rootSnapshots(), buildStartedAt));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.info("Unable to persist the virtual file system state", e);
+                }
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -91,6 +91,45 @@ class NonHierarchicalFileWatcherUpdaterTest extends AbstractFileWatcherUpdaterTe
         0 * _
     }
 
+    def "stops watching least recently used directories when the maximum number of watched directories has been reached"() {
+        updater = new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies, movedWatchedDirectoriesSupplier, 4)
+        def rootDir = file("root").createDir()
+        def files = ["first", "second", "third"].collect { rootDir.file(it, "file.txt").createFile() }
+
+        when:
+        registerWatchableHierarchies([rootDir])
+        addSnapshot(snapshotRegularFile(files[0]))
+        addSnapshot(snapshotRegularFile(files[1]))
+        then:
+        1 * watcher.startWatching({ equalIgnoringOrder(it, [probeRegistry.getProbeDirectory(rootDir)]) })
+        1 * watcher.startWatching({ equalIgnoringOrder(it, [files[0].parentFile]) })
+        1 * watcher.startWatching({ equalIgnoringOrder(it, [rootDir]) })
+        1 * watcher.startWatching({ equalIgnoringOrder(it, [files[1].parentFile]) })
+        0 * _
+        updater.numberOfWatchedDirectories == 4
+
+        when:
+        addSnapshot(snapshotRegularFile(files[2]))
+        then:
+        1 * watcher.stopWatching({ equalIgnoringOrder(it, [files[0].parentFile]) })
+        1 * watcher.startWatching({ equalIgnoringOrder(it, [files[2].parentFile]) })
+        0 * _
+        updater.numberOfWatchedDirectories == 4
+        updater.andResetNumberOfEvictedDirectories == 1
+        files.every { vfsHasSnapshotsAt(it) }
+
+        when:
+        buildFinished()
+        then:
+        0 * _
+        !vfsHasSnapshotsAt(files[0])
+        vfsHasSnapshotsAt(files[1])
+        vfsHasSnapshotsAt(files[2])
+        updater.andResetEvictedSnapshots*.absolutePath == [files[0].absolutePath]
+        updater.andResetEvictedSnapshots.empty
+        updater.numberOfWatchedDirectories == 4
+    }
+
     def "removes content on unsupported file systems at the end of the build"() {
         def watchableHierarchy = file("watchable").createDir()
         def watchableContent = watchableHierarchy.file("some/dir/file.txt").createFile()
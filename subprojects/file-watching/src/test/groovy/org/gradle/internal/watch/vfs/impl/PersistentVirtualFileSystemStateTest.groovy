@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+
+class PersistentVirtualFileSystemStateTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def stateFile = temporaryFolder.file("state/vfs-state.bin")
+    def state = new PersistentVirtualFileSystemState(stateFile, "MD5")
+
+    def root = temporaryFolder.createDir("root")
+    def file = root.file("file.txt").createFile()
+    def subDir = root.createDir("sub")
+    def subFile = subDir.file("sub.txt").createFile()
+    def missingFile = root.file("missing.txt")
+
+    def setup() {
+        subFile.text = "sub"
+        file.text = "file"
+    }
+
+    def "restores written state"() {
+        def rootSnapshot = directorySnapshot(root, [directorySnapshot(subDir, [fileSnapshot(subFile)]), fileSnapshot(file), missingSnapshot(missingFile)])
+        def otherRoot = temporaryFolder.createDir("other")
+        def written = RetainedVirtualFileSystemState.capture([rootSnapshot, directorySnapshot(otherRoot, [])].stream(), System.currentTimeMillis())
+
+        when:
+        state.write(written)
+        def restored = state.restore()
+
+        then:
+        restored.retainedAt == written.retainedAt
+        restored.rootSnapshots*.absolutePath == [root.absolutePath, otherRoot.absolutePath]
+        restored.rootSnapshots[0].hash == rootSnapshot.hash
+        def restoredRoot = restored.rootSnapshots[0] as DirectorySnapshot
+        restoredRoot.children*.absolutePath == rootSnapshot.children*.absolutePath
+        restoredRoot.children*.type == rootSnapshot.children*.type
+        def restoredFile = restoredRoot.children.find { it.name == "file.txt" } as RegularFileSnapshot
+        restoredFile.hash == Hashing.hashString("file")
+        restoredFile.metadata.lastModified == file.lastModified()
+        restoredFile.metadata.length == 4
+        [root, subDir, otherRoot].every { restored.getDirectoryModificationTime(it.absolutePath) == written.getDirectoryModificationTime(it.absolutePath) }
+        restored.getDirectoryModificationTime(root.absolutePath) == root.lastModified()
+    }
+
+    def "fails to restore a corrupt state file"() {
+        state.write(RetainedVirtualFileSystemState.capture([fileSnapshot(file), fileSnapshot(subFile)].stream(), System.currentTimeMillis()))
+        stateFile.bytes = stateFile.bytes[0..-10] as byte[]
+
+        when:
+        state.restore()
+
+        then:
+        thrown(IOException)
+    }
+
+    def "restores nothing when there is no state file"() {
+        expect:
+        state.restore() == null
+    }
+
+    def "restores nothing from a state file with a different format"() {
+        stateFile.createFile().bytes = [0, 0, 0, 1, 0] as byte[]
+
+        expect:
+        state.restore() == null
+    }
+
+    def "restores nothing from a state file written with a different file content hash algorithm"() {
+        new PersistentVirtualFileSystemState(stateFile, "MURMUR3-128").write(RetainedVirtualFileSystemState.capture([fileSnapshot(file)].stream(), System.currentTimeMillis()))
+
+        expect:
+        state.restore() == null
+        new PersistentVirtualFileSystemState(stateFile, "MURMUR3-128").restore() != null
+    }
+
+    private static DirectorySnapshot directorySnapshot(TestFile dir, List<FileSystemLocationSnapshot> children) {
+        new DirectorySnapshot(dir.absolutePath, dir.name, DIRECT, Hashing.hashString(children*.hash.join(",")), children)
+    }
+
+    private static RegularFileSnapshot fileSnapshot(TestFile file) {
+        new RegularFileSnapshot(file.absolutePath, file.name, Hashing.hashString(file.text), DefaultFileMetadata.file(file.lastModified(), file.length(), DIRECT))
+    }
+
+    private static MissingFileSnapshot missingSnapshot(TestFile file) {
+        new MissingFileSnapshot(file.absolutePath, file.name, DIRECT)
+    }
+}
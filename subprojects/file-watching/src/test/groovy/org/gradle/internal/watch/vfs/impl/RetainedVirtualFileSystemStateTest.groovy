@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.Hashing
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+import static org.gradle.internal.file.FileMetadata.AccessType.VIA_SYMLINK
+
+class RetainedVirtualFileSystemStateTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def past = System.currentTimeMillis() - 60_000
+
+    def root = temporaryFolder.createDir("root")
+    def file = root.file("file.txt").createFile()
+    def subDir = root.createDir("sub")
+    def subFile = subDir.file("sub.txt").createFile()
+    def missingFile = root.file("missing.txt")
+
+    def setup() {
+        subFile.text = "sub"
+        file.text = "file"
+        [file, subFile, subDir, root].each { it.lastModified = past }
+    }
+
+    def "keeps unchanged snapshots"() {
+        def rootSnapshot = directorySnapshot(root, [directorySnapshot(subDir, [fileSnapshot(subFile)]), fileSnapshot(file), missingSnapshot(missingFile)])
+        def otherRoot = temporaryFolder.createDir("other")
+        otherRoot.lastModified = past
+        def otherRootSnapshot = directorySnapshot(otherRoot, [])
+
+        when:
+        def unchanged = revalidate(rootSnapshot, otherRootSnapshot)
+
+        then:
+        unchanged.size() == 2
+        unchanged[0].is(rootSnapshot)
+        unchanged[1].is(otherRootSnapshot)
+    }
+
+    def "drops changed file and keeps unchanged siblings"() {
+        def subDirSnapshot = directorySnapshot(subDir, [fileSnapshot(subFile)])
+        def state = capture(directorySnapshot(root, [subDirSnapshot, fileSnapshot(file)]))
+
+        when:
+        file.text = "changed"
+        file.lastModified = past + 1000
+
+        then:
+        state.revalidate() == [subDirSnapshot]
+    }
+
+    def "drops directory when its entries changed"() {
+        def state = capture(directorySnapshot(root, [directorySnapshot(subDir, [fileSnapshot(subFile)]), fileSnapshot(file)]))
+
+        when:
+        subDir.file("added.txt").createFile()
+        subDir.lastModified = past + 1000
+
+        then:
+        state.revalidate()*.absolutePath as Set == [subFile.absolutePath, file.absolutePath] as Set
+    }
+
+    def "drops missing file which has been created"() {
+        def stillMissing = missingSnapshot(root.file("still-missing.txt"))
+        def state = capture(missingSnapshot(missingFile), stillMissing)
+
+        when:
+        missingFile.createFile()
+
+        then:
+        state.revalidate() == [stillMissing]
+    }
+
+    def "does not keep entries modified after the state has been retained"() {
+        def state = new RetainedVirtualFileSystemState([fileSnapshot(file)], [:], past)
+
+        expect:
+        state.revalidate().empty
+    }
+
+    def "does not keep directories modified after the snapshots have been taken"() {
+        def subDirSnapshot = directorySnapshot(subDir, [fileSnapshot(subFile)])
+        def fileSnapshot = fileSnapshot(file)
+        def snapshotsTakenAt = past + 1000
+
+        when:
+        subDir.file("added.txt").createFile()
+        subDir.lastModified = past + 2000
+        def state = RetainedVirtualFileSystemState.capture([directorySnapshot(root, [subDirSnapshot, fileSnapshot])].stream(), snapshotsTakenAt)
+
+        then:
+        state.revalidate()*.absolutePath as Set == [subFile.absolutePath, file.absolutePath] as Set
+    }
+
+    def "does not keep entries accessed via symlinks"() {
+        def symlinkedFile = new RegularFileSnapshot(file.absolutePath, file.name, Hashing.hashString("file"), DefaultFileMetadata.file(past, 4, VIA_SYMLINK))
+        def subFileSnapshot = fileSnapshot(subFile)
+
+        expect:
+        revalidate(symlinkedFile, subFileSnapshot) == [subFileSnapshot]
+    }
+
+    private static RetainedVirtualFileSystemState capture(FileSystemLocationSnapshot... rootSnapshots) {
+        RetainedVirtualFileSystemState.capture(Arrays.stream(rootSnapshots), System.currentTimeMillis())
+    }
+
+    private static List<FileSystemLocationSnapshot> revalidate(FileSystemLocationSnapshot... rootSnapshots) {
+        capture(rootSnapshots).revalidate()
+    }
+
+    private static DirectorySnapshot directorySnapshot(TestFile dir, List<FileSystemLocationSnapshot> children) {
+        new DirectorySnapshot(dir.absolutePath, dir.name, DIRECT, Hashing.hashString(children*.hash.join(",")), children)
+    }
+
+    private static RegularFileSnapshot fileSnapshot(TestFile file) {
+        new RegularFileSnapshot(file.absolutePath, file.name, Hashing.hashString(file.text), DefaultFileMetadata.file(file.lastModified(), file.length(), DIRECT))
+    }
+
+    private static MissingFileSnapshot missingSnapshot(TestFile file) {
+        new MissingFileSnapshot(file.absolutePath, file.name, DIRECT)
+    }
+}
@@ -16,16 +16,27 @@
 
 package org.gradle.internal.watch.vfs.impl
 
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.watch.registry.WatchMode
 import org.gradle.internal.watch.vfs.VfsLogging
 import org.gradle.internal.watch.vfs.WatchLogging
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+
 class WatchingNotSupportedVirtualFileSystemTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
     def emptySnapshotHierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
     def nonEmptySnapshotHierarchy = Stub(SnapshotHierarchy) {
         empty() >> emptySnapshotHierarchy
@@ -48,4 +59,49 @@ class WatchingNotSupportedVirtualFileSystemTest extends Specification {
         where:
         watchMode << WatchMode.values().toList()
     }
+
+    def "retains unchanged snapshots between builds when enabled"() {
+        def vfs = new WatchingNotSupportedVirtualFileSystem(emptySnapshotHierarchy, true)
+        def unchangedFile = temporaryFolder.file("unchanged.txt").createFile()
+        def changedFile = temporaryFolder.file("changed.txt").createFile()
+        def past = System.currentTimeMillis() - 60_000
+        [unchangedFile, changedFile].each { it.lastModified = past }
+
+        when:
+        vfs.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        vfs.updateRootUnderLock { root ->
+            [unchangedFile, changedFile].inject(root) { current, file ->
+                current.store(file.absolutePath, new RegularFileSnapshot(file.absolutePath, file.name, Hashing.hashString(file.name), DefaultFileMetadata.file(past, 0, DIRECT)), SnapshotHierarchy.NodeDiffListener.NOOP)
+            }
+        }
+        vfs.beforeBuildFinished(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        vfs.root.rootSnapshots().count() == 0
+
+        when:
+        changedFile.text = "changed"
+        vfs.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        vfs.root.findSnapshot(unchangedFile.absolutePath).present
+        !vfs.root.findSnapshot(changedFile.absolutePath).present
+    }
+
+    def "does not retain directories changed during the build after they have been snapshotted"() {
+        def vfs = new WatchingNotSupportedVirtualFileSystem(emptySnapshotHierarchy, true)
+        def dir = temporaryFolder.createDir("dir")
+        dir.lastModified = System.currentTimeMillis() - 60_000
+
+        when:
+        vfs.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        vfs.updateRootUnderLock { root ->
+            root.store(dir.absolutePath, new DirectorySnapshot(dir.absolutePath, dir.name, DIRECT, Hashing.hashString(""), []), SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+        dir.file("added.txt").createFile()
+        dir.lastModified = System.currentTimeMillis()
+        vfs.beforeBuildFinished(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        vfs.afterBuildStarted(WatchMode.DISABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+
+        then:
+        !vfs.root.findSnapshot(dir.absolutePath).present
+    }
 }
@@ -17,8 +17,11 @@
 package org.gradle.internal.watch.vfs.impl
 
 import net.rubygrapefruit.platform.NativeException
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.Hashing
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.watch.registry.FileWatcherRegistry
@@ -29,9 +32,16 @@ import org.gradle.internal.watch.vfs.FileChangeListeners
 import org.gradle.internal.watch.vfs.VfsLogging
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT
+
 class WatchingVirtualFileSystemTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
     def emptySnapshotHierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
@@ -84,6 +94,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE, []) >> watchingVirtualFileSystem.root
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> []
         0 * _
 
         when:
@@ -110,6 +121,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE, []) >> watchingVirtualFileSystem.root
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> []
         0 * _
 
         when:
@@ -124,6 +136,42 @@ class WatchingVirtualFileSystemTest extends Specification {
         watchingVirtualFileSystem.root == nonEmptySnapshotHierarchy
     }
 
+    def "restores unchanged snapshots which have not been watched since the last build"() {
+        def unchangedFile = temporaryFolder.file("unchanged.txt").createFile()
+        def changedFile = temporaryFolder.file("changed.txt").createFile()
+        def past = System.currentTimeMillis() - 60_000
+        [unchangedFile, changedFile].each { it.lastModified = past }
+        def evictedSnapshots = [unchangedFile, changedFile].collect { file ->
+            new RegularFileSnapshot(file.absolutePath, file.name, Hashing.hashString(file.name), DefaultFileMetadata.file(past, 0, DIRECT))
+        }
+        watchingVirtualFileSystem.updateRootUnderLock { root -> emptySnapshotHierarchy }
+
+        when:
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        watchingVirtualFileSystem.beforeBuildFinished(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> { SnapshotHierarchy root, watchMode, unsupportedFileSystems -> root }
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE, []) >> { SnapshotHierarchy root, watchMode, maxHierarchies, unsupportedFileSystems -> root }
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> evictedSnapshots
+        0 * _
+
+        when:
+        changedFile.text = "changed"
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistry.updateVfsOnBuildStarted(_, _, _) >> { SnapshotHierarchy root, watchMode, unsupportedFileSystems -> root }
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], { it*.absolutePath == [unchangedFile.absolutePath] }, _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        watchingVirtualFileSystem.root.findSnapshot(unchangedFile.absolutePath).present
+        !watchingVirtualFileSystem.root.findSnapshot(changedFile.absolutePath).present
+    }
+
     def "collects hierarchies to watch and notifies the vfs"() {
         def watchableHierarchy = new File("watchable")
         def watcherProbe = new File(watchableHierarchy, ".gradle/watch-probe")
@@ -156,6 +204,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE, []) >> watchingVirtualFileSystem.root
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> []
         0 * _
 
         when:
@@ -181,6 +230,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.DEFAULT, Integer.MAX_VALUE, unsupportedFileSystems) >> watchingVirtualFileSystem.root
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> []
         0 * _
 
         when:
@@ -217,6 +267,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.updateVfsOnBuildFinished(_, WatchMode.ENABLED, Integer.MAX_VALUE, []) >> watchingVirtualFileSystem.root
+        1 * watcherRegistry.getAndResetEvictedSnapshots() >> []
         0 * _
 
         when:
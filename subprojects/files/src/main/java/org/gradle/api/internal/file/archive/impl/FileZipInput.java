@@ -29,6 +29,7 @@
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.zip.ZipFile;
 
 public class FileZipInput implements ZipInput {
@@ -39,6 +40,26 @@ public class FileZipInput implements ZipInput {
      * @throws FileException on failure to open the Zip
      */
     public static ZipInput create(File file) throws FileException {
+        return create(file, false);
+    }
+
+    /**
+     * Creates a stream of the entries in the given zip file. Caller is responsible for closing the return value.
+     *
+     * @param memoryMapped Whether to read the zip file via {@link MappedZipInput}, which lists the entries from the memory-mapped central directory and only inflates the entries which are read.
+     * @throws FileException on failure to open the Zip
+     */
+    public static ZipInput create(File file, boolean memoryMapped) throws FileException {
+        if (memoryMapped && isMemoryMappingSupported()) {
+            try {
+                MappedZipInput mappedZipInput = MappedZipInput.tryCreate(file);
+                if (mappedZipInput != null) {
+                    return mappedZipInput;
+                }
+            } catch (IOException e) {
+                throw new FileException(e);
+            }
+        }
         if (isZipFileSafeToUse()) {
             return new FileZipInput(file);
         } else {
@@ -50,6 +71,20 @@ public static ZipInput create(File file) throws FileException {
         }
     }
 
+    /**
+     * Memory-mapped files cannot be deleted or replaced on Windows until the mapping is garbage collected, so we never map zip files there.
+     */
+    private static boolean isMemoryMappingSupported() {
+        return !isWindows();
+    }
+
+    /**
+     * Detects Windows like {@code OperatingSystem.current()}, which is not available to this library.
+     */
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("windows");
+    }
+
     /**
      * {@link ZipFile} is more efficient, but causes memory leaks on older Java versions, so we only use it on more recent ones.
      */
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.api.internal.file.archive.ZipInput;
+import org.gradle.internal.io.IoFunction;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A {@link ZipInput} which memory-maps a zip file and lists its entries from the central directory.
+ *
+ * <p>Listing the entries does not read any entry data.
+ * The content of an entry is only read when requested, directly from the mapped file for stored entries and inflated on the fly for deflated entries.</p>
+ *
+ * <p>Zip files which use features not supported here, like ZIP64 extensions, multiple disks or encryption, or which have a malformed central directory, are not opened by {@link #tryCreate(File)},
+ * so they can be read by {@link java.util.zip.ZipFile} instead, with the same outcome as before.
+ * The same applies to zip files which cannot be mapped.</p>
+ *
+ * <p>Accessing the mapping of a file which has been truncated in the meantime fails with an {@link InternalError}.
+ * Such failures are reported as {@link IOException}s, like a failure to read the file.</p>
+ */
+public class MappedZipInput implements ZipInput {
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final ByteBuffer zip;
+    private final int centralDirectoryOffset;
+    private final int entryCount;
+
+    private MappedZipInput(ByteBuffer zip, int centralDirectoryOffset, int entryCount) {
+        this.zip = zip;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Maps the given zip file, returning {@code null} when the zip file is not supported or cannot be mapped.
+     */
+    @Nullable
+    public static MappedZipInput tryCreate(File file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < END_OF_CENTRAL_DIRECTORY_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            try {
+                // The mapping stays valid after closing the channel
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException e) {
+                // E.g. the address space is exhausted, or the file system does not support mapping
+                return null;
+            }
+        }
+        try {
+            return readCentralDirectory(mapped.order(ByteOrder.LITTLE_ENDIAN));
+        } catch (InternalError e) {
+            // The file has been truncated after mapping it
+            return null;
+        }
+    }
+
+    @Nullable
+    private static MappedZipInput readCentralDirectory(ByteBuffer zip) {
+        int endOfCentralDirectory = findEndOfCentralDirectory(zip);
+        if (endOfCentralDirectory < 0 || usesZip64(zip, endOfCentralDirectory)) {
+            return null;
+        }
+        int diskNumber = unsignedShort(zip, endOfCentralDirectory + 4);
+        int centralDirectoryDiskNumber = unsignedShort(zip, endOfCentralDirectory + 6);
+        int entriesOnDisk = unsignedShort(zip, endOfCentralDirectory + 8);
+        int entryCount = unsignedShort(zip, endOfCentralDirectory + 10);
+        long centralDirectorySize = unsignedInt(zip, endOfCentralDirectory + 12);
+        long centralDirectoryOffset = unsignedInt(zip, endOfCentralDirectory + 16);
+        if (diskNumber != 0 || centralDirectoryDiskNumber != 0 || entriesOnDisk != entryCount
+            || centralDirectoryOffset + centralDirectorySize != endOfCentralDirectory) {
+            return null;
+        }
+        if (!isValidCentralDirectory(zip, (int) centralDirectoryOffset, endOfCentralDirectory, entryCount)) {
+            return null;
+        }
+        return new MappedZipInput(zip, (int) centralDirectoryOffset, entryCount);
+    }
+
+    /**
+     * Returns the offset of the end of central directory record, or -1 if there is none which ends exactly at the end of the file with its comment.
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer zip) {
+        int size = zip.limit();
+        int lowestOffset = Math.max(0, size - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_LENGTH);
+        for (int offset = size - END_OF_CENTRAL_DIRECTORY_SIZE; offset >= lowestOffset; offset--) {
+            if (zip.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                && offset + END_OF_CENTRAL_DIRECTORY_SIZE + unsignedShort(zip, offset + 20) == size) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean usesZip64(ByteBuffer zip, int endOfCentralDirectory) {
+        int locator = endOfCentralDirectory - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE;
+        return (locator >= 0 && zip.getInt(locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE)
+            || unsignedShort(zip, endOfCentralDirectory + 10) == 0xFFFF
+            || unsignedInt(zip, endOfCentralDirectory + 12) == 0xFFFFFFFFL
+            || unsignedInt(zip, endOfCentralDirectory + 16) == 0xFFFFFFFFL;
+    }
+
+    /**
+     * Checks all the headers of the central directory up front, so entries can be listed without failing half-way.
+     */
+    private static boolean isValidCentralDirectory(ByteBuffer zip, int offset, int end, int entryCount) {
+        CharsetDecoder decoder = newNameDecoder();
+        for (int i = 0; i < entryCount; i++) {
+            if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > end || zip.getInt(offset) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                return false;
+            }
+            int flags = unsignedShort(zip, offset + 8);
+            long compressedSize = unsignedInt(zip, offset + 20);
+            long size = unsignedInt(zip, offset + 24);
+            long localHeaderOffset = unsignedInt(zip, offset + 42);
+            int headerSize = CENTRAL_DIRECTORY_HEADER_SIZE + unsignedShort(zip, offset + 28) + unsignedShort(zip, offset + 30) + unsignedShort(zip, offset + 32);
+            if ((flags & ENCRYPTED_FLAG) != 0
+                || compressedSize == 0xFFFFFFFFL || size > Integer.MAX_VALUE || localHeaderOffset == 0xFFFFFFFFL
+                || localHeaderOffset + LOCAL_FILE_HEADER_SIZE + compressedSize > end
+                || offset + headerSize > end) {
+                return false;
+            }
+            try {
+                readName(zip, offset, decoder);
+            } catch (CharacterCodingException e) {
+                return false;
+            }
+            offset += headerSize;
+        }
+        return offset == end;
+    }
+
+    @Override
+    public Iterator<ZipEntry> iterator() {
+        return new AbstractIterator<ZipEntry>() {
+            private final CharsetDecoder decoder = newNameDecoder();
+            private int offset = centralDirectoryOffset;
+            private int index;
+
+            @Override
+            protected ZipEntry computeNext() {
+                if (index == entryCount) {
+                    return endOfData();
+                }
+                MappedZipEntry entry;
+                try {
+                    entry = new MappedZipEntry(
+                        readName(zip, offset, decoder),
+                        (int) unsignedInt(zip, offset + 42),
+                        unsignedInt(zip, offset + 20),
+                        (int) unsignedInt(zip, offset + 24),
+                        unsignedShort(zip, offset + 10)
+                    );
+                    offset += CENTRAL_DIRECTORY_HEADER_SIZE + unsignedShort(zip, offset + 28) + unsignedShort(zip, offset + 30) + unsignedShort(zip, offset + 32);
+                } catch (CharacterCodingException e) {
+                    // Checked when opening the zip file
+                    throw new IllegalStateException(e);
+                } catch (InternalError e) {
+                    throw new UncheckedIOException(truncatedWhileReading(e));
+                }
+                index++;
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // The mapping is released when it is garbage collected
+    }
+
+    private static CharsetDecoder newNameDecoder() {
+        // Like ZipFile, names are always read as UTF-8
+        return StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    private static String readName(ByteBuffer zip, int centralDirectoryHeader, CharsetDecoder decoder) throws CharacterCodingException {
+        ByteBuffer name = zip.duplicate();
+        int nameStart = centralDirectoryHeader + CENTRAL_DIRECTORY_HEADER_SIZE;
+        name.limit(nameStart + unsignedShort(zip, centralDirectoryHeader + 28));
+        name.position(nameStart);
+        return decoder.decode(name).toString();
+    }
+
+    private static IOException truncatedWhileReading(InternalError e) {
+        return new IOException("Zip file has been truncated while reading it", e);
+    }
+
+    private static int unsignedShort(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    private static long unsignedInt(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * An entry of the zip file, with the values of its central directory header read up front, so they are available even if the file has been truncated since.
+     */
+    private class MappedZipEntry implements ZipEntry {
+        private final String name;
+        private final int localHeader;
+        private final long compressedSize;
+        private final int size;
+        private final int compressionMethod;
+
+        MappedZipEntry(String name, int localHeader, long compressedSize, int size, int compressionMethod) {
+            this.name = name;
+            this.localHeader = localHeader;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.compressionMethod = compressionMethod;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            return withInputStream(inputStream -> {
+                byte[] content = new byte[size()];
+                ByteStreams.readFully(inputStream, content);
+                return content;
+            });
+        }
+
+        @Override
+        public <T> T withInputStream(IoFunction<InputStream, T> action) throws IOException {
+            try (InputStream inputStream = openStream()) {
+                return action.apply(inputStream);
+            }
+        }
+
+        private InputStream openStream() throws IOException {
+            if (compressionMethod != STORED && compressionMethod != DEFLATED) {
+                throw new ZipException("invalid compression method");
+            }
+            int dataStart;
+            try {
+                if (zip.getInt(localHeader) != LOCAL_FILE_HEADER_SIGNATURE) {
+                    throw new ZipException("invalid LOC header (bad signature)");
+                }
+                dataStart = localHeader + LOCAL_FILE_HEADER_SIZE + unsignedShort(zip, localHeader + 26) + unsignedShort(zip, localHeader + 28);
+            } catch (InternalError e) {
+                throw truncatedWhileReading(e);
+            }
+            long dataEnd = dataStart + compressedSize;
+            if (dataEnd > centralDirectoryOffset) {
+                throw new ZipException("invalid LOC header (bad entry size)");
+            }
+            ByteBuffer data = zip.duplicate();
+            data.limit((int) dataEnd);
+            data.position(dataStart);
+            InputStream dataStream = new ByteBufferInputStream(data);
+            if (compressionMethod == STORED) {
+                return dataStream;
+            }
+            // Like ZipFile, provide a dummy byte at the end, which the inflater may need to detect the end of the data
+            Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(new SequenceInputStream(dataStream, new ByteArrayInputStream(new byte[1])), inflater) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inflater.end();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean canReopen() {
+            return true;
+        }
+
+        @Override
+        public ZipCompressionMethod getCompressionMethod() {
+            switch (compressionMethod) {
+                case STORED:
+                    return ZipCompressionMethod.STORED;
+                case DEFLATED:
+                    return ZipCompressionMethod.DEFLATED;
+                default:
+                    return ZipCompressionMethod.OTHER;
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            } catch (InternalError e) {
+                throw truncatedWhileReading(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            try {
+                buffer.get(bytes, offset, count);
+            } catch (InternalError e) {
+                throw truncatedWhileReading(e);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
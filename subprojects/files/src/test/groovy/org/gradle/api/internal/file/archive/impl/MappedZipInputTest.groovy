@@ -0,0 +1,196 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl
+
+import org.gradle.api.internal.file.archive.ZipEntry.ZipCompressionMethod
+import org.gradle.internal.file.FileException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.precondition.Requires
+import org.gradle.test.preconditions.UnitTestPreconditions
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class MappedZipInputTest extends Specification implements ZipFileFixture {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def "reads the same entries as ZipFile"() {
+        def file = temporaryFolder.file("mixed.zip")
+        def stored = "stored content".bytes
+        new ZipOutputStream(file.newOutputStream()).withCloseable { zip ->
+            zip.setComment("some comment")
+            zip.putNextEntry(new ZipEntry("dir/"))
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("dir/deflated.txt"))
+            zip.write(("deflated content " * 100).bytes)
+            zip.closeEntry()
+            def storedEntry = new ZipEntry("stored.txt")
+            storedEntry.method = ZipEntry.STORED
+            storedEntry.size = stored.length
+            storedEntry.crc = new CRC32().with { update(stored); value }
+            zip.putNextEntry(storedEntry)
+            zip.write(stored)
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("ünïcödé.txt"))
+            zip.write("unicode".bytes)
+            zip.closeEntry()
+        }
+
+        when:
+        def zipInput = MappedZipInput.tryCreate(file)
+        def entries = zipInput.collect { entry ->
+            [entry.name, entry.directory, entry.size(), entry.compressionMethod, entry.directory ? null : entry.content as List]
+        }
+        def expectedEntries = new ZipFile(file).withCloseable { zipFile ->
+            zipFile.entries().collect { entry ->
+                [entry.name, entry.directory, entry.size as int, entry.method == ZipEntry.STORED ? ZipCompressionMethod.STORED : ZipCompressionMethod.DEFLATED, entry.directory ? null : zipFile.getInputStream(entry).bytes as List]
+            }
+        }
+
+        then:
+        entries == expectedEntries
+        entries*.get(0) == ["dir/", "dir/deflated.txt", "stored.txt", "ünïcödé.txt"]
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    def "can read zip entry content a second time"() {
+        def file = makeZip("foo.zip")
+        def zipInput = MappedZipInput.tryCreate(file)
+
+        when:
+        def zipEntry = zipInput.iterator().next()
+
+        then:
+        zipEntry.canReopen()
+        zipEntry.content == ZIP_ENTRY_CONTENT.bytes
+        zipEntry.withInputStream { readAllBytes(it) } == ZIP_ENTRY_CONTENT.bytes
+        zipEntry.content == ZIP_ENTRY_CONTENT.bytes
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    def "reads empty zip"() {
+        def file = temporaryFolder.file("empty.zip")
+        new ZipOutputStream(file.newOutputStream()).close()
+
+        when:
+        def zipInput = MappedZipInput.tryCreate(file)
+
+        then:
+        zipInput.collect() == []
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    def "does not open zip which is badly formed"() {
+        def file = temporaryFolder.file("badly-formed")
+        file.bytes = bytes as byte[]
+
+        expect:
+        MappedZipInput.tryCreate(file) == null
+
+        where:
+        bytes << [[], [1, 2, 3], [0x50, 0x4b, 0x05, 0x06, 0, 0, 0, 0, 1, 0, 1, 0] + [0] * 10]
+    }
+
+    def "does not open zip with truncated central directory"() {
+        def file = makeZip("foo.zip")
+        def bytes = file.bytes
+        // Corrupt the signature of the central directory header
+        def centralDirectory = (0..bytes.length - 4).find { bytes[it] == 0x50 && bytes[it + 1] == 0x4b && bytes[it + 2] == 0x01 && bytes[it + 3] == 0x02 }
+        bytes[centralDirectory] = 0
+        file.bytes = bytes
+
+        when:
+        def reopened = MappedZipInput.tryCreate(file)
+
+        then:
+        reopened == null
+    }
+
+    @Requires(UnitTestPreconditions.NotWindows)
+    def "reports zip truncated after mapping it as read failure"() {
+        def file = temporaryFolder.file("truncated.zip")
+        def content = new byte[1024 * 1024]
+        new Random(1).nextBytes(content)
+        new ZipOutputStream(file.newOutputStream()).withCloseable { zip ->
+            zip.putNextEntry(new ZipEntry("large.bin"))
+            zip.write(content)
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("small.txt"))
+            zip.write("small".bytes)
+            zip.closeEntry()
+        }
+        def zipInput = MappedZipInput.tryCreate(file)
+        def entries = zipInput.iterator()
+        def entry = entries.next()
+
+        when:
+        new RandomAccessFile(file, "rw").withCloseable { it.setLength(100) }
+        entry.content
+
+        then:
+        thrown(IOException)
+
+        when:
+        entries.next()
+
+        then:
+        thrown(UncheckedIOException)
+
+        when:
+        def reopened = MappedZipInput.tryCreate(file)
+
+        then:
+        reopened == null
+    }
+
+    @Requires(UnitTestPreconditions.NotWindows)
+    def "is used by FileZipInput when enabled"() {
+        def file = makeZip("foo.zip")
+
+        when:
+        def zipInput = FileZipInput.create(file, true)
+
+        then:
+        zipInput instanceof MappedZipInput
+        zipInput.iterator().next().content == ZIP_ENTRY_CONTENT.bytes
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    @Requires(UnitTestPreconditions.Jdk11OrLater)
+    def "FileZipInput falls back to ZipFile for zip which cannot be mapped"() {
+        def file = temporaryFolder.file("badly-formed").createFile()
+
+        when:
+        FileZipInput.create(file, true)
+
+        then:
+        thrown(FileException)
+    }
+}
@@ -19,6 +19,7 @@
 import org.gradle.internal.service.scopes.ServiceScope;
 
 import java.io.File;
+import java.util.Map;
 
 @ServiceScope(Scopes.BuildSession.class)
 public interface ChecksumService {
@@ -31,4 +32,12 @@ public interface ChecksumService {
     HashCode sha512(File file);
 
     HashCode hash(File src, String algorithm);
+
+    /**
+     * Records checksums of the given file which were computed while writing it, so that they do not need to be computed again
+     * by reading the file. The checksums are keyed by algorithm name, as accepted by {@link #hash(File, String)}.
+     * The recorded checksums are only used as long as the file keeps the same length and last modified time.
+     */
+    default void recordChecksums(File file, Map<String, HashCode> checksums) {
+    }
 }
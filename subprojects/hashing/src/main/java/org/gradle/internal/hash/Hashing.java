@@ -47,6 +47,8 @@ private Hashing() {
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
+    private static final HashFunction MURMUR3 = new GuavaHashFunction("MURMUR3-128", com.google.common.hash.Hashing.murmur3_128());
+
     private static final HashFunction DEFAULT = MD5;
 
     /**
@@ -115,6 +117,22 @@ public static HashFunction defaultFunction() {
         return DEFAULT;
     }
 
+    /**
+     * The hashing function for the contents of files with the given algorithm.
+     *
+     * Supported algorithms are {@code MD5}, the default function, and {@code MURMUR3-128}.
+     * Hashes produced by the function have the same length as the ones of the default function.
+     */
+    public static HashFunction fileContentFunction(String algorithm) {
+        if (algorithm.equalsIgnoreCase(MD5.getAlgorithm())) {
+            return MD5;
+        }
+        if (algorithm.equalsIgnoreCase(MURMUR3.getAlgorithm())) {
+            return MURMUR3;
+        }
+        throw new IllegalArgumentException(String.format("Unsupported file content hash algorithm '%s'.", algorithm));
+    }
+
     /**
      * MD5 hashing function.
      */
@@ -143,35 +161,22 @@ public static HashFunction sha512() {
         return SHA512;
     }
 
-    private static abstract class MessageDigestHashFunction implements HashFunction {
+    /**
+     * 128-bit Murmur3 hashing function.
+     *
+     * This is a fast non-cryptographic hash function, which should only be used for content that is not controlled by an attacker.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
+    private static abstract class AbstractHashFunction implements HashFunction {
         private final int hexDigits;
 
-        public MessageDigestHashFunction(int hashBits) {
+        public AbstractHashFunction(int hashBits) {
             this.hexDigits = hashBits / 4;
         }
 
-        public static MessageDigestHashFunction of(String algorithm) {
-            MessageDigest prototype;
-            try {
-                prototype = MessageDigest.getInstance(algorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
-            }
-            int hashBits = prototype.getDigestLength() * 8;
-            try {
-                prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
-            } catch (CloneNotSupportedException e) {
-                return new RegularMessageDigestHashFunction(algorithm, hashBits);
-            }
-        }
-
-        @Override
-        public PrimitiveHasher newPrimitiveHasher() {
-            MessageDigest digest = createDigest();
-            return new MessageDigestHasher(digest);
-        }
-
         @Override
         public Hasher newHasher() {
             return new DefaultHasher(newPrimitiveHasher());
@@ -209,8 +214,6 @@ private HashingOutputStream primitiveStreamHasher() {
             return new HashingOutputStream(this, ByteStreams.nullOutputStream());
         }
 
-        protected abstract MessageDigest createDigest();
-
         @Override
         public int getHexDigits() {
             return hexDigits;
@@ -222,6 +225,57 @@ public String toString() {
         }
     }
 
+    private static abstract class MessageDigestHashFunction extends AbstractHashFunction {
+        public MessageDigestHashFunction(int hashBits) {
+            super(hashBits);
+        }
+
+        public static MessageDigestHashFunction of(String algorithm) {
+            MessageDigest prototype;
+            try {
+                prototype = MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Cannot instantiate digest algorithm: " + algorithm);
+            }
+            int hashBits = prototype.getDigestLength() * 8;
+            try {
+                prototype.clone();
+                return new CloningMessageDigestHashFunction(prototype, hashBits);
+            } catch (CloneNotSupportedException e) {
+                return new RegularMessageDigestHashFunction(algorithm, hashBits);
+            }
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            MessageDigest digest = createDigest();
+            return new MessageDigestHasher(digest);
+        }
+
+        protected abstract MessageDigest createDigest();
+    }
+
+    private static class GuavaHashFunction extends AbstractHashFunction {
+        private final String algorithm;
+        private final com.google.common.hash.HashFunction delegate;
+
+        public GuavaHashFunction(String algorithm, com.google.common.hash.HashFunction delegate) {
+            super(delegate.bits());
+            this.algorithm = algorithm;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public PrimitiveHasher newPrimitiveHasher() {
+            return new GuavaHasher(delegate.newHasher());
+        }
+    }
+
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
@@ -353,6 +407,75 @@ public HashCode hash() {
         }
     }
 
+    private static class GuavaHasher implements PrimitiveHasher {
+        private com.google.common.hash.Hasher hasher;
+
+        public GuavaHasher(com.google.common.hash.Hasher hasher) {
+            this.hasher = hasher;
+        }
+
+        private com.google.common.hash.Hasher getHasher() {
+            if (hasher == null) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+            return hasher;
+        }
+
+        @Override
+        public void putByte(byte b) {
+            getHasher().putByte(b);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            getHasher().putBytes(bytes);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            getHasher().putBytes(bytes, off, len);
+        }
+
+        @Override
+        public void putInt(int value) {
+            // Guava uses little endian byte order, the same as MessageDigestHasher
+            getHasher().putInt(value);
+        }
+
+        @Override
+        public void putLong(long value) {
+            getHasher().putLong(value);
+        }
+
+        @Override
+        public void putDouble(double value) {
+            long longValue = Double.doubleToRawLongBits(value);
+            putLong(longValue);
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            hashCode.appendToHasher(this);
+        }
+
+        @Override
+        public HashCode hash() {
+            byte[] bytes = getHasher().hash().asBytes();
+            hasher = null;
+            return HashCode.fromBytes(bytes, SAFE_TO_REUSE_BYTES);
+        }
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
 
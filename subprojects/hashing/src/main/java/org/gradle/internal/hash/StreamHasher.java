@@ -20,6 +20,11 @@
 import java.io.OutputStream;
 
 public interface StreamHasher {
+    /**
+     * Returns the function used to hash the streams.
+     */
+    HashFunction getHashFunction();
+
     /**
      * Returns the hash of the given input stream. The stream will not be closed by the method.
      */
@@ -36,4 +36,12 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "can hash input with a different hash function"() {
+        def input = new ByteArrayInputStream("hello".bytes)
+        when:
+        def hash = new DefaultStreamHasher(Hashing.murmur3()).hash(input)
+        then:
+        hash.toString() == "36e44ebde6f0da7dc1a53de4506f3ffc"
+    }
 }
@@ -104,6 +104,44 @@ class HashingTest extends Specification {
         hashKey(left) != hashKey(right)
     }
 
+    def 'murmur3 hashes have the same length as default hashes'() {
+        when:
+        def hash = Hashing.murmur3().hashString("hello")
+
+        then:
+        hash.toString() == "029bbd41b3a7d8cb191dae486a901e5b"
+        hash.length() == Hashing.hashString("hello").length()
+        Hashing.murmur3().hexDigits == Hashing.defaultFunction().hexDigits
+    }
+
+    def 'murmur3 hasher cannot be reused'() {
+        given:
+        def hasher = Hashing.murmur3().newHasher()
+        hasher.putInt(1)
+        hasher.hash()
+
+        when:
+        hasher.hash()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def 'selects function for file contents by algorithm'() {
+        expect:
+        Hashing.fileContentFunction("MD5") == Hashing.defaultFunction()
+        Hashing.fileContentFunction("murmur3-128") == Hashing.murmur3()
+    }
+
+    def 'fails for unsupported file content algorithm'() {
+        when:
+        Hashing.fileContentFunction("SHA-1")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unsupported file content hash algorithm 'SHA-1'."
+    }
+
     def 'hash collision for strings'() {
         expect:
         hashStrings(["abc", "de"]) != hashStrings(["ab", "cde"])
@@ -18,6 +18,7 @@
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import org.apache.commons.io.FilenameUtils;
 import org.gradle.api.internal.file.archive.ZipEntry;
 import org.gradle.api.internal.file.archive.ZipInput;
@@ -35,13 +36,18 @@
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.io.IoFunction;
 import org.gradle.internal.snapshot.RegularFileSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -59,19 +65,33 @@ public static boolean isZipFile(final String name) {
     private final ResourceHasher resourceHasher;
     private final ZipHasher fallbackZipHasher;
     private final HashingExceptionReporter hashingExceptionReporter;
+    private final boolean memoryMappedZipInput;
 
     public ZipHasher(ResourceHasher resourceHasher) {
+        this(resourceHasher, false);
+    }
+
+    /**
+     * @param memoryMappedZipInput Whether to read zip files from their memory-mapped central directory, see {@link FileZipInput#create(File, boolean)}.
+     */
+    public ZipHasher(ResourceHasher resourceHasher, boolean memoryMappedZipInput) {
         this(
             resourceHasher,
             null,
-            (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e)
+            (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e),
+            memoryMappedZipInput
         );
     }
 
     public ZipHasher(ResourceHasher resourceHasher, @Nullable ZipHasher fallbackZipHasher, HashingExceptionReporter hashingExceptionReporter) {
+        this(resourceHasher, fallbackZipHasher, hashingExceptionReporter, false);
+    }
+
+    public ZipHasher(ResourceHasher resourceHasher, @Nullable ZipHasher fallbackZipHasher, HashingExceptionReporter hashingExceptionReporter, boolean memoryMappedZipInput) {
         this.resourceHasher = resourceHasher;
         this.fallbackZipHasher = fallbackZipHasher;
         this.hashingExceptionReporter = hashingExceptionReporter;
+        this.memoryMappedZipInput = memoryMappedZipInput;
     }
 
     @Nullable
@@ -89,13 +109,7 @@ public void appendConfigurationToHasher(Hasher hasher) {
     @Nullable
     private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
         try {
-            List<FileSystemLocationFingerprint> fingerprints = fingerprintZipEntries(zipFileSnapshot.getAbsolutePath());
-            if (fingerprints.isEmpty()) {
-                return null;
-            }
-            Hasher hasher = Hashing.newHasher();
-            FingerprintHashingStrategy.SORT.appendToHasher(hasher, fingerprints);
-            return hasher.hash();
+            return hashFingerprints(fingerprintZipEntries(zipFileSnapshot.getAbsolutePath()));
         } catch (Exception e) {
             hashingExceptionReporter.report(zipFileSnapshot, e);
             if (fallbackZipHasher != null) {
@@ -105,8 +119,93 @@ private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
         }
     }
 
+    /**
+     * Hashes the contents of a zip file with each of the given zip hashers, reading the zip file only once.
+     *
+     * The content of each entry is read only once and shared by the resource hashers of all the zip hashers, as long as it is small enough to be kept in memory.
+     * A zip hasher which fails to hash the zip file hashes it again on its own, so the failure is reported and handled in the same way as by {@link #hash(RegularFileSnapshotContext)}.
+     *
+     * @return the hash of each zip hasher, in the same order as the zip hashers.
+     */
+    public static List<HashCode> hashZipContents(RegularFileSnapshot zipFileSnapshot, List<ZipHasher> zipHashers) {
+        List<List<FileSystemLocationFingerprint>> fingerprints = new ArrayList<>(zipHashers.size());
+        for (int i = 0; i < zipHashers.size(); i++) {
+            fingerprints.add(Lists.newArrayList());
+        }
+        boolean[] failed = new boolean[zipHashers.size()];
+        boolean memoryMapped = zipHashers.stream().anyMatch(zipHasher -> zipHasher.memoryMappedZipInput);
+        try (ZipInput input = FileZipInput.create(new File(zipFileSnapshot.getAbsolutePath()), memoryMapped)) {
+            fingerprintZipEntries("", zipFileSnapshot.getAbsolutePath(), zipHashers, fingerprints, failed, input);
+        } catch (Exception e) {
+            // The zip file cannot be read, let each hasher handle it on its own
+            Arrays.fill(failed, true);
+        }
+        List<HashCode> hashes = new ArrayList<>(zipHashers.size());
+        for (int i = 0; i < zipHashers.size(); i++) {
+            hashes.add(failed[i]
+                ? zipHashers.get(i).hashZipContents(zipFileSnapshot)
+                : hashFingerprints(fingerprints.get(i)));
+        }
+        return hashes;
+    }
+
+    private static void fingerprintZipEntries(String parentName, String rootParentName, List<ZipHasher> zipHashers, List<List<FileSystemLocationFingerprint>> fingerprints, boolean[] failed, ZipInput input) throws IOException {
+        for (List<FileSystemLocationFingerprint> hasherFingerprints : fingerprints) {
+            hasherFingerprints.add(newZipMarker(parentName));
+        }
+        for (ZipEntry zipEntry : input) {
+            if (zipEntry.isDirectory()) {
+                continue;
+            }
+            String fullName = parentName.isEmpty() ? zipEntry.getName() : parentName + "/" + zipEntry.getName();
+            if (isZipFile(zipEntry.getName())) {
+                zipEntry.withInputStream(inputStream -> {
+                    fingerprintZipEntries(fullName, rootParentName, zipHashers, fingerprints, failed, new StreamZipInput(inputStream));
+                    return null;
+                });
+            } else {
+                // Only share the content when more than one resource hasher needs it, otherwise stream it directly
+                ZipEntry entry = countRemaining(failed) > 1 ? new SharedZipEntry(zipEntry) : zipEntry;
+                ZipEntryContext zipEntryContext = new DefaultZipEntryContext(entry, fullName, rootParentName);
+                for (int i = 0; i < zipHashers.size(); i++) {
+                    if (failed[i]) {
+                        continue;
+                    }
+                    try {
+                        zipHashers.get(i).fingerprintZipEntry(zipEntryContext, fingerprints.get(i));
+                    } catch (SharedZipEntry.ReadFailure e) {
+                        // Fails hashing for all the zip hashers, like the failure to read any other entry
+                        throw e;
+                    } catch (Exception e) {
+                        failed[i] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int countRemaining(boolean[] failed) {
+        int remaining = 0;
+        for (boolean hasherFailed : failed) {
+            if (!hasherFailed) {
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    @Nullable
+    private static HashCode hashFingerprints(List<FileSystemLocationFingerprint> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return null;
+        }
+        Hasher hasher = Hashing.newHasher();
+        FingerprintHashingStrategy.SORT.appendToHasher(hasher, fingerprints);
+        return hasher.hash();
+    }
+
     private List<FileSystemLocationFingerprint> fingerprintZipEntries(String zipFile) throws IOException {
-        try (ZipInput input = FileZipInput.create(new File(zipFile))) {
+        try (ZipInput input = FileZipInput.create(new File(zipFile), memoryMappedZipInput)) {
             List<FileSystemLocationFingerprint> fingerprints = Lists.newArrayList();
             fingerprintZipEntries("", zipFile, fingerprints, input);
             return fingerprints;
@@ -139,10 +238,106 @@ private void fingerprintZipEntry(ZipEntryContext zipEntryContext, List<FileSyste
         }
     }
 
-    private DefaultFileSystemLocationFingerprint newZipMarker(String relativePath) {
+    private static DefaultFileSystemLocationFingerprint newZipMarker(String relativePath) {
         return new DefaultFileSystemLocationFingerprint(relativePath, FileType.RegularFile, EMPTY_HASH_MARKER);
     }
 
+    /**
+     * A zip entry which can be passed to multiple resource hashers.
+     *
+     * The content of the underlying entry is read at most once and kept in memory, unless the entry is larger than {@link #MAX_SHARED_CONTENT_SIZE}.
+     * A larger entry which can be reopened is read again by each resource hasher,
+     * while reading a larger entry which cannot be reopened fails, so each zip hasher hashes the zip file on its own.
+     *
+     * It reports whether the underlying entry can be reopened, so resource hashers take the same decisions as for the underlying entry.
+     */
+    private static class SharedZipEntry implements ZipEntry {
+        private static final int MAX_SHARED_CONTENT_SIZE = 1024 * 1024;
+
+        private final ZipEntry delegate;
+        private final boolean shared;
+        private byte[] content;
+        private ReadFailure failure;
+
+        SharedZipEntry(ZipEntry delegate) {
+            this.delegate = delegate;
+            int size = delegate.size();
+            this.shared = !delegate.canReopen() || (size >= 0 && size <= MAX_SHARED_CONTENT_SIZE);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return delegate.isDirectory();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            if (!shared) {
+                return delegate.getContent();
+            }
+            return getSharedContent();
+        }
+
+        @Override
+        public <T> T withInputStream(IoFunction<InputStream, T> action) throws IOException {
+            if (!shared) {
+                return delegate.withInputStream(action);
+            }
+            try (InputStream inputStream = new ByteArrayInputStream(getSharedContent())) {
+                return action.apply(inputStream);
+            }
+        }
+
+        private byte[] getSharedContent() {
+            if (failure != null) {
+                throw failure;
+            }
+            if (content == null) {
+                try {
+                    content = delegate.withInputStream(SharedZipEntry::readAtMostMaxSharedContentSize);
+                } catch (Exception e) {
+                    failure = new ReadFailure(e);
+                    throw failure;
+                }
+            }
+            return content;
+        }
+
+        private static byte[] readAtMostMaxSharedContentSize(InputStream inputStream) throws IOException {
+            byte[] bytes = ByteStreams.toByteArray(ByteStreams.limit(inputStream, MAX_SHARED_CONTENT_SIZE + 1L));
+            if (bytes.length > MAX_SHARED_CONTENT_SIZE) {
+                throw new IOException("Zip entry is too large to be shared between hashers");
+            }
+            return bytes;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean canReopen() {
+            return delegate.canReopen();
+        }
+
+        @Override
+        public ZipCompressionMethod getCompressionMethod() {
+            return delegate.getCompressionMethod();
+        }
+
+        private static class ReadFailure extends RuntimeException {
+            ReadFailure(Exception cause) {
+                super(cause);
+            }
+        }
+    }
+
     public interface HashingExceptionReporter {
         void report(RegularFileSnapshot zipFileSnapshot, Exception e);
     }
@@ -54,8 +54,14 @@
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.IGNORE;
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.USE_FILE_HASH;
@@ -71,6 +77,10 @@
  * The order of the entries in the classpath matters, paths do not matter for the entries.
  * For the resources in each classpath entry, normalization takes the relative path of the resource and possibly normalizes its contents.
  * </p>
+ *
+ * <p>
+ * When fingerprinting runs on a fork/join pool, the zip files at the root of the classpath are hashed in parallel on that pool before collecting the fingerprints.
+ * </p>
  */
 public class ClasspathFingerprintingStrategy extends AbstractFingerprintingStrategy {
     private final NonJarFingerprintingStrategy nonZipFingerprintingStrategy;
@@ -107,15 +117,16 @@ public static ClasspathFingerprintingStrategy runtimeClasspath(
         RuntimeClasspathResourceHasher runtimeClasspathResourceHasher,
         ResourceSnapshotterCacheService cacheService,
         Interner<String> stringInterner,
-        LineEndingSensitivity lineEndingSensitivity
+        LineEndingSensitivity lineEndingSensitivity,
+        boolean memoryMappedZipInput
     ) {
         ResourceHasher resourceHasher = runtimeClasspathResourceHasher(runtimeClasspathResourceHasher, lineEndingSensitivity, propertiesFileFilters, manifestAttributeResourceEntryFilter, classpathResourceFilter);
-        ZipHasher zipHasher = new ZipHasher(resourceHasher);
+        ZipHasher zipHasher = new ZipHasher(resourceHasher, memoryMappedZipInput);
         return new ClasspathFingerprintingStrategy(CLASSPATH_IDENTIFIER, USE_FILE_HASH, resourceHasher, zipHasher, cacheService, stringInterner);
     }
 
-    public static ClasspathFingerprintingStrategy compileClasspath(ResourceHasher classpathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner) {
-        ZipHasher zipHasher = new ZipHasher(classpathResourceHasher);
+    public static ClasspathFingerprintingStrategy compileClasspath(ResourceHasher classpathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner, boolean memoryMappedZipInput) {
+        ZipHasher zipHasher = new ZipHasher(classpathResourceHasher, memoryMappedZipInput);
         return new ClasspathFingerprintingStrategy(COMPILE_CLASSPATH_IDENTIFIER, IGNORE, classpathResourceHasher, zipHasher, cacheService, stringInterner);
     }
 
@@ -160,10 +171,62 @@ private static ResourceHasher metaInfAwareClasspathResourceHasher(ResourceHasher
     public Map<String, FileSystemLocationFingerprint> collectFingerprints(FileSystemSnapshot roots) {
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder = ImmutableMap.builder();
         HashSet<String> processedEntries = new HashSet<>();
-        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, builder));
+        Map<String, HashCode> rootZipHashes = ForkJoinTask.inForkJoinPool()
+            ? hashRootZipFilesInParallel(roots)
+            : Collections.emptyMap();
+        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, rootZipHashes, builder));
         return builder.build();
     }
 
+    /**
+     * Hashes the zip files at the root of the classpath in parallel on the current fork/join pool.
+     *
+     * Zip files which fail to hash are left out, so they are hashed again when collecting the fingerprints, reporting the failure in the same way as without parallel hashing.
+     */
+    private Map<String, HashCode> hashRootZipFilesInParallel(FileSystemSnapshot roots) {
+        Map<String, HashRootZipFile> tasks = new HashMap<>();
+        roots.accept(new RelativePathTracker(), (snapshot, relativePath) -> {
+            if (snapshot instanceof RegularFileSnapshot && ZipHasher.isZipFile(snapshot.getName()) && !tasks.containsKey(snapshot.getAbsolutePath())) {
+                String[] segments = Iterables.toArray(relativePath.getSegments(), String.class);
+                tasks.put(snapshot.getAbsolutePath(), new HashRootZipFile(new DefaultRegularFileSnapshotContext(() -> segments, (RegularFileSnapshot) snapshot)));
+            }
+            return SnapshotVisitResult.SKIP_SUBTREE;
+        });
+        if (tasks.size() < 2) {
+            return Collections.emptyMap();
+        }
+        List<HashRootZipFile> forkedTasks = new ArrayList<>(tasks.values());
+        ForkJoinTask.invokeAll(forkedTasks);
+        Map<String, HashCode> hashes = new HashMap<>();
+        for (Map.Entry<String, HashRootZipFile> entry : tasks.entrySet()) {
+            HashRootZipFile task = entry.getValue();
+            if (task.hashed) {
+                hashes.put(entry.getKey(), task.hash);
+            }
+        }
+        return hashes;
+    }
+
+    private class HashRootZipFile extends RecursiveAction {
+        private final RegularFileSnapshotContext fileSnapshotContext;
+        private HashCode hash;
+        private boolean hashed;
+
+        public HashRootZipFile(RegularFileSnapshotContext fileSnapshotContext) {
+            this.fileSnapshotContext = fileSnapshotContext;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                hash = cacheService.hashFile(fileSnapshotContext, zipHasher, zipHasherConfigurationHash);
+                hashed = true;
+            } catch (IOException | RuntimeException e) {
+                // Hashed again and reported when collecting the fingerprints
+            }
+        }
+    }
+
     public enum NonJarFingerprintingStrategy {
         IGNORE {
             @Nullable
@@ -185,11 +248,13 @@ public HashCode determineNonJarFingerprint(HashCode original) {
 
     private class ClasspathFingerprintingVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
         private final HashSet<String> processedEntries;
+        private final Map<String, HashCode> rootZipHashes;
         private final ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder;
 
 
-        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
+        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, Map<String, HashCode> rootZipHashes, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
             this.processedEntries = processedEntries;
+            this.rootZipHashes = rootZipHashes;
             this.builder = builder;
         }
 
@@ -234,6 +299,9 @@ public void visitMissing(MissingFileSnapshot missingSnapshot) {
          */
         @Nullable
         private HashCode hashContent(RegularFileSnapshot fileSnapshot, RelativePathSupplier relativePath) {
+            if (relativePath.isRoot() && rootZipHashes.containsKey(fileSnapshot.getAbsolutePath())) {
+                return rootZipHashes.get(fileSnapshot.getAbsolutePath());
+            }
             RegularFileSnapshotContext fileSnapshotContext = new DefaultRegularFileSnapshotContext(() -> Iterables.toArray(relativePath.getSegments(), String.class), fileSnapshot);
             try {
                 if (ZipHasher.isZipFile(fileSnapshotContext.getSnapshot().getName())) {
@@ -21,6 +21,7 @@ import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.file.impl.DefaultFileMetadata
 import org.gradle.internal.fingerprint.hashing.RegularFileSnapshotContext
 import org.gradle.internal.fingerprint.hashing.ResourceHasher
+import org.gradle.internal.fingerprint.hashing.ZipEntryContext
 import org.gradle.internal.hash.TestHashCodes
 import org.gradle.internal.snapshot.RegularFileSnapshot
 import org.gradle.test.fixtures.file.TestFile
@@ -148,6 +149,49 @@ class ZipHasherTest extends Specification {
         hash1 == hash2
     }
 
+    def "hashing with multiple zip hashers at once gives the same hashes as hashing with each of them"() {
+        given:
+        def jarfile = tmpDir.file("test.jar")
+        createJarWithBuildInfo(jarfile, ["created-by": "1.8.0_232-b18 (Azul Systems, Inc.)", "foo": "true"])
+        def outerContent = tmpDir.createDir("outer")
+        jarfile.copyTo(outerContent.file("lib/inner.jar"))
+        outerContent.file("foo.txt") << "Foo"
+        def outer = tmpDir.file("outer.jar")
+        outerContent.zipTo(outer)
+        def failingZipHasher = new ZipHasher(Stub(ResourceHasher) {
+            hash(_ as ZipEntryContext) >> { throw new IOException("Failure") }
+        })
+        def zipHashers = [zipHasher, ignoringZipHasher, failingZipHasher]
+
+        expect:
+        [jarfile, outer].each { file ->
+            def fileSnapshotContext = snapshotContext(file)
+            assert ZipHasher.hashZipContents(fileSnapshotContext.snapshot, zipHashers) == zipHashers.collect { it.hash(fileSnapshotContext) }
+        }
+    }
+
+    def "hashing with multiple zip hashers at once gives the same hashes for entries too large to be shared"() {
+        given:
+        def content = tmpDir.createDir("content")
+        def largeContent = new byte[2 * 1024 * 1024]
+        new Random(1).nextBytes(largeContent)
+        content.file("large.bin").bytes = largeContent
+        content.file("small.txt") << "small"
+        def jarfile = tmpDir.file("test.jar")
+        content.zipTo(jarfile)
+        def outerContent = tmpDir.createDir("outer")
+        jarfile.copyTo(outerContent.file("lib/inner.jar"))
+        def outer = tmpDir.file("outer.jar")
+        outerContent.zipTo(outer)
+        def zipHashers = [zipHasher, ignoringZipHasher]
+
+        expect:
+        [jarfile, outer].each { file ->
+            def fileSnapshotContext = snapshotContext(file)
+            assert ZipHasher.hashZipContents(fileSnapshotContext.snapshot, zipHashers) == zipHashers.collect { it.hash(fileSnapshotContext) }
+        }
+    }
+
     def createJarWithAttributes(TestFile jarfile, Map<String, String> attributes) {
         def manifest = new Manifest()
         def mainAttributes = manifest.getMainAttributes()
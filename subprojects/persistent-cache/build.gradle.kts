@@ -9,6 +9,7 @@ description = """Persistent caches on disk and cross process locking.
 
 dependencies {
     implementation(project(":base-services"))
+    implementation(project(":build-option"))
     implementation(project(":messaging"))
     implementation(project(":native"))
     implementation(project(":files"))
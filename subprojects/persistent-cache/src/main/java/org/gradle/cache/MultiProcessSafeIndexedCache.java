@@ -19,4 +19,10 @@
  * A {@link IndexedCache} implementation that is aware of file locking.
  */
 public interface MultiProcessSafeIndexedCache<K, V> extends IndexedCache<K, V>, UnitOfWorkParticipant {
+    /**
+     * Whether entries can be read from multiple threads while the cross-process lock is held, concurrently with writes.
+     */
+    default boolean supportsConcurrentReads() {
+        return false;
+    }
 }
@@ -21,15 +21,26 @@
 import org.gradle.cache.MultiProcessSafeIndexedCache;
 
 import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+/**
+ * Applies updates to the backing cache asynchronously on the cache access worker.
+ *
+ * Reads are also made on the worker, so that they observe earlier updates. When the backing cache supports concurrent reads,
+ * reads are made on the calling thread instead, answering keys with pending updates from the pending value.
+ */
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafeIndexedCache<K, V> indexedCache;
+    @Nullable
+    private final Map<K, PendingUpdate<V>> pendingUpdates;
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafeIndexedCache<K, V> indexedCache) {
         this.asyncCacheAccess = asyncCacheAccess;
         this.indexedCache = indexedCache;
+        this.pendingUpdates = indexedCache.supportsConcurrentReads() ? new ConcurrentHashMap<>() : null;
     }
 
     @Override
@@ -40,7 +51,14 @@ public String toString() {
     @Nullable
     @Override
     public V get(final K key) {
-        return asyncCacheAccess.read(() -> indexedCache.getIfPresent(key));
+        if (pendingUpdates == null) {
+            return asyncCacheAccess.read(() -> indexedCache.getIfPresent(key));
+        }
+        PendingUpdate<V> pendingUpdate = pendingUpdates.get(key);
+        if (pendingUpdate != null) {
+            return pendingUpdate.value;
+        }
+        return indexedCache.getIfPresent(key);
     }
 
     @Override
@@ -50,15 +68,18 @@ public V get(K key, Function<? super K, ? extends V> producer, Runnable completi
 
     @Override
     public void putLater(final K key, final V value, final Runnable completion) {
+        PendingUpdate<V> pendingUpdate = addPendingUpdate(key, value);
         try {
             asyncCacheAccess.enqueue(() -> {
                 try {
                     indexedCache.put(key, value);
                 } finally {
+                    removePendingUpdate(key, pendingUpdate);
                     completion.run();
                 }
             });
         } catch (RuntimeException e) {
+            removePendingUpdate(key, pendingUpdate);
             completion.run();
             throw e;
         }
@@ -66,20 +87,40 @@ public void putLater(final K key, final V value, final Runnable completion) {
 
     @Override
     public void removeLater(final K key, final Runnable completion) {
+        PendingUpdate<V> pendingUpdate = addPendingUpdate(key, null);
         try {
             asyncCacheAccess.enqueue(() -> {
                 try {
                     indexedCache.remove(key);
                 } finally {
+                    removePendingUpdate(key, pendingUpdate);
                     completion.run();
                 }
             });
         } catch (RuntimeException e) {
+            removePendingUpdate(key, pendingUpdate);
             completion.run();
             throw e;
         }
     }
 
+    @Nullable
+    private PendingUpdate<V> addPendingUpdate(K key, @Nullable V value) {
+        if (pendingUpdates == null) {
+            return null;
+        }
+        PendingUpdate<V> pendingUpdate = new PendingUpdate<>(value);
+        pendingUpdates.put(key, pendingUpdate);
+        return pendingUpdate;
+    }
+
+    private void removePendingUpdate(K key, @Nullable PendingUpdate<V> pendingUpdate) {
+        if (pendingUpdate != null) {
+            // Keep a later update of the same key
+            pendingUpdates.remove(key, pendingUpdate);
+        }
+    }
+
     @Override
     public void afterLockAcquire(FileLock.State currentCacheState) {
         indexedCache.afterLockAcquire(currentCacheState);
@@ -94,4 +135,13 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
         indexedCache.beforeLockRelease(currentCacheState);
     }
+
+    private static class PendingUpdate<V> {
+        @Nullable
+        final V value;
+
+        PendingUpdate(@Nullable V value) {
+            this.value = value;
+        }
+    }
 }
@@ -74,6 +74,7 @@ public class DefaultCacheCoordinator implements CacheCreationCoordinator, Exclus
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
     private final CacheAccessOperationsStack operations;
+    private final boolean stripedIndexedCaches;
 
     private ManagedExecutor cacheUpdateExecutor;
     private ExclusiveCacheAccessingWorker cacheAccessWorker;
@@ -89,7 +90,15 @@ public class DefaultCacheCoordinator implements CacheCreationCoordinator, Exclus
     private boolean alreadyCleaned;
 
     public DefaultCacheCoordinator(String cacheDisplayName, File lockTarget, LockOptions lockOptions, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction, CacheCleanupExecutor cleanupAction, ExecutorFactory executorFactory) {
+        this(cacheDisplayName, lockTarget, lockOptions, baseDir, lockManager, initializationAction, cleanupAction, executorFactory, false);
+    }
+
+    /**
+     * @param stripedIndexedCaches Whether to store indexed caches as {@link StripedPersistentIndexedCache} instead of a BTree file.
+     */
+    public DefaultCacheCoordinator(String cacheDisplayName, File lockTarget, LockOptions lockOptions, File baseDir, FileLockManager lockManager, CacheInitializationAction initializationAction, CacheCleanupExecutor cleanupAction, ExecutorFactory executorFactory, boolean stripedIndexedCaches) {
         this.cacheDisplayName = cacheDisplayName;
+        this.stripedIndexedCaches = stripedIndexedCaches;
         this.baseDir = baseDir;
         this.cleanupAction = cleanupAction;
         this.executorFactory = executorFactory;
@@ -310,9 +319,13 @@ public <K, V> MultiProcessSafeIndexedCache<K, V> newCache(final IndexedCachePara
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
-
-                MultiProcessSafeIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafeIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                MultiProcessSafeIndexedCache<K, V> indexedCache;
+                if (stripedIndexedCaches) {
+                    indexedCache = new StripedPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), fileAccess);
+                } else {
+                    Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                    indexedCache = new DefaultMultiProcessSafeIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                }
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
@@ -335,6 +348,10 @@ public <K, V> MultiProcessSafeIndexedCache<K, V> newCache(final IndexedCachePara
     }
 
     private <K, V> File findCacheFile(IndexedCacheParameters<K, V> parameters) {
+        if (stripedIndexedCaches) {
+            // A directory holding the segment files
+            return new File(baseDir, parameters.getCacheName() + ".striped");
+        }
         return new File(baseDir, parameters.getCacheName() + ".bin");
     }
 
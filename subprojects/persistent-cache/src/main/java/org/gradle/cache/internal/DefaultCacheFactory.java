@@ -26,6 +26,9 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.internal.Factory;
 import org.gradle.internal.FileUtils;
+import org.gradle.internal.buildoption.DefaultInternalOptions;
+import org.gradle.internal.buildoption.InternalFlag;
+import org.gradle.internal.buildoption.InternalOptions;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.logging.progress.ProgressLoggerFactory;
@@ -43,16 +46,28 @@
 import java.util.concurrent.locks.ReentrantLock;
 
 public class DefaultCacheFactory implements CacheFactory, Closeable {
+    /**
+     * When enabled, indexed caches are stored as {@link StripedPersistentIndexedCache} instead of a BTree file.
+     * The option is read when a cache directory is opened, so all indexed caches of a cache directory use the same format.
+     */
+    public static final InternalFlag STRIPED_INDEXED_CACHES = new InternalFlag("org.gradle.cache.internal.striped-indexed-caches");
+
     private final Map<File, DirCacheReference> dirCaches = new HashMap<>();
     private final FileLockManager lockManager;
     private final ExecutorFactory executorFactory;
     private final ProgressLoggerFactory progressLoggerFactory;
+    private final InternalOptions internalOptions;
     private final Lock lock = new ReentrantLock();
 
     public DefaultCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory) {
+        this(fileLockManager, executorFactory, progressLoggerFactory, DefaultInternalOptions.ofSystemProperties());
+    }
+
+    public DefaultCacheFactory(FileLockManager fileLockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory, InternalOptions internalOptions) {
         this.lockManager = fileLockManager;
         this.executorFactory = executorFactory;
         this.progressLoggerFactory = progressLoggerFactory;
+        this.internalOptions = internalOptions;
     }
 
     void onOpen(Object cache) {
@@ -100,10 +115,11 @@ private PersistentCache doOpen(
         DirCacheReference dirCacheReference = dirCaches.get(canonicalDir);
         if (dirCacheReference == null) {
             ReferencablePersistentCache cache;
+            boolean stripedIndexedCaches = internalOptions.getOption(STRIPED_INDEXED_CACHES).get();
             if (!properties.isEmpty() || initializer != null) {
-                cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, properties, lockTarget, lockOptions, initializer, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory);
+                cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, properties, lockTarget, lockOptions, initializer, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory, stripedIndexedCaches);
             } else {
-                cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockTarget, lockOptions, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory);
+                cache = new DefaultPersistentDirectoryStore(canonicalDir, displayName, lockTarget, lockOptions, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory, stripedIndexedCaches);
             }
             cache.open();
             dirCacheReference = new DirCacheReference(cache, properties, lockTarget, lockOptions);
@@ -42,7 +42,11 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
     private final Action<? super PersistentCache> initAction;
 
     public DefaultPersistentDirectoryCache(File dir, String displayName, Map<String, ?> properties, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, Action<? super PersistentCache> initAction, CacheCleanupStrategy cacheCleanupStrategy, FileLockManager lockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory) {
-        super(dir, displayName, lockTarget, lockOptions, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory);
+        this(dir, displayName, properties, lockTarget, lockOptions, initAction, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory, false);
+    }
+
+    public DefaultPersistentDirectoryCache(File dir, String displayName, Map<String, ?> properties, CacheBuilder.LockTarget lockTarget, LockOptions lockOptions, Action<? super PersistentCache> initAction, CacheCleanupStrategy cacheCleanupStrategy, FileLockManager lockManager, ExecutorFactory executorFactory, ProgressLoggerFactory progressLoggerFactory, boolean stripedIndexedCaches) {
+        super(dir, displayName, lockTarget, lockOptions, cacheCleanupStrategy, lockManager, executorFactory, progressLoggerFactory, stripedIndexedCaches);
         this.initAction = initAction;
         this.properties.putAll(properties);
     }
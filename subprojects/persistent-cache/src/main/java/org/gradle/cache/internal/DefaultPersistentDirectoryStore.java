@@ -58,6 +58,7 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
     protected final File propertiesFile;
     private final File gcFile;
     private final ProgressLoggerFactory progressLoggerFactory;
+    private final boolean stripedIndexedCaches;
     private DefaultCacheCoordinator cacheAccess;
 
     public DefaultPersistentDirectoryStore(
@@ -69,6 +70,20 @@ public DefaultPersistentDirectoryStore(
         FileLockManager fileLockManager,
         ExecutorFactory executorFactory,
         ProgressLoggerFactory progressLoggerFactory
+    ) {
+        this(dir, displayName, lockTarget, lockOptions, cacheCleanupStrategy, fileLockManager, executorFactory, progressLoggerFactory, false);
+    }
+
+    public DefaultPersistentDirectoryStore(
+        File dir,
+        @Nullable String displayName,
+        CacheBuilder.LockTarget lockTarget,
+        LockOptions lockOptions,
+        @Nullable CacheCleanupStrategy cacheCleanupStrategy,
+        FileLockManager fileLockManager,
+        ExecutorFactory executorFactory,
+        ProgressLoggerFactory progressLoggerFactory,
+        boolean stripedIndexedCaches
     ) {
         this.dir = dir;
         this.lockTarget = lockTarget;
@@ -79,6 +94,7 @@ public DefaultPersistentDirectoryStore(
         this.propertiesFile = new File(dir, "cache.properties");
         this.gcFile = new File(dir, "gc.properties");
         this.progressLoggerFactory = progressLoggerFactory;
+        this.stripedIndexedCaches = stripedIndexedCaches;
         this.displayName = displayName != null ? (displayName + " (" + dir + ")") : ("cache directory " + dir.getName() + " (" + dir + ")");
     }
 
@@ -96,7 +112,7 @@ public DefaultPersistentDirectoryStore open() {
     }
 
     private DefaultCacheCoordinator createCacheAccess() {
-        return new DefaultCacheCoordinator(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupExecutor(), executorFactory);
+        return new DefaultCacheCoordinator(displayName, getLockTarget(), lockOptions, dir, lockManager, getInitAction(), getCleanupExecutor(), executorFactory, stripedIndexedCaches);
     }
 
     private File getLockTarget() {
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.gradle.cache.FileAccess;
+import org.gradle.cache.FileLock;
+import org.gradle.cache.MultiProcessSafeIndexedCache;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An indexed cache that stripes its entries over several segment files, as an alternative to the BTree based cache.
+ *
+ * Each segment is an append-only log of checksummed records, with an in-memory index from the 128-bit key hash to record location.
+ * Keys whose hashes share the first 64 bits are chained in the index, and a lookup compares the serialized key stored in the record,
+ * so a hash collision never returns the value of another key.
+ * Entries are looked up without locking and can be read concurrently with writes. Writes to a segment are serialized,
+ * and a segment is compacted into a new file once most of it is stale. Readers of a segment being compacted continue
+ * to read the previous file until the new one is in place.
+ *
+ * The index of a segment is kept when the cross-process lock is released. When the lock is acquired again,
+ * only the records appended by other processes in the meantime are read, unless the segment has been compacted.
+ *
+ * Entries are written through the given {@link FileAccess}, so other processes notice the changes.
+ */
+public class StripedPersistentIndexedCache<K, V> implements MultiProcessSafeIndexedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedPersistentIndexedCache.class);
+
+    static final int SEGMENT_BITS = 4;
+    static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+    // Record length, checksum, key hash (128 bits), key length, value length
+    private static final int HEADER_SIZE = 4 + 4 + 16 + 4 + 4;
+    private static final int KEY_LENGTH_OFFSET = 24;
+    private static final int VALUE_LENGTH_OFFSET = 28;
+    private static final int REMOVED = -1;
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+    private static final String SEGMENT_FILE_SUFFIX = ".bin";
+
+    private final File directory;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final FileAccess fileAccess;
+    private final Function<byte[], HashCode> keyHasher;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public StripedPersistentIndexedCache(File directory, Serializer<K> keySerializer, Serializer<V> valueSerializer, FileAccess fileAccess) {
+        this(directory, keySerializer, valueSerializer, fileAccess, keyBytes -> Hashing.murmur3_128().hashBytes(keyBytes));
+    }
+
+    @VisibleForTesting
+    StripedPersistentIndexedCache(File directory, Serializer<K> keySerializer, Serializer<V> valueSerializer, FileAccess fileAccess, Function<byte[], HashCode> keyHasher) {
+        this.directory = directory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.fileAccess = fileAccess;
+        this.keyHasher = keyHasher;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(directory, i);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Striped cache (" + directory + ")";
+    }
+
+    @Override
+    public boolean supportsConcurrentReads() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public V getIfPresent(K key) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        KeyHash hash = hash(keyBytes);
+        byte[] valueBytes = segmentFor(hash).read(hash, keyBytes);
+        if (valueBytes == null) {
+            return null;
+        }
+        try {
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(valueBytes)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> producer) {
+        V value = getIfPresent(key);
+        if (value == null) {
+            value = producer.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        byte[] valueBytes = serialize(valueSerializer, value);
+        KeyHash hash = hash(keyBytes);
+        fileAccess.writeFile(() -> segmentFor(hash).write(hash, keyBytes, valueBytes));
+    }
+
+    @Override
+    public void remove(K key) {
+        byte[] keyBytes = serialize(keySerializer, key);
+        KeyHash hash = hash(keyBytes);
+        fileAccess.writeFile(() -> segmentFor(hash).write(hash, keyBytes, null));
+    }
+
+    @Override
+    public void afterLockAcquire(FileLock.State currentCacheState) {
+    }
+
+    @Override
+    public void finishWork() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public void beforeLockRelease(FileLock.State currentCacheState) {
+    }
+
+    private Segment segmentFor(KeyHash hash) {
+        return segments[(int) (hash.high >>> (64 - SEGMENT_BITS))];
+    }
+
+    private KeyHash hash(byte[] keyBytes) {
+        ByteBuffer hash = ByteBuffer.wrap(keyHasher.apply(keyBytes).asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        return new KeyHash(hash.getLong(), hash.getLong());
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(output);
+        try {
+            serializer.write(encoder, value);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * A stripe of the key space. The current file is published through a volatile field, so that lookups do not need to lock.
+     * All other state is guarded by the write lock.
+     */
+    private static class Segment {
+        private final File directory;
+        private final int index;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private volatile SegmentFile current;
+        // The state of the segment when it was last closed, reused when the segment file has not been compacted since
+        private SegmentFile retained;
+
+        Segment(File directory, int index) {
+            this.directory = directory;
+            this.index = index;
+        }
+
+        @Nullable
+        byte[] read(KeyHash hash, byte[] keyBytes) {
+            while (true) {
+                SegmentFile file = open();
+                RecordLocation location = RecordLocation.find(file.index.get(hash.high), hash.low);
+                if (location == null) {
+                    return null;
+                }
+                byte[] record;
+                try {
+                    record = file.read(location);
+                } catch (ClosedChannelException e) {
+                    // The segment has been compacted or closed concurrently, look again
+                    discard(file);
+                    continue;
+                } catch (IOException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+                if (!isValid(record, hash)) {
+                    LOGGER.warn("Ignoring corrupt entry in {}.", segmentFile(file.generation));
+                    file.removeFromIndex(hash, location);
+                    return null;
+                }
+                int keyLength = readInt(record, KEY_LENGTH_OFFSET);
+                int valueLength = readInt(record, VALUE_LENGTH_OFFSET);
+                if (keyLength != keyBytes.length || !Arrays.equals(keyBytes, Arrays.copyOfRange(record, HEADER_SIZE, HEADER_SIZE + keyLength))) {
+                    // Another key with the same 128-bit hash
+                    return null;
+                }
+                return Arrays.copyOfRange(record, HEADER_SIZE + keyLength, HEADER_SIZE + keyLength + valueLength);
+            }
+        }
+
+        void write(KeyHash hash, byte[] keyBytes, @Nullable byte[] valueBytes) {
+            writeLock.lock();
+            try {
+                SegmentFile file = open();
+                byte[] record = encodeRecord(hash, keyBytes, valueBytes);
+                long position = file.end;
+                file.write(record, position);
+                file.end += record.length;
+                file.updateIndex(hash, valueBytes == null ? null : new RecordLocation(position, record.length, hash.low, null), record.length);
+                if (file.end > MIN_COMPACTION_SIZE && file.staleBytes > file.end / 2) {
+                    compact(file);
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            writeLock.lock();
+            try {
+                SegmentFile file = current;
+                if (file != null) {
+                    current = null;
+                    retained = file;
+                    file.close();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void discard(SegmentFile file) {
+            writeLock.lock();
+            try {
+                if (current == file) {
+                    current = null;
+                    retained = file;
+                    file.close();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private SegmentFile open() {
+            SegmentFile file = current;
+            if (file != null) {
+                return file;
+            }
+            writeLock.lock();
+            try {
+                file = current;
+                if (file == null) {
+                    file = openSegmentFile();
+                    current = file;
+                    retained = null;
+                }
+                return file;
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private SegmentFile openSegmentFile() throws IOException {
+            long generation = findLatestGeneration();
+            File file = segmentFile(generation);
+            FileChannel channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+            try {
+                long size = channel.size();
+                SegmentFile segmentFile;
+                if (retained != null && retained.generation == generation && retained.end <= size) {
+                    // Only read what other processes have appended since
+                    segmentFile = new SegmentFile(generation, channel, retained.index, retained.end, retained.staleBytes);
+                } else {
+                    segmentFile = new SegmentFile(generation, channel, new ConcurrentHashMap<>(), 0, 0);
+                }
+                boolean interrupted = Thread.interrupted();
+                try {
+                    segmentFile.readIndex(size);
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return segmentFile;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Finds the file of the most recent compaction of this segment, removing the files of earlier ones where possible.
+         * Another process may still have an earlier file open, which prevents deleting it on Windows. Such files are deleted on a later open.
+         */
+        private long findLatestGeneration() throws IOException {
+            Files.createDirectories(directory.toPath());
+            String prefix = index + "-";
+            File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix));
+            long latest = 0;
+            if (files == null) {
+                return latest;
+            }
+            for (File file : files) {
+                long generation = parseGeneration(file.getName(), prefix);
+                if (generation > latest) {
+                    latest = generation;
+                }
+            }
+            for (File file : files) {
+                if (parseGeneration(file.getName(), prefix) != latest) {
+                    tryDelete(file);
+                }
+            }
+            return latest;
+        }
+
+        private void tryDelete(File file) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                LOGGER.debug("Could not delete {}, will try again when the segment is next opened.", file, e);
+            }
+        }
+
+        private long parseGeneration(String fileName, String prefix) {
+            if (!fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+                // An incomplete compaction
+                return -1;
+            }
+            try {
+                return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private File segmentFile(long generation) {
+            return new File(directory, index + "-" + generation + SEGMENT_FILE_SUFFIX);
+        }
+
+        /**
+         * Copies the live records to the file of the next generation. Lookups continue on the current file until the copy is complete.
+         */
+        private void compact(SegmentFile file) throws IOException {
+            long generation = file.generation + 1;
+            File target = segmentFile(generation);
+            File temporary = new File(directory, target.getName() + ".tmp");
+            Map<Long, RecordLocation> index = new ConcurrentHashMap<>();
+            long end = 0;
+            try (FileChannel output = FileChannel.open(temporary.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                for (Map.Entry<Long, RecordLocation> entry : file.index.entrySet()) {
+                    for (RecordLocation location = entry.getValue(); location != null; location = location.next) {
+                        byte[] record = file.read(location);
+                        if (!isValid(record, new KeyHash(entry.getKey(), location.lowHash))) {
+                            continue;
+                        }
+                        if (buffer.remaining() < record.length) {
+                            end += flush(buffer, output, end);
+                            if (buffer.capacity() < record.length) {
+                                buffer = ByteBuffer.allocate(record.length);
+                            }
+                        }
+                        index.put(entry.getKey(), new RecordLocation(end + buffer.position(), record.length, location.lowHash, index.get(entry.getKey())));
+                        buffer.put(record);
+                    }
+                }
+                end += flush(buffer, output, end);
+            }
+            Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SegmentFile compacted = new SegmentFile(generation, FileChannel.open(target.toPath(), READ, WRITE), index, end, 0);
+            current = compacted;
+            file.close();
+            tryDelete(segmentFile(file.generation));
+        }
+
+        private long flush(ByteBuffer buffer, FileChannel output, long position) throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                output.write(buffer, position + length - buffer.remaining());
+            }
+            buffer.clear();
+            return length;
+        }
+    }
+
+    private static class SegmentFile {
+        final long generation;
+        final FileChannel channel;
+        final Map<Long, RecordLocation> index;
+        // Guarded by the write lock of the segment
+        long end;
+        long staleBytes;
+        boolean written;
+
+        SegmentFile(long generation, FileChannel channel, Map<Long, RecordLocation> index, long end, long staleBytes) {
+            this.generation = generation;
+            this.channel = channel;
+            this.index = index;
+            this.end = end;
+            this.staleBytes = staleBytes;
+        }
+
+        /**
+         * Reads the headers of the records from the current end up to the given size, stopping at an incomplete record.
+         */
+        void readIndex(long size) throws IOException {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(end)), 64 * 1024));
+            while (end + HEADER_SIZE <= size) {
+                int recordLength;
+                KeyHash hash;
+                int keyLength;
+                int valueLength;
+                try {
+                    recordLength = input.readInt();
+                    input.readInt();
+                    hash = new KeyHash(input.readLong(), input.readLong());
+                    keyLength = input.readInt();
+                    valueLength = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (keyLength < 0 || recordLength != HEADER_SIZE + keyLength + Math.max(valueLength, 0) || end + recordLength > size) {
+                    break;
+                }
+                if (input.skipBytes(recordLength - HEADER_SIZE) != recordLength - HEADER_SIZE) {
+                    break;
+                }
+                updateIndex(hash, valueLength == REMOVED ? null : new RecordLocation(end, recordLength, hash.low, null), recordLength);
+                end += recordLength;
+            }
+        }
+
+        /**
+         * Replaces the location of the record for the given key hash with the given location, or removes it when the location is {@code null}.
+         * The chain of the key hash is replaced as a whole, so that concurrent lookups see either the previous or the new chain.
+         */
+        void updateIndex(KeyHash hash, @Nullable RecordLocation location, int recordLength) {
+            RecordLocation chain = index.get(hash.high);
+            RecordLocation previous = RecordLocation.find(chain, hash.low);
+            RecordLocation updated = RecordLocation.without(chain, previous);
+            if (location == null) {
+                // The removal record itself is stale
+                staleBytes += recordLength;
+            } else {
+                updated = new RecordLocation(location.position, location.length, location.lowHash, updated);
+            }
+            if (updated == null) {
+                index.remove(hash.high);
+            } else {
+                index.put(hash.high, updated);
+            }
+            if (previous != null) {
+                staleBytes += previous.length;
+            }
+        }
+
+        /**
+         * Removes the given location of a corrupt record, unless the index has changed since.
+         */
+        void removeFromIndex(KeyHash hash, RecordLocation location) {
+            index.computeIfPresent(hash.high, (high, chain) -> RecordLocation.without(chain, location));
+        }
+
+        byte[] read(RecordLocation location) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            boolean interrupted = Thread.interrupted();
+            try {
+                // Channels are closed when a thread blocked on them is interrupted, so do not let an interrupt affect other threads
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, location.position + buffer.position()) < 0) {
+                        throw new EOFException();
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return buffer.array();
+        }
+
+        void write(byte[] record, long position) throws IOException {
+            if (!written && channel.size() > position) {
+                // Drop an incomplete record left by a process that stopped while writing
+                channel.truncate(position);
+            }
+            written = true;
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close segment file.", e);
+            }
+        }
+    }
+
+    private static byte[] encodeRecord(KeyHash hash, byte[] keyBytes, @Nullable byte[] valueBytes) {
+        int valueLength = valueBytes == null ? 0 : valueBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueLength);
+        buffer.putInt(buffer.capacity());
+        buffer.putInt(0);
+        buffer.putLong(hash.high);
+        buffer.putLong(hash.low);
+        buffer.putInt(keyBytes.length);
+        buffer.putInt(valueBytes == null ? REMOVED : valueLength);
+        buffer.put(keyBytes);
+        if (valueBytes != null) {
+            buffer.put(valueBytes);
+        }
+        byte[] record = buffer.array();
+        writeInt(record, 4, checksum(record));
+        return record;
+    }
+
+    private static boolean isValid(byte[] record, KeyHash hash) {
+        return record.length >= HEADER_SIZE
+            && readInt(record, 0) == record.length
+            && readInt(record, 4) == checksum(record)
+            && ByteBuffer.wrap(record, 8, 8).getLong() == hash.high
+            && ByteBuffer.wrap(record, 16, 8).getLong() == hash.low
+            && readInt(record, VALUE_LENGTH_OFFSET) >= 0;
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 8, record.length - 8);
+        return (int) crc.getValue();
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ByteBuffer.wrap(bytes, offset, 4).getInt();
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        ByteBuffer.wrap(bytes, offset, 4).putInt(value);
+    }
+
+    private static class KeyHash {
+        // Selects the segment and the chain in the index
+        final long high;
+        // Distinguishes the keys in a chain
+        final long low;
+
+        KeyHash(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+    }
+
+    /**
+     * The location of a record, linked to the locations of the records of other keys whose hashes share the first 64 bits. Chains are immutable.
+     */
+    private static class RecordLocation {
+        final long position;
+        final int length;
+        final long lowHash;
+        @Nullable
+        final RecordLocation next;
+
+        RecordLocation(long position, int length, long lowHash, @Nullable RecordLocation next) {
+            this.position = position;
+            this.length = length;
+            this.lowHash = lowHash;
+            this.next = next;
+        }
+
+        @Nullable
+        static RecordLocation find(@Nullable RecordLocation chain, long lowHash) {
+            for (RecordLocation location = chain; location != null; location = location.next) {
+                if (location.lowHash == lowHash) {
+                    return location;
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        static RecordLocation without(@Nullable RecordLocation chain, @Nullable RecordLocation removed) {
+            if (chain == null || removed == null) {
+                return chain;
+            }
+            if (chain == removed) {
+                return chain.next;
+            }
+            RecordLocation rest = without(chain.next, removed);
+            return rest == chain.next ? chain : new RecordLocation(chain.position, chain.length, chain.lowHash, rest);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import com.google.common.hash.HashCode
+import org.gradle.cache.FileAccess
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class StripedPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    final FileAccess fileAccess = Stub() {
+        writeFile(_) >> { Runnable action -> action.run() }
+    }
+    def cacheDir = temporaryFolder.file("cache.striped")
+    def cache = createCache()
+
+    def cleanup() {
+        cache.finishWork()
+    }
+
+    def "can get, put and remove entries"() {
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("a", "3")
+        cache.remove("b")
+
+        then:
+        cache.getIfPresent("a") == "3"
+        cache.getIfPresent("b") == null
+        cache.getIfPresent("c") == null
+    }
+
+    def "writes entries through file access"() {
+        def fileAccess = Mock(FileAccess)
+        def cache = new StripedPersistentIndexedCache<String, String>(cacheDir, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, fileAccess)
+
+        when:
+        cache.put("a", "1")
+        cache.remove("a")
+
+        then:
+        2 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        0 * _
+
+        cleanup:
+        cache.finishWork()
+    }
+
+    def "entries are visible to another instance"() {
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.remove("b")
+        cache.finishWork()
+
+        when:
+        def other = createCache()
+
+        then:
+        other.getIfPresent("a") == "1"
+        other.getIfPresent("b") == null
+
+        cleanup:
+        other.finishWork()
+    }
+
+    def "reads entries written by another instance after reopening"() {
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.finishWork()
+
+        def other = createCache()
+        other.put("a", "changed")
+        other.remove("b")
+        other.put("c", "3")
+        other.finishWork()
+
+        expect:
+        cache.getIfPresent("a") == "changed"
+        cache.getIfPresent("b") == null
+        cache.getIfPresent("c") == "3"
+    }
+
+    def "compacts segments that are mostly stale"() {
+        def value = "x" * 4096
+
+        when:
+        20.times { round ->
+            500.times { cache.put("key$it", value + round) }
+        }
+
+        then:
+        cacheDir.listFiles().any { !it.name.endsWith("-0.bin") }
+        cacheDir.listFiles().sum { it.length() } < 20 * 500 * 4096 / 2
+        500.times { assert cache.getIfPresent("key$it") == value + 19 }
+
+        when:
+        cache.finishWork()
+        def other = createCache()
+
+        then:
+        500.times { assert other.getIfPresent("key$it") == value + 19 }
+
+        cleanup:
+        other?.finishWork()
+    }
+
+    def "ignores incomplete entry at the end of a segment"() {
+        cache.put("a", "1")
+        cache.finishWork()
+        def segmentFile = cacheDir.listFiles().find { it.length() > 0 }
+        segmentFile.bytes = segmentFile.bytes[0..-2] as byte[]
+
+        when:
+        def other = createCache()
+
+        then:
+        other.getIfPresent("a") == null
+
+        when:
+        other.put("a", "2")
+
+        then:
+        other.getIfPresent("a") == "2"
+
+        cleanup:
+        other.finishWork()
+    }
+
+    def "ignores corrupt entries"() {
+        cache.put("a", "1")
+        cache.finishWork()
+        def segmentFile = cacheDir.listFiles().find { it.length() > 0 }
+        def bytes = segmentFile.bytes
+        bytes[bytes.length - 1] ^= 0xff
+        segmentFile.bytes = bytes
+
+        when:
+        def other = createCache()
+
+        then:
+        other.getIfPresent("a") == null
+
+        cleanup:
+        other.finishWork()
+    }
+
+    def "keeps entries whose key hashes collide apart"() {
+        // Only the last byte of the 128-bit hash differs between keys
+        def cache = new StripedPersistentIndexedCache<String, String>(cacheDir, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, fileAccess, { byte[] keyBytes ->
+            def hash = new byte[16]
+            hash[15] = keyBytes[keyBytes.length - 1]
+            HashCode.fromBytes(hash)
+        })
+
+        when:
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("c", "3")
+        cache.remove("b")
+        cache.put("a", "4")
+
+        then:
+        cache.getIfPresent("a") == "4"
+        cache.getIfPresent("b") == null
+        cache.getIfPresent("c") == "3"
+        cache.getIfPresent("d") == null
+
+        when:
+        cache.finishWork()
+
+        then:
+        cache.getIfPresent("a") == "4"
+        cache.getIfPresent("b") == null
+        cache.getIfPresent("c") == "3"
+
+        cleanup:
+        cache.finishWork()
+    }
+
+    def "does not return the value of another key with the same hash"() {
+        def cache = new StripedPersistentIndexedCache<String, String>(cacheDir, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, fileAccess, { byte[] keyBytes ->
+            HashCode.fromBytes(new byte[16])
+        })
+
+        when:
+        cache.put("a", "1")
+
+        then:
+        cache.getIfPresent("a") == "1"
+        cache.getIfPresent("b") == null
+
+        cleanup:
+        cache.finishWork()
+    }
+
+    def "deletes files of earlier generations when opening a segment"() {
+        cache.put("a", "1")
+        cache.finishWork()
+        def segmentFile = cacheDir.listFiles().find { it.length() > 0 }
+        def latestFile = new File(cacheDir, segmentFile.name.replace("-0.bin", "-2.bin"))
+        def earlierFile = new File(cacheDir, segmentFile.name.replace("-0.bin", "-1.bin"))
+        segmentFile.renameTo(latestFile)
+        earlierFile.createNewFile()
+
+        when:
+        def other = createCache()
+
+        then:
+        other.getIfPresent("a") == "1"
+        !earlierFile.exists()
+        latestFile.exists()
+
+        cleanup:
+        other.finishWork()
+    }
+
+    def "can read and write concurrently"() {
+        when:
+        (1..8).collect { thread ->
+            Thread.start {
+                (1..200).each { index ->
+                    cache.put("key-$thread-$index", "value-$index")
+                    assert cache.getIfPresent("key-$thread-$index") == "value-$index"
+                }
+            }
+        }*.join()
+        cache.finishWork()
+        def other = createCache()
+
+        then:
+        (1..8).every { thread ->
+            (1..200).every { index ->
+                other.getIfPresent("key-$thread-$index") == "value-$index"
+            }
+        }
+
+        cleanup:
+        other?.finishWork()
+    }
+
+    private StripedPersistentIndexedCache<String, String> createCache() {
+        return new StripedPersistentIndexedCache<String, String>(cacheDir, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, fileAccess)
+    }
+}
@@ -60,6 +60,7 @@ public class HttpClientHelper implements Closeable {
     private CloseableHttpClient client;
     private final DocumentationRegistry documentationRegistry;
     private final HttpSettings settings;
+    private final HttpConnectionStatistics connectionStatistics = new HttpConnectionStatistics();
 
     private Collection<String> supportedTlsVersions;
 
@@ -254,12 +255,20 @@ private synchronized CloseableHttpClient getClient() {
             HttpClientBuilder builder = HttpClientBuilder.create();
             HttpClientConfigurer configurer = new HttpClientConfigurer(settings);
             configurer.configure(builder);
+            builder.addInterceptorLast(connectionStatistics);
             this.supportedTlsVersions = configurer.supportedTlsVersions();
             this.client = builder.build();
         }
         return client;
     }
 
+    /**
+     * Returns statistics about the requests made by this client and the connections used for them.
+     */
+    public HttpConnectionStatistics getConnectionStatistics() {
+        return connectionStatistics;
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (client != null) {
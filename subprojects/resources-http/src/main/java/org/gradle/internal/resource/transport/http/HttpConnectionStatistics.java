@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests made by an HTTP client and the connections opened for them, to show how well connections are reused.
+ */
+public class HttpConnectionStatistics implements HttpResponseInterceptor {
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    @Override
+    public void process(HttpResponse response, HttpContext context) {
+        requests.incrementAndGet();
+        HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+        if (connection == null) {
+            return;
+        }
+        HttpConnectionMetrics metrics = connection.getMetrics();
+        // The metrics already include the current request, so this is the first request on the connection
+        if (metrics != null && metrics.getRequestCount() == 1) {
+            openedConnections.incrementAndGet();
+        }
+    }
+
+    /**
+     * The number of requests made, including redirects.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * The number of connections opened to make the requests.
+     */
+    public long getOpenedConnectionCount() {
+        return openedConnections.get();
+    }
+
+    /**
+     * The number of requests that reused an already open connection.
+     */
+    public long getReusedConnectionCount() {
+        return Math.max(0, requests.get() - openedConnections.get());
+    }
+
+    @Override
+    public String toString() {
+        return getRequestCount() + " requests over " + getOpenedConnectionCount() + " connections";
+    }
+}
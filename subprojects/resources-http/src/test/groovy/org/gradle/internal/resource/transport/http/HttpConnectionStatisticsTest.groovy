@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.HttpConnection
+import org.apache.http.HttpConnectionMetrics
+import org.apache.http.HttpResponse
+import org.apache.http.protocol.HttpCoreContext
+import spock.lang.Specification
+
+class HttpConnectionStatisticsTest extends Specification {
+    def statistics = new HttpConnectionStatistics()
+
+    def "counts connections opened and reused for requests"() {
+        def firstConnection = connectionWithRequestCounts(1, 2, 3)
+        def secondConnection = connectionWithRequestCounts(1)
+
+        when:
+        3.times { statistics.process(Stub(HttpResponse), contextFor(firstConnection)) }
+        statistics.process(Stub(HttpResponse), contextFor(secondConnection))
+
+        then:
+        statistics.requestCount == 4
+        statistics.openedConnectionCount == 2
+        statistics.reusedConnectionCount == 2
+        statistics.toString() == "4 requests over 2 connections"
+    }
+
+    def "counts requests without connection details"() {
+        def connectionWithoutMetrics = Stub(HttpConnection) {
+            getMetrics() >> null
+        }
+
+        when:
+        statistics.process(Stub(HttpResponse), HttpCoreContext.create())
+        statistics.process(Stub(HttpResponse), contextFor(connectionWithoutMetrics))
+
+        then:
+        statistics.requestCount == 2
+        statistics.openedConnectionCount == 0
+        statistics.reusedConnectionCount == 2
+    }
+
+    def "starts without requests"() {
+        expect:
+        statistics.requestCount == 0
+        statistics.openedConnectionCount == 0
+        statistics.reusedConnectionCount == 0
+    }
+
+    private HttpConnection connectionWithRequestCounts(long... requestCounts) {
+        def metrics = Stub(HttpConnectionMetrics) {
+            getRequestCount() >>> requestCounts.toList()
+        }
+        Stub(HttpConnection) {
+            getMetrics() >> metrics
+        }
+    }
+
+    private static HttpCoreContext contextFor(HttpConnection connection) {
+        def context = HttpCoreContext.create()
+        context.setAttribute(HttpCoreContext.HTTP_CONNECTION, connection)
+        context
+    }
+}
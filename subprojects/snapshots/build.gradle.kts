@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Tools to take immutable, comparable snapshots of files and other things"
@@ -14,6 +15,8 @@ dependencies {
     implementation(libs.guava)
     implementation(libs.slf4jApi)
 
+    jmhImplementation(platform(project(":distributions-dependencies")))
+
     testImplementation(project(":process-services"))
     testImplementation(project(":resources"))
     testImplementation(project(":native"))
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.PathUtil;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Measures the heap retained by a virtual file system with snapshots of many files.
+ *
+ * The retained heap per file is reported as the secondary result {@code retainedBytesPerFile}.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyHeapBenchmark {
+    private static final String ROOT_PATH = "/home/user/projects/some-project";
+    private static final Comparator<FileSystemLocationSnapshot> BY_NAME = Comparator.comparing(FileSystemLocationSnapshot::getName, PathUtil.getPathComparator(CaseSensitivity.CASE_SENSITIVE));
+
+    @Param({"1000000"})
+    int fileCount;
+
+    @Param({"5", "50"})
+    int filesPerDirectory;
+
+    SnapshotHierarchy root;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapUsage {
+        public long retainedBytesPerFile;
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropHierarchy() {
+        root = null;
+    }
+
+    @Benchmark
+    public void storeDirectorySnapshots(HeapUsage heapUsage) {
+        long usedBefore = usedHeapAfterGc();
+        root = createHierarchy();
+        long usedAfter = usedHeapAfterGc();
+        heapUsage.retainedBytesPerFile = (usedAfter - usedBefore) / fileCount;
+    }
+
+    /**
+     * Creates module directories containing source directories, similar to the layout of the sources of a large build.
+     */
+    private SnapshotHierarchy createHierarchy() {
+        SnapshotHierarchy hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        int directoriesPerModule = 100;
+        int directoryCount = (fileCount + filesPerDirectory - 1) / filesPerDirectory;
+        int createdFiles = 0;
+        for (int module = 0; module * directoriesPerModule < directoryCount; module++) {
+            String moduleName = "module-" + module;
+            String modulePath = ROOT_PATH + "/" + moduleName;
+            List<FileSystemLocationSnapshot> directories = new ArrayList<>();
+            for (int directory = 0; directory < directoriesPerModule && createdFiles < fileCount; directory++) {
+                String directoryName = "package" + directory;
+                String directoryPath = modulePath + "/" + directoryName;
+                List<FileSystemLocationSnapshot> files = new ArrayList<>();
+                for (int file = 0; file < filesPerDirectory && createdFiles < fileCount; file++, createdFiles++) {
+                    String fileName = "SomeSourceFile" + file + ".java";
+                    files.add(new RegularFileSnapshot(directoryPath + "/" + fileName, fileName, Hashing.hashString(directoryPath + fileName), DefaultFileMetadata.file(createdFiles, file * 100L, AccessType.DIRECT)));
+                }
+                files.sort(BY_NAME);
+                directories.add(new DirectorySnapshot(directoryPath, directoryName, AccessType.DIRECT, Hashing.hashString(directoryPath), files));
+            }
+            directories.sort(BY_NAME);
+            DirectorySnapshot moduleSnapshot = new DirectorySnapshot(modulePath, moduleName, AccessType.DIRECT, Hashing.hashString(modulePath), directories);
+            hierarchy = hierarchy.store(modulePath, moduleSnapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        return hierarchy;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -38,6 +38,15 @@ public static <T> ChildMap<T> childMap(CaseSensitivity caseSensitivity, Collecti
         return childMapFromSorted(sortedEntries);
     }
 
+    /**
+     * Creates a child map for the children of a directory snapshot, which are already sorted by name.
+     *
+     * The entries of the map are created when they are accessed, so the map only retains an array of the children.
+     */
+    public static ChildMap<FileSystemLocationSnapshot> childMapFromSortedSnapshots(List<FileSystemLocationSnapshot> sortedChildren) {
+        return childMapFromSorted(new SnapshotChildEntries(sortedChildren.toArray(new FileSystemLocationSnapshot[0])));
+    }
+
     public static <T> ChildMap<T> childMapFromSorted(List<ChildMap.Entry<T>> sortedEntries) {
         int size = sortedEntries.size();
         switch (size) {
@@ -18,6 +18,7 @@
 
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
 import org.gradle.internal.hash.HashCode;
 
 import java.util.Optional;
@@ -26,15 +27,18 @@
  * A snapshot of a regular file.
  *
  * The snapshot includes the content hash of the file and its metadata.
+ * The metadata is kept in fields of the snapshot instead of a separate object, since the virtual file system retains a snapshot for each file.
  */
 public class RegularFileSnapshot extends AbstractFileSystemLocationSnapshot implements FileSystemLeafSnapshot {
     private final HashCode contentHash;
-    private final FileMetadata metadata;
+    private final long lastModified;
+    private final long length;
 
     public RegularFileSnapshot(String absolutePath, String name, HashCode contentHash, FileMetadata metadata) {
         super(absolutePath, name, metadata.getAccessType());
         this.contentHash = contentHash;
-        this.metadata = metadata;
+        this.lastModified = metadata.getLastModified();
+        this.length = metadata.getLength();
     }
 
     @Override
@@ -49,12 +53,18 @@ public HashCode getHash() {
 
     // Used by the Maven caching client. Do not remove
     public FileMetadata getMetadata() {
-        return metadata;
+        return DefaultFileMetadata.file(lastModified, length, getAccessType());
     }
 
     @Override
     public boolean isContentAndMetadataUpToDate(FileSystemLocationSnapshot other) {
-        return isContentUpToDate(other) && metadata.equals(((RegularFileSnapshot) other).metadata);
+        if (!isContentUpToDate(other)) {
+            return false;
+        }
+        RegularFileSnapshot otherFile = (RegularFileSnapshot) other;
+        return lastModified == otherFile.lastModified
+            && length == otherFile.length
+            && getAccessType() == otherFile.getAccessType();
     }
 
     @Override
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The entries of the children of a directory snapshot, using the names of the children as their paths.
+ *
+ * Only the children are retained, the entries are created when accessed.
+ */
+class SnapshotChildEntries extends AbstractList<ChildMap.Entry<FileSystemLocationSnapshot>> implements RandomAccess {
+    private final FileSystemLocationSnapshot[] children;
+
+    SnapshotChildEntries(FileSystemLocationSnapshot[] children) {
+        this.children = children;
+    }
+
+    @Override
+    public ChildMap.Entry<FileSystemLocationSnapshot> get(int index) {
+        FileSystemLocationSnapshot child = children[index];
+        return new ChildMap.Entry<>(child.getName(), child);
+    }
+
+    @Override
+    public int size() {
+        return children.length;
+    }
+}
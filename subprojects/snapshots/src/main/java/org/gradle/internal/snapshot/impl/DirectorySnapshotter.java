@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
@@ -48,12 +49,15 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -87,12 +91,22 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    @Nullable
+    private final ForkJoinPool forkJoinPool;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * @param forkJoinPool The pool to snapshot the subdirectories of unfiltered directories in parallel, or {@code null} to snapshot sequentially.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable ForkJoinPool forkJoinPool) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.forkJoinPool = forkJoinPool;
     }
 
     /**
@@ -112,16 +126,27 @@ public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner,
      * @return The (possible filtered) snapshot of the directory.
      */
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer) {
+        AtomicBoolean hasBeenFiltered = new AtomicBoolean();
+        Path rootPath = Paths.get(absolutePath);
+        // The predicate is not required to be thread-safe, and it needs the relative path of each visited element, which forked subtrees do not track.
+        // So only unfiltered walks run in parallel.
+        boolean parallel = forkJoinPool != null && predicate == null;
+        PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer, parallel);
+        if (parallel) {
+            forkJoinPool.invoke(ForkJoinTask.adapt(() -> walk(rootPath, absolutePath, visitor)));
+        } else {
+            walk(rootPath, absolutePath, visitor);
+        }
+        FileSystemLocationSnapshot result = visitor.getResult();
+        if (!hasBeenFiltered.get()) {
+            unfilteredSnapshotConsumer.accept(result);
+        }
+        return result;
+    }
+
+    private static void walk(Path rootPath, String absolutePath, PathVisitor visitor) {
         try {
-            AtomicBoolean hasBeenFiltered = new AtomicBoolean();
-            Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, unfilteredSnapshotConsumer);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
-            FileSystemLocationSnapshot result = visitor.getResult();
-            if (!hasBeenFiltered.get()) {
-                unfilteredSnapshotConsumer.accept(result);
-            }
-            return result;
         } catch (IOException e) {
             throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", absolutePath), e);
         }
@@ -256,6 +281,9 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final Deque<String> parentDirectories = new ArrayDeque<>();
         private final Set<FileSystemLocationSnapshot> filteredDirectorySnapshots = new HashSet<>();
         private final Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer;
+        private final boolean parallel;
+        // The subdirectories of each directory being visited that are snapshot by forked tasks, only used when parallel
+        private final Deque<List<ForkJoinTask<SubtreeSnapshot>>> forkedSubtrees = new ArrayDeque<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -265,9 +293,26 @@ public PathVisitor(
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping,
-            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            boolean parallel
+        ) {
+            this(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, statisticsCollector, symbolicLinkMapping, unfilteredSnapshotConsumer, parallel, false);
+        }
+
+        private PathVisitor(
+            @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
+            AtomicBoolean hasBeenFiltered,
+            FileHasher hasher,
+            Interner<String> stringInterner,
+            DefaultExcludes defaultExcludes,
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            SymbolicLinkMapping symbolicLinkMapping,
+            Consumer<FileSystemLocationSnapshot> unfilteredSnapshotConsumer,
+            boolean parallel,
+            boolean forkedSubtree
         ) {
-            super(statisticsCollector);
+            super(statisticsCollector, forkedSubtree);
+            this.parallel = parallel;
             this.builder = FilteredTrackingMerkleDirectorySnapshotBuilder.sortingRequired(this::consumeUnfilteredSnapshot);
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
@@ -293,8 +338,16 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (shouldVisitDirectory(dir, fileName)) {
+                if (parallel && !pathTracker.isRoot()) {
+                    forkSubtree(dir);
+                    pathTracker.leave();
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
                 parentDirectories.addFirst(dir.toString());
+                if (parallel) {
+                    forkedSubtrees.addFirst(new ArrayList<>());
+                }
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -302,6 +355,57 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             }
         }
 
+        /**
+         * Snapshots the given subdirectory of the directory being visited in a separate fork/join task.
+         * The result is added to the directory when leaving it, which is fine as the {@link org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder} sorts the children.
+         */
+        private void forkSubtree(Path dir) {
+            ImmutableList<String> parentDirectoriesOfSubtree = ImmutableList.copyOf(parentDirectories);
+            ForkJoinTask<SubtreeSnapshot> task = ForkJoinTask.adapt(() -> {
+                collector.recordStartParallelSubtree();
+                try {
+                    AtomicBoolean subtreeHasBeenFiltered = new AtomicBoolean();
+                    List<FileSystemLocationSnapshot> unfilteredSnapshots = new ArrayList<>();
+                    PathVisitor subtreeVisitor = new PathVisitor(
+                        predicate,
+                        subtreeHasBeenFiltered,
+                        hasher,
+                        stringInterner,
+                        defaultExcludes,
+                        collector,
+                        symbolicLinkMapping,
+                        unfilteredSnapshots::add,
+                        true,
+                        true
+                    );
+                    subtreeVisitor.parentDirectories.addAll(parentDirectoriesOfSubtree);
+                    walk(dir, dir.toString(), subtreeVisitor);
+                    return new SubtreeSnapshot(subtreeVisitor.getResult(), subtreeHasBeenFiltered.get(), unfilteredSnapshots);
+                } finally {
+                    collector.recordFinishParallelSubtree();
+                }
+            });
+            task.fork();
+            forkedSubtrees.getFirst().add(task);
+        }
+
+        private void joinForkedSubtrees() {
+            for (ForkJoinTask<SubtreeSnapshot> task : forkedSubtrees.removeFirst()) {
+                SubtreeSnapshot subtree = task.join();
+                // The consumer is not required to be thread-safe, so the unfiltered snapshots of the subtree are reported from the walking thread
+                subtree.unfilteredSnapshots.forEach(unfilteredSnapshotConsumer);
+                FileSystemLocationSnapshot result = subtree.result;
+                if (result != null) {
+                    builder.visitDirectory((DirectorySnapshot) result);
+                    if (subtree.hasBeenFiltered) {
+                        filteredDirectorySnapshots.add(result);
+                        builder.markCurrentLevelAsFiltered();
+                        hasBeenFiltered.set(true);
+                    }
+                }
+            }
+        }
+
         @Override
         protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             pathTracker.leave();
@@ -311,6 +415,9 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
+            if (parallel) {
+                joinForkedSubtrees();
+            }
             boolean currentLevelComplete = builder.isCurrentLevelUnfiltered();
             FileSystemLocationSnapshot currentLevel = builder.leaveDirectory();
             if (!currentLevelComplete) {
@@ -372,7 +479,8 @@ private DirectorySnapshot followSymlink(Path file, String internedFileName, Atom
                         defaultExcludes,
                         collector,
                         symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
-                        unfilteredSnapshotConsumer);
+                        unfilteredSnapshotConsumer,
+                        parallel);
                     Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                     return (DirectorySnapshot) subtreeVisitor.getResult();
                 } else {
@@ -489,4 +597,17 @@ public FileSystemLocationSnapshot getResult() {
             return builder.getResult();
         }
     }
+
+    private static class SubtreeSnapshot {
+        @Nullable
+        private final FileSystemLocationSnapshot result;
+        private final boolean hasBeenFiltered;
+        private final List<FileSystemLocationSnapshot> unfilteredSnapshots;
+
+        public SubtreeSnapshot(@Nullable FileSystemLocationSnapshot result, boolean hasBeenFiltered, List<FileSystemLocationSnapshot> unfilteredSnapshots) {
+            this.result = result;
+            this.hasBeenFiltered = hasBeenFiltered;
+            this.unfilteredSnapshots = unfilteredSnapshots;
+        }
+    }
 }
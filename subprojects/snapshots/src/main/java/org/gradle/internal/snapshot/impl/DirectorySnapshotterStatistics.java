@@ -22,6 +22,7 @@
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public interface DirectorySnapshotterStatistics {
@@ -45,11 +46,24 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The number of directories snapshot as separate fork/join tasks.
+     */
+    long getParallelSubtreeCount();
+
+    /**
+     * The maximum number of fork/join tasks snapshotting directories at the same time.
+     */
+    int getMaxParallelism();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final AtomicLong parallelSubtreeCount = new AtomicLong();
+        private final AtomicInteger activeSubtreeCount = new AtomicInteger();
+        private final AtomicInteger maxParallelism = new AtomicInteger();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -67,11 +81,23 @@ public void recordVisitFileFailed() {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordStartParallelSubtree() {
+            parallelSubtreeCount.incrementAndGet();
+            int active = activeSubtreeCount.incrementAndGet();
+            maxParallelism.accumulateAndGet(active, Math::max);
+        }
+
+        public void recordFinishParallelSubtree() {
+            activeSubtreeCount.decrementAndGet();
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            long parallelSubtreeCount = this.parallelSubtreeCount.getAndSet(0);
+            int maxParallelism = this.maxParallelism.getAndSet(0);
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -94,10 +120,25 @@ public long getFailedFiles() {
                     return failedFileCount;
                 }
 
+                @Override
+                public long getParallelSubtreeCount() {
+                    return parallelSubtreeCount;
+                }
+
+                @Override
+                public int getMaxParallelism() {
+                    return maxParallelism;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
+                    String message = MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
                         hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    if (parallelSubtreeCount > 0) {
+                        message += MessageFormat.format(", snapshot {0,number,integer} directories in parallel with a maximum parallelism of {1,number,integer}",
+                            parallelSubtreeCount, maxParallelism);
+                    }
+                    return message;
                 }
             };
         }
@@ -105,15 +146,30 @@ public String toString() {
 
     abstract class CollectingFileVisitor implements FileVisitor<Path> {
         protected final Collector collector;
+        private boolean rootDirectoryRecorded;
 
         public CollectingFileVisitor(Collector collector) {
+            this(collector, false);
+        }
+
+        /**
+         * @param subtreeOfRecordedHierarchy whether the visited directory has already been recorded as part of a hierarchy visited by another visitor.
+         */
+        protected CollectingFileVisitor(Collector collector, boolean subtreeOfRecordedHierarchy) {
             this.collector = collector;
-            collector.recordVisitHierarchy();
+            this.rootDirectoryRecorded = subtreeOfRecordedHierarchy;
+            if (!subtreeOfRecordedHierarchy) {
+                collector.recordVisitHierarchy();
+            }
         }
 
         @Override
         public final FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            collector.recordVisitDirectory();
+            if (rootDirectoryRecorded) {
+                rootDirectoryRecorded = false;
+            } else {
+                collector.recordVisitDirectory();
+            }
             return doPreVisitDirectory(dir, attrs);
         }
 
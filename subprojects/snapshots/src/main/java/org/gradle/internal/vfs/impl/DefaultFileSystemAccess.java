@@ -38,9 +38,11 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -53,6 +55,8 @@ public class DefaultFileSystemAccess implements FileSystemAccess, FileSystemDefa
     private final Interner<String> stringInterner;
     private final WriteListener writeListener;
     private final DirectorySnapshotterStatistics.Collector statisticsCollector;
+    @Nullable
+    private final ForkJoinPool snapshottingPool;
     private ImmutableList<String> defaultExcludes;
     private DirectorySnapshotter directorySnapshotter;
     private final FileHasher hasher;
@@ -66,13 +70,30 @@ public DefaultFileSystemAccess(
         WriteListener writeListener,
         DirectorySnapshotterStatistics.Collector statisticsCollector,
         String... defaultExcludes
+    ) {
+        this(hasher, stringInterner, stat, virtualFileSystem, writeListener, statisticsCollector, null, defaultExcludes);
+    }
+
+    /**
+     * @param snapshottingPool The pool used to snapshot directories in parallel, or {@code null} to snapshot directories sequentially.
+     */
+    public DefaultFileSystemAccess(
+        FileHasher hasher,
+        Interner<String> stringInterner,
+        Stat stat,
+        VirtualFileSystem virtualFileSystem,
+        WriteListener writeListener,
+        DirectorySnapshotterStatistics.Collector statisticsCollector,
+        @Nullable ForkJoinPool snapshottingPool,
+        String... defaultExcludes
     ) {
         this.stringInterner = stringInterner;
         this.stat = stat;
         this.writeListener = writeListener;
         this.statisticsCollector = statisticsCollector;
+        this.snapshottingPool = snapshottingPool;
         this.defaultExcludes = ImmutableList.copyOf(defaultExcludes);
-        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, this.defaultExcludes, statisticsCollector);
+        this.directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, this.defaultExcludes, statisticsCollector, snapshottingPool);
         this.hasher = hasher;
         this.virtualFileSystem = virtualFileSystem;
     }
@@ -206,7 +227,7 @@ public void onDefaultExcludesChanged(List<String> excludes) {
         if (!defaultExcludes.equals(newDefaultExcludes)) {
             LOGGER.debug("Default excludes changes from {} to {}", defaultExcludes, newDefaultExcludes);
             defaultExcludes = newDefaultExcludes;
-            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector);
+            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector, snapshottingPool);
             virtualFileSystem.invalidateAll();
         }
     }
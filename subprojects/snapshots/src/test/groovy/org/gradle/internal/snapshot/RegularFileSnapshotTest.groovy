@@ -25,4 +25,15 @@ class RegularFileSnapshotTest extends AbstractFileSystemLeafSnapshotTest {
     protected RegularFileSnapshot createInitialRootNode(String absolutePath) {
         return new RegularFileSnapshot(absolutePath, PathUtil.getFileName(absolutePath), TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
     }
+
+    def "compares content and metadata"() {
+        def snapshot = createInitialRootNode("/some/file.txt")
+
+        expect:
+        snapshot.metadata == DefaultFileMetadata.file(1, 2, AccessType.DIRECT)
+        snapshot.isContentAndMetadataUpToDate(createInitialRootNode("/some/file.txt"))
+        !snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 3, AccessType.DIRECT)))
+        !snapshot.isContentAndMetadataUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(1, 2, AccessType.VIA_SYMLINK)))
+        snapshot.isContentUpToDate(new RegularFileSnapshot("/some/file.txt", "file.txt", TestHashCodes.hashCodeFrom(1235), DefaultFileMetadata.file(5, 2, AccessType.DIRECT)))
+    }
 }
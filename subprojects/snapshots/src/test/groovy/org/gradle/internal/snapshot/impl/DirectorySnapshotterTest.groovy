@@ -39,6 +39,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.ForkJoinPool
 import java.util.function.Consumer
 
 @UsesNativeServices
@@ -99,6 +100,66 @@ class DirectorySnapshotterTest extends Specification {
         ] as Set
     }
 
+    def "parallel snapshot is the same as the sequential snapshot"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        rootDir.file("a.txt").text = "a"
+        rootDir.file("a/b/c.txt").text = "c"
+        rootDir.file("a/c/c.txt").text = "other c"
+        rootDir.file("a/b/c.html").text = "html"
+        rootDir.file("b/empty").createDir()
+        rootDir.file("c/d/e/f/g.txt").text = "g"
+        rootDir.file("c/.git/config").text = "excluded"
+        def parallelStatisticsCollector = new DirectorySnapshotterStatistics.Collector()
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), DirectoryScanner.getDefaultExcludes() as List, parallelStatisticsCollector, new ForkJoinPool(4))
+        def sequentialSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), DirectoryScanner.getDefaultExcludes() as List, statisticsCollector)
+
+        when:
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, null, unfilteredSubSnapshotsCollector)
+        def sequentialSnapshot = sequentialSnapshotter.snapshot(rootDir.absolutePath, null, {})
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        SnapshotVisitorUtil.getRelativePaths(parallelSnapshot, true) == SnapshotVisitorUtil.getRelativePaths(sequentialSnapshot, true)
+        SnapshotVisitorUtil.getAbsolutePaths(parallelSnapshot, true) == SnapshotVisitorUtil.getAbsolutePaths(sequentialSnapshot, true)
+        !SnapshotVisitorUtil.getRelativePaths(parallelSnapshot).contains("c/.git")
+        unfilteredSubsnapshots == [parallelSnapshot]
+
+        when:
+        def statistics = parallelStatisticsCollector.collect()
+
+        then:
+        statistics.visitedHierarchyCount == 1
+        statistics.visitedDirectoryCount == 11
+        statistics.visitedFiles == 5
+        statistics.parallelSubtreeCount == 9
+        statistics.maxParallelism >= 1
+    }
+
+    @Requires(UnitTestPreconditions.Symlinks)
+    def "parallel snapshot handles symlinks"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def linkTarget = tmpDir.createDir("linkTarget")
+        linkTarget.file("other/text.txt").text = "text"
+        rootDir.file("some/sub/dir").createLink(linkTarget)
+        def cycle = rootDir.file("cycle").createDir()
+        cycle.file("subdir").createLink(cycle)
+        def parallelSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, new ForkJoinPool(4))
+
+        when:
+        def parallelSnapshot = parallelSnapshotter.snapshot(rootDir.absolutePath, null, unfilteredSubSnapshotsCollector) as DirectorySnapshot
+        def sequentialSnapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, {})
+
+        then:
+        parallelSnapshot.hash == sequentialSnapshot.hash
+        SnapshotVisitorUtil.getRelativePaths(parallelSnapshot) == ["cycle", "some", "some/sub", "some/sub/dir", "some/sub/dir/other", "some/sub/dir/other/text.txt"]
+        SnapshotVisitorUtil.getAbsolutePaths(parallelSnapshot) == SnapshotVisitorUtil.getAbsolutePaths(sequentialSnapshot)
+        def symlinkedDir = parallelSnapshot.children[1].children[0].children[0] as DirectorySnapshot
+        symlinkedDir.accessType == AccessType.VIA_SYMLINK
+        unfilteredSubsnapshots == [parallelSnapshot]
+    }
+
     def "should snapshot file system root"() {
         given:
         def fileSystemRoot = fileSystemRoot()